@@ -0,0 +1,308 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Keeps the fleet totals on disk so a restart doesn't lose them.
+ *
+ * Every chunk that gets merged is appended to a journal first, which is cheap
+ * (a few hundred bytes per chunk). Every so often the totals get compacted:
+ * the whole lot is written to one snapshot file along with which journal it
+ * goes up to, then the journals it covers are deleted. Loading reads the
+ * snapshot and replays whatever journals came after it.
+ *
+ * The snapshot is written to a temp file and renamed over the old one, so a
+ * crash partway through leaves the old snapshot and its journals alone. A
+ * crash partway through a journal entry just loses that entry (the device
+ * never got an answer for it, so it sends the chunk again).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class AggregateStore implements Closeable
+{
+    private static final int    MAGIC          = 0x53494147; // SIAG
+    private static final byte   VERSION        = 1;
+    private static final String SNAPSHOT_NAME  = "aggregates.dat";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".dat";
+
+    private final File             dir;
+    private final Object           compacting = new Object();
+    private       DataOutputStream journal    = null;
+    private       int              journalSeq = 0;
+
+    /**
+     * @param dir - where the snapshot and journals go
+     */
+    public AggregateStore(File dir)
+    {
+        this.dir = dir;
+    }
+
+    public File getDir()
+    {
+        return dir;
+    }
+
+    /**
+     * Reads the snapshot and journals back in and starts a new journal.
+     * Call once before appending anything.
+     *
+     * @param aggregates - totals to add everything into
+     * @param hashes - gets the hashes of every chunk already merged
+     * @throws IOException - if the directory can't be used or the snapshot is bad
+     */
+    public synchronized void load(FleetAggregates aggregates, Collection<String> hashes) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        int covered = readSnapshot(aggregates, hashes);
+        int last = covered;
+
+        for (int seq : getJournals()) {
+            if (seq > covered) {
+                replay(getJournalFile(seq), aggregates, hashes);
+            }
+            last = Math.max(last, seq);
+        }
+        openJournal(last + 1);
+    }
+
+    /**
+     * Writes a merged chunk to the journal. Only flushed to the OS, not synced,
+     * so it survives the process dying but maybe not the machine.
+     *
+     * @param chunk - totals that were just merged
+     * @throws IOException - if it can't be written
+     */
+    public synchronized void append(ChunkTotals chunk) throws IOException
+    {
+        if (journal == null) {
+            throw new IOException("Store isn't loaded");
+        }
+        chunk.writeTo(journal);
+        journal.flush();
+    }
+
+    /**
+     * Writes the totals out to the snapshot and drops the journals it replaces.
+     * The pause lock is only held while the totals are copied into memory and the
+     * journal is switched over, the disk writing happens after it's let go.
+     *
+     * @param aggregates - the totals to save
+     * @param hashes - hashes of every chunk in the totals
+     * @param pause - lock that stops chunks from being merged and journalled
+     * @throws IOException - if the snapshot can't be written
+     */
+    public void compact(FleetAggregates aggregates, Collection<String> hashes, Lock pause) throws IOException
+    {
+        synchronized (compacting) {
+            ByteArrayOutputStream state = new ByteArrayOutputStream();
+            DataOutputStream stateOut = new DataOutputStream(state);
+            int covered;
+
+            pause.lock();
+            try {
+                stateOut.writeInt(hashes.size());
+
+                for (String hash : hashes) {
+                    stateOut.writeUTF(hash);
+                }
+                aggregates.writeTo(stateOut);
+                covered = rotate();
+            }
+            finally {
+                pause.unlock();
+            }
+            writeSnapshot(covered, state);
+
+            for (int seq : getJournals()) {
+                if (seq <= covered && !getJournalFile(seq).delete()) {
+                    throw new IOException("Could not delete " + getJournalFile(seq));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Closes the journal and starts the next one.
+     *
+     * @return the number of the journal that was closed
+     */
+    private synchronized int rotate() throws IOException
+    {
+        int closed = journalSeq;
+        close();
+        openJournal(closed + 1);
+        return closed;
+    }
+
+    private void openJournal(int seq) throws IOException
+    {
+        journalSeq = seq;
+        journal = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(getJournalFile(seq), true)));
+    }
+
+    private void writeSnapshot(int covered, ByteArrayOutputStream state) throws IOException
+    {
+        File file = new File(dir, SNAPSHOT_NAME);
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(covered);
+            state.writeTo(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * @return the last journal the snapshot covers (0 if there's no snapshot)
+     */
+    private int readSnapshot(FleetAggregates aggregates, Collection<String> hashes) throws IOException
+    {
+        File file = new File(dir, SNAPSHOT_NAME);
+
+        if (!file.isFile()) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException(file + " isn't an aggregate snapshot");
+            }
+            int covered = in.readInt();
+
+            for (int i = in.readInt(); i > 0; --i) {
+                hashes.add(in.readUTF());
+            }
+            aggregates.readFrom(in);
+            return covered;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void replay(File file, FleetAggregates aggregates, Collection<String> hashes)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            while (true) {
+                ChunkTotals chunk;
+
+                try {
+                    chunk = ChunkTotals.readFrom(in);
+                }
+                catch (EOFException e) {
+                    break; // end of the journal or an entry cut off by a crash
+                }
+                if (hashes.add(chunk.getHash())) {
+                    aggregates.add(chunk);
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return numbers of the journals in the directory, oldest first
+     */
+    private List<Integer> getJournals()
+    {
+        List<Integer> journals = new ArrayList<>();
+        String[] names = dir.list();
+
+        if (names == null) {
+            return journals;
+        }
+        for (String name : names) {
+            if (name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)) {
+                try {
+                    journals.add(Integer.parseInt(
+                        name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length())));
+                }
+                catch (NumberFormatException ignored) {
+                    // not ours
+                }
+            }
+        }
+        Collections.sort(journals);
+        return journals;
+    }
+
+    private File getJournalFile(int seq)
+    {
+        return new File(dir, JOURNAL_PREFIX + seq + JOURNAL_SUFFIX);
+    }
+}
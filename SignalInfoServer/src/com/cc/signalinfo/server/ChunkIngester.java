@@ -0,0 +1,285 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.history.SnapshotCodec;
+import com.cc.signalinfo.upload.ChunkReader;
+import com.cc.signalinfo.upload.SessionUploader;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Turns chunks sent by SessionUploader into fleet totals. Knows nothing
+ * about HTTP, IngestServer just hands it the bodies.
+ *
+ * A chunk is decoded as it streams in, one block at a time through a
+ * SnapshotCodec.Decoder, and hashed on the way through, so it's never held in
+ * memory as a whole. Its snapshots are totalled up on their own (ChunkTotals)
+ * and only merged into the fleet totals if the chunk decoded cleanly and its
+ * hash matches its name. Chunks are named by their hash, so one that's
+ * already been merged is just acknowledged again without being counted twice.
+ *
+ * Thread safe, any number of chunks can be ingested at once. Merging takes
+ * the read side of a lock so chunks never wait on each other for it, the write
+ * side is only taken by compact() for the moment it takes to copy the totals.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class ChunkIngester
+{
+    /**
+     * Biggest chunk (decompressed) that will be taken. Uploaders cut chunks at
+     * SessionUploader.CHUNK_SIZE, though one can go over by most of a block.
+     */
+    public static final int MAX_CHUNK_SIZE = SessionUploader.CHUNK_SIZE * 4;
+
+    private final FleetAggregates aggregates = new FleetAggregates();
+    private final Set<String>     hashes     = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ReadWriteLock   lock       = new ReentrantReadWriteLock();
+    private final AtomicLong      chunks     = new AtomicLong();
+    private final AtomicLong      snapshots  = new AtomicLong();
+    private final AtomicLong      bytes      = new AtomicLong();
+    private final AtomicLong      duplicates = new AtomicLong();
+    private final AtomicLong      rejected   = new AtomicLong();
+    private final AggregateStore  store;
+
+    // every ingest thread keeps its own so a chunk doesn't cost a new decoder buffer
+    private final ThreadLocal<Parser> parsers = new ThreadLocal<Parser>()
+    {
+        @Override
+        protected Parser initialValue()
+        {
+            return new Parser();
+        }
+    };
+
+    /**
+     * @param store - where to keep the totals on disk or null to only keep them in memory
+     * @throws IOException - if the totals already in the store can't be loaded
+     */
+    public ChunkIngester(AggregateStore store) throws IOException
+    {
+        this.store = store;
+
+        if (store != null) {
+            store.load(aggregates, hashes);
+        }
+    }
+
+    /**
+     * @param hash - a chunk's SHA-1
+     * @return true if the chunk has already been merged
+     */
+    public boolean has(String hash)
+    {
+        return hashes.contains(hash);
+    }
+
+    /**
+     * Decodes a chunk and merges it into the totals.
+     *
+     * @param hash - the chunk's name, SHA-1 of its bytes in lower case hex
+     * @param device - who sent it
+     * @param carrier - the device's carrier (null or "" if it didn't say)
+     * @param body - the chunk's bytes (already decompressed)
+     * @return what happened to it
+     * @throws IOException - if the chunk made it but couldn't be journalled
+     */
+    public Result ingest(String hash, String device, String carrier, InputStream body) throws IOException
+    {
+        if (hashes.contains(hash)) {
+            duplicates.incrementAndGet();
+            return Result.DUPLICATE;
+        }
+        ChunkTotals totals = new ChunkTotals(hash, device, carrier == null ? "" : carrier);
+        Parser parser = parsers.get();
+        long size;
+
+        try {
+            size = parser.parse(body, totals);
+        }
+        catch (IOException e) {
+            rejected.incrementAndGet();
+            return Result.BAD_CHUNK;
+        }
+        if (size > MAX_CHUNK_SIZE || !parser.getHash().equals(hash)) {
+            rejected.incrementAndGet();
+            return Result.BAD_CHUNK;
+        }
+        lock.readLock().lock();
+        try {
+            // two copies of the same chunk can get this far at once, only one gets merged
+            if (!hashes.add(hash)) {
+                duplicates.incrementAndGet();
+                return Result.DUPLICATE;
+            }
+            // journalled first so the totals never have something the disk doesn't
+            if (store != null) {
+                try {
+                    store.append(totals);
+                }
+                catch (IOException e) {
+                    hashes.remove(hash);
+                    throw e;
+                }
+            }
+            aggregates.add(totals);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        chunks.incrementAndGet();
+        snapshots.addAndGet(totals.getSummary().getSnapshotCount());
+        bytes.addAndGet(size);
+        return Result.ADDED;
+    }
+
+    /**
+     * Saves the totals to the store's snapshot (does nothing without a store).
+     *
+     * @throws IOException - if they can't be saved
+     */
+    public void compact() throws IOException
+    {
+        if (store != null) {
+            store.compact(aggregates, hashes, lock.writeLock());
+        }
+    }
+
+    public FleetAggregates getAggregates()
+    {
+        return aggregates;
+    }
+
+    /**
+     * @return chunks merged since starting
+     */
+    public long getChunkCount()
+    {
+        return chunks.get();
+    }
+
+    /**
+     * @return snapshots in the chunks merged since starting
+     */
+    public long getSnapshotCount()
+    {
+        return snapshots.get();
+    }
+
+    /**
+     * @return decompressed bytes in the chunks merged since starting
+     */
+    public long getByteCount()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * @return chunks sent again after they were already merged
+     */
+    public long getDuplicateCount()
+    {
+        return duplicates.get();
+    }
+
+    /**
+     * @return chunks that didn't decode, were too big or didn't match their hash
+     */
+    public long getRejectedCount()
+    {
+        return rejected.get();
+    }
+
+    public enum Result
+    {
+        ADDED,
+        DUPLICATE,
+        BAD_CHUNK
+    }
+
+    /**
+     * Decoder and digest for one thread.
+     */
+    private static final class Parser
+    {
+        private final SnapshotCodec.Decoder decoder = new SnapshotCodec.Decoder();
+        private final MessageDigest         digest;
+
+        Parser()
+        {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Decodes every block in the chunk into the totals, hashing it as it goes.
+         *
+         * @return how many bytes were read (more than MAX_CHUNK_SIZE if it's too big)
+         */
+        long parse(InputStream body, ChunkTotals totals) throws IOException
+        {
+            digest.reset();
+            // one byte past the limit so a chunk that's too big can be told apart from one that fits exactly
+            CountingInputStream counted = new CountingInputStream(new BoundedInputStream(body, MAX_CHUNK_SIZE + 1));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new DigestInputStream(counted, digest)));
+
+            while (decoder.readFrom(in)) {
+                while (decoder.next()) {
+                    totals.add(decoder);
+                }
+            }
+            return counted.getByteCount();
+        }
+
+        String getHash()
+        {
+            return ChunkReader.toHex(digest.digest());
+        }
+    }
+}
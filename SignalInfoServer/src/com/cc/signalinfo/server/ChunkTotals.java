@@ -0,0 +1,155 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.history.SessionSummary;
+import com.cc.signalinfo.history.SnapshotCodec;
+import com.cc.signalinfo.history.TileKeys;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What one chunk adds up to: a summary of all its snapshots plus one for each
+ * map tile its located snapshots fell in. A chunk gets totalled up on its own
+ * first and only merged into the fleet totals once it's checked out, so a bad
+ * chunk never touches them and the shared totals only get locked once per chunk
+ * instead of once per snapshot.
+ *
+ * These are also what goes into the journal (see AggregateStore).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class ChunkTotals
+{
+    private final String                    hash;
+    private final String                    device;
+    private final String                    carrier;
+    private final SessionSummary            summary = new SessionSummary();
+    private final Map<Long, SessionSummary> tiles   = new HashMap<>();
+
+    /**
+     * @param hash - the chunk's SHA-1
+     * @param device - who sent it
+     * @param carrier - the device's carrier ("" if it didn't say)
+     */
+    public ChunkTotals(String hash, String device, String carrier)
+    {
+        this.hash = hash;
+        this.device = device;
+        this.carrier = carrier;
+    }
+
+    /**
+     * @param snapshot - the snapshot the decoder is on
+     */
+    public void add(SnapshotCodec.Decoder snapshot)
+    {
+        boolean located = snapshot.hasLocation();
+        summary.add(snapshot.getReadings(), snapshot.getQualities(), located);
+
+        if (located) {
+            Long key = TileKeys.getKey(snapshot.getLatitude(), snapshot.getLongitude(),
+                TileKeys.DEFAULT_TILE_METERS);
+            SessionSummary tile = tiles.get(key);
+
+            if (tile == null) {
+                tile = new SessionSummary();
+                tiles.put(key, tile);
+            }
+            tile.add(snapshot.getReadings(), snapshot.getQualities(), true);
+        }
+    }
+
+    public String getHash()
+    {
+        return hash;
+    }
+
+    public String getDevice()
+    {
+        return device;
+    }
+
+    public String getCarrier()
+    {
+        return carrier;
+    }
+
+    public SessionSummary getSummary()
+    {
+        return summary;
+    }
+
+    /**
+     * @return summaries by tile key (see TileKeys), don't modify it
+     */
+    public Map<Long, SessionSummary> getTiles()
+    {
+        return tiles;
+    }
+
+    /**
+     * @param out - where to write it
+     * @throws IOException - if it can't be written
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeUTF(hash);
+        out.writeUTF(device);
+        out.writeUTF(carrier);
+        summary.writeTo(out);
+        out.writeInt(tiles.size());
+
+        for (Map.Entry<Long, SessionSummary> tile : tiles.entrySet()) {
+            out.writeLong(tile.getKey());
+            tile.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * @param in - where to read it from
+     * @return the totals
+     * @throws IOException - if they can't be read
+     */
+    public static ChunkTotals readFrom(DataInput in) throws IOException
+    {
+        ChunkTotals totals = new ChunkTotals(in.readUTF(), in.readUTF(), in.readUTF());
+        totals.summary.set(SessionSummary.readFrom(in));
+
+        for (int i = in.readInt(); i > 0; --i) {
+            totals.tiles.put(in.readLong(), SessionSummary.readFrom(in));
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.history.SessionSummary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Running totals for the whole fleet, kept in memory: a SessionSummary for
+ * every device, every carrier and every map tile (see TileKeys) anything was
+ * recorded in.
+ *
+ * Thread safe. Each chunk gets merged in one go and only the summaries it
+ * touches get locked while it does, so ingest threads only wait on each other
+ * when two chunks hit the same device, carrier or tile at the same moment.
+ * Counts are ints like they are on the phone, which is a couple billion
+ * snapshots for any one carrier before they'd need to be split up.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class FleetAggregates
+{
+    private final ConcurrentMap<String, SessionSummary> devices  = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SessionSummary> carriers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, SessionSummary>   tiles    = new ConcurrentHashMap<>();
+
+    /**
+     * @param chunk - what a chunk added up to
+     */
+    public void add(ChunkTotals chunk)
+    {
+        merge(devices, chunk.getDevice(), chunk.getSummary());
+        merge(carriers, chunk.getCarrier(), chunk.getSummary());
+
+        for (Map.Entry<Long, SessionSummary> tile : chunk.getTiles().entrySet()) {
+            merge(tiles, tile.getKey(), tile.getValue());
+        }
+    }
+
+    private static <K> void merge(ConcurrentMap<K, SessionSummary> map, K key, SessionSummary add)
+    {
+        SessionSummary summary = map.get(key);
+
+        if (summary == null) {
+            SessionSummary created = new SessionSummary();
+            summary = map.putIfAbsent(key, created);
+            summary = summary == null ? created : summary;
+        }
+        synchronized (summary) {
+            summary.add(add);
+        }
+    }
+
+    /**
+     * @param device - device id
+     * @return a copy of the device's totals or null if it never sent anything
+     */
+    public SessionSummary getDevice(String device)
+    {
+        return copy(devices.get(device));
+    }
+
+    /**
+     * @param carrier - carrier name ("" for devices that didn't say)
+     * @return a copy of the carrier's totals or null if there's nothing for it
+     */
+    public SessionSummary getCarrier(String carrier)
+    {
+        return copy(carriers.get(carrier));
+    }
+
+    /**
+     * @param key - tile key (see TileKeys)
+     * @return a copy of the tile's totals or null if nothing was recorded there
+     */
+    public SessionSummary getTile(long key)
+    {
+        return copy(tiles.get(key));
+    }
+
+    private static SessionSummary copy(SessionSummary summary)
+    {
+        if (summary == null) {
+            return null;
+        }
+        synchronized (summary) {
+            return new SessionSummary(summary);
+        }
+    }
+
+    public List<String> getDevices()
+    {
+        return sorted(devices);
+    }
+
+    public List<String> getCarriers()
+    {
+        return sorted(carriers);
+    }
+
+    public List<Long> getTiles()
+    {
+        return sorted(tiles);
+    }
+
+    private static <K extends Comparable<K>> List<K> sorted(Map<K, ?> map)
+    {
+        List<K> keys = new ArrayList<>(map.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    public int getDeviceCount()
+    {
+        return devices.size();
+    }
+
+    public int getCarrierCount()
+    {
+        return carriers.size();
+    }
+
+    public int getTileCount()
+    {
+        return tiles.size();
+    }
+
+    /**
+     * Only consistent with the journal if nothing is being added while it runs
+     * (ChunkIngester holds its write lock around this).
+     *
+     * @param out - where to write everything
+     * @throws IOException - if it can't be written
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(devices.size());
+
+        for (Map.Entry<String, SessionSummary> device : devices.entrySet()) {
+            out.writeUTF(device.getKey());
+            copy(device.getValue()).writeTo(out);
+        }
+        out.writeInt(carriers.size());
+
+        for (Map.Entry<String, SessionSummary> carrier : carriers.entrySet()) {
+            out.writeUTF(carrier.getKey());
+            copy(carrier.getValue()).writeTo(out);
+        }
+        out.writeInt(tiles.size());
+
+        for (Map.Entry<Long, SessionSummary> tile : tiles.entrySet()) {
+            out.writeLong(tile.getKey());
+            copy(tile.getValue()).writeTo(out);
+        }
+    }
+
+    /**
+     * Adds totals written by writeTo into these ones.
+     *
+     * @param in - where to read them from
+     * @throws IOException - if they can't be read
+     */
+    public void readFrom(DataInput in) throws IOException
+    {
+        for (int i = in.readInt(); i > 0; --i) {
+            merge(devices, in.readUTF(), SessionSummary.readFrom(in));
+        }
+        for (int i = in.readInt(); i > 0; --i) {
+            merge(carriers, in.readUTF(), SessionSummary.readFrom(in));
+        }
+        for (int i = in.readInt(); i > 0; --i) {
+            merge(tiles, in.readLong(), SessionSummary.readFrom(in));
+        }
+    }
+}
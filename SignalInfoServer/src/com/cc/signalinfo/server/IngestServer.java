@@ -0,0 +1,344 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SessionSummary;
+import com.cc.signalinfo.upload.ChunkClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The collector SessionUploader sends to, for running on a server instead of
+ * the phone. Speaks the same protocol as ChunkClient:
+ *
+ * HEAD {endpoint}/chunks/{sha1} - 200 if the chunk has been merged, 404 if not
+ * PUT {endpoint}/chunks/{sha1} - 201 once it's merged, 200 if it already was,
+ * 400 if it's bad (didn't decode, too big or doesn't match its name)
+ *
+ * plus GET {endpoint}/stats for a plain text rundown of the totals. Any path in
+ * front of /chunks works so it can sit behind whatever the uploaders are set to.
+ *
+ * Requests are handled on a pool with a thread per core by default, which is
+ * all the parallelism ingest needs since ChunkIngester doesn't serialize chunks.
+ *
+ * Run it with: IngestServer [port] [data dir] [compact every N seconds]
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class IngestServer
+{
+    public static final  int    DEFAULT_PORT            = 8080;
+    public static final  long   DEFAULT_COMPACT_SECONDS = 5 * 60;
+    private static final String CHUNKS_PATH             = "/chunks/";
+    private static final String STATS_PATH              = "/stats";
+    private static final int    HASH_LENGTH             = 40;
+
+    private final ChunkIngester   ingester;
+    private final HttpServer      server;
+    private final ExecutorService workers;
+
+    /**
+     * @param ingester - where the chunks go
+     * @param address - what to listen on (port 0 picks a free one)
+     * @param threads - how many requests to handle at once
+     * @throws IOException - if it can't listen there
+     */
+    public IngestServer(ChunkIngester ingester, InetSocketAddress address, int threads) throws IOException
+    {
+        this.ingester = ingester;
+        // backlog big enough for a fleet that all wakes up at once
+        server = HttpServer.create(address, 1024);
+        workers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(workers);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                try {
+                    IngestServer.this.handle(exchange);
+                }
+                catch (RuntimeException e) {
+                    // HttpServer would just drop the connection without a word
+                    e.printStackTrace();
+                    throw e;
+                }
+                finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops taking requests and waits (a little) for the ones being handled.
+     */
+    public void stop()
+    {
+        server.stop(1);
+        workers.shutdown();
+
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port it's listening on
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    public ChunkIngester getIngester()
+    {
+        return ingester;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        int chunks = path.lastIndexOf(CHUNKS_PATH);
+
+        if (chunks >= 0) {
+            String hash = path.substring(chunks + CHUNKS_PATH.length());
+            int code;
+
+            if (!isHash(hash)) {
+                code = 404;
+            }
+            else if ("HEAD".equals(method)) {
+                code = ingester.has(hash) ? 200 : 404;
+            }
+            else if ("PUT".equals(method)) {
+                code = put(exchange, hash);
+            }
+            else {
+                code = 405;
+            }
+            drain(exchange);
+            exchange.sendResponseHeaders(code, -1);
+        }
+        else if (path.endsWith(STATS_PATH) && "GET".equals(method)) {
+            byte[] body = getStats().getBytes("UTF-8");
+            drain(exchange);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+        else {
+            drain(exchange);
+            exchange.sendResponseHeaders(404, -1);
+        }
+    }
+
+    /**
+     * HttpServer closes the connection after answering unless the request body was
+     * read right to the end (even when there isn't one), so that has to happen first
+     * or every phone would need a new connection for every chunk. Chunks that got
+     * turned away part way through only get read so far, past that it's cheaper to
+     * let the connection go.
+     */
+    private static void drain(HttpExchange exchange) throws IOException
+    {
+        InputStream body = exchange.getRequestBody();
+        byte[] buffer = new byte[4096];
+        long left = ChunkIngester.MAX_CHUNK_SIZE;
+
+        for (int read = 0; read != -1 && left > 0; read = body.read(buffer)) {
+            left -= read;
+        }
+    }
+
+    /**
+     * @return the status code to answer with
+     */
+    private int put(HttpExchange exchange, String hash) throws IOException
+    {
+        String device = exchange.getRequestHeaders().getFirst(ChunkClient.HEADER_DEVICE);
+
+        if (device == null || device.length() == 0) {
+            return 400;
+        }
+        String carrier = decode(exchange.getRequestHeaders().getFirst(ChunkClient.HEADER_CARRIER));
+        InputStream body = exchange.getRequestBody();
+
+        try {
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = new GZIPInputStream(body);
+            }
+            switch (ingester.ingest(hash, device, carrier, body)) {
+                case ADDED:
+                    return 201;
+                case DUPLICATE:
+                    return 200;
+                default:
+                    return 400;
+            }
+        }
+        catch (IOException e) {
+            // bad gzip header or the journal couldn't be written, either way the device should try again later
+            System.err.println("Chunk " + hash + " from " + device + " failed: " + e);
+            return 500;
+        }
+    }
+
+    private static boolean isHash(String text)
+    {
+        if (text.length() != HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(String text)
+    {
+        try {
+            return text == null ? "" : URLDecoder.decode(text, "UTF-8");
+        }
+        catch (IllegalArgumentException | IOException e) {
+            return text;
+        }
+    }
+
+    /**
+     * @return the headline numbers, then each carrier's snapshot count and averages
+     */
+    public String getStats()
+    {
+        FleetAggregates aggregates = ingester.getAggregates();
+        StringBuilder stats = new StringBuilder(1024);
+        stats.append(String.format(Locale.US,
+            "chunks %d, snapshots %d, bytes %d, duplicates %d, rejected %d%n",
+            ingester.getChunkCount(), ingester.getSnapshotCount(), ingester.getByteCount(),
+            ingester.getDuplicateCount(), ingester.getRejectedCount()));
+        stats.append(String.format(Locale.US, "devices %d, carriers %d, tiles %d%n",
+            aggregates.getDeviceCount(), aggregates.getCarrierCount(), aggregates.getTileCount()));
+
+        for (String carrier : aggregates.getCarriers()) {
+            SessionSummary summary = aggregates.getCarrier(carrier);
+            stats.append(String.format(Locale.US, "%n%s: %d snapshots, %d located%n",
+                carrier.length() == 0 ? "(unknown carrier)" : carrier,
+                summary.getSnapshotCount(), summary.getLocatedCount()));
+
+            for (NetworkType type : NetworkType.values()) {
+                if (!Float.isNaN(summary.getQualityMean(type))) {
+                    stats.append(String.format(Locale.US, "  %s quality %.1f%n", type, summary.getQualityMean(type)));
+                }
+            }
+            for (Signal signal : Signal.values()) {
+                if (summary.getCount(signal) > 0) {
+                    stats.append(String.format(Locale.US, "  %s mean %.1f (%d to %d)%n", signal,
+                        summary.getMean(signal), summary.getMin(signal), summary.getMax(signal)));
+                }
+            }
+        }
+        return stats.toString();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        File dir = new File(args.length > 1 ? args[1] : "signalinfo-data");
+        long compactSeconds = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_COMPACT_SECONDS;
+
+        final ChunkIngester ingester = new ChunkIngester(new AggregateStore(dir));
+        final IngestServer server = new IngestServer(ingester, new InetSocketAddress(port),
+            Runtime.getRuntime().availableProcessors());
+        final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor();
+
+        compactor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                compact(ingester);
+            }
+        }, compactSeconds, compactSeconds, TimeUnit.SECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                server.stop();
+                compactor.shutdown();
+                compact(ingester);
+            }
+        });
+        server.start();
+        System.out.println("Collecting on port " + server.getPort() + " into " + dir.getAbsolutePath());
+    }
+
+    private static void compact(ChunkIngester ingester)
+    {
+        try {
+            ingester.compact();
+        }
+        catch (IOException e) {
+            System.err.println("Could not compact: " + e);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionRecorder;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.history.SnapshotCodec;
+import com.cc.signalinfo.upload.ChunkClient;
+import com.cc.signalinfo.upload.SessionUploader;
+import com.cc.signalinfo.upload.UploadLog;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+
+/**
+ * Throws a fleet's worth of uploads at a collector to see how it holds up.
+ *
+ * Every simulated device gets its own SessionStore, recorded with the real
+ * SessionRecorder, and sends it with the real SessionUploader and ChunkClient,
+ * so the collector sees exactly what phones would send. The sessions are
+ * either made up (readings wandering around, device moving around town) or
+ * replayed from a real phone's session directory, shifted in time a little for
+ * each device so no two devices send the same chunks.
+ *
+ * Recording is done up front and isn't timed, then all the devices upload at
+ * once (as many at a time as there are threads) and the time is reported.
+ * Without an endpoint it starts an IngestServer of its own and checks it ended
+ * up with every snapshot.
+ *
+ * Run it with: LoadTest [devices] [endpoint or "local"] [replay session dir]
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class LoadTest
+{
+    public static final  int      DEFAULT_DEVICES   = 300;
+    public static final  int      DEFAULT_SESSIONS  = 2;
+    // half an hour at a snapshot a second
+    public static final  int      DEFAULT_SNAPSHOTS = 1800;
+    public static final  int      DEFAULT_THREADS   = 64;
+    private static final String[] CARRIERS          = {"Verizon", "AT&T", "T-Mobile", "Sprint", ""};
+    private static final long     BASE_TIME         = 1383696000000L; // 2013-11-06
+    private static final int      UPLOAD_TRIES      = 3;
+
+    private static final Executor NOW = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    private static final SessionRecorder.RecorderCallback FAIL_ON_ERROR = new SessionRecorder.RecorderCallback()
+    {
+        @Override
+        public void onSessionChanged(SessionInfo session)
+        {
+        }
+
+        @Override
+        public void onRecordingError(IOException e)
+        {
+            throw new IllegalStateException("Could not record a session", e);
+        }
+    };
+
+    private final File   workDir;
+    private final String endpoint;
+    private final File   replayDir;
+    private final int    devices;
+    private final int    sessions;
+    private final int    snapshots;
+    private final int    threads;
+
+    /**
+     * @param workDir - where the devices' stores go (gets emptied first)
+     * @param endpoint - collector to send to
+     * @param replayDir - session directory to replay or null to make sessions up
+     * @param devices - how many devices
+     * @param sessions - sessions per device (made up ones only)
+     * @param snapshots - snapshots per session (made up ones only)
+     * @param threads - how many devices upload at the same time
+     */
+    public LoadTest(File workDir, String endpoint, File replayDir, int devices, int sessions, int snapshots,
+                    int threads)
+    {
+        this.workDir = workDir;
+        this.endpoint = endpoint;
+        this.replayDir = replayDir;
+        this.devices = devices;
+        this.sessions = sessions;
+        this.snapshots = snapshots;
+        this.threads = threads;
+    }
+
+    /**
+     * Records every device's sessions.
+     *
+     * @return how many snapshots were recorded over all the devices
+     * @throws IOException - if they couldn't be recorded
+     */
+    public long prepare() throws IOException
+    {
+        FileUtils.deleteDirectory(workDir);
+        final SessionStore source = replayDir == null ? null : new SessionStore(replayDir);
+        final List<SessionInfo> replay = source == null ? null : source.getSessions();
+        List<Callable<Long>> tasks = new ArrayList<>(devices);
+
+        for (int i = 0; i < devices; ++i) {
+            final int device = i;
+
+            tasks.add(new Callable<Long>()
+            {
+                @Override
+                public Long call() throws IOException
+                {
+                    SessionStore store = new SessionStore(getSessionDir(device));
+                    return replay == null ? record(store, device) : replay(store, device, source, replay);
+                }
+            });
+        }
+        long total = 0;
+
+        for (long recorded : runAll(tasks)) {
+            total += recorded;
+        }
+        return total;
+    }
+
+    /**
+     * Uploads every device's sessions at once.
+     *
+     * @return how it went
+     * @throws IOException - if a device still couldn't upload after a few tries
+     */
+    public Report run() throws IOException
+    {
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        List<Callable<Long>> tasks = new ArrayList<>(devices);
+
+        for (int i = 0; i < devices; ++i) {
+            final int device = i;
+
+            tasks.add(new Callable<Long>()
+            {
+                @Override
+                public Long call() throws IOException
+                {
+                    return upload(device, bytes, retries);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        runAll(tasks);
+        return new Report(devices, bytes.get(), retries.get(), (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * @return how many bytes of sessions the device sent
+     */
+    private long upload(int device, AtomicLong bytes, AtomicLong retries) throws IOException
+    {
+        SessionStore store = new SessionStore(getSessionDir(device));
+        UploadLog log = new UploadLog(new File(getDeviceDir(device), "uploads.idx"));
+
+        // upload() is called straight from here so the uploader never needs an executor
+        SessionUploader uploader = new SessionUploader(store, log, null, new SessionUploader.Conditions()
+        {
+            @Override
+            public boolean canUpload()
+            {
+                return true;
+            }
+        }, new SessionUploader.UploadCallback()
+        {
+            @Override
+            public void onUploaded(SessionInfo session, long uploaded)
+            {
+            }
+
+            @Override
+            public void onUploadError(IOException e, long retryMs)
+            {
+            }
+        });
+        uploader.setClient(new ChunkClient(endpoint, getDeviceId(device), getCarrier(device)));
+
+        for (int tries = 1; ; ++tries) {
+            try {
+                uploader.upload();
+                break;
+            }
+            catch (IOException e) {
+                if (tries >= UPLOAD_TRIES) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+            }
+        }
+        // the stores start out empty, so everything in them went up just now
+        long sent = 0;
+
+        for (SessionInfo session : store.getSessions()) {
+            sent += session.getLength();
+        }
+        bytes.addAndGet(sent);
+        return sent;
+    }
+
+    /**
+     * Makes up sessions for a device: a few readings wandering around while it drives around.
+     *
+     * @return how many snapshots were recorded
+     */
+    private long record(SessionStore store, int device) throws IOException
+    {
+        Random random = new Random(device);
+        SessionRecorder recorder = new SessionRecorder(store, NOW, FAIL_ON_ERROR);
+        int[] readings = new int[SnapshotCodec.SIGNAL_COUNT];
+        int[] qualities = new int[SnapshotCodec.NETWORK_COUNT];
+        // somewhere within about 10km of downtown
+        double latitude = 41.6 + random.nextGaussian() * 0.05;
+        double longitude = -93.6 + random.nextGaussian() * 0.05;
+        double heading = random.nextDouble() * Math.PI * 2;
+
+        for (int s = 0; s < sessions; ++s) {
+            // everybody a second apart so no two devices have the same chunks
+            long time = BASE_TIME + s * 24 * 60 * 60 * 1000L + device * 1000L;
+            Arrays.fill(readings, INVALID);
+            Arrays.fill(qualities, INVALID);
+            recorder.start(time, "load test");
+
+            for (int i = 0; i < snapshots; ++i, time += 1000) {
+                readings[Signal.LTE_RSRP.value()] = wander(random, readings[Signal.LTE_RSRP.value()], -140, -44);
+                readings[Signal.LTE_RSRQ.value()] = wander(random, readings[Signal.LTE_RSRQ.value()], -20, -3);
+                readings[Signal.LTE_SNR.value()] = wander(random, readings[Signal.LTE_SNR.value()], -20, 30);
+                qualities[NetworkType.LTE.ordinal()] = wander(random, qualities[NetworkType.LTE.ordinal()], 0, 100);
+                // about 15m a second, turning now and then
+                heading += random.nextGaussian() * 0.1;
+                latitude += Math.cos(heading) * 15 / 111320;
+                longitude += Math.sin(heading) * 15 / (111320 * Math.cos(Math.toRadians(latitude)));
+                // and losing the GPS fix every so often
+                boolean located = random.nextInt(20) != 0;
+
+                recorder.add(time, readings, qualities, located ? latitude : Double.NaN,
+                    located ? longitude : Double.NaN);
+            }
+            recorder.stop(time);
+        }
+        return (long) sessions * snapshots;
+    }
+
+    private static int wander(Random random, int value, int min, int max)
+    {
+        if (value == INVALID) {
+            return min + random.nextInt(max - min + 1);
+        }
+        return Math.max(min, Math.min(max, value + random.nextInt(5) - 2));
+    }
+
+    /**
+     * Records a real phone's sessions again for a device, shifted by a second per device.
+     *
+     * @return how many snapshots were recorded
+     */
+    private static long replay(SessionStore store, int device, SessionStore source, List<SessionInfo> replay)
+        throws IOException
+    {
+        SessionRecorder recorder = new SessionRecorder(store, NOW, FAIL_ON_ERROR);
+        // even the first device is shifted so it can be replayed to where the phone itself uploads
+        long shift = (device + 1) * 1000L;
+        long recorded = 0;
+
+        for (SessionInfo session : replay) {
+            if (session.isRecording()) {
+                continue;
+            }
+            SessionStore.Reader reader = source.open(session);
+            long time = session.getStartTime() + shift;
+            recorder.start(time, session.getTags());
+
+            try {
+                while (reader.next()) {
+                    SnapshotCodec.Decoder snapshot = reader.getDecoder();
+                    boolean located = snapshot.hasLocation();
+                    time = snapshot.getTime() + shift;
+
+                    recorder.add(time, snapshot.getReadings(), snapshot.getQualities(),
+                        located ? snapshot.getLatitude() : Double.NaN,
+                        located ? snapshot.getLongitude() : Double.NaN);
+                    ++recorded;
+                }
+            }
+            finally {
+                reader.close();
+            }
+            recorder.stop(Math.max(time, session.getEndTime() + shift));
+        }
+        return recorded;
+    }
+
+    /**
+     * Runs the tasks on the thread pool and waits for all of them.
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<T> results = new ArrayList<>(tasks.size());
+
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    private File getDeviceDir(int device)
+    {
+        return new File(workDir, "device-" + device);
+    }
+
+    private File getSessionDir(int device)
+    {
+        return new File(getDeviceDir(device), "sessions");
+    }
+
+    /**
+     * @param device - simulated device number
+     * @return the id it uploads with
+     */
+    public static String getDeviceId(int device)
+    {
+        return "loadtest-" + device;
+    }
+
+    /**
+     * @param device - simulated device number
+     * @return the carrier it says it's on ("" for some, like phones without a SIM)
+     */
+    public static String getCarrier(int device)
+    {
+        return CARRIERS[device % CARRIERS.length];
+    }
+
+    /**
+     * How an upload run went.
+     */
+    public static class Report
+    {
+        private final int  devices;
+        private final long bytes;
+        private final long retries;
+        private final long elapsedMs;
+
+        Report(int devices, long bytes, long retries, long elapsedMs)
+        {
+            this.devices = devices;
+            this.bytes = bytes;
+            this.retries = retries;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public int getDevices()
+        {
+            return devices;
+        }
+
+        /**
+         * @return bytes of sessions uploaded (before compression)
+         */
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * @return how many times a device had to try its upload again
+         */
+        public long getRetries()
+        {
+            return retries;
+        }
+
+        public long getElapsedMs()
+        {
+            return elapsedMs;
+        }
+
+        @Override
+        public String toString()
+        {
+            double seconds = Math.max(elapsedMs, 1) / 1000.0;
+            return String.format(Locale.US, "%d devices sent %.1f MB in %.1fs (%.2f MB/s), %d retries",
+                devices, bytes / 1048576.0, seconds, bytes / 1048576.0 / seconds, retries);
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int devices = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEVICES;
+        String endpoint = args.length > 1 && !"local".equals(args[1]) ? args[1] : null;
+        File replayDir = args.length > 2 ? new File(args[2]) : null;
+        File workDir = new File(System.getProperty("java.io.tmpdir"), "signalinfo-loadtest");
+        IngestServer server = null;
+
+        if (endpoint == null) {
+            File dataDir = new File(workDir.getPath() + "-data");
+            FileUtils.deleteDirectory(dataDir);
+            server = new IngestServer(new ChunkIngester(new AggregateStore(dataDir)),
+                new InetSocketAddress("127.0.0.1", 0), Runtime.getRuntime().availableProcessors());
+            server.start();
+            endpoint = "http://127.0.0.1:" + server.getPort() + "/collector";
+        }
+        LoadTest test = new LoadTest(workDir, endpoint, replayDir, devices, DEFAULT_SESSIONS, DEFAULT_SNAPSHOTS,
+            DEFAULT_THREADS);
+
+        boolean complete = true;
+
+        try {
+            System.out.println("Recording...");
+            long recorded = test.prepare();
+            System.out.println("Uploading " + recorded + " snapshots from " + devices + " devices to " + endpoint);
+            Report report = test.run();
+            System.out.println(report);
+
+            if (server != null) {
+                ChunkIngester ingester = server.getIngester();
+                System.out.println(String.format(Locale.US, "%.0f snapshots/s ingested",
+                    ingester.getSnapshotCount() * 1000.0 / Math.max(report.getElapsedMs(), 1)));
+                System.out.println(server.getStats());
+
+                if (ingester.getSnapshotCount() != recorded) {
+                    System.out.println("Collector only got " + ingester.getSnapshotCount() + " snapshots!");
+                    complete = false;
+                }
+            }
+        }
+        finally {
+            if (server != null) {
+                server.stop();
+                server.getIngester().compact();
+            }
+            FileUtils.deleteDirectory(workDir);
+        }
+        if (!complete) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SessionSummary;
+import com.cc.signalinfo.history.SnapshotCodec;
+import com.cc.signalinfo.history.TileKeys;
+import com.cc.signalinfo.upload.ChunkReader;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+
+/**
+ * Feeds chunks straight to a ChunkIngester and checks what ends up in the totals,
+ * including after a compaction and a restart.
+ */
+public class ChunkIngesterTest extends TestCase
+{
+    // a few blocks worth
+    private static final int SNAPSHOTS = 1000;
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File(System.getProperty("java.io.tmpdir"), "ingestertest");
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testAddsUpChunk() throws IOException
+    {
+        ChunkIngester ingester = new ChunkIngester(null);
+        byte[] chunk = makeChunk(1000, SNAPSHOTS);
+
+        assertEquals(ChunkIngester.Result.ADDED, ingester.ingest(hash(chunk), "phone", "Carrier", stream(chunk)));
+        assertTrue(ingester.has(hash(chunk)));
+        assertEquals(SNAPSHOTS, ingester.getSnapshotCount());
+        assertEquals(chunk.length, ingester.getByteCount());
+
+        FleetAggregates aggregates = ingester.getAggregates();
+        SessionSummary device = aggregates.getDevice("phone");
+        assertEquals(SNAPSHOTS, device.getSnapshotCount());
+        assertEquals(SNAPSHOTS, device.getCount(Signal.LTE_RSRP));
+        assertEquals(-120, device.getMin(Signal.LTE_RSRP));
+        assertEquals(-71, device.getMax(Signal.LTE_RSRP));
+        assertEquals(50f, device.getQualityMean(NetworkType.LTE), 0.01f);
+        assertEquals(SNAPSHOTS, aggregates.getCarrier("Carrier").getSnapshotCount());
+        assertNull(aggregates.getCarrier("Someone else"));
+
+        // every other snapshot has a location, all of them in the tiles they belong in
+        int located = 0;
+
+        for (long tile : aggregates.getTiles()) {
+            located += aggregates.getTile(tile).getLocatedCount();
+        }
+        assertEquals(SNAPSHOTS / 2, device.getLocatedCount());
+        assertEquals(SNAPSHOTS / 2, located);
+        assertNotNull(aggregates.getTile(TileKeys.getKey(41.6, -93.6, TileKeys.DEFAULT_TILE_METERS)));
+        assertTrue("Should have moved through a few tiles", aggregates.getTileCount() > 1);
+    }
+
+    public void testRejectsBadChunks() throws IOException
+    {
+        ChunkIngester ingester = new ChunkIngester(null);
+        byte[] chunk = makeChunk(1000, SNAPSHOTS);
+        String hash = hash(chunk);
+
+        // cut short
+        byte[] cut = Arrays.copyOf(chunk, chunk.length - 10);
+        assertEquals(ChunkIngester.Result.BAD_CHUNK, ingester.ingest(hash, "phone", "", stream(cut)));
+        // messed with in the middle
+        byte[] changed = chunk.clone();
+        changed[chunk.length / 2] ^= 0x55;
+        assertEquals(ChunkIngester.Result.BAD_CHUNK, ingester.ingest(hash, "phone", "", stream(changed)));
+        // garbage that matches its own hash
+        byte[] garbage = new byte[500];
+        Arrays.fill(garbage, (byte) 0x7F);
+        assertEquals(ChunkIngester.Result.BAD_CHUNK, ingester.ingest(hash(garbage), "phone", "", stream(garbage)));
+        // way too big, even though it's fine otherwise
+        byte[] huge = makeChunk(1000, SNAPSHOTS * 200);
+        assertTrue(huge.length > ChunkIngester.MAX_CHUNK_SIZE);
+        assertEquals(ChunkIngester.Result.BAD_CHUNK, ingester.ingest(hash(huge), "phone", "", stream(huge)));
+
+        assertEquals(4, ingester.getRejectedCount());
+        assertEquals(0, ingester.getSnapshotCount());
+        assertFalse(ingester.has(hash));
+        assertNull(ingester.getAggregates().getDevice("phone"));
+
+        // and the real one still goes in after all that
+        assertEquals(ChunkIngester.Result.ADDED, ingester.ingest(hash, "phone", "", stream(chunk)));
+    }
+
+    public void testDuplicateCountedOnce() throws IOException
+    {
+        ChunkIngester ingester = new ChunkIngester(null);
+        byte[] chunk = makeChunk(1000, SNAPSHOTS);
+
+        assertEquals(ChunkIngester.Result.ADDED, ingester.ingest(hash(chunk), "phone", "", stream(chunk)));
+        assertEquals(ChunkIngester.Result.DUPLICATE, ingester.ingest(hash(chunk), "phone", "", stream(chunk)));
+        assertEquals(1, ingester.getChunkCount());
+        assertEquals(1, ingester.getDuplicateCount());
+        assertEquals(SNAPSHOTS, ingester.getAggregates().getDevice("phone").getSnapshotCount());
+    }
+
+    public void testParallelIngest() throws Exception
+    {
+        final int threads = 8;
+        final int chunks = 40;
+        final ChunkIngester ingester = new ChunkIngester(new AggregateStore(dir));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < threads; ++t) {
+            final int thread = t;
+
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    for (int i = 0; i < chunks; ++i) {
+                        byte[] chunk = makeChunk(thread * 1000000L + i * 10000L, 200);
+                        ChunkIngester.Result result =
+                            ingester.ingest(hash(chunk), "phone" + thread, "Carrier", stream(chunk));
+                        assertEquals(ChunkIngester.Result.ADDED, result);
+
+                        if (thread == 0 && i % 10 == 0) {
+                            ingester.compact(); // right in the middle of everyone else
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertEquals(threads * chunks, ingester.getChunkCount());
+        assertEquals(threads * chunks * 200, ingester.getAggregates().getCarrier("Carrier").getSnapshotCount());
+
+        for (int t = 0; t < threads; ++t) {
+            assertEquals(chunks * 200, ingester.getAggregates().getDevice("phone" + t).getSnapshotCount());
+        }
+        // and the compactions in the middle didn't lose any on the way to disk
+        ChunkIngester reloaded = new ChunkIngester(new AggregateStore(dir));
+        assertEquals(threads * chunks * 200, reloaded.getAggregates().getCarrier("Carrier").getSnapshotCount());
+    }
+
+    public void testCompactAndReload() throws IOException
+    {
+        AggregateStore store = new AggregateStore(dir);
+        ChunkIngester ingester = new ChunkIngester(store);
+        byte[] first = makeChunk(1000, SNAPSHOTS);
+        byte[] second = makeChunk(5000000, SNAPSHOTS);
+
+        ingester.ingest(hash(first), "phone", "Carrier", stream(first));
+        ingester.compact();
+        // this one's only in the journal
+        ingester.ingest(hash(second), "tablet", "Carrier", stream(second));
+        store.close();
+
+        ChunkIngester reloaded = new ChunkIngester(new AggregateStore(dir));
+        FleetAggregates before = ingester.getAggregates();
+        FleetAggregates after = reloaded.getAggregates();
+
+        assertTrue(reloaded.has(hash(first)));
+        assertTrue(reloaded.has(hash(second)));
+        assertEquals(ChunkIngester.Result.DUPLICATE, reloaded.ingest(hash(second), "tablet", "", stream(second)));
+        assertEquals(before.getDevices(), after.getDevices());
+        assertEquals(before.getTiles(), after.getTiles());
+        assertEquals(SNAPSHOTS * 2, after.getCarrier("Carrier").getSnapshotCount());
+        assertEquals(before.getDevice("tablet").getMean(Signal.LTE_RSRP),
+            after.getDevice("tablet").getMean(Signal.LTE_RSRP), 0.001f);
+
+        for (long tile : before.getTiles()) {
+            assertEquals(before.getTile(tile).getSnapshotCount(), after.getTile(tile).getSnapshotCount());
+        }
+        // only the journal written since the last compaction should be left
+        reloaded.compact();
+        assertEquals(2, dir.list().length);
+    }
+
+    /**
+     * Encodes snapshots the way they'd be in a chunk: LTE readings going from
+     * -120 to -71 over and over and heading north from downtown, half of them without a location.
+     */
+    static byte[] makeChunk(long start, int count) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SnapshotCodec.Encoder encoder = new SnapshotCodec.Encoder();
+        int[] readings = new int[SnapshotCodec.SIGNAL_COUNT];
+        int[] qualities = new int[SnapshotCodec.NETWORK_COUNT];
+        Arrays.fill(readings, INVALID);
+        Arrays.fill(qualities, INVALID);
+
+        for (int i = 0; i < count; ++i) {
+            readings[Signal.LTE_RSRP.value()] = -120 + i % 50;
+            qualities[NetworkType.LTE.ordinal()] = i % 2 == 0 ? 25 : 75;
+            boolean located = i % 2 == 0;
+            encoder.add(start + i * 1000L, readings, qualities,
+                located ? 41.6 + i * 0.0001 : Double.NaN, located ? -93.6 : Double.NaN);
+
+            if (encoder.isFull()) {
+                encoder.writeTo(out);
+                encoder.reset();
+            }
+        }
+        if (encoder.getCount() > 0) {
+            encoder.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    static String hash(byte[] chunk) throws IOException
+    {
+        try {
+            return ChunkReader.hash(chunk, 0, chunk.length, MessageDigest.getInstance("SHA-1"));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.toString());
+        }
+    }
+
+    private static ByteArrayInputStream stream(byte[] chunk)
+    {
+        return new ByteArrayInputStream(chunk);
+    }
+}
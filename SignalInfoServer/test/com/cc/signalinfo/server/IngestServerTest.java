@@ -0,0 +1,140 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.server;
+
+import com.cc.signalinfo.upload.ChunkClient;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+/**
+ * Runs an IngestServer on localhost and sends it chunks the way phones would,
+ * from one device at a time and from a small load test.
+ */
+public class IngestServerTest extends TestCase
+{
+    private File         dir;
+    private IngestServer server;
+    private String       endpoint;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File(System.getProperty("java.io.tmpdir"), "ingestservertest");
+        FileUtils.deleteDirectory(dir);
+        server = new IngestServer(new ChunkIngester(new AggregateStore(new File(dir, "data"))),
+            new InetSocketAddress("127.0.0.1", 0), 4);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getPort() + "/collector";
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        server.stop();
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testPutAndHead() throws IOException
+    {
+        byte[] chunk = ChunkIngesterTest.makeChunk(1000, 500);
+        String hash = ChunkIngesterTest.hash(chunk);
+
+        assertEquals(404, send("HEAD", hash, null));
+        assertEquals(400, send("PUT", hash, new byte[] {1, 2, 3}));
+        assertEquals(404, send("HEAD", hash, null));
+        assertEquals(201, send("PUT", hash, chunk));
+        assertEquals(200, send("HEAD", hash, null));
+        assertEquals(200, send("PUT", hash, chunk));
+        assertEquals(404, send("HEAD", "not-a-hash", null));
+
+        ChunkIngester ingester = server.getIngester();
+        assertEquals(500, ingester.getSnapshotCount());
+        assertEquals(500, ingester.getAggregates().getCarrier("T-Mobile & Co").getSnapshotCount());
+        assertTrue(server.getStats().contains("T-Mobile & Co: 500 snapshots"));
+    }
+
+    public void testLoadTest() throws IOException
+    {
+        int devices = 20;
+        LoadTest test = new LoadTest(new File(dir, "devices"), endpoint, null, devices, 2, 5000, 8);
+        long recorded = test.prepare();
+        LoadTest.Report report = test.run();
+        ChunkIngester ingester = server.getIngester();
+
+        assertEquals(devices * 2 * 5000L, recorded);
+        assertEquals(recorded, ingester.getSnapshotCount());
+        assertEquals(report.getBytes(), ingester.getByteCount());
+        assertEquals(0, ingester.getRejectedCount());
+        assertEquals(devices, ingester.getAggregates().getDeviceCount());
+        assertEquals(10000, ingester.getAggregates().getDevice(LoadTest.getDeviceId(7)).getSnapshotCount());
+        assertTrue("Should have taken more than a chunk a device", ingester.getChunkCount() > devices);
+
+        // replaying what was just sent, shifted so it's all new chunks
+        File replay = new File(dir, "replay");
+        FileUtils.copyDirectory(new File(dir, "devices/device-3/sessions"), replay);
+        LoadTest replayed = new LoadTest(new File(dir, "replayed"), endpoint, replay, 5, 0, 0, 8);
+
+        assertEquals(5 * 10000L, replayed.prepare());
+        replayed.run();
+        assertEquals(recorded + 5 * 10000L, ingester.getSnapshotCount());
+    }
+
+    private int send(String method, String hash, byte[] body) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint + "/chunks/" + hash).openConnection();
+
+        try {
+            connection.setRequestMethod(method);
+            connection.setRequestProperty(ChunkClient.HEADER_DEVICE, "phone");
+            connection.setRequestProperty(ChunkClient.HEADER_CARRIER, "T-Mobile+%26+Co");
+
+            if (body != null) {
+                connection.setDoOutput(true);
+                OutputStream out = connection.getOutputStream();
+                out.write(body);
+                out.close();
+            }
+            return connection.getResponseCode();
+        }
+        finally {
+            IOUtils.closeQuietly(connection.getErrorStream());
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.AlertEngine;
+
+import java.util.Arrays;
+
+/**
+ * Feeds made up readings (one a second) through some alert rules and checks
+ * they go off when they should, and only then.
+ */
+public class AlertEngineTest extends AndroidTestCase implements AlertEngine.AlertCallback
+{
+    private static final long SECOND = 1000;
+
+    private AlertEngine engine;
+    private int[]       readings;
+    private int[]       qualities;
+    private int         fired;
+    private int         lastRule;
+    private long        time;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        engine = new AlertEngine(this);
+        readings = new int[Signal.values().length];
+        qualities = new int[NetworkType.values().length];
+        Arrays.fill(readings, AppSetup.INVALID);
+        Arrays.fill(qualities, AppSetup.INVALID);
+        fired = 0;
+        lastRule = -1;
+        time = 1000000;
+    }
+
+    @Override
+    public void onAlert(AlertEngine engine, int rule, int value, long timestamp)
+    {
+        ++fired;
+        lastRule = rule;
+    }
+
+    public void testParsing()
+    {
+        assertEquals(3, engine.setRules("LTE_RSRP < -115 for 10s hyst 3\n"
+            + "lte_quality <= 30 for 1m cooldown 5m;"
+            + "LTE_RSRP missing for 5s\n\n"
+            + "NOT_A_SIGNAL < 4\n"
+            + "LTE_RSRP missing 4\n"
+            + "LTE_RSRP <"));
+        assertEquals(3, engine.getSkippedCount());
+        assertEquals("lte_quality <= 30 for 1m cooldown 5m", engine.getLabel(1));
+        assertEquals(Signal.LTE_RSRP, engine.getSignal(1));
+    }
+
+    public void testNeedsDuration()
+    {
+        engine.setRules("LTE_RSRP < -115 for 10s");
+        feed(Signal.LTE_RSRP, -120, 5);
+        feed(Signal.LTE_RSRP, -100, 1); // back up, clock starts over
+        feed(Signal.LTE_RSRP, -120, 10);
+        assertEquals(0, fired);
+
+        feed(Signal.LTE_RSRP, -120, 1);
+        assertEquals(1, fired);
+        assertTrue(engine.isActive(0));
+
+        // stays down, doesn't keep going off
+        feed(Signal.LTE_RSRP, -120, 30);
+        assertEquals(1, fired);
+    }
+
+    public void testHysteresis()
+    {
+        engine.setRules("LTE_RSRP < -115 hyst 3 cooldown 0s");
+        feed(Signal.LTE_RSRP, -116, 1);
+        assertEquals(1, fired);
+
+        // wobbling right above the line isn't enough to clear it
+        feed(Signal.LTE_RSRP, -114, 1);
+        feed(Signal.LTE_RSRP, -116, 1);
+        assertEquals(1, fired);
+        assertTrue(engine.isActive(0));
+
+        feed(Signal.LTE_RSRP, -112, 1);
+        assertFalse(engine.isActive(0));
+        feed(Signal.LTE_RSRP, -116, 1);
+        assertEquals(2, fired);
+    }
+
+    public void testCooldown()
+    {
+        engine.setRules("LTE_RSRP < -115 cooldown 1m");
+        feed(Signal.LTE_RSRP, -120, 1);
+        feed(Signal.LTE_RSRP, -100, 1);
+        feed(Signal.LTE_RSRP, -120, 1);
+        assertEquals(1, fired);
+
+        feed(Signal.LTE_RSRP, -100, 60);
+        feed(Signal.LTE_RSRP, -120, 1);
+        assertEquals(2, fired);
+    }
+
+    public void testMissingOnlyAfterSeen()
+    {
+        engine.setRules("LTE_RSRP missing for 5s");
+        feed(Signal.LTE_RSRP, AppSetup.INVALID, 20);
+        assertEquals(0, fired);
+
+        feed(Signal.LTE_RSRP, -90, 5);
+        feed(Signal.LTE_RSRP, AppSetup.INVALID, 6);
+        assertEquals(1, fired);
+    }
+
+    public void testQualityAndSeveralRules()
+    {
+        engine.setRules("GSM_SIG_STRENGTH < 5\nLTE_QUALITY < 30 for 2s");
+        qualities[NetworkType.LTE.ordinal()] = 20;
+        feed(Signal.GSM_SIG_STRENGTH, 20, 3);
+        assertEquals(1, fired);
+        assertEquals(1, lastRule);
+    }
+
+    private void feed(Signal signal, int value, int seconds)
+    {
+        readings[signal.value()] = value;
+
+        for (int i = 0; i < seconds; ++i) {
+            engine.process(readings, qualities, time);
+            time += SECOND;
+        }
+    }
+}
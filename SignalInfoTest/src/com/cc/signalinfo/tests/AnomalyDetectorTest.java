@@ -0,0 +1,119 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.AnomalyDetector;
+
+/**
+ * Checks the EWMA drop detection flags real drops once and
+ * leaves normal wiggles and improvements alone.
+ */
+public class AnomalyDetectorTest extends AndroidTestCase
+{
+    private AnomalyDetector detector;
+    private int             flagged;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        flagged = 0;
+        detector = new AnomalyDetector(new AnomalyDetector.AnomalyCallback()
+        {
+            @Override
+            public void onAnomaly(Signal signal, int value, float mean, float sigma, long timestamp)
+            {
+                ++flagged;
+            }
+        });
+    }
+
+    public void testSuddenRsrpDropFlaggedOnce()
+    {
+        feed(Signal.LTE_RSRP, -90, 30);
+        assertEquals(0, flagged);
+
+        assertTrue(detector.process(Signal.LTE_RSRP, -118, 0));
+        assertFalse("Should only flag when it first goes bad", detector.process(Signal.LTE_RSRP, -119, 0));
+        assertTrue(detector.isAnomalous(Signal.LTE_RSRP));
+        assertEquals(1, flagged);
+
+        feed(Signal.LTE_RSRP, -90, 40);
+        assertFalse(detector.isAnomalous(Signal.LTE_RSRP));
+        assertTrue("Should flag again after recovering", detector.process(Signal.LTE_RSRP, -120, 0));
+    }
+
+    public void testBaselineInReadingUnits()
+    {
+        feed(Signal.CDMA_ECIO, 6, 30);
+        // Ec/Io comes in as a positive magnitude but is kept negative inside
+        assertEquals(-6f, detector.getMean(Signal.CDMA_ECIO), 0.01f);
+        assertEquals(6f, AnomalyDetector.toReadingUnits(Signal.CDMA_ECIO, detector.getMean(Signal.CDMA_ECIO), 14), 0.01f);
+        assertEquals(-6f, AnomalyDetector.toReadingUnits(Signal.CDMA_ECIO, -6f, -14), 0.01f);
+        assertEquals(-90f, AnomalyDetector.toReadingUnits(Signal.LTE_RSRP, -90f, -118), 0.01f);
+        assertEquals(5f, AnomalyDetector.toReadingUnits(Signal.LTE_SNR, 5f, 1), 0.01f);
+    }
+
+    public void testImprovementNotFlagged()
+    {
+        feed(Signal.LTE_RSRP, -110, 30);
+        assertFalse(detector.process(Signal.LTE_RSRP, -70, 0));
+        feed(Signal.LTE_SNR, 5, 30);
+        assertFalse(detector.process(Signal.LTE_SNR, 30, 0));
+        assertEquals(0, flagged);
+    }
+
+    public void testSnrDropFlagged()
+    {
+        feed(Signal.LTE_SNR, 20, 30);
+        assertTrue(detector.process(Signal.LTE_SNR, 0, 0));
+    }
+
+    public void testSmallWiggleOnFlatSignalIgnored()
+    {
+        feed(Signal.LTE_RSRP, -95, 50);
+        // sigma is basically 0, but the floor keeps 1dB from counting
+        assertFalse(detector.process(Signal.LTE_RSRP, -96, 0));
+    }
+
+    public void testNothingFlaggedDuringWarmup()
+    {
+        feed(Signal.LTE_RSRP, -90, AnomalyDetector.WARMUP_SAMPLES - 2);
+        assertFalse(detector.process(Signal.LTE_RSRP, -130, 0));
+    }
+
+    private void feed(Signal signal, int value, int count)
+    {
+        for (int i = 0; i < count; ++i) {
+            // alternate a dB either way so there's a bit of variance
+            detector.process(signal, value + (i % 2 == 0 ? 1 : -1), 0);
+        }
+    }
+}
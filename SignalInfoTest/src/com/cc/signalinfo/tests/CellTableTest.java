@@ -0,0 +1,125 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.cells.CellId;
+import com.cc.signalinfo.cells.CellTable;
+import com.cc.signalinfo.config.AppSetup;
+
+/**
+ * Checks cell ids pack the way they should and the table keeps the
+ * stats and evicts the least recently seen cells.
+ */
+public class CellTableTest extends AndroidTestCase
+{
+    public void testPacking()
+    {
+        long lte = CellId.lte(123, AppSetup.INVALID);
+        assertEquals(CellId.TYPE_LTE, CellId.getType(lte));
+        assertEquals("LTE PCI 123", CellId.appendTo(lte, new StringBuilder()).toString());
+        assertEquals("LTE PCI 123 EARFCN 1850",
+            CellId.appendTo(CellId.lte(123, 1850), new StringBuilder()).toString());
+        assertEquals("GSM 1234/56789", CellId.appendTo(CellId.gsm(1234, 56789), new StringBuilder()).toString());
+        assertEquals("CDMA 4/5/6", CellId.appendTo(CellId.cdma(4, 5, 6), new StringBuilder()).toString());
+
+        assertFalse(CellId.wcdma(300, AppSetup.INVALID) == CellId.lte(300, AppSetup.INVALID));
+        assertEquals(CellId.NONE, CellId.lte(Integer.MAX_VALUE, 0));
+        assertEquals(CellId.NONE, CellId.wcdma(-1, 0));
+        assertEquals(CellId.NONE, CellId.gsm(Integer.MAX_VALUE, 5));
+    }
+
+    public void testStats()
+    {
+        CellTable table = new CellTable(8);
+        long id = CellId.lte(7, AppSetup.INVALID);
+
+        table.add(id, -90, 1000, true);
+        table.add(id, AppSetup.INVALID, 2000, false);
+        table.add(id, -80, 3000, false);
+
+        int slot = table.indexOf(id);
+        assertEquals(1, table.size());
+        assertEquals(3, table.getCount(slot));
+        assertEquals(1000, table.getFirstSeen(slot));
+        assertEquals(3000, table.getLastSeen(slot));
+        assertEquals(-90, table.getMin(slot));
+        assertEquals(-80, table.getMax(slot));
+        assertEquals(-85, table.getMean(slot));
+        assertEquals(-80, table.getLast(slot));
+        assertFalse(table.isServing(slot));
+
+        assertEquals(-1, table.add(CellId.NONE, -90, 4000, false));
+        assertEquals(-1, table.indexOf(CellId.lte(8, AppSetup.INVALID)));
+    }
+
+    public void testEvictsLeastRecent()
+    {
+        CellTable table = new CellTable(4);
+
+        for (int pci = 0; pci < 4; ++pci) {
+            table.add(CellId.lte(pci, AppSetup.INVALID), -100, pci, false);
+        }
+        // seeing 0 again makes 1 the stalest
+        table.add(CellId.lte(0, AppSetup.INVALID), -100, 10, false);
+        table.add(CellId.lte(4, AppSetup.INVALID), -100, 11, false);
+
+        assertEquals(4, table.size());
+        assertEquals(1, table.getEvictedCount());
+        assertEquals(-1, table.indexOf(CellId.lte(1, AppSetup.INVALID)));
+        assertTrue(table.indexOf(CellId.lte(0, AppSetup.INVALID)) >= 0);
+
+        int[] order = new int[4];
+        assertEquals(4, table.getRecent(order));
+        int[] expected = {4, 0, 3, 2};
+
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(CellId.lte(expected[i], AppSetup.INVALID), table.getId(order[i]));
+        }
+    }
+
+    public void testManyCellsStayFindable()
+    {
+        CellTable table = new CellTable(1000);
+
+        // way more than fit, so the hash sees lots of removes
+        for (int i = 0; i < 20000; ++i) {
+            table.add(CellId.gsm(i % 500, i), -70 - i % 40, i, false);
+        }
+        assertEquals(1000, table.size());
+        assertEquals(19000, table.getEvictedCount());
+
+        for (int i = 19000; i < 20000; ++i) {
+            int slot = table.indexOf(CellId.gsm(i % 500, i));
+            assertTrue("Lost cell " + i, slot >= 0);
+            assertEquals(i, table.getLastSeen(slot));
+        }
+        assertEquals(-1, table.indexOf(CellId.gsm(18999 % 500, 18999)));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.location.CoverageGrid;
+import com.cc.signalinfo.location.FakeLocationSource;
+
+import java.util.Arrays;
+
+/**
+ * Drives a fake location around and checks the readings end up
+ * rolled up in the right tiles.
+ */
+public class CoverageGridTest extends AndroidTestCase
+{
+    private CoverageGrid       grid;
+    private FakeLocationSource location;
+    private int[]              readings;
+    private int[]              qualities;
+    private long               time;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        grid = new CoverageGrid(100);
+        location = new FakeLocationSource();
+        location.setLocation(47.6205, -122.3493, 5, 0);
+        readings = new int[Signal.values().length];
+        qualities = new int[NetworkType.values().length];
+        Arrays.fill(readings, AppSetup.INVALID);
+        Arrays.fill(qualities, AppSetup.INVALID);
+        time = 0;
+    }
+
+    public void testSameTileAggregates()
+    {
+        int[] rsrp = {-90, -100, -110, -96};
+
+        for (int value : rsrp) {
+            readings[Signal.LTE_RSRP.value()] = value;
+            add();
+            location.move(0, 0, ++time); // parked
+        }
+        int tile = grid.indexOf(grid.getKey(location.getLatitude(), location.getLongitude()));
+        assertTrue(tile >= 0);
+        assertEquals(1, grid.size());
+        assertEquals(4, grid.getCount(tile, Signal.LTE_RSRP));
+        assertEquals(-99f, grid.getMean(tile, Signal.LTE_RSRP), 0.001);
+        assertEquals(-110, grid.getMin(tile, Signal.LTE_RSRP));
+        assertEquals(-90, grid.getMax(tile, Signal.LTE_RSRP));
+        assertEquals(0, grid.getCount(tile, Signal.GSM_SIG_STRENGTH));
+        assertEquals(AppSetup.INVALID, grid.getMin(tile, Signal.GSM_SIG_STRENGTH));
+        assertTrue(Float.isNaN(grid.getMean(tile, Signal.GSM_SIG_STRENGTH)));
+    }
+
+    public void testDriveMakesTiles()
+    {
+        readings[Signal.LTE_RSRP.value()] = -100;
+        qualities[NetworkType.LTE.ordinal()] = 60;
+
+        // 5km east in 50m steps, two samples every tile
+        for (int i = 0; i < 100; ++i) {
+            add();
+            location.move(0, 50, ++time);
+        }
+        assertTrue("got " + grid.size(), grid.size() >= 49 && grid.size() <= 51);
+
+        int samples = 0;
+        for (int tile = 0; tile < grid.size(); ++tile) {
+            samples += grid.getCount(tile, Signal.LTE_RSRP);
+            assertEquals(60f, grid.getQualityMean(tile, NetworkType.LTE), 0.001);
+        }
+        assertEquals(100, samples);
+    }
+
+    public void testLotsOfTiles()
+    {
+        readings[Signal.LTE_RSRP.value()] = -100;
+
+        // a 200 x 200 block of tiles, way past the initial size
+        for (int north = 0; north < 200; ++north) {
+            for (int east = 0; east < 200; ++east) {
+                grid.add(47.0 + (north + 0.5) * 100 / CoverageGrid.METERS_PER_DEGREE,
+                    -122.0 + (east + 0.5) * 100 / (CoverageGrid.METERS_PER_DEGREE * Math.cos(Math.toRadians(47.0))),
+                    readings, null);
+            }
+        }
+        assertTrue("got " + grid.size(), grid.size() >= 39000);
+
+        for (int tile = 0; tile < grid.size(); tile += 97) {
+            assertEquals(tile, grid.indexOf(grid.getTileKey(tile)));
+        }
+    }
+
+    public void testKeysAndBounds()
+    {
+        long key = CoverageGrid.pack(-5, -7);
+        assertEquals(-5, CoverageGrid.getRow(key));
+        assertEquals(-7, CoverageGrid.getColumn(key));
+
+        double[] bounds = new double[4];
+        long here = grid.getKey(location.getLatitude(), location.getLongitude());
+        grid.getBounds(here, bounds);
+        assertTrue(location.getLatitude() >= bounds[0] && location.getLatitude() < bounds[2]);
+        assertTrue(location.getLongitude() >= bounds[1] && location.getLongitude() < bounds[3]);
+        assertEquals(-1, grid.indexOf(here));
+    }
+
+    private void add()
+    {
+        grid.add(location.getLatitude(), location.getLongitude(), readings, qualities);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.location.CoverageGrid;
+import com.cc.signalinfo.location.HeatmapRenderer;
+import com.cc.signalinfo.location.TileCache;
+import com.cc.signalinfo.location.TileMath;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Draws heatmap tiles for a small made up drive and checks they come
+ * back out of the cache until new samples land on them.
+ */
+public class HeatmapRendererTest extends AndroidTestCase
+{
+    private static final double LATITUDE  = 47.6205;
+    private static final double LONGITUDE = -122.3493;
+    private static final int    ZOOM      = 16;
+
+    private CoverageGrid    grid;
+    private TileCache       cache;
+    private HeatmapRenderer renderer;
+    private File            dir;
+    private int[]           readings;
+    private int             tileX;
+    private int             tileY;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File(getContext().getCacheDir(), "heatmaptest");
+        FileUtils.deleteDirectory(dir);
+        grid = new CoverageGrid(100);
+        cache = new TileCache(dir, 4 * 1024 * 1024);
+        renderer = new HeatmapRenderer(grid, cache, Signal.LTE_RSRP);
+        readings = new int[Signal.values().length];
+        Arrays.fill(readings, AppSetup.INVALID);
+        tileX = (int) (TileMath.longitudeToPixel(LONGITUDE, ZOOM) / TileMath.TILE_SIZE);
+        tileY = (int) (TileMath.latitudeToPixel(LATITUDE, ZOOM) / TileMath.TILE_SIZE);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testTileMath()
+    {
+        double[] bounds = new double[4];
+        TileMath.getBounds(ZOOM, tileX, tileY, bounds);
+        assertTrue(LATITUDE >= bounds[0] && LATITUDE < bounds[2]);
+        assertTrue(LONGITUDE >= bounds[1] && LONGITUDE < bounds[3]);
+
+        long key = TileMath.pack(ZOOM, tileX, tileY);
+        assertEquals(ZOOM, TileMath.getZoom(key));
+        assertEquals(tileX, TileMath.getX(key));
+        assertEquals(tileY, TileMath.getY(key));
+    }
+
+    public void testEmptyTile()
+    {
+        assertNull(renderer.getTile(ZOOM, tileX, tileY));
+        assertNull(renderer.getTile(HeatmapRenderer.MIN_ZOOM - 1, 0, 0));
+    }
+
+    public void testColorsAndCaching()
+    {
+        add(-50); // about as good as it gets, should be green
+        Bitmap tile = renderer.getTile(ZOOM, tileX, tileY);
+        assertNotNull(tile);
+
+        int pixel = getPixelAt(tile, LATITUDE, LONGITUDE);
+        assertTrue("not green: " + Integer.toHexString(pixel), Color.green(pixel) > Color.red(pixel));
+
+        // nothing new, same bitmap straight from memory
+        assertSame(tile, renderer.getTile(ZOOM, tileX, tileY));
+        assertTrue(new File(dir, ZOOM + "/" + tileX + "/" + tileY + ".png").exists());
+
+        // a bunch of terrible readings in the same spot
+        for (int i = 0; i < 20; ++i) {
+            add(-140);
+        }
+        Bitmap redrawn = renderer.getTile(ZOOM, tileX, tileY);
+        assertNotSame(tile, redrawn);
+        pixel = getPixelAt(redrawn, LATITUDE, LONGITUDE);
+        assertTrue("not red: " + Integer.toHexString(pixel), Color.red(pixel) > Color.green(pixel));
+    }
+
+    public void testFromDisk()
+    {
+        add(-90);
+        assertNotNull(renderer.getTile(ZOOM, tileX, tileY));
+
+        // new renderer with an empty memory cache but the same disk cache
+        HeatmapRenderer cold = new HeatmapRenderer(grid, new TileCache(dir, 1024 * 1024), Signal.LTE_RSRP);
+        grid.clear(); // if it redrew instead of reading the disk it'd be empty
+        assertNotNull(cold.getTile(ZOOM, tileX, tileY));
+    }
+
+    public void testQualityLayer()
+    {
+        int[] qualities = new int[NetworkType.values().length];
+        Arrays.fill(qualities, AppSetup.INVALID);
+        qualities[NetworkType.LTE.ordinal()] = 10;
+        grid.add(LATITUDE, LONGITUDE, readings, qualities);
+
+        HeatmapRenderer quality = new HeatmapRenderer(grid, new TileCache(null, 1024 * 1024), NetworkType.LTE);
+        Bitmap tile = quality.getTile(ZOOM, tileX, tileY);
+        assertNotNull(tile);
+        int pixel = getPixelAt(tile, LATITUDE, LONGITUDE);
+        assertTrue("not red: " + Integer.toHexString(pixel), Color.red(pixel) > Color.green(pixel));
+    }
+
+    private void add(int rsrp)
+    {
+        readings[Signal.LTE_RSRP.value()] = rsrp;
+        grid.add(LATITUDE, LONGITUDE, readings, null);
+    }
+
+    private int getPixelAt(Bitmap tile, double latitude, double longitude)
+    {
+        int x = (int) (TileMath.longitudeToPixel(longitude, ZOOM) - tileX * TileMath.TILE_SIZE);
+        int y = (int) (TileMath.latitudeToPixel(latitude, ZOOM) - tileY * TileMath.TILE_SIZE);
+        return tile.getPixel(x, y);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.util.LatencyHistogram;
+
+/**
+ * Makes sure the log bucket histogram reports percentiles close enough
+ * to the real ones to be useful.
+ */
+public class LatencyHistogramTest extends AndroidTestCase
+{
+    public void testEmpty()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getCount());
+    }
+
+    public void testSmallValuesExact()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 0; i < 4; ++i) {
+            histogram.record(i);
+        }
+        assertEquals(1, histogram.getPercentile(50));
+        assertEquals(3, histogram.getPercentile(100));
+    }
+
+    public void testPercentilesWithinBucketError()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i * 100); // 100us to 100ms
+        }
+        assertEquals(1000, histogram.getCount());
+        assertWithin(50000, histogram.getPercentile(50));
+        assertWithin(99000, histogram.getPercentile(99));
+        assertEquals(100000, histogram.getPercentile(100));
+    }
+
+    public void testHugeValuesDontOverflow()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        histogram.record(-5);
+        assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+        assertEquals(2, histogram.getCount());
+    }
+
+    private static void assertWithin(long expected, long actual)
+    {
+        // buckets are a quarter of a power of 2 wide
+        assertTrue(String.format("expected about %d, got %d", expected, actual),
+            actual >= expected && actual <= expected * 1.25);
+    }
+}
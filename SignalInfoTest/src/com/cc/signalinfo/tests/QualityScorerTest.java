@@ -0,0 +1,134 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.QualityWeight;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.signals.SignalInfo;
+import com.cc.signalinfo.util.QualityScorer;
+
+import java.util.Arrays;
+
+/**
+ * Checks the link quality score against the plain % math it's built from
+ * and that it goes the right way as the readings get worse.
+ */
+public class QualityScorerTest extends AndroidTestCase
+{
+    private int[] readings;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        readings = new int[Signal.values().length];
+        Arrays.fill(readings, AppSetup.INVALID);
+    }
+
+    public void testNoPrimaryReading()
+    {
+        readings[Signal.LTE_RSRQ.value()] = -8;
+        assertEquals(AppSetup.INVALID, QualityScorer.score(NetworkType.LTE, readings));
+        assertEquals(AppSetup.INVALID, QualityScorer.score(NetworkType.UNKNOWN, readings));
+    }
+
+    public void testPrimaryOnlyMatchesPercent()
+    {
+        for (int rsrp = -44; rsrp >= -140; --rsrp) {
+            readings[Signal.LTE_RSRP.value()] = rsrp;
+            assertEquals(SignalInfo.getPercent(Signal.LTE_RSRP, rsrp, false),
+                QualityScorer.score(NetworkType.LTE, readings));
+        }
+    }
+
+    public void testWeightsAddUp()
+    {
+        for (NetworkType type : NetworkType.values()) {
+            QualityWeight[] weights = QualityScorer.getWeights(type);
+            int total = 0;
+
+            for (QualityWeight weight : weights) {
+                assertEquals(type, weight.signal().type());
+                total += weight.weight();
+            }
+            assertTrue(type + " weights add to " + total, weights.length == 0 || total == 100);
+        }
+    }
+
+    public void testBestAndWorst()
+    {
+        setLte(-44, -3, 300, 15);
+        assertEquals(100, QualityScorer.score(NetworkType.LTE, readings));
+
+        setLte(-140, -20, -200, 0);
+        assertEquals(0, QualityScorer.score(NetworkType.LTE, readings));
+    }
+
+    public void testGetsWorseWithEachReading()
+    {
+        setLte(-85, -7, 150, 12);
+        int good = QualityScorer.score(NetworkType.LTE, readings);
+
+        setLte(-105, -7, 150, 12);
+        int weakerRsrp = QualityScorer.score(NetworkType.LTE, readings);
+
+        setLte(-105, -14, 150, 12);
+        int weakerRsrq = QualityScorer.score(NetworkType.LTE, readings);
+
+        setLte(-105, -14, 0, 12);
+        int weakerSnr = QualityScorer.score(NetworkType.LTE, readings);
+
+        assertTrue(good + " > " + weakerRsrp, good > weakerRsrp);
+        assertTrue(weakerRsrp + " > " + weakerRsrq, weakerRsrp > weakerRsrq);
+        assertTrue(weakerRsrq + " > " + weakerSnr, weakerRsrq > weakerSnr);
+    }
+
+    public void testScoreAll()
+    {
+        setLte(-90, -9, 100, 10);
+        readings[Signal.CDMA_RSSI.value()] = -75;
+        int[] scores = new int[NetworkType.values().length];
+        QualityScorer.scoreAll(readings, scores);
+
+        assertEquals(QualityScorer.score(NetworkType.LTE, readings), scores[NetworkType.LTE.ordinal()]);
+        assertEquals(QualityScorer.score(NetworkType.CDMA, readings), scores[NetworkType.CDMA.ordinal()]);
+        assertEquals(AppSetup.INVALID, scores[NetworkType.GSM.ordinal()]);
+    }
+
+    private void setLte(int rsrp, int rsrq, int snr, int cqi)
+    {
+        readings[Signal.LTE_RSRP.value()] = rsrp;
+        readings[Signal.LTE_RSRQ.value()] = rsrq;
+        readings[Signal.LTE_SNR.value()] = snr;
+        readings[Signal.LTE_CQI.value()] = cqi;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.listeners.RadioLogTap;
+import com.cc.signalinfo.util.RadioLogParser;
+import com.cc.signalinfo.util.system.terminal.ShellTerminal;
+
+import java.io.ByteArrayInputStream;
+
+import static com.cc.signalinfo.tests.TestHelpers.errorMsg;
+
+/**
+ * Replays some recorded radio log lines through the parser
+ * to make sure the WCDMA values come out right.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-02
+ */
+public class RadioLogParserTest extends AndroidTestCase implements RadioLogParser.RadioInfoCallback
+{
+    private static final String RADIO_LOG =
+        "RILJ: [3721]< SIGNAL_STRENGTH 12 99 -1 -1 -1 -1 -1 99 -1 -1 -1 -1 gsm|lte\n"
+            + "RILQ: wcdma meas: uarfcn=10688 psc=301 rscp=-87 ecno=-6\n"
+            + "RILJ: [UNSL]< UNSOL_NITZ_TIME_RECEIVED 13/11/02,19:21:04-20,1\n"
+            + "GsmSST: poll ServiceState done: oldSS=[0 home]\n"
+            + "RIL_SS: RSCP: 95 Ec/No: 12 PSC: 44\n";
+
+    private int callbackCount = 0;
+    private int lastRscp      = AppSetup.INVALID;
+
+    public void testReplayParsesValues() throws Exception
+    {
+        RadioLogTap tap = new RadioLogTap(new ShellTerminal(), this);
+        RadioLogParser parser = tap.replay(new ByteArrayInputStream(RADIO_LOG.getBytes("US-ASCII")));
+
+        // last values seen win, positive readings get flipped
+        assertEquals(errorMsg(-95, parser.get(RadioLogParser.RSCP)), -95, parser.get(RadioLogParser.RSCP));
+        assertEquals(errorMsg(-12, parser.get(RadioLogParser.EC_NO)), -12, parser.get(RadioLogParser.EC_NO));
+        assertEquals(errorMsg(44, parser.get(RadioLogParser.PSC)), 44, parser.get(RadioLogParser.PSC));
+        assertEquals(errorMsg(10688, parser.get(RadioLogParser.UARFCN)), 10688, parser.get(RadioLogParser.UARFCN));
+        assertEquals(errorMsg(5, parser.getLinesParsed()), 5, parser.getLinesParsed());
+        assertEquals(errorMsg(2, callbackCount), 2, callbackCount);
+        assertEquals(errorMsg(-95, lastRscp), -95, lastRscp);
+    }
+
+    /**
+     * Lines split across reads should still parse the same as whole ones.
+     */
+    public void testSplitChunks() throws Exception
+    {
+        RadioLogParser parser = new RadioLogParser(this);
+        byte[] log = RADIO_LOG.getBytes("US-ASCII");
+
+        for (int i = 0; i < log.length; i += 7) {
+            parser.feed(log, i, Math.min(7, log.length - i));
+        }
+        parser.flush();
+
+        assertEquals(errorMsg(-95, parser.get(RadioLogParser.RSCP)), -95, parser.get(RadioLogParser.RSCP));
+        assertEquals(errorMsg(44, parser.get(RadioLogParser.PSC)), 44, parser.get(RadioLogParser.PSC));
+    }
+
+    /**
+     * Junk numbers and keys that are just part of a longer word should be ignored.
+     */
+    public void testIgnoresJunk() throws Exception
+    {
+        RadioLogParser parser = new RadioLogParser(this);
+        byte[] log = "foorscp=-80 rscpx=-70 rscp=-500 psc=9999 uarfcn=\n".getBytes("US-ASCII");
+        parser.feed(log, 0, log.length);
+
+        assertEquals(AppSetup.INVALID, parser.get(RadioLogParser.RSCP));
+        assertEquals(AppSetup.INVALID, parser.get(RadioLogParser.PSC));
+        assertEquals(AppSetup.INVALID, parser.get(RadioLogParser.UARFCN));
+        assertEquals(errorMsg(0, callbackCount), 0, callbackCount);
+    }
+
+    /**
+     * Anything past the max line length gets dropped, but the front still parses.
+     */
+    public void testLongLinesAreBounded() throws Exception
+    {
+        RadioLogParser parser = new RadioLogParser(this);
+        StringBuilder line = new StringBuilder("rscp=-90 ");
+
+        while (line.length() < RadioLogParser.MAX_LINE_LENGTH) {
+            line.append('x');
+        }
+        line.append(" psc=12\n");
+        byte[] log = line.toString().getBytes("US-ASCII");
+        parser.feed(log, 0, log.length);
+
+        assertEquals(-90, parser.get(RadioLogParser.RSCP));
+        assertEquals(AppSetup.INVALID, parser.get(RadioLogParser.PSC));
+    }
+
+    /**
+     * Values that stop showing up (like after leaving WCDMA) shouldn't stick around.
+     */
+    public void testStaleValuesExpire() throws Exception
+    {
+        RadioLogParser parser = new RadioLogParser(this);
+        byte[] rscp = "rscp=-90\n".getBytes("US-ASCII");
+        byte[] psc = "psc=12\n".getBytes("US-ASCII");
+        long later = RadioLogParser.MAX_AGE_MS + 1;
+
+        parser.feed(rscp, 0, rscp.length, 0);
+        assertEquals(-90, parser.get(RadioLogParser.RSCP, 0));
+        assertEquals(AppSetup.INVALID, parser.get(RadioLogParser.RSCP, later));
+
+        // the next line that does show up hands out the stale one as gone
+        parser.feed(psc, 0, psc.length, later);
+        assertEquals(12, parser.get(RadioLogParser.PSC, later));
+        assertEquals(errorMsg(2, callbackCount), 2, callbackCount);
+        assertEquals(errorMsg(AppSetup.INVALID, lastRscp), AppSetup.INVALID, lastRscp);
+    }
+
+    @Override
+    public void onRadioInfo(int rscp, int ecNo, int psc, int uarfcn)
+    {
+        ++callbackCount;
+        lastRscp = rscp;
+    }
+}
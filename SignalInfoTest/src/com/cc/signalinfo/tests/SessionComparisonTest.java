@@ -0,0 +1,148 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.Rollup;
+import com.cc.signalinfo.history.SessionComparison;
+import com.cc.signalinfo.history.SnapshotCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+
+/**
+ * Builds rollups for made up sessions and lines them up by time and by tile.
+ */
+public class SessionComparisonTest extends AndroidTestCase
+{
+    private static final long MINUTE = 60 * 1000;
+
+    public void testRollupRoundTrip() throws IOException
+    {
+        // RSRP -100 for 15 minutes, then -90, one snapshot every 10s
+        byte[][] tiers = build(0, 30, -100, -90, Double.NaN);
+        Rollup.BucketSource minutes = reader(tiers, 0);
+        Rollup.Bucket bucket = new Rollup.Bucket();
+
+        for (int minute = 0; minute < 30; ++minute) {
+            assertTrue(minutes.next(bucket));
+            assertEquals(minute, bucket.getKey());
+            assertEquals(6, bucket.getCount(Signal.LTE_RSRP));
+            assertEquals(minute < 15 ? -100f : -90f, bucket.getMean(Signal.LTE_RSRP), 0.001f);
+            assertEquals(0, bucket.getCount(Signal.GSM_SIG_STRENGTH));
+        }
+        assertFalse(minutes.next(bucket));
+
+        Rollup.BucketSource tenMinutes = reader(tiers, 1);
+        assertTrue(tenMinutes.next(bucket));
+        assertTrue(tenMinutes.next(bucket));
+        assertEquals(60, bucket.getCount(Signal.LTE_RSRP));
+        assertEquals(-95f, bucket.getMean(Signal.LTE_RSRP), 0.001f);
+        assertEquals(-100, bucket.getMin(Signal.LTE_RSRP));
+        assertEquals(-90, bucket.getMax(Signal.LTE_RSRP));
+        assertTrue(tenMinutes.next(bucket));
+        assertFalse(tenMinutes.next(bucket));
+
+        // no locations, no tiles
+        assertFalse(reader(tiers, Rollup.TILE_TIER).next(bucket));
+    }
+
+    public void testCompareByTime() throws IOException
+    {
+        // different start times still line up from the start of each session
+        byte[][] a = build(1000000, 30, -100, -100, Double.NaN);
+        byte[][] b = build(5000000, 20, -95, -95, Double.NaN);
+
+        SessionComparison comparison = SessionComparison.compare(reader(a, 0), reader(b, 0));
+        assertEquals(30, comparison.getRowCount());
+        assertEquals(20, comparison.getSharedCount(Signal.LTE_RSRP));
+        assertEquals(10, comparison.getOnlyACount());
+        assertEquals(0, comparison.getOnlyBCount());
+        assertEquals(5f, comparison.getSharedDelta(Signal.LTE_RSRP), 0.001f);
+        assertEquals(5f, comparison.getDelta(3, Signal.LTE_RSRP), 0.001f);
+        assertTrue(Float.isNaN(comparison.getDelta(25, Signal.LTE_RSRP)));
+        assertTrue(Float.isNaN(comparison.getSharedDelta(Signal.CDMA_RSSI)));
+    }
+
+    public void testCompareByTile() throws IOException
+    {
+        // same road, second one a few minutes longer
+        byte[][] a = build(0, 10, -110, -110, 45.0);
+        byte[][] b = build(0, 15, -100, -100, 45.0);
+
+        SessionComparison comparison = SessionComparison.compare(reader(a, Rollup.TILE_TIER),
+            reader(b, Rollup.TILE_TIER));
+        assertTrue(comparison.getRowCount() > 1);
+        assertTrue(comparison.getOnlyBCount() > 0);
+        assertEquals(0, comparison.getOnlyACount());
+        assertEquals(10f, comparison.getSharedDelta(Signal.LTE_RSRP), 0.001f);
+
+        for (int row = 1; row < comparison.getRowCount(); ++row) {
+            assertTrue("Tiles out of order", comparison.getKey(row - 1) < comparison.getKey(row));
+        }
+    }
+
+    public void testPickTimeTier()
+    {
+        assertEquals(0, Rollup.pickTimeTier(60 * MINUTE));
+        assertEquals(1, Rollup.pickTimeTier(10 * 60 * MINUTE));
+        assertEquals(1, Rollup.pickTimeTier(1000 * 60 * MINUTE));
+    }
+
+    /**
+     * @param start - when the session starts
+     * @param minutes - how long it goes
+     * @param firstHalf - RSRP for the first half
+     * @param secondHalf - RSRP for the second half
+     * @param latitude - where it starts (heads east about 100 m a minute) or NaN for nowhere
+     */
+    private static byte[][] build(long start, int minutes, int firstHalf, int secondHalf, double latitude)
+    {
+        Rollup.Builder builder = new Rollup.Builder(start);
+        int[] readings = new int[SnapshotCodec.SIGNAL_COUNT];
+        Arrays.fill(readings, INVALID);
+        int snapshots = minutes * 6;
+
+        for (int i = 0; i < snapshots; ++i) {
+            readings[Signal.LTE_RSRP.value()] = i < snapshots / 2 ? firstHalf : secondHalf;
+            double longitude = Double.isNaN(latitude) ? Double.NaN : -122 + i * 0.0002;
+            builder.add(start + i * 10000L, readings, latitude, longitude);
+        }
+        return builder.finish();
+    }
+
+    private static Rollup.BucketSource reader(byte[][] tiers, int tier)
+    {
+        return new Rollup.Reader(new ByteArrayInputStream(tiers[tier]), tiers[tier].length);
+    }
+}
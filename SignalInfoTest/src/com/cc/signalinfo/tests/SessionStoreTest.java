@@ -0,0 +1,176 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.Rollup;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionRecorder;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.history.SnapshotCodec;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+import static com.cc.signalinfo.tests.TestHelpers.NOW;
+import static com.cc.signalinfo.tests.TestHelpers.RECORDER_CALLBACK;
+import static com.cc.signalinfo.tests.TestHelpers.add;
+import static com.cc.signalinfo.tests.TestHelpers.record;
+
+/**
+ * Records sessions into a store in the cache dir and reads them back through the catalog.
+ */
+public class SessionStoreTest extends AndroidTestCase
+{
+    private File         dir;
+    private SessionStore store;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File(getContext().getCacheDir(), "sessiontest");
+        FileUtils.deleteDirectory(dir);
+        store = new SessionStore(dir);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testRecordAndRead() throws IOException
+    {
+        record(store, 1000, 600, "first", null);
+        record(store, 2000000, 10, "second", null);
+
+        // a new store only has the catalog to go on
+        SessionStore reopened = new SessionStore(dir);
+        List<SessionInfo> sessions = reopened.getSessions();
+        assertEquals(2, sessions.size());
+
+        SessionInfo first = sessions.get(0);
+        assertEquals("first", first.getTags());
+        assertFalse(first.isRecording());
+        assertEquals(1000, first.getStartTime());
+        assertEquals(1000 + 599 * 1000, first.getEndTime());
+        assertEquals(3, first.getBlockCount());
+        assertEquals(600, first.getSummary().getSnapshotCount());
+        assertEquals(-140, first.getSummary().getMin(Signal.LTE_RSRP));
+        assertEquals(-40, first.getSummary().getMax(Signal.LTE_RSRP));
+        assertEquals(INVALID, first.getSummary().getMin(Signal.CDMA_RSSI));
+        assertTrue(first.hasRollups());
+        assertEquals(10, countBuckets(reopened, first, 0));
+
+        SessionInfo second = sessions.get(1);
+        // the first one's rollups sit between them
+        assertTrue(first.getOffset() + first.getLength() < second.getOffset());
+        assertEquals(10, readBack(reopened, second, 2000000));
+        assertEquals(600, readBack(reopened, first, 1000));
+    }
+
+    public void testTagsAndDelete() throws IOException
+    {
+        record(store, 0, 5, null, null);
+        long id = store.getSessions().get(0).getId();
+        store.setTags(id, "  carrier A, firmware 2  ");
+        assertEquals("carrier A, firmware 2", new SessionStore(dir).getSession(id).getTags());
+
+        assertTrue(store.delete(id));
+        assertFalse(store.delete(id));
+        assertTrue(new SessionStore(dir).getSessions().isEmpty());
+    }
+
+    public void testUnfinishedSessionRecovered() throws IOException
+    {
+        SessionRecorder recorder = new SessionRecorder(store, NOW, RECORDER_CALLBACK);
+        recorder.start(0, "killed");
+        add(recorder, 0, SnapshotCodec.MAX_SNAPSHOTS + 10, null);
+        // the app dies here, with half a block that never got written all the way
+        SessionInfo written = store.getSessions().get(0);
+        RandomAccessFile segment = new RandomAccessFile(store.getSegmentFile(written.getSegment()), "rw");
+        segment.seek(segment.length());
+        segment.write(new byte[]{0, 0, 1, 0, 1, 2, 3});
+        segment.close();
+
+        SessionStore reopened = new SessionStore(dir);
+        SessionInfo recovered = reopened.getSessions().get(0);
+        assertFalse(recovered.isRecording());
+        assertFalse(recovered.hasRollups());
+        // gets built from the snapshots instead
+        assertEquals(5, countBuckets(reopened, recovered, 0));
+        assertEquals(SnapshotCodec.MAX_SNAPSHOTS, readBack(reopened, recovered, 0));
+        // the catalog was never saved after the block, it comes back from the segment
+        assertEquals(SnapshotCodec.MAX_SNAPSHOTS, recovered.getSummary().getSnapshotCount());
+        assertEquals(recovered.getLength(), reopened.getSegmentFile(recovered.getSegment()).length());
+    }
+
+    private static int countBuckets(SessionStore store, SessionInfo session, int tier) throws IOException
+    {
+        Rollup.BucketSource buckets = store.openRollup(session, tier);
+        Rollup.Bucket bucket = new Rollup.Bucket();
+        int count = 0;
+
+        try {
+            while (buckets.next(bucket)) {
+                ++count;
+            }
+        }
+        finally {
+            buckets.close();
+        }
+        return count;
+    }
+
+    private static int readBack(SessionStore store, SessionInfo session, long start) throws IOException
+    {
+        SessionStore.Reader reader = store.open(session);
+        int count = 0;
+
+        try {
+            while (reader.next()) {
+                SnapshotCodec.Decoder snapshot = reader.getDecoder();
+                assertEquals(start + count * 1000L, snapshot.getTime());
+                assertEquals(-140 + count % 101, snapshot.getReadings()[Signal.LTE_RSRP.value()]);
+                ++count;
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionRecorder;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.upload.ChunkClient;
+import com.cc.signalinfo.upload.SessionUploader;
+import com.cc.signalinfo.upload.UploadLog;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.cc.signalinfo.tests.TestHelpers.NOW;
+import static com.cc.signalinfo.tests.TestHelpers.RECORDER_CALLBACK;
+import static com.cc.signalinfo.tests.TestHelpers.add;
+import static com.cc.signalinfo.tests.TestHelpers.record;
+
+/**
+ * Uploads recorded sessions to a stand in collector on localhost and checks
+ * it ends up with all of them, even when it turns some chunks away.
+ */
+public class SessionUploaderTest extends AndroidTestCase
+{
+    // about 5 chunks worth with readings jumping all over
+    private static final int SNAPSHOTS = 20000;
+
+    private final SessionUploader.UploadCallback uploadCallback = new SessionUploader.UploadCallback()
+    {
+        @Override
+        public void onUploaded(SessionInfo session, long uploaded)
+        {
+        }
+
+        @Override
+        public void onUploadError(IOException e, long retryMs)
+        {
+        }
+    };
+
+    private File                     dir;
+    private SessionStore             store;
+    private StandInCollector         collector;
+    private ScheduledExecutorService executor;
+    private volatile boolean         allowed = true;
+
+    private final SessionUploader.Conditions conditions = new SessionUploader.Conditions()
+    {
+        @Override
+        public boolean canUpload()
+        {
+            return allowed;
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File(getContext().getCacheDir(), "uploadtest");
+        FileUtils.deleteDirectory(dir);
+        store = new SessionStore(new File(dir, "sessions"));
+        collector = new StandInCollector();
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        collector.close();
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    public void testUploadsEverything() throws IOException
+    {
+        record(store, 1000, SNAPSHOTS, "tags 1", new Random(1));
+        record(store, 50000000, 500, "tags 2", new Random(2));
+        SessionUploader uploader = newUploader("uploads.idx");
+
+        assertTrue(uploader.upload());
+        assertEquals(SNAPSHOTS + 500, collector.countSnapshots());
+        assertTrue("Should have taken a few chunks", collector.getChunkCount() > 2);
+        assertEquals("phone-1", collector.getLastDevice());
+
+        UploadLog log = new UploadLog(new File(dir, "uploads.idx"));
+
+        for (SessionInfo session : store.getSessions()) {
+            assertEquals(session.getLength(), log.getUploaded(session.getId()));
+        }
+        // nothing left, so nothing gets sent
+        int requests = collector.getHeadCount() + collector.getPutCount();
+        assertTrue(uploader.upload());
+        assertEquals(requests, collector.getHeadCount() + collector.getPutCount());
+    }
+
+    public void testResumesWhereItLeftOff() throws IOException
+    {
+        record(store, 1000, SNAPSHOTS, "tags 1", new Random(1));
+        SessionInfo session = store.getSessions().get(0);
+        collector.setAcceptPuts(2);
+
+        try {
+            newUploader("uploads.idx").upload();
+            fail("Collector turned the third chunk away");
+        }
+        catch (IOException e) {
+            // expected
+        }
+        long uploaded = new UploadLog(new File(dir, "uploads.idx")).getUploaded(session.getId());
+        assertTrue(uploaded > 0 && uploaded < session.getLength());
+        assertEquals(1, collector.getRejectedCount());
+
+        // like the app got restarted
+        collector.setAcceptPuts(Integer.MAX_VALUE);
+        assertTrue(newUploader("uploads.idx").upload());
+        assertEquals(SNAPSHOTS, collector.countSnapshots());
+        assertEquals("Chunks got sent more than once", collector.getChunkCount(), collector.getPutCount());
+    }
+
+    public void testSkipsChunksTheCollectorHas() throws IOException
+    {
+        record(store, 1000, SNAPSHOTS, "tags 1", new Random(1));
+        assertTrue(newUploader("uploads.idx").upload());
+        int puts = collector.getPutCount();
+
+        // lost the log, everything gets checked but nothing sent again
+        assertTrue(newUploader("other.idx").upload());
+        assertEquals(puts, collector.getPutCount());
+        assertEquals(store.getSessions().get(0).getLength(),
+            new UploadLog(new File(dir, "other.idx")).getUploaded(store.getSessions().get(0).getId()));
+    }
+
+    public void testWaitsForConditions() throws IOException
+    {
+        record(store, 1000, 500, "tags 1", new Random(1));
+        allowed = false;
+        assertFalse(newUploader("uploads.idx").upload());
+        assertEquals(0, collector.getHeadCount() + collector.getPutCount());
+    }
+
+    public void testRecordingSessionOnlySendsFullChunks() throws IOException
+    {
+        SessionRecorder recorder = new SessionRecorder(store, NOW, RECORDER_CALLBACK);
+        recorder.start(1000, "going");
+        add(recorder, 1000, SNAPSHOTS, new Random(3));
+        SessionUploader uploader = newUploader("uploads.idx");
+        UploadLog log = new UploadLog(new File(dir, "uploads.idx"));
+
+        assertTrue(uploader.upload());
+        SessionInfo session = store.getSessions().get(0);
+        long uploaded = log.getUploaded(session.getId());
+        assertTrue(uploaded > 0 && uploaded < session.getLength());
+
+        recorder.stop(1000 + SNAPSHOTS * 1000L);
+        assertTrue(uploader.upload());
+        session = store.getSessions().get(0);
+        assertEquals(session.getLength(), new UploadLog(new File(dir, "uploads.idx")).getUploaded(session.getId()));
+        assertEquals(session.getSummary().getSnapshotCount(), collector.countSnapshots());
+    }
+
+    public void testBackoff()
+    {
+        assertEquals(0, SessionUploader.getBackoff(0));
+        assertEquals(SessionUploader.BASE_BACKOFF_MS, SessionUploader.getBackoff(1));
+        assertEquals(SessionUploader.BASE_BACKOFF_MS * 4, SessionUploader.getBackoff(3));
+        assertEquals(SessionUploader.MAX_BACKOFF_MS, SessionUploader.getBackoff(30));
+        assertEquals(SessionUploader.MAX_BACKOFF_MS, SessionUploader.getBackoff(Integer.MAX_VALUE));
+    }
+
+    private SessionUploader newUploader(String logName) throws IOException
+    {
+        SessionUploader uploader = new SessionUploader(store, new UploadLog(new File(dir, logName)),
+            executor, conditions, uploadCallback);
+        uploader.setClient(new ChunkClient(collector.getEndpoint(), "phone-1", "Some Carrier"));
+        return uploader;
+    }
+}
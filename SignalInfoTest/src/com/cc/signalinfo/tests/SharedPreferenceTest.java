@@ -32,6 +32,7 @@ import android.content.Context;
 import android.test.ActivityInstrumentationTestCase2;
 import com.cc.signalinfo.activities.MainActivity;
 import com.cc.signalinfo.util.SettingsHelpers;
+import com.cc.signalinfo.util.SettingsStore;
 
 import java.util.Collection;
 import java.util.HashSet;
@@ -129,5 +130,32 @@ public class SharedPreferenceTest extends ActivityInstrumentationTestCase2<MainA
         assertEquals(errorMsg(expected.size(), actual.size()), expected.size(), actual.size());
     }
 
+    /**
+     * Values should be readable right away and end up on disk once flushed.
+     */
+    public void testWriteBehind() throws Exception
+    {
+        SettingsStore settings = SettingsHelpers.getSettings(activity);
+        final String[] changedKey = new String[1];
+        SettingsStore.OnSettingChangedListener listener = new SettingsStore.OnSettingChangedListener()
+        {
+            @Override
+            public void onSettingChanged(SettingsStore store, String key)
+            {
+                changedKey[0] = key;
+            }
+        };
+        settings.addListener(listener);
+        settings.putLong("testLong", 42L);
+        settings.removeListener(listener);
+
+        assertEquals(errorMsg("testLong", changedKey[0]), "testLong", changedKey[0]);
+        assertEquals(42L, settings.getLong("testLong", -1L));
+
+        settings.flush();
+        long saved = SettingsHelpers.getSharedPreferences(activity).getLong("testLong", -1L);
+        assertEquals(errorMsg(42L, saved), 42L, saved);
+    }
+
 
 }
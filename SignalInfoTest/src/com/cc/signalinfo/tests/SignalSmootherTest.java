@@ -0,0 +1,153 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.SignalSmoother;
+
+/**
+ * Runs the smoothing filters over LTE RSRP readings recorded sitting still
+ * and then walking into a building, and makes sure they cut down on how often
+ * the shown value changes without hiding the real drop.
+ */
+public class SignalSmootherTest extends AndroidTestCase
+{
+    // one reading per callback, RSRP in dBm. Parked for the first 40, then the drop indoors.
+    private static final int[] RSRP_TRACE = {
+        -95, -97, -94, -96, -95, -98, -94, -95, -97, -96,
+        -94, -95, -96, -99, -95, -94, -96, -95, -97, -94,
+        -96, -95, -93, -96, -97, -95, -94, -96, -95, -98,
+        -95, -96, -94, -95, -97, -96, -95, -94, -96, -95,
+        -108, -111, -109, -112, -110, -109, -111, -110, -112, -109,
+        -110, -111, -109, -110, -112, -110, -109, -111, -110, -110
+    };
+    private static final int   STEP_AT     = 40;
+    private static final int   BEFORE_STEP = -95;
+    private static final int   AFTER_STEP  = -110;
+
+    public void testNoneIsRaw()
+    {
+        SignalSmoother smoother = new SignalSmoother(SignalSmoother.MODE_NONE);
+
+        for (int value : RSRP_TRACE) {
+            assertEquals(value, smoother.smooth(Signal.LTE_RSRP, value));
+        }
+    }
+
+    public void testEmaCutsChanges()
+    {
+        checkFilter(SignalSmoother.MODE_EMA, 12);
+    }
+
+    public void testKalmanCutsChanges()
+    {
+        checkFilter(SignalSmoother.MODE_KALMAN, 12);
+    }
+
+    public void testPerSignalModes()
+    {
+        int[] modes = SignalSmoother.parseModes("ema", "LTE_RSRP kalman\n cdma_ecio none, bogus ema,LTE_SNR");
+
+        assertEquals(SignalSmoother.MODE_KALMAN, modes[Signal.LTE_RSRP.value()]);
+        assertEquals(SignalSmoother.MODE_NONE, modes[Signal.CDMA_ECIO.value()]);
+        assertEquals(SignalSmoother.MODE_EMA, modes[Signal.LTE_SNR.value()]);
+        assertEquals(SignalSmoother.MODE_EMA, modes[Signal.GSM_SIG_STRENGTH.value()]);
+
+        SignalSmoother smoother = new SignalSmoother(SignalSmoother.MODE_NONE);
+        assertFalse(smoother.isOn());
+        smoother.setModes(SignalSmoother.parseModes("none", "LTE_RSRP ema"));
+        assertTrue(smoother.isOn());
+        assertEquals(SignalSmoother.MODE_EMA, smoother.getMode(Signal.LTE_RSRP));
+        assertEquals(SignalSmoother.MODE_NONE, smoother.getMode(Signal.LTE_RSRQ));
+    }
+
+    public void testInvalidStartsOver()
+    {
+        SignalSmoother smoother = new SignalSmoother(SignalSmoother.MODE_KALMAN);
+        smoother.smooth(Signal.LTE_RSRP, -80);
+        smoother.smooth(Signal.LTE_RSRP, -80);
+
+        assertEquals(AppSetup.INVALID, smoother.smooth(Signal.LTE_RSRP, AppSetup.INVALID));
+        // back on a different cell, shouldn't be dragged toward -80
+        assertEquals(-115, smoother.smooth(Signal.LTE_RSRP, -115));
+    }
+
+    public void testWholeSnapshot()
+    {
+        SignalSmoother smoother = new SignalSmoother(SignalSmoother.MODE_EMA);
+        smoother.setMode(Signal.LTE_SNR, SignalSmoother.MODE_NONE);
+        int[] readings = new int[Signal.values().length];
+        java.util.Arrays.fill(readings, AppSetup.INVALID);
+
+        readings[Signal.LTE_RSRP.value()] = -100;
+        readings[Signal.LTE_SNR.value()] = 10;
+        smoother.smooth(readings, readings);
+        readings[Signal.LTE_RSRP.value()] = -90;
+        readings[Signal.LTE_SNR.value()] = 20;
+        smoother.smooth(readings, readings);
+
+        assertEquals(-97, readings[Signal.LTE_RSRP.value()]);
+        assertEquals(20, readings[Signal.LTE_SNR.value()]);
+        assertEquals(AppSetup.INVALID, readings[Signal.LTE_CQI.value()]);
+    }
+
+    /**
+     * @param mode - filter to check
+     * @param settleSamples - most readings it can take to get within 2dB of the new level after the drop
+     */
+    private static void checkFilter(int mode, int settleSamples)
+    {
+        SignalSmoother smoother = new SignalSmoother(mode);
+        int rawChanges = 0;
+        int smoothChanges = 0;
+        int lastSmooth = 0;
+        int settledAt = -1;
+
+        for (int i = 0; i < RSRP_TRACE.length; ++i) {
+            int smooth = smoother.smooth(Signal.LTE_RSRP, RSRP_TRACE[i]);
+
+            if (i > 0) {
+                rawChanges += RSRP_TRACE[i] != RSRP_TRACE[i - 1] ? 1 : 0;
+                smoothChanges += smooth != lastSmooth ? 1 : 0;
+            }
+            if (i >= 10 && i < STEP_AT) {
+                assertTrue("Parked reading strayed: " + smooth, Math.abs(smooth - BEFORE_STEP) <= 2);
+            }
+            if (i >= STEP_AT && settledAt == -1 && Math.abs(smooth - AFTER_STEP) <= 2) {
+                settledAt = i - STEP_AT;
+            }
+            lastSmooth = smooth;
+        }
+        assertTrue(String.format("Should change less: raw %d, smoothed %d", rawChanges, smoothChanges),
+            smoothChanges * 2 <= rawChanges);
+        assertTrue("Never caught up with the drop", settledAt != -1);
+        assertTrue("Took too long to follow the drop: " + settledAt, settledAt <= settleSamples);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.SignalSummary;
+
+import java.util.Arrays;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Checks which network and reading get picked and that only real changes count.
+ */
+public class SignalSummaryTest extends AndroidTestCase
+{
+    private SignalSummary summary;
+    private int[]         readings;
+    private int[]         qualities;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        summary = new SignalSummary();
+        readings = new int[32];
+        qualities = new int[NetworkType.values().length];
+        Arrays.fill(readings, INVALID);
+        Arrays.fill(qualities, INVALID);
+    }
+
+    public void testNoSignal()
+    {
+        assertFalse("Nothing to nothing is not a change", summary.update(readings, qualities));
+        assertFalse(summary.hasSignal());
+        assertNull(summary.getText());
+    }
+
+    public void testLteWinsOverGsm()
+    {
+        readings[Signal.GSM_SIG_STRENGTH.value()] = 20;
+        readings[Signal.LTE_RSRP.value()] = -95;
+        qualities[NetworkType.LTE.ordinal()] = 63;
+
+        assertTrue(summary.update(readings, qualities));
+        assertEquals(NetworkType.LTE, summary.getType());
+        assertEquals("LTE -95 dBm RSRP (63%)", summary.getText());
+    }
+
+    public void testGsmAsuToDbm()
+    {
+        readings[Signal.GSM_SIG_STRENGTH.value()] = 20;
+        assertTrue(summary.update(readings, qualities));
+        assertEquals(-73, summary.getValue());
+        assertEquals("GSM -73 dBm RSSI", summary.getText());
+
+        // 99 is "unknown"
+        readings[Signal.GSM_SIG_STRENGTH.value()] = 99;
+        assertTrue(summary.update(readings, qualities));
+        assertFalse(summary.hasSignal());
+    }
+
+    public void testOnlyChangesCount()
+    {
+        readings[Signal.LTE_RSRP.value()] = -95;
+        qualities[NetworkType.LTE.ordinal()] = 63;
+        assertTrue(summary.update(readings, qualities));
+
+        // something that isn't shown changed
+        readings[Signal.LTE_RSRQ.value()] = -10;
+        qualities[NetworkType.GSM.ordinal()] = 40;
+        assertFalse(summary.update(readings, qualities));
+
+        qualities[NetworkType.LTE.ordinal()] = 64;
+        assertTrue(summary.update(readings, qualities));
+        assertEquals("64%", summary.getPercentText());
+    }
+
+    public void testWifiOnlyWithoutCell()
+    {
+        readings[Signal.WIFI_RSSI.value()] = -55;
+        assertTrue(summary.update(readings, qualities));
+        assertEquals("Wi-Fi", summary.getNetwork());
+
+        readings[Signal.CDMA_RSSI.value()] = -80;
+        assertTrue(summary.update(readings, qualities));
+        assertEquals("CDMA", summary.getNetwork());
+        assertEquals("-80 dBm RSSI", summary.getValueText());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import android.widget.TextView;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.util.SignalTextRenderer;
+import com.cc.signalinfo.util.StringUtils;
+
+import static com.cc.signalinfo.tests.TestHelpers.errorMsg;
+
+/**
+ * Makes sure the renderer writes the same text String.format used to
+ * and leaves views alone when nothing changed.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-03
+ */
+public class SignalTextRendererTest extends AndroidTestCase
+{
+    public void testRendersReading() throws Exception
+    {
+        SignalTextRenderer renderer = new SignalTextRenderer(2);
+        TextView view = new TextView(getContext());
+
+        assertTrue(renderer.render(view, 0, -85, "dBm", 63));
+        assertEquals(errorMsg("-85 dBm (63%)", view.getText()), "-85 dBm (63%)", view.getText().toString());
+
+        assertTrue(renderer.render(view, 0, -102, "dBm", AppSetup.INVALID));
+        assertEquals(errorMsg("-102 dBm", view.getText()), "-102 dBm", view.getText().toString());
+    }
+
+    public void testSkipsUnchanged() throws Exception
+    {
+        SignalTextRenderer renderer = new SignalTextRenderer(2);
+        TextView view = new TextView(getContext());
+        TextView other = new TextView(getContext());
+
+        assertTrue(renderer.render(view, 0, 12, "dB", 100));
+        assertFalse("Same reading should not redraw", renderer.render(view, 0, 12, "dB", 100));
+        // different index has its own state
+        assertTrue(renderer.render(other, 1, 12, "dB", 100));
+        // unit change redraws the view
+        assertTrue(renderer.render(view, 0, 12, "dBm", 100));
+
+        renderer.invalidate();
+        assertTrue(renderer.render(view, 0, 12, "dBm", 100));
+    }
+
+    public void testParseInt() throws Exception
+    {
+        assertEquals(-85, StringUtils.parseInt("-85", AppSetup.INVALID));
+        assertEquals(31, StringUtils.parseInt("31", AppSetup.INVALID));
+        assertEquals(AppSetup.INVALID, StringUtils.parseInt(AppSetup.INVALID_TXT, AppSetup.INVALID));
+        assertEquals(AppSetup.INVALID, StringUtils.parseInt("-", AppSetup.INVALID));
+        assertEquals(AppSetup.INVALID, StringUtils.parseInt(null, AppSetup.INVALID));
+        assertEquals(AppSetup.INVALID, StringUtils.parseInt("99999999999", AppSetup.INVALID));
+    }
+}
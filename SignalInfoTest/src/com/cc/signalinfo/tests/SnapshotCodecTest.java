@@ -0,0 +1,167 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SnapshotCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+
+/**
+ * Round trips snapshots through a block and checks they come back the same.
+ */
+public class SnapshotCodecTest extends AndroidTestCase
+{
+    private final int[] readings  = new int[SnapshotCodec.SIGNAL_COUNT];
+    private final int[] qualities = new int[SnapshotCodec.NETWORK_COUNT];
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        Arrays.fill(readings, INVALID);
+        Arrays.fill(qualities, INVALID);
+    }
+
+    public void testRoundTrip() throws IOException
+    {
+        SnapshotCodec.Encoder encoder = new SnapshotCodec.Encoder();
+        readings[Signal.LTE_RSRP.value()] = -95;
+        readings[Signal.LTE_RSRQ.value()] = -10;
+        qualities[NetworkType.LTE.ordinal()] = 63;
+        encoder.add(1000, readings, qualities, 45.123456, -122.654321);
+
+        // LTE goes away, GSM shows up, location is lost
+        readings[Signal.LTE_RSRP.value()] = INVALID;
+        readings[Signal.LTE_RSRQ.value()] = INVALID;
+        readings[Signal.GSM_SIG_STRENGTH.value()] = 0;
+        qualities[NetworkType.LTE.ordinal()] = INVALID;
+        encoder.add(2000, readings, qualities, Double.NaN, Double.NaN);
+
+        // clock went backwards
+        readings[Signal.GSM_SIG_STRENGTH.value()] = 31;
+        encoder.add(1500, readings, qualities, 45.123466, -122.654321);
+
+        SnapshotCodec.Decoder decoder = decode(encoder.toByteArray());
+        assertEquals(3, decoder.getCount());
+        assertEquals(1000, decoder.getFirstTime());
+        assertEquals(1500, decoder.getLastTime());
+
+        assertTrue(decoder.next());
+        assertEquals(1000, decoder.getTime());
+        assertEquals(-95, decoder.getReadings()[Signal.LTE_RSRP.value()]);
+        assertEquals(-10, decoder.getReadings()[Signal.LTE_RSRQ.value()]);
+        assertEquals(INVALID, decoder.getReadings()[Signal.GSM_SIG_STRENGTH.value()]);
+        assertEquals(63, decoder.getQualities()[NetworkType.LTE.ordinal()]);
+        assertEquals(45.123456, decoder.getLatitude(), 1e-7);
+        assertEquals(-122.654321, decoder.getLongitude(), 1e-7);
+
+        assertTrue(decoder.next());
+        assertEquals(2000, decoder.getTime());
+        assertEquals(INVALID, decoder.getReadings()[Signal.LTE_RSRP.value()]);
+        assertEquals(0, decoder.getReadings()[Signal.GSM_SIG_STRENGTH.value()]);
+        assertEquals(INVALID, decoder.getQualities()[NetworkType.LTE.ordinal()]);
+        assertFalse(decoder.hasLocation());
+        assertTrue(Double.isNaN(decoder.getLatitude()));
+
+        assertTrue(decoder.next());
+        assertEquals(1500, decoder.getTime());
+        assertEquals(31, decoder.getReadings()[Signal.GSM_SIG_STRENGTH.value()]);
+        assertEquals(45.123466, decoder.getLatitude(), 1e-7);
+
+        assertFalse(decoder.next());
+    }
+
+    public void testRandomRoundTrip() throws IOException
+    {
+        Random random = new Random(7);
+        SnapshotCodec.Encoder encoder = new SnapshotCodec.Encoder();
+        int[][] expected = new int[SnapshotCodec.MAX_SNAPSHOTS][];
+        int count = 0;
+
+        while (!encoder.isFull()) {
+            for (int i = 0; i < readings.length; ++i) {
+                if (random.nextInt(4) == 0) {
+                    readings[i] = random.nextInt(8) == 0 ? INVALID : random.nextInt() % 200;
+                }
+            }
+            encoder.add(count * 1000L, readings, qualities, Double.NaN, Double.NaN);
+            expected[count++] = readings.clone();
+        }
+        SnapshotCodec.Decoder decoder = decode(encoder.toByteArray());
+
+        for (int n = 0; n < count; ++n) {
+            assertTrue(decoder.next());
+            assertTrue("Snapshot " + n, Arrays.equals(expected[n], decoder.getReadings()));
+        }
+        assertFalse(decoder.next());
+    }
+
+    public void testUnchangedSnapshotIsSmall()
+    {
+        SnapshotCodec.Encoder encoder = new SnapshotCodec.Encoder();
+        readings[Signal.LTE_RSRP.value()] = -95;
+        encoder.add(0, readings, qualities, 45, -122);
+        int first = encoder.getFramedSize();
+        encoder.add(1000, readings, qualities, 45, -122);
+
+        // flags, time and the two empty masks
+        assertTrue("Too big: " + (encoder.getFramedSize() - first), encoder.getFramedSize() - first <= 5);
+    }
+
+    public void testGarbageBlock()
+    {
+        SnapshotCodec.Decoder decoder = new SnapshotCodec.Decoder();
+
+        try {
+            decoder.setBlock(new byte[]{42, 0, 0}, 0, 3);
+            fail("Should not decode garbage");
+        }
+        catch (IOException expected) {
+            // good
+        }
+    }
+
+    private static SnapshotCodec.Decoder decode(byte[] framed) throws IOException
+    {
+        SnapshotCodec.Decoder decoder = new SnapshotCodec.Decoder();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(framed));
+        assertTrue(decoder.readFrom(in));
+        assertFalse(decoder.readFrom(in));
+        return decoder;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import com.cc.signalinfo.history.SnapshotCodec;
+import com.cc.signalinfo.upload.ChunkClient;
+import com.cc.signalinfo.upload.ChunkReader;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Just enough of an HTTP server on localhost to stand in for the collector
+ * (HEAD and PUT on /collector/chunks/{sha1}, see ChunkClient). Chunks it gets
+ * are checked against their SHA-1 and kept in memory. Can be told to start
+ * turning PUTs away to see what the uploader does about it.
+ */
+public class StandInCollector implements Closeable
+{
+    private static final String PREFIX = "/collector/chunks/";
+
+    private final ServerSocket        server;
+    private final ExecutorService     threads    = Executors.newCachedThreadPool();
+    private final Map<String, byte[]> chunks     = new ConcurrentHashMap<>();
+    private final AtomicInteger       heads      = new AtomicInteger();
+    private final AtomicInteger       puts       = new AtomicInteger();
+    private final AtomicInteger       rejected   = new AtomicInteger();
+    // the client keeps connections open, so they have to be closed from here
+    private final Set<Socket>         sockets    = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private volatile int    acceptPuts = Integer.MAX_VALUE;
+    private volatile String lastDevice = null;
+
+    public StandInCollector() throws IOException
+    {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        threads.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                accept();
+            }
+        });
+    }
+
+    public String getEndpoint()
+    {
+        return "http://127.0.0.1:" + server.getLocalPort() + "/collector";
+    }
+
+    /**
+     * @param count - how many more PUTs to take before answering 503 to the rest
+     */
+    public void setAcceptPuts(int count)
+    {
+        acceptPuts = count == Integer.MAX_VALUE ? count : puts.get() + count;
+    }
+
+    public int getHeadCount()
+    {
+        return heads.get();
+    }
+
+    /**
+     * @return how many chunks were taken (not counting turned away ones)
+     */
+    public int getPutCount()
+    {
+        return puts.get();
+    }
+
+    public int getRejectedCount()
+    {
+        return rejected.get();
+    }
+
+    public int getChunkCount()
+    {
+        return chunks.size();
+    }
+
+    public String getLastDevice()
+    {
+        return lastDevice;
+    }
+
+    /**
+     * @return how many snapshots are in all the chunks put together
+     * @throws IOException - if a chunk isn't blocks
+     */
+    public int countSnapshots() throws IOException
+    {
+        SnapshotCodec.Decoder decoder = new SnapshotCodec.Decoder();
+        int count = 0;
+
+        for (byte[] chunk : chunks.values()) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(chunk));
+
+            while (decoder.readFrom(in)) {
+                count += decoder.getCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        server.close();
+
+        for (Socket socket : sockets) {
+            IOUtils.closeQuietly(socket);
+        }
+        threads.shutdownNow();
+    }
+
+    private void accept()
+    {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                sockets.add(socket);
+
+                threads.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try {
+                            serve(socket);
+                        }
+                        catch (IOException e) {
+                            // client went away
+                        }
+                        finally {
+                            IOUtils.closeQuietly(socket);
+                            sockets.remove(socket);
+                        }
+                    }
+                });
+            }
+            catch (IOException e) {
+                return; // closed
+            }
+        }
+    }
+
+    /**
+     * Answers requests on the connection until the client closes it.
+     */
+    private void serve(Socket socket) throws IOException
+    {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+
+        for (String request = readLine(in); request != null; request = readLine(in)) {
+            if (request.length() == 0) {
+                continue;
+            }
+            Map<String, String> headers = new HashMap<>();
+
+            for (String line = readLine(in); line != null && line.length() > 0; line = readLine(in)) {
+                int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+            }
+            String length = headers.get("content-length");
+            byte[] body = new byte[length == null ? 0 : Integer.parseInt(length)];
+            IOUtils.readFully(in, body);
+
+            String[] parts = request.split(" ");
+            int code = handle(parts[0], parts[1], headers, body);
+            out.write(("HTTP/1.1 " + code + " Whatever\r\nContent-Length: 0\r\n\r\n").getBytes("US-ASCII"));
+            out.flush();
+        }
+    }
+
+    private int handle(String method, String path, Map<String, String> headers, byte[] body) throws IOException
+    {
+        if (!path.startsWith(PREFIX)) {
+            return 404;
+        }
+        String hash = path.substring(PREFIX.length());
+
+        if ("HEAD".equals(method)) {
+            heads.incrementAndGet();
+            return chunks.containsKey(hash) ? 200 : 404;
+        }
+        if (!"PUT".equals(method)) {
+            return 405;
+        }
+        if (puts.get() >= acceptPuts) {
+            rejected.incrementAndGet();
+            return 503;
+        }
+        byte[] chunk = "gzip".equals(headers.get("content-encoding"))
+            ? IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(body)))
+            : body;
+
+        if (!hash.equals(ChunkReader.hash(chunk, 0, chunk.length, sha1()))
+            || headers.get(ChunkClient.HEADER_SESSION.toLowerCase(Locale.US)) == null
+            || headers.get(ChunkClient.HEADER_OFFSET.toLowerCase(Locale.US)) == null) {
+            return 400;
+        }
+        lastDevice = headers.get(ChunkClient.HEADER_DEVICE.toLowerCase(Locale.US));
+        chunks.put(hash, chunk);
+        puts.incrementAndGet();
+        return 201;
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int c;
+
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return c == -1 && line.size() == 0 ? null : line.toString("US-ASCII");
+    }
+
+    private static MessageDigest sha1()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
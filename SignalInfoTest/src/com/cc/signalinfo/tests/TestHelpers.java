@@ -27,12 +27,55 @@
 
 package com.cc.signalinfo.tests;
 
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionRecorder;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.history.SnapshotCodec;
+import junit.framework.Assert;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+
 /**
  * @author Wes Lanning
  * @version 2013-04-30
  */
 public final class TestHelpers
 {
+    /**
+     * Runs the writes right away so the test doesn't have to wait on anything.
+     */
+    public static final Executor NOW = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    /**
+     * Fails the test if recording does.
+     */
+    public static final SessionRecorder.RecorderCallback RECORDER_CALLBACK = new SessionRecorder.RecorderCallback()
+    {
+        @Override
+        public void onSessionChanged(SessionInfo session)
+        {
+        }
+
+        @Override
+        public void onRecordingError(IOException e)
+        {
+            Assert.fail(e.toString());
+        }
+    };
+
     private TestHelpers(){}
 
     public static String errorMsg(Object expected, Object actual)
@@ -41,4 +84,51 @@ public final class TestHelpers
         actual = actual == null ? "null" : actual;
         return String.format("Result should have returned %s, instead returned %s", expected, actual);
     }
+
+    /**
+     * Records a whole session, a snapshot a second.
+     *
+     * @param store - where it goes
+     * @param start - time of the first snapshot
+     * @param count - how many snapshots
+     * @param tags - the session's tags (or null)
+     * @param random - see add
+     */
+    public static void record(SessionStore store, long start, int count, String tags, Random random)
+    {
+        SessionRecorder recorder = new SessionRecorder(store, NOW, RECORDER_CALLBACK);
+        recorder.start(start, tags);
+        add(recorder, start, count, random);
+        recorder.stop(start + (count - 1) * 1000L);
+    }
+
+    /**
+     * Adds snapshots a second apart, either with RSRP counting up or (given a random)
+     * with a few readings all over the place so they don't compress down to nothing.
+     *
+     * @param recorder - a started recorder
+     * @param start - time of the first snapshot
+     * @param count - how many snapshots
+     * @param random - where the readings come from, null for the steady RSRP
+     */
+    public static void add(SessionRecorder recorder, long start, int count, Random random)
+    {
+        int[] readings = new int[SnapshotCodec.SIGNAL_COUNT];
+        int[] qualities = new int[SnapshotCodec.NETWORK_COUNT];
+        Arrays.fill(readings, INVALID);
+        Arrays.fill(qualities, INVALID);
+        Signal[] signals = {Signal.LTE_RSRP, Signal.LTE_RSRQ, Signal.LTE_SNR, Signal.GSM_SIG_STRENGTH};
+
+        for (int i = 0; i < count; ++i) {
+            if (random == null) {
+                readings[Signal.LTE_RSRP.value()] = -140 + i % 101;
+            }
+            else {
+                for (Signal signal : signals) {
+                    readings[signal.value()] = -140 + random.nextInt(120);
+                }
+            }
+            recorder.add(start + i * 1000L, readings, qualities, Double.NaN, Double.NaN);
+        }
+    }
 }
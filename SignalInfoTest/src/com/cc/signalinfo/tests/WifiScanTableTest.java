@@ -0,0 +1,122 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.tests;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.util.WifiScanTable;
+
+/**
+ * Feeds made up scans into the table and checks what counts as a change.
+ */
+public class WifiScanTableTest extends AndroidTestCase
+{
+    private static final String AP1 = "00:11:22:aa:bb:cc";
+    private static final String AP2 = "00:11:22:aa:bb:cd";
+
+    private WifiScanTable table;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        table = new WifiScanTable();
+    }
+
+    public void testParseBssid()
+    {
+        assertEquals(0x001122aabbccL, WifiScanTable.parseBssid(AP1));
+        assertEquals(0x001122aabbccL, WifiScanTable.parseBssid("00-11-22-AA-BB-CC"));
+        assertEquals(WifiScanTable.NO_BSSID, WifiScanTable.parseBssid(null));
+        assertEquals(WifiScanTable.NO_BSSID, WifiScanTable.parseBssid("00:11:22:aa:bb"));
+        assertEquals(WifiScanTable.NO_BSSID, WifiScanTable.parseBssid("00:11:22:aa:bb:zz"));
+    }
+
+    public void testNewAccessPointIsChange()
+    {
+        scan(AP1, -60);
+        assertEquals(1, table.size());
+        assertFalse("Same scan again should not be a change", scan(AP1, -62));
+
+        table.beginScan();
+        table.put(AP1, "home", -61, 2437);
+        table.put(AP2, "home", -75, 5180);
+        assertTrue("New access point should be a change", table.endScan());
+        assertEquals(2, table.size());
+
+        int index = table.indexOf(WifiScanTable.parseBssid(AP2));
+        assertEquals(5180, table.getFrequency(index));
+        assertEquals("home", table.getSsid(index));
+        assertEquals(WifiScanTable.parseBssid(AP1), table.getBssid(table.getStrongest()));
+    }
+
+    public void testSlowDriftAddsUp()
+    {
+        scan(AP1, -60);
+
+        // a couple of dB at a time never trips it, but it keeps adding up
+        assertFalse(scan(AP1, -63));
+        assertFalse(scan(AP1, -65));
+        assertTrue("Drift past the threshold should be a change", scan(AP1, -66));
+        assertEquals(-66, table.getLevel(0));
+    }
+
+    public void testDroppedAfterMissedScans()
+    {
+        scan(AP1, -60);
+
+        for (int i = 1; i < WifiScanTable.MISSED_SCANS_TO_DROP; ++i) {
+            table.beginScan();
+            assertFalse("Missing from one scan should not drop it", table.endScan());
+            assertEquals(1, table.size());
+        }
+        table.beginScan();
+        assertTrue("Gone too long should be a change", table.endScan());
+        assertEquals(0, table.size());
+        assertEquals(-1, table.getStrongest());
+    }
+
+    public void testGrows()
+    {
+        table.beginScan();
+
+        for (int i = 0; i < 100; ++i) {
+            table.put(String.format("00:00:00:00:%02x:%02x", i / 256, i % 256), "ap" + i, -50 - i, 2412);
+        }
+        assertTrue(table.endScan());
+        assertEquals(100, table.size());
+        assertEquals(-149, table.getLevel(table.indexOf(WifiScanTable.parseBssid("00:00:00:00:00:63"))));
+    }
+
+    private boolean scan(String bssid, int level)
+    {
+        table.beginScan();
+        table.put(bssid, "home", level, 2437);
+        return table.endScan();
+    }
+}
@@ -0,0 +1,94 @@
+package com.cc.signalinfo.tests.commands;
+
+import android.test.AndroidTestCase;
+import com.cc.signalinfo.util.system.commands.FileWalker;
+import com.cc.signalinfo.util.system.commands.JavaCommands;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the file walker based searching and sizing in JavaCommands
+ * against a small tree of junk files in the cache dir.
+ */
+@SuppressWarnings("FeatureEnvy")
+public class JavaCommandsTest extends AndroidTestCase
+{
+    private static final int    DIRS          = 5;
+    private static final int    FILES_PER_DIR = 20;
+    private static final int    FILE_SIZE     = 100;
+    private static final String TEST_NAME     = "segment";
+    private JavaCommands cmds;
+    private File         testDir;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        cmds = new JavaCommands();
+        testDir = new File(getContext().getCacheDir(), "walkertest");
+        FileUtils.deleteDirectory(testDir);
+
+        for (int d = 0; d < DIRS; ++d) {
+            File dir = new File(testDir, "dir" + d + "/nested");
+            assertTrue("Could not create " + dir, dir.mkdirs());
+
+            for (int f = 0; f < FILES_PER_DIR; ++f) {
+                writeFile(new File(dir, TEST_NAME + f + ".log"));
+            }
+            writeFile(new File(dir.getParentFile(), "other" + d + ".txt"));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(testDir);
+        super.tearDown();
+    }
+
+    public void testFindAllFiles()
+    {
+        List<File> found = cmds.findFiles(testDir.getAbsolutePath(), "SEGMENT");
+        assertEquals(DIRS * FILES_PER_DIR, found.size());
+    }
+
+    public void testFindFilesStopsAtLimit()
+    {
+        List<File> found = cmds.findFiles(testDir.getAbsolutePath(), TEST_NAME, 7);
+        assertEquals(7, found.size());
+    }
+
+    public void testFindFilesCallbackCanStop()
+    {
+        final AtomicInteger seen = new AtomicInteger();
+        boolean finished = cmds.findFiles(testDir.getAbsolutePath(), TEST_NAME, FileWalker.NO_LIMIT,
+            new FileWalker.FileCallback()
+            {
+                @Override
+                public boolean onFileFound(File file, long size)
+                {
+                    return seen.incrementAndGet() < 3;
+                }
+            });
+
+        assertFalse("Walk should have stopped early", finished);
+        // other threads may have already had one in flight
+        assertTrue("Saw too many files: " + seen.get(), seen.get() < DIRS * FILES_PER_DIR);
+    }
+
+    public void testDirSize()
+    {
+        long expected = (long) DIRS * (FILES_PER_DIR + 1) * FILE_SIZE;
+        assertEquals(expected, cmds.getDirSizeRecursively(testDir.getAbsolutePath()));
+        assertEquals(-1, cmds.getDirSizeRecursively(new File(testDir, "nope").getAbsolutePath()));
+    }
+
+    private static void writeFile(File file) throws IOException
+    {
+        FileUtils.writeByteArrayToFile(file, new byte[FILE_SIZE]);
+    }
+}
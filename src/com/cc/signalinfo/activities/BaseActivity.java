@@ -14,6 +14,8 @@ import com.actionbarsherlock.view.MenuItem;
 import com.cc.signalinfo.BuildConfig;
 import com.cc.signalinfo.R;
 import com.cc.signalinfo.fragments.SettingsFragment;
+import com.cc.signalinfo.util.DeferredInit;
+import com.cc.signalinfo.util.StartupTrace;
 import com.google.ads.AdRequest;
 import com.google.ads.AdView;
 
@@ -22,13 +24,32 @@ import java.util.Calendar;
 import static com.cc.signalinfo.config.AppSetup.enableStrictMode;
 
 /**
+ * Ads aren't needed to show the signals, so they're queued in deferredInit
+ * and only start once subclasses call onFirstSignalShown()
+ * (or after DeferredInit.MAX_DEFER_MS if that never happens).
+ *
  * @author Wes Lanning
- * @version 2013-09-05
+ * @version 2013-11-05
  */
 public class BaseActivity extends SherlockFragmentActivity
 {
-    private static final String    TAG       = BaseActivity.class.getSimpleName();
-    protected            ActionBar actionBar = null;
+    private static final String       TAG          = BaseActivity.class.getSimpleName();
+    protected            ActionBar    actionBar    = null;
+    protected final      DeferredInit deferredInit = new DeferredInit();
+
+    private final Runnable loadAdTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            AdView ad = (AdView) findViewById(R.id.adView);
+
+            if (ad != null) {
+                ad.loadAd(new AdRequest());
+            }
+            StartupTrace.mark("ad requested");
+        }
+    };
 
     /**
      * Initialize the app.
@@ -41,11 +62,12 @@ public class BaseActivity extends SherlockFragmentActivity
         enableStrictMode();
         actionBar = getSupportActionBar();
         actionBar.setHomeButtonEnabled(true);
+        StartupTrace.mark("action bar ready");
 
         if (!BuildConfig.DEBUG) {
-            AdView ad = (AdView) findViewById(R.id.adView);
-            ad.loadAd(new AdRequest());
+            deferredInit.add(loadAdTask);
         }
+        deferredInit.releaseAfter(DeferredInit.MAX_DEFER_MS);
     }
 
     /**
@@ -57,11 +79,31 @@ public class BaseActivity extends SherlockFragmentActivity
     protected void onCreate(int layout, Bundle savedInstanceState)
     {
         setContentView(layout);
+        StartupTrace.mark("content view set");
         this.onCreateApp(savedInstanceState);
 
         formatFooter();
     }
 
+    @Override
+    protected void onDestroy()
+    {
+        deferredInit.cancel();
+        super.onDestroy();
+    }
+
+    /**
+     * Call once the first signal reading is on the screen. Lets the deferred
+     * startup work (the ad, etc) go.
+     */
+    protected void onFirstSignalShown()
+    {
+        if (!deferredInit.isReleased()) {
+            StartupTrace.mark("first signal shown");
+            deferredInit.release();
+        }
+    }
+
     /**
      * Helper to make setting the text of a TextView slightly
      * less painful. Stupid Java boilerplate.
@@ -100,6 +142,15 @@ public class BaseActivity extends SherlockFragmentActivity
             case R.id.preferences:
                 loadPrefsScreen();
                 return true;
+            case R.id.cells:
+                startActivity(new Intent(this, CellsActivity.class));
+                return true;
+            case R.id.coverage:
+                startActivity(new Intent(this, CoverageActivity.class));
+                return true;
+            case R.id.sessions:
+                startActivity(new Intent(this, SessionsActivity.class));
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -0,0 +1,247 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.activities;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+import com.actionbarsherlock.app.SherlockListActivity;
+import com.actionbarsherlock.view.MenuItem;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.cells.CellId;
+import com.cc.signalinfo.cells.CellTable;
+import com.cc.signalinfo.listeners.SignalEngine;
+import com.cc.signalinfo.listeners.SignalListener;
+import com.cc.signalinfo.util.SignalArrayWrapper;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Lists every cell seen this session, most recently seen first. The list
+ * is just the table's slots in recency order (no sorting, no objects per cell)
+ * and only the rows on screen get bound, so thousands of cells are fine.
+ *
+ * Stays subscribed to the SignalEngine while it's showing, since that's
+ * what keeps the cells getting polled, and refreshes with the signal updates
+ * (no more than once a second).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class CellsActivity extends SherlockListActivity implements SignalListener.UpdateSignal
+{
+    private static final long REFRESH_MS = 1000;
+
+    private SignalEngine signalEngine;
+    private CellTable    cells;
+    private CellAdapter  adapter;
+    private TextView     summary;
+    private int[]        order;
+    private int          count       = 0;
+    private long         lastRefresh = 0;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.cells);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        signalEngine = SignalEngine.getInstance(this);
+        cells = signalEngine.getCells();
+        order = new int[cells.getCapacity()];
+        summary = (TextView) findViewById(R.id.cellsSummary);
+        adapter = new CellAdapter(LayoutInflater.from(this));
+        setListAdapter(adapter);
+    }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        signalEngine.subscribe(this);
+        refresh();
+    }
+
+    @Override
+    protected void onPause()
+    {
+        signalEngine.unsubscribe(this);
+        super.onPause();
+    }
+
+    @Override
+    public void setData(SignalArrayWrapper signalStrength)
+    {
+        if (SystemClock.uptimeMillis() - lastRefresh >= REFRESH_MS) {
+            refresh();
+        }
+    }
+
+    private void refresh()
+    {
+        lastRefresh = SystemClock.uptimeMillis();
+        int evicted;
+
+        // the engine adds cells on its own thread, so grab the list and count together
+        synchronized (cells) {
+            count = cells.getRecent(order);
+            evicted = cells.getEvictedCount();
+        }
+        summary.setText(String.format(getString(R.string.cellsSummary), count, evicted));
+        adapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                Intent intent = new Intent(this, MainActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                startActivity(intent);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Binds the table slots to the rows. Positions index into order.
+     */
+    private final class CellAdapter extends BaseAdapter
+    {
+        private final LayoutInflater inflater;
+        private final StringBuilder  text = new StringBuilder(64);
+
+        CellAdapter(LayoutInflater inflater)
+        {
+            this.inflater = inflater;
+        }
+
+        @Override
+        public int getCount()
+        {
+            return count;
+        }
+
+        @Override
+        public Object getItem(int position)
+        {
+            return cells.getId(order[position]);
+        }
+
+        @Override
+        public long getItemId(int position)
+        {
+            return cells.getId(order[position]);
+        }
+
+        @Override
+        public boolean hasStableIds()
+        {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent)
+        {
+            RowViews row;
+
+            if (convertView == null) {
+                convertView = inflater.inflate(R.layout.cell_row, parent, false);
+                row = new RowViews();
+                row.id = (TextView) convertView.findViewById(R.id.cellId);
+                row.stats = (TextView) convertView.findViewById(R.id.cellStats);
+                convertView.setTag(row);
+            }
+            else {
+                row = (RowViews) convertView.getTag();
+            }
+            int slot = order[position];
+            long id;
+            boolean isServing;
+            int last, mean, min, max, seenCount;
+            long lastSeen;
+
+            // all from the same sighting, the engine could be updating the slot
+            synchronized (cells) {
+                id = cells.getId(slot);
+                isServing = cells.isServing(slot);
+                last = cells.getLast(slot);
+                mean = cells.getMean(slot);
+                min = cells.getMin(slot);
+                max = cells.getMax(slot);
+                seenCount = cells.getCount(slot);
+                lastSeen = cells.getLastSeen(slot);
+            }
+            text.setLength(0);
+            CellId.appendTo(id, text);
+
+            if (isServing) {
+                text.append(' ').append(getString(R.string.cellServing));
+            }
+            row.id.setText(text.toString());
+
+            text.setLength(0);
+            appendDbm(text, last);
+
+            if (mean != INVALID) {
+                text.append("  avg ");
+                appendDbm(text, mean);
+                text.append("  ").append(min).append('/').append(max);
+            }
+            long age = (System.currentTimeMillis() - lastSeen) / 1000;
+            text.append("  seen ").append(seenCount).append("x, ").append(age).append("s ago");
+            row.stats.setText(text.toString());
+
+            return convertView;
+        }
+
+        private void appendDbm(StringBuilder out, int dbm)
+        {
+            if (dbm == INVALID) {
+                out.append(getString(R.string.na));
+            }
+            else {
+                out.append(dbm).append(" dBm");
+            }
+        }
+    }
+
+    private static final class RowViews
+    {
+        TextView id;
+        TextView stats;
+    }
+}
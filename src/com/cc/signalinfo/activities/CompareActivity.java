@@ -0,0 +1,331 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.activities;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.text.format.DateFormat;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+import android.widget.Toast;
+import com.actionbarsherlock.app.SherlockListActivity;
+import com.actionbarsherlock.view.MenuItem;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.Rollup;
+import com.cc.signalinfo.history.SessionComparison;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.listeners.SignalEngine;
+import com.cc.signalinfo.location.CoverageGrid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Shows two recorded sessions side by side: the overall difference for each
+ * reading up top, then a row for each minute (or ten minutes for long
+ * sessions) into the session, or for each map tile if both sessions have
+ * locations. Differences are the second session minus the first.
+ *
+ * The comparison is worked out from the sessions' rollups on a background thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class CompareActivity extends SherlockListActivity
+{
+    public static final  String EXTRA_FIRST  = "com.cc.signalinfo.extra.FIRST_SESSION";
+    public static final  String EXTRA_SECOND = "com.cc.signalinfo.extra.SECOND_SESSION";
+    private static final String TAG          = CompareActivity.class.getSimpleName();
+    private static final String NONE         = "–";
+
+    private CompareAdapter    adapter;
+    private TextView          summary;
+    private SessionComparison comparison;
+    private Signal[]          shown = new Signal[0];
+    private int               tier  = 0;
+
+    /**
+     * @param context - what's starting it
+     * @param first - id of the first session
+     * @param second - id of the session to compare against it
+     * @return intent to start the comparison
+     */
+    public static Intent newIntent(Context context, long first, long second)
+    {
+        return new Intent(context, CompareActivity.class)
+            .putExtra(EXTRA_FIRST, first)
+            .putExtra(EXTRA_SECOND, second);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.compare);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        summary = (TextView) findViewById(R.id.compareSummary);
+        adapter = new CompareAdapter(LayoutInflater.from(this));
+        setListAdapter(adapter);
+
+        new CompareTask(SignalEngine.getInstance(this).getSessions().getStore()).execute(
+            getIntent().getLongExtra(EXTRA_FIRST, -1), getIntent().getLongExtra(EXTRA_SECOND, -1));
+    }
+
+    private void show(SessionInfo first, SessionInfo second, SessionComparison loaded, int loadedTier)
+    {
+        comparison = loaded;
+        tier = loadedTier;
+        List<Signal> signals = new ArrayList<>();
+
+        for (Signal signal : Signal.values()) {
+            for (int row = 0; row < loaded.getRowCount(); ++row) {
+                if (!Float.isNaN(loaded.getMeanA(row, signal)) || !Float.isNaN(loaded.getMeanB(row, signal))) {
+                    signals.add(signal);
+                    break;
+                }
+            }
+        }
+        shown = signals.toArray(new Signal[signals.size()]);
+
+        StringBuilder text = new StringBuilder(256);
+        text.append("A: ");
+        appendSession(text, first);
+        text.append("\nB: ");
+        appendSession(text, second);
+        text.append('\n').append(String.format(getString(R.string.compareBuckets), loaded.getRowCount(),
+            getString(tier == Rollup.TILE_TIER ? R.string.compareByTile : R.string.compareByTime),
+            loaded.getOnlyACount(), loaded.getOnlyBCount()));
+
+        for (Signal signal : shown) {
+            if (loaded.getSharedCount(signal) > 0) {
+                text.append('\n').append(signal.name()).append("  ");
+                appendMeans(text, loaded.getSharedMeanA(signal), loaded.getSharedMeanB(signal));
+            }
+        }
+        summary.setText(text.toString());
+        adapter.notifyDataSetChanged();
+    }
+
+    private void appendSession(StringBuilder text, SessionInfo session)
+    {
+        Date start = new Date(session.getStartTime());
+        text.append(DateFormat.getDateFormat(this).format(start)).append(' ')
+            .append(DateFormat.getTimeFormat(this).format(start));
+
+        if (session.getTags().length() > 0) {
+            text.append("  ").append(session.getTags());
+        }
+    }
+
+    /**
+     * Adds "-100 / -95 (+5)", with a dash for whichever one is missing.
+     */
+    private static void appendMeans(StringBuilder text, float a, float b)
+    {
+        text.append(Float.isNaN(a) ? NONE : String.valueOf(Math.round(a))).append(" / ")
+            .append(Float.isNaN(b) ? NONE : String.valueOf(Math.round(b)));
+
+        if (!Float.isNaN(a) && !Float.isNaN(b)) {
+            int delta = Math.round(b - a);
+            text.append(" (").append(delta > 0 ? "+" : "").append(delta).append(')');
+        }
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                Intent intent = new Intent(this, SessionsActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                startActivity(intent);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Loads both sessions, picks the tier and walks their rollups.
+     */
+    private final class CompareTask extends AsyncTask<Long, Void, SessionComparison>
+    {
+        private final SessionStore store;
+        private       SessionInfo  first;
+        private       SessionInfo  second;
+        private       int          pickedTier;
+
+        CompareTask(SessionStore store)
+        {
+            this.store = store;
+        }
+
+        @Override
+        protected SessionComparison doInBackground(Long... ids)
+        {
+            try {
+                first = store.getSession(ids[0]);
+                second = store.getSession(ids[1]);
+
+                if (first == null || second == null) {
+                    return null;
+                }
+                // only line up by place if both of them know where they were
+                pickedTier = first.getSummary().getLocatedCount() > 0 && second.getSummary().getLocatedCount() > 0
+                    ? Rollup.TILE_TIER
+                    : Rollup.pickTimeTier(Math.max(first.getEndTime() - first.getStartTime(),
+                    second.getEndTime() - second.getStartTime()));
+
+                Rollup.BucketSource a = store.openRollup(first, pickedTier);
+
+                try {
+                    Rollup.BucketSource b = store.openRollup(second, pickedTier);
+
+                    try {
+                        return SessionComparison.compare(a, b);
+                    }
+                    finally {
+                        b.close();
+                    }
+                }
+                finally {
+                    a.close();
+                }
+            }
+            catch (IOException e) {
+                Log.e(TAG, "Could not compare sessions", e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(SessionComparison loaded)
+        {
+            if (loaded == null) {
+                Toast.makeText(CompareActivity.this, R.string.sessionsError, Toast.LENGTH_LONG).show();
+                finish();
+            }
+            else {
+                show(first, second, loaded, pickedTier);
+            }
+        }
+    }
+
+    /**
+     * One row per lined up bucket, in key order.
+     */
+    private final class CompareAdapter extends BaseAdapter
+    {
+        private final LayoutInflater inflater;
+        private final StringBuilder  text = new StringBuilder(128);
+
+        CompareAdapter(LayoutInflater inflater)
+        {
+            this.inflater = inflater;
+        }
+
+        @Override
+        public int getCount()
+        {
+            return comparison == null ? 0 : comparison.getRowCount();
+        }
+
+        @Override
+        public Long getItem(int position)
+        {
+            return comparison.getKey(position);
+        }
+
+        @Override
+        public long getItemId(int position)
+        {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent)
+        {
+            RowViews row;
+
+            if (convertView == null) {
+                convertView = inflater.inflate(R.layout.session_row, parent, false);
+                row = new RowViews();
+                row.title = (TextView) convertView.findViewById(R.id.sessionTitle);
+                row.stats = (TextView) convertView.findViewById(R.id.sessionStats);
+                convertView.setTag(row);
+            }
+            else {
+                row = (RowViews) convertView.getTag();
+            }
+            long key = comparison.getKey(position);
+
+            if (tier == Rollup.TILE_TIER) {
+                row.title.setText(String.format(getString(R.string.compareTile),
+                    CoverageGrid.getRow(key), CoverageGrid.getColumn(key)));
+            }
+            else {
+                row.title.setText(String.format(getString(R.string.compareMinutes),
+                    key * Rollup.TIME_TIERS_MS[tier] / 60000));
+            }
+            text.setLength(0);
+
+            for (Signal signal : shown) {
+                float a = comparison.getMeanA(position, signal);
+                float b = comparison.getMeanB(position, signal);
+
+                if (!Float.isNaN(a) || !Float.isNaN(b)) {
+                    if (text.length() > 0) {
+                        text.append('\n');
+                    }
+                    text.append(signal.name()).append("  ");
+                    appendMeans(text, a, b);
+                }
+            }
+            row.stats.setText(text.toString());
+
+            return convertView;
+        }
+    }
+
+    private static final class RowViews
+    {
+        TextView title;
+        TextView stats;
+    }
+}
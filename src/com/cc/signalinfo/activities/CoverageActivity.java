@@ -0,0 +1,256 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.activities;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.ImageView;
+import android.widget.Spinner;
+import android.widget.TextView;
+import com.actionbarsherlock.app.SherlockActivity;
+import com.actionbarsherlock.view.MenuItem;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.listeners.SignalEngine;
+import com.cc.signalinfo.listeners.SignalListener;
+import com.cc.signalinfo.location.CoverageGrid;
+import com.cc.signalinfo.location.HeatmapRenderer;
+import com.cc.signalinfo.location.TileMath;
+import com.cc.signalinfo.util.SignalArrayWrapper;
+
+import static com.cc.signalinfo.location.TileMath.TILE_SIZE;
+
+/**
+ * Shows the coverage map around wherever the last reading got tagged: a square
+ * of heatmap tiles colored by the picked network's link quality, with a dot on
+ * the last spot. There's no street map under it, it's just the colored squares.
+ *
+ * Tiles come from the SignalEngine's HeatmapRenderer on a background thread.
+ * Stays subscribed while it's showing so readings keep getting tagged, and
+ * redraws with the signal updates (no more than every few seconds, only the
+ * tiles that got new readings actually get drawn again).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class CoverageActivity extends SherlockActivity
+    implements SignalListener.UpdateSignal, AdapterView.OnItemSelectedListener
+{
+    private static final long REFRESH_MS = 5000;
+    private static final int  ZOOM       = 16;
+    // tiles across (and down), odd so the last spot's tile is in the middle
+    private static final int  SPAN       = 3;
+
+    private final double[] bounds      = new double[4];
+    private SignalEngine   signalEngine;
+    private CoverageGrid   grid;
+    private TextView       summary;
+    private ImageView      map;
+    private NetworkType    network     = NetworkType.values()[0];
+    private DrawTask       task        = null;
+    private long           lastRefresh = 0;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.coverage);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        signalEngine = SignalEngine.getInstance(this);
+        grid = signalEngine.getCoverage();
+        summary = (TextView) findViewById(R.id.coverageSummary);
+        map = (ImageView) findViewById(R.id.coverageMap);
+
+        // same order as NetworkType
+        ArrayAdapter<CharSequence> networks = ArrayAdapter.createFromResource(this,
+            R.array.coverageNetworks, android.R.layout.simple_spinner_item);
+        networks.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        Spinner picker = (Spinner) findViewById(R.id.coverageNetwork);
+        picker.setAdapter(networks);
+        picker.setOnItemSelectedListener(this);
+    }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        signalEngine.subscribe(this);
+        refresh();
+    }
+
+    @Override
+    protected void onPause()
+    {
+        signalEngine.unsubscribe(this);
+
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        super.onPause();
+    }
+
+    @Override
+    public void setData(SignalArrayWrapper signalStrength)
+    {
+        if (SystemClock.uptimeMillis() - lastRefresh >= REFRESH_MS) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void onItemSelected(AdapterView<?> parent, View view, int position, long id)
+    {
+        if (network != NetworkType.values()[position]) {
+            network = NetworkType.values()[position];
+            refresh();
+        }
+    }
+
+    @Override
+    public void onNothingSelected(AdapterView<?> parent)
+    {
+    }
+
+    private void refresh()
+    {
+        // one drawing at a time, the next update picks up whatever it missed
+        if (task != null) {
+            return;
+        }
+        lastRefresh = SystemClock.uptimeMillis();
+        int tile;
+        int count;
+
+        // the engine adds to the grid on its own thread, grab the spot and count together
+        synchronized (grid) {
+            tile = grid.getLastTile();
+            count = grid.size();
+
+            if (tile != -1) {
+                grid.getBounds(grid.getTileKey(tile), bounds);
+            }
+        }
+        if (tile == -1) {
+            summary.setText(R.string.coverageEmpty);
+            map.setImageBitmap(null);
+            return;
+        }
+        summary.setText(String.format(getString(R.string.coverageSummary), count));
+        task = new DrawTask((bounds[0] + bounds[2]) / 2, (bounds[1] + bounds[3]) / 2);
+        task.execute(network);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                Intent intent = new Intent(this, MainActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                startActivity(intent);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Puts the tiles around a spot together into one bitmap.
+     */
+    private final class DrawTask extends AsyncTask<NetworkType, Void, Bitmap>
+    {
+        private final double      latitude;
+        private final double      longitude;
+        private       NetworkType type;
+
+        DrawTask(double latitude, double longitude)
+        {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        @Override
+        protected Bitmap doInBackground(NetworkType... types)
+        {
+            type = types[0];
+            HeatmapRenderer renderer = signalEngine.getHeatmap(type);
+            double x = TileMath.longitudeToPixel(longitude, ZOOM);
+            double y = TileMath.latitudeToPixel(latitude, ZOOM);
+            int left = (int) (x / TILE_SIZE) - SPAN / 2;
+            int top = (int) (y / TILE_SIZE) - SPAN / 2;
+            int tiles = 1 << ZOOM;
+
+            Bitmap out = Bitmap.createBitmap(SPAN * TILE_SIZE, SPAN * TILE_SIZE, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(out);
+            canvas.drawColor(Color.DKGRAY);
+
+            for (int row = 0; row < SPAN && !isCancelled(); ++row) {
+                for (int col = 0; col < SPAN; ++col) {
+                    int tileY = top + row;
+
+                    if (tileY < 0 || tileY >= tiles) {
+                        continue;
+                    }
+                    // wraps around at the date line
+                    Bitmap tile = renderer.getTile(ZOOM, (left + col + tiles) % tiles, tileY);
+
+                    if (tile != null) {
+                        canvas.drawBitmap(tile, col * TILE_SIZE, row * TILE_SIZE, null);
+                    }
+                }
+            }
+            Paint dot = new Paint(Paint.ANTI_ALIAS_FLAG);
+            dot.setColor(Color.WHITE);
+            canvas.drawCircle((float) (x - left * TILE_SIZE), (float) (y - top * TILE_SIZE), 6, dot);
+            return out;
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap drawn)
+        {
+            task = null;
+            map.setImageBitmap(drawn);
+
+            // a different network got picked while this one was drawing
+            if (type != network) {
+                refresh();
+            }
+        }
+    }
+}
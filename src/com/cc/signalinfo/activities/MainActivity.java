@@ -25,46 +25,55 @@ http://www.opensource.org/licenses/mit-license.php
 
 package com.cc.signalinfo.activities;
 
+import android.app.AlertDialog;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.content.Loader;
-import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
 import android.util.Pair;
 import android.view.View;
 import android.view.WindowManager;
-import android.widget.TextView;
+import android.widget.EditText;
 import android.widget.Toast;
+import com.actionbarsherlock.view.Menu;
+import com.actionbarsherlock.view.MenuItem;
 import com.cc.signalinfo.R;
 import com.cc.signalinfo.dialogs.WarningDialogFragment;
 import com.cc.signalinfo.enums.NetworkType;
-import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.listeners.FrameCoalescer;
+import com.cc.signalinfo.listeners.RadioLogTap;
+import com.cc.signalinfo.listeners.SignalEngine;
 import com.cc.signalinfo.listeners.SignalListener;
-import com.cc.signalinfo.signals.ISignal;
+import com.cc.signalinfo.services.SignalMonitorService;
 import com.cc.signalinfo.signals.SignalInfo;
+import com.cc.signalinfo.util.PipelineMetrics;
+import com.cc.signalinfo.util.SettingsHelpers;
+import com.cc.signalinfo.util.SettingsStore;
 import com.cc.signalinfo.util.SignalArrayWrapper;
 import com.cc.signalinfo.util.SignalHelpers;
 import com.cc.signalinfo.util.SignalMapWrapper;
-import com.cc.signalinfo.util.StringUtils;
+import com.cc.signalinfo.util.SignalViewBinder;
+import com.cc.signalinfo.util.StartupTrace;
+import com.cc.signalinfo.util.Subscriptions;
+import com.cc.signalinfo.util.TraceRecorder;
 import com.cc.signalinfo.util.system.commands.Commands;
 import com.cc.signalinfo.util.system.commands.RootCommands;
 import com.cc.signalinfo.util.system.terminal.RootTerminal;
+import com.cc.signalinfo.util.system.terminal.ShellTerminal;
 import com.cc.signalinfo.util.system.terminal.TerminalBase;
 import com.commonsware.cwac.loaderex.acl.SharedPreferencesLoader;
+import java.io.File;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.EnumMap;
 import java.util.Map;
 
 import static android.support.v4.app.LoaderManager.LoaderCallbacks;
 import static android.view.View.OnClickListener;
-import static com.cc.signalinfo.config.AppSetup.INVALID_TXT;
+import static com.cc.signalinfo.config.AppSetup.INVALID;
 // ↑ Because the over verbosity on the constants will probably give me brain damage...
 
 /**
@@ -85,15 +94,43 @@ public class MainActivity
     private static final String                TAG               = MainActivity.class.getSimpleName();
     private              boolean               dbOnly            = false;
     private              boolean               enableDebug       = false;
-    private              String[]              filteredSignals   = null;
+    private              SignalMapWrapper      signalMap         = null;
     private              boolean               fudgeSignal       = true;
-    private              SignalListener        listener          = null;
-    private              SharedPreferences     preferences       = null;
-    private              TypedArray            sigInfoIds        = null;
-    private              Map<Signal, TextView> signalTextViewMap = new EnumMap<>(Signal.class);
+    private              SignalEngine          signalEngine      = null;
+    private              FrameCoalescer        uiUpdater         = null;
+    private              RadioLogTap           radioLogTap       = null;
+    private              boolean               readRadioLog      = false;
+    private              SettingsStore         settings          = null;
+    // preference keys, looked up once in onCreate
+    private              String                signalFormatKey   = null;
+    private              String                keepScreenOnKey   = null;
+    private              String                enableDebugKey    = null;
+    private              String                radioLogKey       = null;
+    private              String                traceKey          = null;
+    private              SignalViewBinder      viewBinder        = null;
+    private              String                dBmUnit           = null;
+    private              long                  lastArrival       = 0;
+    private final        int[]                 lastQuality       = new int[NetworkType.values().length];
+    private final        StringBuilder         qualityText       = new StringBuilder(32);
     private              TelephonyManager      tm                = null;
+    private              int                   subscriptionId    = Subscriptions.DEFAULT_ID;
     private Commands commands = null;
 
+    /**
+     * Only lets the SIM being shown through to the screen. Filtered before the
+     * coalescer so the other SIM's updates can't bump this one's.
+     */
+    private final SignalListener.UpdateSignal subscriptionFilter = new SignalListener.UpdateSignal()
+    {
+        @Override
+        public void setData(SignalArrayWrapper signalStrength)
+        {
+            if (signalStrength != null && signalStrength.getSubscriptionId() == subscriptionId) {
+                uiUpdater.setData(signalStrength);
+            }
+        }
+    };
+
     /**
      * Initialize the app.
      *
@@ -103,71 +140,209 @@ public class MainActivity
     public void onCreate(Bundle savedInstanceState)
     {
         onCreate(R.layout.main, savedInstanceState);
-        SignalListener listener = new SignalListener(this);
-        sigInfoIds = getResources().obtainTypedArray(R.array.sigInfoIds);
+        // collapse bursts of signal updates into one redraw
+        uiUpdater = new FrameCoalescer(this, getResources().getInteger(R.integer.minRefreshInterval));
+        TypedArray sigInfoIds = getResources().obtainTypedArray(R.array.sigInfoIds);
+        viewBinder = new SignalViewBinder(findViewById(android.R.id.content), sigInfoIds);
+        Arrays.fill(lastQuality, INVALID);
+        sigInfoIds.recycle();
+        dBmUnit = getString(R.string.dBm);
+        signalFormatKey = getString(R.string.signalFormatKey);
+        keepScreenOnKey = getString(R.string.keepScreenOnKey);
+        enableDebugKey = getString(R.string.enableDebugKey);
+        radioLogKey = getString(R.string.radioLogKey);
+        traceKey = getString(R.string.traceKey);
         tm = (TelephonyManager) getSystemService(Context.TELEPHONY_SERVICE);
-        tm.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
+        // shared with anything else showing signals, it keeps listening through rotations
+        signalEngine = SignalEngine.getInstance(this);
         this.commands = new RootCommands(new RootTerminal(), this);
+        // READ_LOGS is only for system apps since 4.1, so need root to get the radio log there
+        radioLogTap = new RadioLogTap(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+            ? new RootTerminal()
+            : new ShellTerminal(), signalEngine.getRadioInfoCallback());
 
         getSupportLoaderManager().initLoader(0, null, this);
         findViewById(R.id.additionalInfo).setOnClickListener(this);
         setPhoneInfo();
+        StartupTrace.mark("activity created");
     }
 
     /**
-     * Gets the TextViews that map to the signal info data in the code for binding.
+     * Set the signal info the user sees.
      *
-     * @param sigInfoIds - the array containing the IDs to the TextView resources
-     * @param refreshMap - should we recreate the map or reuse it? (in case we some reason added some, somehow)
-     * @return map of the Signal data enumeration types (keys) and corresponding TextViews (values)
+     * @param signalStrength - contains all the signal info
+     * @see android.telephony.SignalStrength for more info.
      */
-    public Map<Signal, TextView> getSignalTextViewMap(TypedArray sigInfoIds, boolean refreshMap)
+    @Override
+    public void setData(SignalArrayWrapper signalStrength)
     {
-        // no reason to do this over and over if it's already filled (we keep the same text stuff)
-        if (signalTextViewMap.isEmpty() || refreshMap) {
-            Signal[] values = Signal.values();
+        // no map yet means the engine's still on it, it gets sent again once it's done
+        if (signalStrength == null || signalStrength.getSignalMap() == null) {
+            return;
+        }
+        signalMap = signalStrength.getSignalMap();
+        lastArrival = signalStrength.getArrivalTime();
+        displayDebugInfo(signalStrength);
+        showSignalInfo(signalMap);
+        displayRadioCellInfo(signalStrength);
+        displayWifiInfo(signalStrength);
+    }
 
-            for (int i = 0; i < sigInfoIds.length(); ++i) {
-                int id = sigInfoIds.getResourceId(i, -1);
+    @Override
+    public void onResume()
+    {
+        super.onResume();
+        if (settings != null) {
+            setPreferences(settings);
 
-                if (id != -1) {
-                    TextView currentView = (TextView) findViewById(id);
-                    signalTextViewMap.put(values[i], currentView);
-                }
+            if (signalMap != null) {
+                showSignalInfo(signalMap);
             }
         }
-        return Collections.unmodifiableMap(signalTextViewMap);
+        signalEngine.subscribe(subscriptionFilter);
+        showSubscription(subscriptionId);
+
+        if (readRadioLog) {
+            radioLogTap.start();
+        }
     }
 
     /**
-     * Set the signal info the user sees.
-     *
-     * @param signalStrength - contains all the signal info
-     * @see android.telephony.SignalStrength for more info.
+     * Only offer to switch SIMs when there's more than one.
      */
     @Override
-    public void setData(SignalArrayWrapper signalStrength)
+    public boolean onPrepareOptionsMenu(Menu menu)
     {
-        if (signalStrength == null) {
-            return;
+        MenuItem switchSim = menu.findItem(R.id.switchSim);
+
+        if (switchSim != null) {
+            switchSim.setVisible(signalEngine.getSubscriptionIds().length > 1);
         }
-        filteredSignals = signalStrength.getFilteredArray();
-        displayDebugInfo(signalStrength);
-        displaySignalInfo(filteredSignals);
+        MenuItem record = menu.findItem(R.id.record);
+
+        if (record != null) {
+            boolean recording = signalEngine.getSessions().isRecording();
+            record.setTitle(recording ? R.string.stopRecording : R.string.startRecording);
+            record.setTitleCondensed(getString(recording
+                ? R.string.stopRecordingCondensed
+                : R.string.startRecordingCondensed));
+        }
+        return super.onPrepareOptionsMenu(menu);
     }
 
     @Override
-    public void onResume()
+    public boolean onOptionsItemSelected(MenuItem item)
     {
-        super.onResume();
-        if (preferences != null) {
-            setPreferences(preferences);
+        if (item.getItemId() == R.id.switchSim) {
+            int[] ids = signalEngine.getSubscriptionIds();
+            int next = 0;
+
+            for (int i = 0; i < ids.length; ++i) {
+                if (ids[i] == subscriptionId) {
+                    next = (i + 1) % ids.length;
+                }
+            }
+            showSubscription(ids[next]);
+            return true;
+        }
+        if (item.getItemId() == R.id.record) {
+            if (signalEngine.getSessions().isRecording()) {
+                setRecording(false, null);
+            }
+            else {
+                askForTags();
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Lets the user tag the session before it starts recording (they can change it later too).
+     */
+    private void askForTags()
+    {
+        final EditText tags = new EditText(this);
+        tags.setHint(R.string.sessionTagsHint);
+
+        new AlertDialog.Builder(this)
+            .setTitle(R.string.sessionTagsTitle)
+            .setView(tags)
+            .setNegativeButton(android.R.string.cancel, null)
+            .setPositiveButton(R.string.startRecording, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    setRecording(true, tags.getText().toString());
+                }
+            })
+            .show();
+    }
+
+    /**
+     * @param record - true to start recording a session, false to stop
+     * @param tags - what to tag a new session with
+     */
+    private void setRecording(boolean record, String tags)
+    {
+        if (record) {
+            signalEngine.getSessions().startRecording(tags);
+        }
+        else {
+            signalEngine.getSessions().stopRecording();
+        }
+        // the service is what keeps it recording with the app closed
+        SignalMonitorService.sync(this);
+        supportInvalidateOptionsMenu();
+    }
+
+    /**
+     * Switches the screen over to a SIM. Falls back to the primary SIM if it's not in anymore.
+     *
+     * @param id - which SIM to show
+     */
+    private void showSubscription(int id)
+    {
+        int[] ids = signalEngine.getSubscriptionIds();
+        int shown = ids[0];
+
+        for (int candidate : ids) {
+            if (candidate == id) {
+                shown = id;
+            }
+        }
+        boolean changed = shown != subscriptionId;
+        subscriptionId = shown;
+        tm = signalEngine.getTelephonyManager(shown);
+
+        // only bother labelling the SIM when there's a choice
+        CharSequence name = Subscriptions.getDisplayName(this, shown);
+        actionBar.setSubtitle(ids.length < 2
+            ? null
+            : name != null ? name : String.format(getString(R.string.simNumber), indexOf(ids, shown) + 1));
+        supportInvalidateOptionsMenu();
+
+        if (changed) {
+            viewBinder.invalidate();
+            Arrays.fill(lastQuality, INVALID);
+            setPhoneInfo();
+            SignalArrayWrapper latest = signalEngine.getLatest(shown);
+
+            if (latest != null) {
+                uiUpdater.setData(latest);
+            }
+        }
+    }
 
-            if (filteredSignals != null) {
-                displaySignalInfo(filteredSignals);
+    private static int indexOf(int[] values, int value)
+    {
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] == value) {
+                return i;
             }
         }
-        tm.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
+        return -1;
     }
 
     /**
@@ -178,7 +353,7 @@ public class MainActivity
     @Override
     public void onClick(View view)
     {
-        if (SignalHelpers.userConsent(getPreferences(Context.MODE_PRIVATE))) {
+        if (SignalHelpers.userConsent(SettingsHelpers.getSettings(this))) {
             try {
               //  throw new SecurityException("fail");
                 startActivity(SignalHelpers.getAdditionalSettings());
@@ -199,7 +374,11 @@ public class MainActivity
     public void onPause()
     {
         super.onPause();
-        tm.listen(listener, PhoneStateListener.LISTEN_NONE);
+        signalEngine.unsubscribe(subscriptionFilter);
+        radioLogTap.stop();
+        uiUpdater.cancel();
+        // don't leave anything sitting in the write batch if we get killed
+        SettingsHelpers.getSettings(this).flush();
     }
 
     /**
@@ -225,8 +404,9 @@ public class MainActivity
     @Override
     public void onLoadFinished(Loader<SharedPreferences> sharedPreferencesLoader, SharedPreferences sharedPreferences)
     {
-        preferences = sharedPreferences;
-        setPreferences(sharedPreferences);
+        settings = SettingsStore.getInstance(sharedPreferences);
+        setPreferences(settings);
+        StartupTrace.mark("preferences loaded");
     }
 
     @Override
@@ -255,16 +435,12 @@ public class MainActivity
      * Private façade that calls to real methods that display
      * the signal info on the screen
      *
-     * @param filteredSignals - the filtered signals ready to display
+     * @param signalMapWrapper - the readings the engine sorted into networks
      */
-    private void displaySignalInfo(String[] filteredSignals)
+    private void showSignalInfo(SignalMapWrapper signalMapWrapper)
     {
-        SignalMapWrapper signalMapWrapper = new SignalMapWrapper(filteredSignals, tm);
-
         if (signalMapWrapper.hasData()) {
-            DisplaySignalsTask task = new DisplaySignalsTask();
-            task.execute(filteredSignals);
-           // displaySignalInfo(signalMapWrapper);
+            displaySignalInfo(signalMapWrapper);
         }
         else {
             Toast.makeText(this,
@@ -276,26 +452,49 @@ public class MainActivity
     /**
      * Sets the preferences for the activity (pretty obvious)
      *
-     * @param sharedPreferences - preferences to load
+     * @param settings - preferences to load
      */
-    private void setPreferences(SharedPreferences sharedPreferences)
+    private void setPreferences(SettingsStore settings)
     {
-        String signalMeasure = sharedPreferences.getString(
-            getString(R.string.signalFormatKey),
+        String signalMeasure = settings.getString(
+            signalFormatKey,
             getString(R.string.relativeReading));
 
-        boolean keepScreenOn = sharedPreferences.getBoolean(
-            getString(R.string.keepScreenOnKey),
+        boolean keepScreenOn = settings.getBoolean(
+            keepScreenOnKey,
             getResources().getBoolean(R.bool.keepScreenOnDefault));
 
         if (keepScreenOn) {
             getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         }
 
-        enableDebug = sharedPreferences.getBoolean(
-            getString(R.string.enableDebugKey),
+        enableDebug = settings.getBoolean(
+            enableDebugKey,
             getResources().getBoolean(R.bool.enableDebugDefault));
 
+        readRadioLog = settings.getBoolean(
+            radioLogKey,
+            getResources().getBoolean(R.bool.radioLogDefault));
+
+        if (readRadioLog) {
+            radioLogTap.start();
+        }
+        else {
+            radioLogTap.stop();
+        }
+        boolean trace = settings.getBoolean(
+            traceKey,
+            getResources().getBoolean(R.bool.traceDefault));
+
+        if (trace) {
+            startTrace();
+        }
+        else {
+            TraceRecorder.getInstance().stop();
+        }
+        // the ongoing notification might have just been turned on or off
+        SignalMonitorService.sync(this);
+
         if (signalMeasure.equals(getString(R.string.dB))) {
             // only show decibel readings
             dbOnly = true;
@@ -307,22 +506,33 @@ public class MainActivity
         }
     }
 
+    /**
+     * Starts writing a pipeline trace (if it isn't already) to the app's
+     * external files dir so it can be pulled off the device.
+     */
+    private void startTrace()
+    {
+        TraceRecorder tracer = TraceRecorder.getInstance();
+
+        if (tracer.isEnabled()) {
+            return;
+        }
+        File dir = getExternalFilesDir(null);
+        File file = tracer.start(dir == null ? getFilesDir() : dir);
+
+        if (file != null) {
+            Toast.makeText(this,
+                String.format(getString(R.string.traceStarted), file.getAbsolutePath()),
+                Toast.LENGTH_LONG).show();
+        }
+    }
+
     /**
      * Set the phone model, OS version, carrier name on the screen
      */
     private void setPhoneInfo()
     {
-        setTextViewText(R.id.deviceName, String.format("%s %s", Build.MANUFACTURER, Build.MODEL));
-        setTextViewText(R.id.deviceModel, String.format("%s/%s (%s) ", Build.PRODUCT, Build.DEVICE, Build.ID));
-        setTextViewText(R.id.androidVersion,
-            String.format(
-                getString(R.string.androidVersion),
-                Build.VERSION.RELEASE,
-                Build.VERSION.SDK_INT));
-
-        setTextViewText(R.id.carrierName, tm.getNetworkOperatorName());
-        setTextViewText(R.id.buildHost, Build.HOST);
-        setNetworkTypeText();
+        SignalHelpers.setPhoneInfo(findViewById(android.R.id.content), tm);
     }
 
     private void setNetworkTypeText()
@@ -338,33 +548,88 @@ public class MainActivity
      */
     private void displaySignalInfo(SignalMapWrapper signalMapWrapper)
     {
-        Map<NetworkType, ISignal> networkTypes = signalMapWrapper.getNetworkMap();
-        Map<Signal, TextView> signalDataMap = getSignalTextViewMap(sigInfoIds, false);
-        String unit = getString(R.string.dBm);
+        long start = System.nanoTime();
+        TraceRecorder.getInstance().begin(TraceRecorder.EVENT_RENDER);
+        viewBinder.bind(signalMapWrapper.getNetworkMap(), dBmUnit, dbOnly, fudgeSignal);
+        setNetworkTypeText(); // update the network connection type
+        displayQuality();
+        TraceRecorder.getInstance().end(TraceRecorder.EVENT_RENDER);
+        PipelineMetrics metrics = PipelineMetrics.getInstance();
+        metrics.record(PipelineMetrics.Stage.RENDER, start);
+
+        if (lastArrival != 0) {
+            metrics.record(PipelineMetrics.Stage.TOTAL, lastArrival);
+            lastArrival = 0; // only count each update once (resume redraws the old one)
+        }
+        onFirstSignalShown();
+    }
 
-        for (Map.Entry<Signal, TextView> data : signalDataMap.entrySet()) {
-            // TODO: maybe use an adapter of some sort instead of this (ListAdapter maybe?)
-            TextView currentTextView = data.getValue();
-            try {
-                ISignal signal = networkTypes.get(data.getKey().type());
-                String sigValue = signal.getSignalString(data.getKey());
-
-                if (!StringUtils.isNullOrEmpty(sigValue) && !INVALID_TXT.equals(sigValue)) {
-                    // should be show the percentage along with the dBm?
-                    String signalPercent = dbOnly
-                        ? ""
-                        : String.format("(%s)", signal.getRelativeEfficiency(data.getKey(), fudgeSignal));
-
-                    currentTextView.setText(String.format("%s %s %s",
-                        sigValue,
-                        unit,
-                        signalPercent));
+    /**
+     * Shows the link quality score for each network that's on, like "LTE 72% | GSM 55%".
+     * The scores are the ones the engine already worked out for the SIM being shown.
+     * Only touches the view when one of the scores actually changed.
+     */
+    private void displayQuality()
+    {
+        boolean changed = false;
+
+        for (NetworkType type : NetworkType.values()) {
+            int score = signalEngine.getQuality(subscriptionId, type);
+
+            if (score != lastQuality[type.ordinal()]) {
+                lastQuality[type.ordinal()] = score;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        qualityText.setLength(0);
+
+        for (NetworkType type : NetworkType.values()) {
+            int score = lastQuality[type.ordinal()];
+
+            if (score != INVALID) {
+                if (qualityText.length() > 0) {
+                    qualityText.append(" | ");
                 }
-            } catch (Resources.NotFoundException ignored) {
-                currentTextView.setText(INVALID_TXT);
+                qualityText.append(type).append(' ').append(score).append('%');
             }
         }
-        setNetworkTypeText(); // update the network connection type
+        setTextViewText(R.id.linkQuality, qualityText.length() == 0 ? getString(R.string.na) : qualityText.toString());
+    }
+
+    /**
+     * Shows the serving WCDMA cell if we got it from the radio log.
+     *
+     * @param signalData - the signal data with any radio log info merged in
+     */
+    private void displayRadioCellInfo(SignalArrayWrapper signalData)
+    {
+        int psc = signalData.getRadioPsc();
+
+        // the GSM rows are in a stub that might not be inflated yet
+        if (psc != INVALID && viewBinder.isSectionShown(NetworkType.GSM)) {
+            int uarfcn = signalData.getRadioUarfcn();
+            setTextViewText(R.id.wcdmaCell, String.format(getString(R.string.wcdmaCellFormat),
+                psc,
+                uarfcn == INVALID ? 0 : uarfcn));
+        }
+    }
+
+    /**
+     * Shows which access point we're on and how many are around, once the Wi-Fi rows are up.
+     *
+     * @param signalData - the signal data with the Wi-Fi connection merged in
+     */
+    private void displayWifiInfo(SignalArrayWrapper signalData)
+    {
+        if (!viewBinder.isSectionShown(NetworkType.WIFI)) {
+            return;
+        }
+        String bssid = signalData.getWifiBssid();
+        setTextViewText(R.id.wifiBssid, bssid == null ? getString(R.string.na) : bssid);
+        setTextViewText(R.id.wifiAps, String.valueOf(signalEngine.getWifiMonitor().getScanTable().size()));
     }
 
     /**
@@ -384,36 +649,17 @@ public class MainActivity
                 view.setEnabled(true);
                 view.setVisibility(View.VISIBLE);
             }
-            Map<String, String> debugMapRelative =
-                new SignalMapWrapper(debugInfo.getFilteredArray(), tm).getPercentSignalMap(true);
-
-            Map<String, String> debugMapStrict =
-                new SignalMapWrapper(debugInfo.getFilteredArray(), tm).getPercentSignalMap(false);
+            Map<String, String> debugMapRelative = debugInfo.getSignalMap().getPercentSignalMap(true);
+            Map<String, String> debugMapStrict = debugInfo.getSignalMap().getPercentSignalMap(false);
 
             setTextViewText(R.id.debugArray,
-                String.format("%s \n\n %s \n\n %s \n\n %s",
+                String.format("%s \n\n %s \n\n %s \n\n %s \n\n %s \n %s",
                     debugInfo.getRawData(),
                     Arrays.toString(debugInfo.getFilteredArray()),
                     debugMapRelative.toString(),
-                    debugMapStrict.toString()));
-        }
-    }
-
-    private class DisplaySignalsTask extends AsyncTask<String, Void, SignalMapWrapper>
-    {
-        @Override
-        protected SignalMapWrapper doInBackground(String... signalStrength)
-        {
-            if (signalStrength == null) {
-                return null;
-            }
-            return new SignalMapWrapper(signalStrength, tm);
-        }
-
-        @Override
-        protected void onPostExecute(SignalMapWrapper result)
-        {
-            displaySignalInfo(result);
+                    debugMapStrict.toString(),
+                    PipelineMetrics.getInstance().dump(),
+                    StartupTrace.dump()));
         }
     }
 }
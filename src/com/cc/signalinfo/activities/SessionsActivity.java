@@ -0,0 +1,387 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.activities;
+
+import android.app.AlertDialog;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.text.format.DateFormat;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+import com.actionbarsherlock.app.SherlockListActivity;
+import com.actionbarsherlock.view.MenuItem;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.history.SessionSummary;
+import com.cc.signalinfo.listeners.SignalEngine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Lists the recorded sessions, newest first, with their tags and summary.
+ * Everything shown comes out of the session catalog, the snapshots
+ * themselves never get read here. Tap a session to tag it, compare it
+ * with another one (see CompareActivity) or delete it.
+ *
+ * The catalog gets read (and changed) on a background thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionsActivity extends SherlockListActivity
+{
+    private static final String   TAG       = SessionsActivity.class.getSimpleName();
+    // the first of these a session has is what its row shows
+    private static final Signal[] HEADLINES = {
+        Signal.LTE_RSRP, Signal.WCDMA_RSCP, Signal.GSM_SIG_STRENGTH, Signal.CDMA_RSSI, Signal.WIFI_RSSI};
+
+    private SessionStore      store;
+    private SessionAdapter    adapter;
+    private TextView          summary;
+    private List<SessionInfo> sessions = Collections.emptyList();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.sessions);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        store = SignalEngine.getInstance(this).getSessions().getStore();
+        summary = (TextView) findViewById(R.id.sessionsSummary);
+        adapter = new SessionAdapter(LayoutInflater.from(this));
+        setListAdapter(adapter);
+    }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        new CatalogTask().execute();
+    }
+
+    @Override
+    protected void onListItemClick(ListView list, View view, int position, long id)
+    {
+        final SessionInfo session = adapter.getItem(position);
+        String[] choices = {getString(R.string.sessionEditTags), getString(R.string.sessionCompare),
+            getString(R.string.sessionDelete)};
+
+        new AlertDialog.Builder(this)
+            .setItems(choices, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    if (which == 0) {
+                        editTags(session);
+                    }
+                    else if (which == 1) {
+                        pickComparison(session);
+                    }
+                    else {
+                        confirmDelete(session);
+                    }
+                }
+            })
+            .show();
+    }
+
+    private void editTags(final SessionInfo session)
+    {
+        final EditText tags = new EditText(this);
+        tags.setText(session.getTags());
+        tags.setHint(R.string.sessionTagsHint);
+
+        new AlertDialog.Builder(this)
+            .setTitle(R.string.sessionTagsTitle)
+            .setView(tags)
+            .setNegativeButton(android.R.string.cancel, null)
+            .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    final String text = tags.getText().toString();
+
+                    new CatalogTask().execute(new StoreAction()
+                    {
+                        @Override
+                        void run(SessionStore store) throws IOException
+                        {
+                            store.setTags(session.getId(), text);
+                        }
+                    });
+                }
+            })
+            .show();
+    }
+
+    /**
+     * Asks which session to compare against, then shows them side by side.
+     *
+     * @param session - the first session (A)
+     */
+    private void pickComparison(final SessionInfo session)
+    {
+        final List<SessionInfo> others = new ArrayList<>(sessions.size());
+        List<String> titles = new ArrayList<>(sessions.size());
+
+        for (int position = 0; position < adapter.getCount(); ++position) {
+            SessionInfo other = adapter.getItem(position);
+
+            if (other.getId() != session.getId() && !other.isRecording()) {
+                others.add(other);
+                titles.add(getTitle(other));
+            }
+        }
+        if (others.isEmpty()) {
+            Toast.makeText(this, R.string.compareEmpty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+            .setTitle(R.string.sessionCompareTitle)
+            .setItems(titles.toArray(new String[titles.size()]), new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    startActivity(CompareActivity.newIntent(SessionsActivity.this,
+                        session.getId(), others.get(which).getId()));
+                }
+            })
+            .show();
+    }
+
+    /**
+     * @param session - the session
+     * @return when it started, whether it's still going and its tags
+     */
+    private String getTitle(SessionInfo session)
+    {
+        Date start = new Date(session.getStartTime());
+        StringBuilder text = new StringBuilder(64);
+
+        text.append(DateFormat.getDateFormat(this).format(start)).append(' ')
+            .append(DateFormat.getTimeFormat(this).format(start));
+
+        if (session.isRecording()) {
+            text.append(' ').append(getString(R.string.sessionRecording));
+        }
+        if (session.getTags().length() > 0) {
+            text.append("  ").append(session.getTags());
+        }
+        return text.toString();
+    }
+
+    private void confirmDelete(final SessionInfo session)
+    {
+        new AlertDialog.Builder(this)
+            .setMessage(R.string.sessionDeleteConfirm)
+            .setNegativeButton(android.R.string.cancel, null)
+            .setPositiveButton(R.string.sessionDelete, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    new CatalogTask().execute(new StoreAction()
+                    {
+                        @Override
+                        void run(SessionStore store) throws IOException
+                        {
+                            store.delete(session.getId());
+                        }
+                    });
+                }
+            })
+            .show();
+    }
+
+    private void show(List<SessionInfo> loaded)
+    {
+        sessions = loaded;
+        long bytes = 0;
+
+        for (SessionInfo session : loaded) {
+            bytes += session.getLength();
+        }
+        summary.setText(String.format(getString(R.string.sessionsSummary), loaded.size(), bytes / 1024));
+        adapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                Intent intent = new Intent(this, MainActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                startActivity(intent);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Something to do to the store before the catalog gets read again.
+     */
+    private abstract static class StoreAction
+    {
+        abstract void run(SessionStore store) throws IOException;
+    }
+
+    /**
+     * Does whatever needs doing to the store and reads the catalog, off the UI thread.
+     */
+    private final class CatalogTask extends AsyncTask<StoreAction, Void, List<SessionInfo>>
+    {
+        @Override
+        protected List<SessionInfo> doInBackground(StoreAction... actions)
+        {
+            try {
+                for (StoreAction action : actions) {
+                    action.run(store);
+                }
+                return store.getSessions();
+            }
+            catch (IOException e) {
+                Log.e(TAG, "Could not read sessions", e);
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(List<SessionInfo> loaded)
+        {
+            if (loaded == null) {
+                Toast.makeText(SessionsActivity.this, R.string.sessionsError, Toast.LENGTH_LONG).show();
+            }
+            else {
+                show(loaded);
+            }
+        }
+    }
+
+    /**
+     * Newest first, so positions count back from the end of the catalog.
+     */
+    private final class SessionAdapter extends BaseAdapter
+    {
+        private final LayoutInflater inflater;
+        private final StringBuilder  text = new StringBuilder(64);
+
+        SessionAdapter(LayoutInflater inflater)
+        {
+            this.inflater = inflater;
+        }
+
+        @Override
+        public int getCount()
+        {
+            return sessions.size();
+        }
+
+        @Override
+        public SessionInfo getItem(int position)
+        {
+            return sessions.get(sessions.size() - 1 - position);
+        }
+
+        @Override
+        public long getItemId(int position)
+        {
+            return getItem(position).getId();
+        }
+
+        @Override
+        public boolean hasStableIds()
+        {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent)
+        {
+            RowViews row;
+
+            if (convertView == null) {
+                convertView = inflater.inflate(R.layout.session_row, parent, false);
+                row = new RowViews();
+                row.title = (TextView) convertView.findViewById(R.id.sessionTitle);
+                row.stats = (TextView) convertView.findViewById(R.id.sessionStats);
+                convertView.setTag(row);
+            }
+            else {
+                row = (RowViews) convertView.getTag();
+            }
+            SessionInfo session = getItem(position);
+            row.title.setText(getTitle(session));
+
+            SessionSummary stats = session.getSummary();
+            text.setLength(0);
+            text.append(String.format(getString(R.string.sessionStats), stats.getSnapshotCount(),
+                (session.getEndTime() - session.getStartTime()) / 60000, session.getLength() / 1024));
+
+            for (Signal signal : HEADLINES) {
+                if (stats.getMin(signal) != INVALID) {
+                    text.append('\n').append(signal.name()).append(" avg ")
+                        .append(Math.round(stats.getMean(signal)))
+                        .append("  ").append(stats.getMin(signal)).append('/').append(stats.getMax(signal));
+                    break;
+                }
+            }
+            row.stats.setText(text.toString());
+
+            return convertView;
+        }
+    }
+
+    private static final class RowViews
+    {
+        TextView title;
+        TextView stats;
+    }
+}
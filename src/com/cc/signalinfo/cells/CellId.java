@@ -0,0 +1,168 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.cells;
+
+/**
+ * Packs what identifies a cell into one long so cells can be keyed without
+ * making objects. The radio type is in the top byte, the rest depends on it:
+ *
+ * GSM - LAC and CID
+ * WCDMA - UARFCN and PSC
+ * LTE - EARFCN and PCI
+ * CDMA - SID, NID and base station ID
+ *
+ * Neighbours usually only report the physical ids (PSC or PCI), so that's what
+ * WCDMA and LTE cells go by. The channel is 0 when the phone doesn't say.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class CellId
+{
+    public static final int  TYPE_GSM   = 1;
+    public static final int  TYPE_WCDMA = 2;
+    public static final int  TYPE_LTE   = 3;
+    public static final int  TYPE_CDMA  = 4;
+    /**
+     * Not enough info to tell which cell it is.
+     */
+    public static final long NONE       = 0;
+
+    private static final int TYPE_SHIFT = 56;
+
+    private CellId() {}
+
+    /**
+     * @param lac - location area code
+     * @param cid - cell id (up to 28 bits for UMTS)
+     * @return the packed id or NONE if either is unknown
+     */
+    public static long gsm(int lac, int cid)
+    {
+        if (!valid(lac, 0xFFFF) || !valid(cid, 0xFFFFFFF)) {
+            return NONE;
+        }
+        return type(TYPE_GSM) | ((long) lac << 32) | cid;
+    }
+
+    /**
+     * @param psc - primary scrambling code
+     * @param uarfcn - channel number or anything out of range if unknown
+     * @return the packed id or NONE if the PSC is unknown
+     */
+    public static long wcdma(int psc, int uarfcn)
+    {
+        if (!valid(psc, 511)) {
+            return NONE;
+        }
+        return type(TYPE_WCDMA) | ((long) channel(uarfcn, 0xFFFF) << 16) | psc;
+    }
+
+    /**
+     * @param pci - physical cell id
+     * @param earfcn - channel number or anything out of range if unknown
+     * @return the packed id or NONE if the PCI is unknown
+     */
+    public static long lte(int pci, int earfcn)
+    {
+        if (!valid(pci, 503)) {
+            return NONE;
+        }
+        return type(TYPE_LTE) | ((long) channel(earfcn, 0x3FFFF) << 16) | pci;
+    }
+
+    /**
+     * @param sid - system id
+     * @param nid - network id
+     * @param bsid - base station id
+     * @return the packed id or NONE if any are unknown
+     */
+    public static long cdma(int sid, int nid, int bsid)
+    {
+        if (!valid(sid, 0x7FFF) || !valid(nid, 0xFFFF) || !valid(bsid, 0xFFFF)) {
+            return NONE;
+        }
+        return type(TYPE_CDMA) | ((long) sid << 32) | ((long) nid << 16) | bsid;
+    }
+
+    /**
+     * @param id - packed cell id
+     * @return one of the TYPE constants (0 for NONE)
+     */
+    public static int getType(long id)
+    {
+        return (int) (id >>> TYPE_SHIFT);
+    }
+
+    /**
+     * Writes the id out like "LTE PCI 123" or "GSM 1234/56789" (LAC/CID).
+     *
+     * @param id - packed cell id
+     * @param out - where to write it
+     * @return out
+     */
+    public static StringBuilder appendTo(long id, StringBuilder out)
+    {
+        switch (getType(id)) {
+            case TYPE_GSM:
+                return out.append("GSM ").append((int) (id >>> 32) & 0xFFFF).append('/').append((int) id);
+            case TYPE_WCDMA:
+                out.append("WCDMA PSC ").append((int) id & 0xFFFF);
+                return appendChannel(out, " UARFCN ", (int) (id >>> 16) & 0xFFFF);
+            case TYPE_LTE:
+                out.append("LTE PCI ").append((int) id & 0xFFFF);
+                return appendChannel(out, " EARFCN ", (int) (id >>> 16) & 0x3FFFF);
+            case TYPE_CDMA:
+                return out.append("CDMA ").append((int) (id >>> 32) & 0x7FFF)
+                    .append('/').append((int) (id >>> 16) & 0xFFFF)
+                    .append('/').append((int) id & 0xFFFF);
+        }
+        return out.append('?');
+    }
+
+    private static StringBuilder appendChannel(StringBuilder out, String label, int channel)
+    {
+        return channel == 0 ? out : out.append(label).append(channel);
+    }
+
+    private static long type(int type)
+    {
+        return (long) type << TYPE_SHIFT;
+    }
+
+    private static boolean valid(int value, int max)
+    {
+        return value >= 0 && value <= max;
+    }
+
+    private static int channel(int value, int max)
+    {
+        return valid(value, max) ? value : 0;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.cells;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.telephony.CellIdentityCdma;
+import android.telephony.CellIdentityGsm;
+import android.telephony.CellIdentityLte;
+import android.telephony.CellIdentityWcdma;
+import android.telephony.CellInfo;
+import android.telephony.CellInfoCdma;
+import android.telephony.CellInfoGsm;
+import android.telephony.CellInfoLte;
+import android.telephony.CellInfoWcdma;
+import android.telephony.NeighboringCellInfo;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+import android.util.Log;
+
+import java.util.List;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Asks the phone which cells it can see and puts them in a CellTable.
+ *
+ * Uses getAllCellInfo on 4.2+ (serving cell and neighbours with their ids
+ * and signal). Plenty of phones return nothing from that though, so then it
+ * falls back on the old getNeighboringCellInfo plus the serving GSM/WCDMA
+ * cell location, which is all there is before 4.2 anyway.
+ *
+ * Each poll is a call into the radio service, so don't do it every update
+ * (see SignalEngine).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class CellScanner
+{
+    private static final String TAG         = CellScanner.class.getSimpleName();
+    // what NeighboringCellInfo says when it doesn't know
+    private static final int    UNKNOWN_ASU = 99;
+
+    private final TelephonyManager tm;
+    private final CellTable        table;
+    private       boolean          modernWorks = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1;
+
+    /**
+     * @param tm - where to ask for the cells
+     * @param table - where to put them
+     */
+    public CellScanner(TelephonyManager tm, CellTable table)
+    {
+        this.tm = tm;
+        this.table = table;
+    }
+
+    /**
+     * Adds whatever cells the phone sees right now to the table.
+     *
+     * @param now - timestamp for the sightings
+     * @return how many cells were seen
+     */
+    public int poll(long now)
+    {
+        try {
+            if (modernWorks) {
+                int seen = AllCellInfo.poll(tm, table, now);
+
+                if (seen >= 0) {
+                    return seen;
+                }
+                // this phone doesn't do it, don't bother asking again
+                modernWorks = false;
+            }
+            return LegacyCellInfo.poll(tm, table, now);
+        }
+        catch (SecurityException e) {
+            Log.w(TAG, "Not allowed to get cell info", e);
+            return 0;
+        }
+    }
+
+    /**
+     * @return the table cells go into
+     */
+    public CellTable getTable()
+    {
+        return table;
+    }
+
+    /**
+     * The 4.2+ way, in its own class so older devices never try to load it.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static final class AllCellInfo
+    {
+        private AllCellInfo() {}
+
+        /**
+         * @return how many cells were seen or -1 if the phone doesn't support it
+         */
+        static int poll(TelephonyManager tm, CellTable table, long now)
+        {
+            List<CellInfo> cells = tm.getAllCellInfo();
+
+            if (cells == null || cells.isEmpty()) {
+                return -1;
+            }
+            table.clearServing();
+            int seen = 0;
+
+            for (CellInfo cell : cells) {
+                long id = CellId.NONE;
+                int dbm = INVALID;
+
+                if (cell instanceof CellInfoLte) {
+                    CellIdentityLte identity = ((CellInfoLte) cell).getCellIdentity();
+                    id = CellId.lte(identity.getPci(), INVALID);
+                    dbm = ((CellInfoLte) cell).getCellSignalStrength().getDbm();
+                }
+                else if (cell instanceof CellInfoGsm) {
+                    CellIdentityGsm identity = ((CellInfoGsm) cell).getCellIdentity();
+                    id = CellId.gsm(identity.getLac(), identity.getCid());
+                    dbm = ((CellInfoGsm) cell).getCellSignalStrength().getDbm();
+                }
+                else if (cell instanceof CellInfoCdma) {
+                    CellIdentityCdma identity = ((CellInfoCdma) cell).getCellIdentity();
+                    id = CellId.cdma(identity.getSystemId(), identity.getNetworkId(), identity.getBasestationId());
+                    dbm = ((CellInfoCdma) cell).getCellSignalStrength().getDbm();
+                }
+                else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+                    && cell instanceof CellInfoWcdma) {
+                    CellIdentityWcdma identity = ((CellInfoWcdma) cell).getCellIdentity();
+                    id = CellId.wcdma(identity.getPsc(), INVALID);
+                    dbm = ((CellInfoWcdma) cell).getCellSignalStrength().getDbm();
+                }
+                if (table.add(id, validDbm(dbm), now, cell.isRegistered()) >= 0) {
+                    ++seen;
+                }
+            }
+            return seen;
+        }
+    }
+
+    /**
+     * The pre 4.2 way, only GSM/WCDMA phones really report anything here.
+     */
+    @SuppressWarnings("deprecation")
+    private static final class LegacyCellInfo
+    {
+        private LegacyCellInfo() {}
+
+        static int poll(TelephonyManager tm, CellTable table, long now)
+        {
+            table.clearServing();
+            int seen = 0;
+
+            if (tm.getCellLocation() instanceof GsmCellLocation) {
+                GsmCellLocation location = (GsmCellLocation) tm.getCellLocation();
+                long id = location.getPsc() >= 0
+                    ? CellId.wcdma(location.getPsc(), INVALID)
+                    : CellId.gsm(location.getLac(), location.getCid());
+
+                // the serving cell's signal is already on the main screen
+                if (table.add(id, INVALID, now, true) >= 0) {
+                    ++seen;
+                }
+            }
+            List<NeighboringCellInfo> neighbours = tm.getNeighboringCellInfo();
+
+            if (neighbours == null) {
+                return seen;
+            }
+            for (NeighboringCellInfo neighbour : neighbours) {
+                long id;
+                int dbm;
+
+                switch (neighbour.getNetworkType()) {
+                    case TelephonyManager.NETWORK_TYPE_UMTS:
+                    case TelephonyManager.NETWORK_TYPE_HSDPA:
+                    case TelephonyManager.NETWORK_TYPE_HSUPA:
+                    case TelephonyManager.NETWORK_TYPE_HSPA:
+                        id = CellId.wcdma(neighbour.getPsc(), INVALID);
+                        // RSCP in dBm for these
+                        dbm = neighbour.getRssi();
+                        break;
+                    default:
+                        id = CellId.gsm(neighbour.getLac(), neighbour.getCid());
+                        dbm = neighbour.getRssi() == UNKNOWN_ASU ? INVALID : -113 + 2 * neighbour.getRssi();
+                        break;
+                }
+                if (table.add(id, validDbm(dbm), now, false) >= 0) {
+                    ++seen;
+                }
+            }
+            return seen;
+        }
+    }
+
+    /**
+     * Phones stick all kinds of junk in for "don't know".
+     */
+    private static int validDbm(int dbm)
+    {
+        return dbm < -150 || dbm >= 0 ? INVALID : dbm;
+    }
+}
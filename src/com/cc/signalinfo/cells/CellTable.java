@@ -0,0 +1,388 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.cells;
+
+import java.util.Arrays;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Every cell seen this session (serving and neighbours), keyed by packed
+ * cell id (see CellId). Each cell keeps when it was first and last seen,
+ * how many times it's been seen and its signal stats (last, min, max and mean
+ * in dBm).
+ *
+ * Cells live in flat primitive arrays found through an open addressing hash
+ * of the ids, same idea as CoverageGrid, so thousands of cells are a handful
+ * of arrays. There's a fixed number of slots. Cells are also kept in a linked
+ * list (through prev/next slot arrays) from most to least recently seen, and
+ * when the table is full the least recently seen one gets evicted to make room.
+ * The same list is what getRecent walks, so listing the cells never sorts.
+ *
+ * Slots get reused after eviction, so don't hang onto one across adds.
+ * Cells get added on the SignalEngine's worker thread and read on the UI
+ * thread, so every method locks the table. Lock it yourself around a bunch
+ * of reads that need to agree with each other (like a slot's stats).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class CellTable
+{
+    public static final  int  DEFAULT_CAPACITY = 4096;
+    private static final long EMPTY_KEY        = CellId.NONE;
+    private static final int  NIL              = -1;
+
+    private final int    capacity;
+    // hash of id -> slot, always at most half full
+    private final long[] hashKeys;
+    private final int[]  hashSlots;
+
+    private final long[]    keys;
+    private final long[]    firstSeen;
+    private final long[]    lastSeen;
+    private final int[]     counts;
+    private final int[]     signalCounts;
+    private final long[]    sums;
+    private final int[]     mins;
+    private final int[]     maxes;
+    private final int[]     lasts;
+    private final boolean[] serving;
+    // most recently seen first
+    private final int[]     prev;
+    private final int[]     next;
+    private       int       head    = NIL;
+    private       int       tail    = NIL;
+    private       int       size    = 0;
+    private       int       evicted = 0;
+
+    public CellTable()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - most cells to keep before the stale ones get evicted
+     */
+    public CellTable(int capacity)
+    {
+        this.capacity = capacity;
+        int hashSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+        hashKeys = new long[hashSize];
+        hashSlots = new int[hashSize];
+        keys = new long[capacity];
+        firstSeen = new long[capacity];
+        lastSeen = new long[capacity];
+        counts = new int[capacity];
+        signalCounts = new int[capacity];
+        sums = new long[capacity];
+        mins = new int[capacity];
+        maxes = new int[capacity];
+        lasts = new int[capacity];
+        serving = new boolean[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        Arrays.fill(hashKeys, EMPTY_KEY);
+    }
+
+    /**
+     * Records a sighting of a cell, adding it if it's new.
+     *
+     * @param id - packed cell id (see CellId)
+     * @param dbm - signal in dBm or AppSetup.INVALID if it wasn't reported
+     * @param now - when it was seen
+     * @param isServing - true if it's the cell the phone is on
+     * @return the cell's slot or -1 if the id is CellId.NONE
+     */
+    public synchronized int add(long id, int dbm, long now, boolean isServing)
+    {
+        if (id == CellId.NONE) {
+            return -1;
+        }
+        int slot = indexOf(id);
+
+        if (slot < 0) {
+            slot = size < capacity ? size++ : evict();
+            keys[slot] = id;
+            firstSeen[slot] = now;
+            counts[slot] = 0;
+            signalCounts[slot] = 0;
+            sums[slot] = 0;
+            lasts[slot] = INVALID;
+            insert(id, slot);
+            linkFirst(slot);
+        }
+        else if (slot != head) {
+            unlink(slot);
+            linkFirst(slot);
+        }
+        lastSeen[slot] = now;
+        serving[slot] = isServing;
+        ++counts[slot];
+
+        if (dbm != INVALID) {
+            if (signalCounts[slot] == 0 || dbm < mins[slot]) {
+                mins[slot] = dbm;
+            }
+            if (signalCounts[slot] == 0 || dbm > maxes[slot]) {
+                maxes[slot] = dbm;
+            }
+            ++signalCounts[slot];
+            sums[slot] += dbm;
+        }
+        lasts[slot] = dbm;
+        return slot;
+    }
+
+    /**
+     * Clears whether each cell is the serving one, call before adding a new batch.
+     */
+    public synchronized void clearServing()
+    {
+        Arrays.fill(serving, false);
+    }
+
+    /**
+     * Drops the least recently seen cell to free up its slot.
+     *
+     * @return the freed slot
+     */
+    private int evict()
+    {
+        int slot = tail;
+        unlink(slot);
+        remove(keys[slot]);
+        ++evicted;
+        return slot;
+    }
+
+    /**
+     * @param id - packed cell id
+     * @return the cell's slot or -1 if it hasn't been seen (or got evicted)
+     */
+    public synchronized int indexOf(long id)
+    {
+        int mask = hashKeys.length - 1;
+
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            if (hashKeys[i] == id) {
+                return hashSlots[i];
+            }
+            if (hashKeys[i] == EMPTY_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(long id, int slot)
+    {
+        int mask = hashKeys.length - 1;
+        int i = hash(id) & mask;
+
+        while (hashKeys[i] != EMPTY_KEY) {
+            i = (i + 1) & mask;
+        }
+        hashKeys[i] = id;
+        hashSlots[i] = slot;
+    }
+
+    /**
+     * Takes the id out of the hash, shifting anything after it back into
+     * the hole so lookups don't stop short (no tombstones to clean up later).
+     */
+    private void remove(long id)
+    {
+        int mask = hashKeys.length - 1;
+        int hole = hash(id) & mask;
+
+        while (hashKeys[hole] != id) {
+            if (hashKeys[hole] == EMPTY_KEY) {
+                return;
+            }
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; hashKeys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+            int home = hash(hashKeys[i]) & mask;
+
+            // only move it if its home is at or before the hole (going around the end)
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                hashKeys[hole] = hashKeys[i];
+                hashSlots[hole] = hashSlots[i];
+                hole = i;
+            }
+        }
+        hashKeys[hole] = EMPTY_KEY;
+    }
+
+    private void linkFirst(int slot)
+    {
+        prev[slot] = NIL;
+        next[slot] = head;
+
+        if (head != NIL) {
+            prev[head] = slot;
+        }
+        head = slot;
+
+        if (tail == NIL) {
+            tail = slot;
+        }
+    }
+
+    private void unlink(int slot)
+    {
+        if (prev[slot] != NIL) {
+            next[prev[slot]] = next[slot];
+        }
+        else {
+            head = next[slot];
+        }
+        if (next[slot] != NIL) {
+            prev[next[slot]] = prev[slot];
+        }
+        else {
+            tail = prev[slot];
+        }
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Lists the cells from most to least recently seen.
+     *
+     * @param out - gets the slots, at most out.length of them
+     * @return how many slots were written
+     */
+    public synchronized int getRecent(int[] out)
+    {
+        int count = 0;
+
+        for (int slot = head; slot != NIL && count < out.length; slot = next[slot]) {
+            out[count++] = slot;
+        }
+        return count;
+    }
+
+    /**
+     * @return how many cells are in the table
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return how many cells got pushed out to make room since the last clear
+     */
+    public synchronized int getEvictedCount()
+    {
+        return evicted;
+    }
+
+    public synchronized long getId(int slot)
+    {
+        return keys[slot];
+    }
+
+    public synchronized long getFirstSeen(int slot)
+    {
+        return firstSeen[slot];
+    }
+
+    public synchronized long getLastSeen(int slot)
+    {
+        return lastSeen[slot];
+    }
+
+    /**
+     * @return how many times the cell has been seen
+     */
+    public synchronized int getCount(int slot)
+    {
+        return counts[slot];
+    }
+
+    /**
+     * @return the signal from the last time the cell was seen or AppSetup.INVALID
+     */
+    public synchronized int getLast(int slot)
+    {
+        return lasts[slot];
+    }
+
+    /**
+     * @return lowest signal seen or AppSetup.INVALID if it never had one
+     */
+    public synchronized int getMin(int slot)
+    {
+        return signalCounts[slot] == 0 ? INVALID : mins[slot];
+    }
+
+    /**
+     * @return highest signal seen or AppSetup.INVALID if it never had one
+     */
+    public synchronized int getMax(int slot)
+    {
+        return signalCounts[slot] == 0 ? INVALID : maxes[slot];
+    }
+
+    /**
+     * @return average signal or AppSetup.INVALID if it never had one
+     */
+    public synchronized int getMean(int slot)
+    {
+        return signalCounts[slot] == 0 ? INVALID : Math.round((float) sums[slot] / signalCounts[slot]);
+    }
+
+    /**
+     * @return true if the phone was on this cell as of the last batch
+     */
+    public synchronized boolean isServing(int slot)
+    {
+        return serving[slot];
+    }
+
+    public synchronized void clear()
+    {
+        Arrays.fill(hashKeys, EMPTY_KEY);
+        head = NIL;
+        tail = NIL;
+        size = 0;
+        evicted = 0;
+    }
+}
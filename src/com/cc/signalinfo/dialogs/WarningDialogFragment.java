@@ -27,9 +27,7 @@ package com.cc.signalinfo.dialogs;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
-import android.content.Context;
 import android.content.DialogInterface;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.view.View;
@@ -38,6 +36,7 @@ import android.widget.CheckBox;
 import android.widget.CompoundButton;
 import com.cc.signalinfo.R;
 import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.util.SettingsHelpers;
 import com.cc.signalinfo.util.SignalHelpers;
 
 /**
@@ -74,7 +73,7 @@ public class WarningDialogFragment extends DialogFragment
     @Override
     public void onClick(DialogInterface dialogInterface, int i)
     {
-        if (SignalHelpers.userConsent(getActivity().getPreferences(Context.MODE_PRIVATE))) {
+        if (SignalHelpers.userConsent(SettingsHelpers.getSettings(getActivity()))) {
             startActivity(SignalHelpers.getAdditionalSettings());
         }
     }
@@ -106,8 +105,6 @@ public class WarningDialogFragment extends DialogFragment
             ad.getButton(DialogInterface.BUTTON_POSITIVE).setEnabled(checkState);
         }
 
-        SharedPreferences settings = getActivity().getPreferences(Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = settings.edit();
-        editor.putBoolean(AppSetup.PROMPT_SETTING, checkState).commit();
+        SettingsHelpers.getSettings(getActivity()).putBoolean(AppSetup.PROMPT_SETTING, checkState);
     }
 }
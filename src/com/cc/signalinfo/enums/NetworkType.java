@@ -9,6 +9,7 @@ public enum NetworkType
     GSM(1),
     CDMA(2),
     LTE(3),
+    WIFI(4),
     UNKNOWN(0);
 
     private int value;
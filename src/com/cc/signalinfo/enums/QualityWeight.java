@@ -0,0 +1,126 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.enums;
+
+import static com.cc.signalinfo.enums.QualityWeight.Curve.LINEAR;
+import static com.cc.signalinfo.enums.QualityWeight.Curve.SOFT;
+
+/**
+ * How much each reading counts toward the overall link quality score for its
+ * network (see QualityScorer). The first entry for each network is the main
+ * one, no score without it. The rest just get left out if they're missing.
+ *
+ * Weights are relative to the other readings for the same network.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public enum QualityWeight
+{
+    // signal, weight, curve
+    LTE_RSRP(Signal.LTE_RSRP, 40, LINEAR),
+    LTE_RSRQ(Signal.LTE_RSRQ, 25, SOFT),
+    LTE_SNR(Signal.LTE_SNR, 25, SOFT),
+    LTE_CQI(Signal.LTE_CQI, 10, LINEAR),
+    CDMA_RSSI(Signal.CDMA_RSSI, 40, LINEAR),
+    CDMA_ECIO(Signal.CDMA_ECIO, 30, SOFT),
+    EVDO_RSSI(Signal.EVDO_RSSI, 15, LINEAR),
+    EVDO_SNR(Signal.EVDO_SNR, 15, SOFT),
+    GSM_SIG_STRENGTH(Signal.GSM_SIG_STRENGTH, 50, LINEAR),
+    GSM_BIT_ERROR(Signal.GSM_BIT_ERROR, 20, LINEAR),
+    WCDMA_RSCP(Signal.WCDMA_RSCP, 15, LINEAR),
+    WCDMA_ECNO(Signal.WCDMA_ECNO, 15, SOFT),
+    WIFI_RSSI(Signal.WIFI_RSSI, 70, LINEAR),
+    WIFI_LINK_SPEED(Signal.WIFI_LINK_SPEED, 30, SOFT);
+
+    private final Signal signal;
+    private final int    weight;
+    private final Curve  curve;
+
+    /**
+     * @param signal - the reading
+     * @param weight - how much it counts compared to the others for the network
+     * @param curve - how the reading's % maps to its part of the score
+     */
+    QualityWeight(Signal signal, int weight, Curve curve)
+    {
+        this.signal = signal;
+        this.weight = weight;
+        this.curve = curve;
+    }
+
+    public Signal signal()
+    {
+        return signal;
+    }
+
+    public NetworkType type()
+    {
+        return signal.type();
+    }
+
+    public int weight()
+    {
+        return weight;
+    }
+
+    public Curve curve()
+    {
+        return curve;
+    }
+
+    /**
+     * Shapes a reading's 0-100% before it's weighted.
+     */
+    public enum Curve
+    {
+        /**
+         * Straight through.
+         */
+        LINEAR,
+        /**
+         * Square root, so a middling reading counts for more. For the
+         * ratio type readings (SNR, Ec/Io) where mid range is already fine.
+         */
+        SOFT;
+
+        /**
+         * @param percent - 0 to 100
+         * @return the shaped value, 0 to 100
+         */
+        public int apply(int percent)
+        {
+            switch (this) {
+                case SOFT:
+                    return (int) Math.round(Math.sqrt(percent / 100.0) * 100);
+                default:
+                    return percent;
+            }
+        }
+    }
+}
@@ -49,7 +49,15 @@ public enum Signal implements SignalEnumMethods
     LTE_CQI(11, LTE, 15, 0, 0, 0),
     LTE_RSSI(12, LTE, 0, 80, -40, 0),
     GSM_RSSI(13, GSM, 0, 62, -51, 1),
-    GSM_ECIO(14, GSM, 0, 16, 0, 1);
+    GSM_ECIO(14, GSM, 0, 16, 0, 1),
+    // not in SignalStrength, these come from the radio log (see RadioLogParser)
+    WCDMA_RSCP(15, GSM, 0, 95, -25, 1),
+    WCDMA_ECNO(16, GSM, 0, 24, 0, 0),
+    // not in SignalStrength either, these come from the WifiManager (see WifiMonitor)
+    // RSSI in dBm, link speed in Mbps (best is a decent 802.11n link), frequency in MHz has no good or bad
+    WIFI_RSSI(17, WIFI, 0, 70, -30, 0),
+    WIFI_LINK_SPEED(18, WIFI, 300, 0, 0, 0),
+    WIFI_FREQUENCY(19, WIFI, 0, 0, 0, 0);
 
 
     private       int         value;
@@ -0,0 +1,65 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.enums;
+
+/**
+ * What every signal reading knows about itself, used to turn a raw reading
+ * into a % (see SignalInfo.getRelativeEfficiencyPercent).
+ */
+public interface SignalEnumMethods
+{
+    /**
+     * @return the network the reading belongs to
+     */
+    NetworkType type();
+
+    /**
+     * @return the best the reading gets (after normalizing)
+     */
+    int best();
+
+    /**
+     * @return the worst the reading gets (after normalizing)
+     */
+    int worst();
+
+    /**
+     * @return what to add to a reading so it lines up with zero
+     */
+    int norm();
+
+    /**
+     * @return the index of the reading in the signal arrays
+     */
+    int value();
+
+    /**
+     * @return more than 0 if the % can be fudged to look more like what phones show
+     */
+    int fudged();
+}
@@ -30,12 +30,9 @@ package com.cc.signalinfo.fragments;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.FragmentActivity;
-import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -47,22 +44,21 @@ import com.actionbarsherlock.app.SherlockFragment;
 import com.cc.signalinfo.BuildConfig;
 import com.cc.signalinfo.R;
 import com.cc.signalinfo.dialogs.WarningDialogFragment;
-import com.cc.signalinfo.enums.NetworkType;
-import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.listeners.FrameCoalescer;
+import com.cc.signalinfo.listeners.SignalEngine;
 import com.cc.signalinfo.listeners.SignalListener;
-import com.cc.signalinfo.signals.ISignal;
+import com.cc.signalinfo.util.DeferredInit;
 import com.cc.signalinfo.signals.SignalInfo;
+import com.cc.signalinfo.util.SettingsHelpers;
 import com.cc.signalinfo.util.SignalArrayWrapper;
 import com.cc.signalinfo.util.SignalHelpers;
 import com.cc.signalinfo.util.SignalMapWrapper;
-import com.cc.signalinfo.util.StringUtils;
+import com.cc.signalinfo.util.SignalViewBinder;
 import com.google.ads.AdRequest;
 import com.google.ads.AdView;
 
 import java.util.*;
 
-import static com.cc.signalinfo.config.AppSetup.INVALID_TXT;
-
 /**
  * Not currently used because it's not really necessary (yet)
  * @author Wes Lanning
@@ -73,12 +69,38 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
 {
     private final String                    TAG               = SignalFragment.class.getSimpleName();
     private       FragmentActivity          activity          = null;
-    private       SignalListener            listener          = null;
+    private       SignalEngine              signalEngine      = null;
+    private       FrameCoalescer            uiUpdater         = null;
     private       View                      rootView          = null;
     //private       String[]         sigInfoTitles  = null;
-    private       TypedArray                sigInfoIds        = null;
-    private       EnumMap<Signal, TextView> signalTextViewMap = new EnumMap<>(Signal.class);
+    private       SignalViewBinder          viewBinder        = null;
     private       TelephonyManager          tm                = null;
+    private final DeferredInit              deferredInit      = new DeferredInit();
+
+    private final Runnable loadAdTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            AdView ad = (AdView) rootView.findViewById(R.id.adView);
+            ad.loadAd(new AdRequest());
+        }
+    };
+
+    /**
+     * Only shows the primary SIM, filtered before the coalescer so the other SIM can't bump it.
+     */
+    private final SignalListener.UpdateSignal primaryOnly = new SignalListener.UpdateSignal()
+    {
+        @Override
+        public void setData(SignalArrayWrapper signalStrength)
+        {
+            if (signalStrength != null
+                && signalStrength.getSubscriptionId() == signalEngine.getPrimarySubscriptionId()) {
+                uiUpdater.setData(signalStrength);
+            }
+        }
+    };
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState)
@@ -87,34 +109,46 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
         activity = getActivity();
         rootView = inflater.inflate(R.layout.main, parent, false);
         rootView.findViewById(R.id.additionalInfo).setOnClickListener(this);
-        sigInfoIds = getResources().obtainTypedArray(R.array.sigInfoIds);
+        // new binder every time since the views are new
+        TypedArray sigInfoIds = getResources().obtainTypedArray(R.array.sigInfoIds);
+        viewBinder = new SignalViewBinder(rootView, sigInfoIds);
+        sigInfoIds.recycle();
         // sigInfoTitles = getResources().getStringArray(R.array.sigInfoTitles);
 
-        SignalListener listener = new SignalListener(this);
+        uiUpdater = new FrameCoalescer(this, getResources().getInteger(R.integer.minRefreshInterval));
         tm = (TelephonyManager) activity.getSystemService(Context.TELEPHONY_SERVICE);
-        tm.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
-        setPhoneInfo();
+        signalEngine = SignalEngine.getInstance(activity);
+        SignalHelpers.setPhoneInfo(rootView, tm);
         formatFooter();
 
+        // same as the activities, the ad waits until there's a signal on the screen
         if (!BuildConfig.DEBUG) {
-            AdView ad = (AdView) rootView.findViewById(R.id.adView);
-            ad.loadAd(new AdRequest());
+            deferredInit.add(loadAdTask);
         }
+        deferredInit.releaseAfter(DeferredInit.MAX_DEFER_MS);
         return rootView;
     }
 
+    @Override
+    public void onDestroyView()
+    {
+        deferredInit.cancel();
+        super.onDestroyView();
+    }
+
     @Override
     public void onResume()
     {
         super.onResume();
-        tm.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS);
+        signalEngine.subscribe(primaryOnly);
     }
 
     @Override
     public void onPause()
     {
         super.onPause();
-        tm.listen(listener, PhoneStateListener.LISTEN_NONE);
+        signalEngine.unsubscribe(primaryOnly);
+        uiUpdater.cancel();
     }
 
 /*    @Override
@@ -139,7 +173,7 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
     @Override
     public void onClick(View view)
     {
-        if (SignalHelpers.userConsent(activity.getPreferences(Context.MODE_PRIVATE))) {
+        if (SignalHelpers.userConsent(SettingsHelpers.getSettings(activity))) {
             try {
                 startActivity(SignalHelpers.getAdditionalSettings());
             } catch (SecurityException | ActivityNotFoundException ignored) {
@@ -153,31 +187,6 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
         }
     }
 
-    /**
-     * Gets the TextViews that map to the signal info data in the code for binding.
-     *
-     * @param sigInfoIds - the array containing the IDs to the TextView resources
-     * @param refreshMap - should we recreate the map or reuse it? (in case we some reason added some, somehow)
-     * @return map of the Signal data enumeration types (keys) and corresponding TextViews (values)
-     */
-    public Map<Signal, TextView> getSignalTextViewMap(TypedArray sigInfoIds, boolean refreshMap)
-    {
-        // no reason to do this over and over if it's already filled (we keep the same text stuff
-        if (signalTextViewMap.isEmpty() || refreshMap) {
-            Signal[] values = Signal.values();
-
-            for (int i = 0; i <= sigInfoIds.length(); ++i) {
-                int id = sigInfoIds.getResourceId(i, -1);
-
-                if (id != -1) {
-                    TextView currentView = (TextView) rootView.findViewById(id);
-                    signalTextViewMap.put(values[i], currentView);
-                }
-            }
-        }
-        return Collections.unmodifiableMap(signalTextViewMap);
-    }
-
     /**
      * Set the signal info the user sees.
      *
@@ -190,8 +199,11 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
         if (signalStrength == null) {
             return;
         }
-        SignalMapWrapper signalMapWrapper = new SignalMapWrapper(signalStrength.getFilteredArray(), tm);
+        SignalMapWrapper signalMapWrapper = signalStrength.getSignalMap();
 
+        if (signalMapWrapper == null) {
+            return; // the engine's still on it, it gets sent again once it's done
+        }
         if (signalMapWrapper.hasData()) {
             displayDebugInfo(signalStrength);
             displaySignalInfo(signalMapWrapper);
@@ -203,24 +215,6 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
         }
     }
 
-    /**
-     * Set the phone model, OS version, carrier name on the screen
-     */
-    private void setPhoneInfo()
-    {
-        setTextViewText(R.id.deviceName, String.format("%s %s", Build.MANUFACTURER, Build.MODEL));
-        setTextViewText(R.id.deviceModel, String.format("%s/%s (%s) ", Build.PRODUCT, Build.DEVICE, Build.ID));
-        setTextViewText(R.id.androidVersion,
-            String.format(
-                activity.getString(R.string.androidVersion),
-                Build.VERSION.RELEASE,
-                Build.VERSION.SDK_INT));
-
-        setTextViewText(R.id.carrierName, tm.getNetworkOperatorName());
-        setTextViewText(R.id.buildHost, Build.HOST);
-        setNetworkTypeText();
-    }
-
     private void setTextViewText(int txtViewId, CharSequence text)
     {
         ((TextView) rootView.findViewById(txtViewId)).setText(text);
@@ -263,38 +257,11 @@ public class SignalFragment extends SherlockFragment implements View.OnClickList
      */
     private void displaySignalInfo(SignalMapWrapper signalMapWrapper)
     {
-        Map<NetworkType, ISignal> networkTypes = signalMapWrapper.getNetworkMap();
-        Map<Signal, TextView> signalDataMap = getSignalTextViewMap(sigInfoIds, false);
-        String unit = getString(R.string.dBm);
         //  boolean enableSignals = menuItemStates.get(id.enable_strict_readings);
         // boolean relativeSignals = menuItemStates.get(id.enable_relative_readings);
-
-        for (Map.Entry<Signal, TextView> data : signalDataMap.entrySet()) {
-            // TODO: maybe use an adapter of some sort instead of this (ListAdapter maybe?)
-            TextView currentTextView = data.getValue();
-            try {
-                ISignal signal = networkTypes.get(data.getKey().type());
-                String sigValue = signal.getSignalString(data.getKey());
-
-                if (!StringUtils.isNullOrEmpty(sigValue) && !INVALID_TXT.equals(sigValue)) {
-  /*                  if (!menuItemStates.get(id.enable_db_readings)) {
-                        sigValue = "";
-                        unit = "";
-                    }*/
-                    String signalPercent = true
-                        ? String.format("(%s)", signal.getRelativeEfficiency(data.getKey(), true))
-                        : "";
-
-                    currentTextView.setText(String.format("%s %s %s",
-                        sigValue,
-                        unit,
-                        signalPercent));
-                }
-            } catch (Resources.NotFoundException ignored) {
-                currentTextView.setText(INVALID_TXT);
-            }
-        }
+        viewBinder.bind(signalMapWrapper.getNetworkMap(), getString(R.string.dBm), false, true);
         setNetworkTypeText(); // update the network connection type
+        deferredInit.release();
     }
 
     private void displayDebugInfo(SignalArrayWrapper debugInfo)
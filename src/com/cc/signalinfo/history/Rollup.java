@@ -0,0 +1,407 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import com.cc.signalinfo.enums.Signal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+import static com.cc.signalinfo.history.SnapshotCodec.SIGNAL_COUNT;
+
+/**
+ * Rolled up readings for a session, so comparing sessions never has to go
+ * through every snapshot. Each tier is a list of buckets in key order, each
+ * bucket holding the count, sum, min and max of every reading that landed in it.
+ *
+ * The time tiers are keyed by how far into the session (minutes, ten minutes)
+ * so two sessions line up from their start, and the tile tier is keyed by the
+ * same 100 m tiles as the coverage map (see TileKeys). Since every tier
+ * comes out sorted by key, two sessions can be lined up by just walking both
+ * at once (see SessionComparison).
+ *
+ * Buckets are written as varints (key delta, mask of the readings in it, then
+ * count, sum, min and max - min for each) so the tiers end up a fraction of
+ * the size of the snapshots.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class Rollup
+{
+    /**
+     * How wide the buckets are for each time tier, finest first.
+     */
+    public static final  long[] TIME_TIERS_MS   = {60 * 1000, 10 * 60 * 1000};
+    /**
+     * The tier keyed by map tile.
+     */
+    public static final  int    TILE_TIER       = TIME_TIERS_MS.length;
+    public static final  int    TIER_COUNT      = TILE_TIER + 1;
+    /**
+     * Time tiers get picked so there are no more than this many buckets (if there's a tier that can).
+     */
+    public static final  int    MAX_BUCKETS     = 200;
+    private static final int    MAX_BUCKET_SIZE = 10 + 5 + SIGNAL_COUNT * 40;
+
+    private Rollup() {}
+
+    /**
+     * @param duration - how long the longest session is
+     * @return the finest time tier that fits it in MAX_BUCKETS
+     */
+    public static int pickTimeTier(long duration)
+    {
+        for (int tier = 0; tier < TIME_TIERS_MS.length; ++tier) {
+            if (duration / TIME_TIERS_MS[tier] < MAX_BUCKETS) {
+                return tier;
+            }
+        }
+        return TIME_TIERS_MS.length - 1;
+    }
+
+    /**
+     * The readings that fell into one time range or tile.
+     */
+    public static final class Bucket
+    {
+        private final int[]  counts = new int[SIGNAL_COUNT];
+        private final long[] sums   = new long[SIGNAL_COUNT];
+        private final int[]  mins   = new int[SIGNAL_COUNT];
+        private final int[]  maxes  = new int[SIGNAL_COUNT];
+        private       long   key;
+
+        public Bucket()
+        {
+            clear(0);
+        }
+
+        /**
+         * @param key - the bucket's new key
+         */
+        public void clear(long key)
+        {
+            this.key = key;
+            Arrays.fill(counts, 0);
+            Arrays.fill(sums, 0);
+            Arrays.fill(mins, Integer.MAX_VALUE);
+            Arrays.fill(maxes, Integer.MIN_VALUE);
+        }
+
+        /**
+         * @param readings - readings indexed by Signal.value(), INVALID for none
+         */
+        public void add(int[] readings)
+        {
+            for (int i = 0; i < SIGNAL_COUNT && i < readings.length; ++i) {
+                int value = readings[i];
+
+                if (value != INVALID) {
+                    ++counts[i];
+                    sums[i] += value;
+                    mins[i] = Math.min(mins[i], value);
+                    maxes[i] = Math.max(maxes[i], value);
+                }
+            }
+        }
+
+        /**
+         * @return the minute/ten minutes into the session, or the tile key (see TileKeys)
+         */
+        public long getKey()
+        {
+            return key;
+        }
+
+        public boolean isEmpty()
+        {
+            for (int count : counts) {
+                if (count > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int getCount(Signal signal)
+        {
+            return counts[signal.value()];
+        }
+
+        /**
+         * @return average or NaN if the reading isn't in the bucket
+         */
+        public float getMean(Signal signal)
+        {
+            int count = counts[signal.value()];
+            return count == 0 ? Float.NaN : (float) sums[signal.value()] / count;
+        }
+
+        public long getSum(Signal signal)
+        {
+            return sums[signal.value()];
+        }
+
+        /**
+         * @return lowest value or INVALID if the reading isn't in the bucket
+         */
+        public int getMin(Signal signal)
+        {
+            return counts[signal.value()] == 0 ? INVALID : mins[signal.value()];
+        }
+
+        /**
+         * @return highest value or INVALID if the reading isn't in the bucket
+         */
+        public int getMax(Signal signal)
+        {
+            return counts[signal.value()] == 0 ? INVALID : maxes[signal.value()];
+        }
+
+        /**
+         * @param buffer - where to write (needs MAX_BUCKET_SIZE from at)
+         * @param at - where to start
+         * @param lastKey - key of the bucket written before this one
+         * @return the index right after the bucket
+         */
+        int writeTo(byte[] buffer, int at, long lastKey)
+        {
+            int mask = 0;
+
+            for (int i = 0; i < SIGNAL_COUNT; ++i) {
+                if (counts[i] > 0) {
+                    mask |= 1 << i;
+                }
+            }
+            at = SnapshotCodec.writeVarLong(buffer, at, SnapshotCodec.zigzag(key - lastKey));
+            at = SnapshotCodec.writeVarLong(buffer, at, mask & 0xFFFFFFFFL);
+
+            for (int i = 0; i < SIGNAL_COUNT; ++i) {
+                if (counts[i] > 0) {
+                    at = SnapshotCodec.writeVarLong(buffer, at, counts[i]);
+                    at = SnapshotCodec.writeVarLong(buffer, at, SnapshotCodec.zigzag(sums[i]));
+                    at = SnapshotCodec.writeVarLong(buffer, at, SnapshotCodec.zigzag(mins[i]));
+                    at = SnapshotCodec.writeVarLong(buffer, at, (long) maxes[i] - mins[i]);
+                }
+            }
+            return at;
+        }
+    }
+
+    /**
+     * Where buckets come from, in key order.
+     */
+    public interface BucketSource extends Closeable
+    {
+        /**
+         * @param into - gets the next bucket
+         * @return false if there are no more
+         * @throws IOException - if it can't be read
+         */
+        boolean next(Bucket into) throws IOException;
+    }
+
+    /**
+     * Builds every tier for a session as its snapshots go by. Only the current
+     * bucket of each time tier is kept as is, the finished ones are written out
+     * right away. The tiles all have to be kept until the end since they don't
+     * come in order, but that's only one bucket per 100 m driven. Not thread safe.
+     */
+    public static final class Builder
+    {
+        private final long                    startTime;
+        private final Bucket[]                current  = new Bucket[TIME_TIERS_MS.length];
+        private final ByteArrayOutputStream[] tiers    = new ByteArrayOutputStream[TIER_COUNT];
+        private final long[]                  lastKeys = new long[TIER_COUNT];
+        private final TreeMap<Long, Bucket>   tiles    = new TreeMap<>();
+        private final byte[]                  scratch  = new byte[MAX_BUCKET_SIZE];
+
+        /**
+         * @param startTime - when the session started (time buckets count from here)
+         */
+        public Builder(long startTime)
+        {
+            this.startTime = startTime;
+
+            for (int tier = 0; tier < TIER_COUNT; ++tier) {
+                tiers[tier] = new ByteArrayOutputStream(1024);
+            }
+            for (int tier = 0; tier < current.length; ++tier) {
+                current[tier] = new Bucket();
+            }
+        }
+
+        /**
+         * @param time - when the snapshot was taken
+         * @param readings - readings indexed by Signal.value()
+         * @param latitude - degrees or NaN
+         * @param longitude - degrees or NaN
+         */
+        public void add(long time, int[] readings, double latitude, double longitude)
+        {
+            long elapsed = Math.max(time - startTime, 0);
+
+            for (int tier = 0; tier < current.length; ++tier) {
+                Bucket bucket = current[tier];
+                long key = elapsed / TIME_TIERS_MS[tier];
+
+                // if the clock went backwards it just stays in the bucket it's in
+                if (key > bucket.key) {
+                    write(tier, bucket);
+                    bucket.clear(key);
+                }
+                bucket.add(readings);
+            }
+            if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                Long key = TileKeys.getKey(latitude, longitude, TileKeys.DEFAULT_TILE_METERS);
+                Bucket tile = tiles.get(key);
+
+                if (tile == null) {
+                    tile = new Bucket();
+                    tile.clear(key);
+                    tiles.put(key, tile);
+                }
+                tile.add(readings);
+            }
+        }
+
+        private void write(int tier, Bucket bucket)
+        {
+            if (!bucket.isEmpty()) {
+                tiers[tier].write(scratch, 0, bucket.writeTo(scratch, 0, lastKeys[tier]));
+                lastKeys[tier] = bucket.key;
+            }
+        }
+
+        /**
+         * Writes out the last buckets. Don't add anything after.
+         *
+         * @return each tier's buckets, indexed by tier
+         */
+        public byte[][] finish()
+        {
+            for (int tier = 0; tier < current.length; ++tier) {
+                write(tier, current[tier]);
+                current[tier].clear(Long.MAX_VALUE);
+            }
+            for (Map.Entry<Long, Bucket> tile : tiles.entrySet()) {
+                write(TILE_TIER, tile.getValue());
+            }
+            tiles.clear();
+            byte[][] out = new byte[TIER_COUNT][];
+
+            for (int tier = 0; tier < TIER_COUNT; ++tier) {
+                out[tier] = tiers[tier].toByteArray();
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Reads the buckets of one tier back, straight off a stream.
+     */
+    public static final class Reader implements BucketSource
+    {
+        private final InputStream in;
+        private       long        remaining;
+        private       long        lastKey = 0;
+
+        /**
+         * @param in - where the tier is (closed along with the reader)
+         * @param length - how many bytes the tier is
+         */
+        public Reader(InputStream in, long length)
+        {
+            this.in = in;
+            remaining = length;
+        }
+
+        @Override
+        public boolean next(Bucket into) throws IOException
+        {
+            if (remaining <= 0) {
+                return false;
+            }
+            into.clear(lastKey + SnapshotCodec.unzigzag(readVarLong()));
+            lastKey = into.key;
+            int mask = (int) readVarLong();
+
+            for (int i = 0; i < 32; ++i) {
+                if ((mask & 1 << i) == 0) {
+                    continue;
+                }
+                int count = (int) readVarLong();
+                long sum = SnapshotCodec.unzigzag(readVarLong());
+                int min = (int) SnapshotCodec.unzigzag(readVarLong());
+                int max = (int) (min + readVarLong());
+
+                if (i < SIGNAL_COUNT) {
+                    into.counts[i] = count;
+                    into.sums[i] = sum;
+                    into.mins[i] = min;
+                    into.maxes[i] = max;
+                }
+            }
+            return true;
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.read();
+
+                if (b < 0 || remaining <= 0) {
+                    throw new EOFException("Rollup cut short");
+                }
+                --remaining;
+                value |= (long) (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Bad varint");
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
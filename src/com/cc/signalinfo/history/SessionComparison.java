@@ -0,0 +1,238 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import com.cc.signalinfo.enums.Signal;
+
+import java.io.IOException;
+
+import static com.cc.signalinfo.history.SnapshotCodec.SIGNAL_COUNT;
+
+/**
+ * Lines two sessions up bucket by bucket (by time into the session or by map
+ * tile, see Rollup) and works out how each reading differs between them.
+ *
+ * Both sessions get read in one pass: since the rollup buckets come out in key
+ * order, it just walks both at once and moves whichever one is behind, the same
+ * as merging two sorted lists. Only two buckets and the per-bucket means are
+ * ever in memory, no matter how long the sessions are.
+ *
+ * The overall differences only count buckets both sessions have readings in, so
+ * one session driving somewhere the other didn't (or running longer) doesn't skew them.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionComparison
+{
+    private static final Signal[] SIGNALS = Signal.values();
+
+    private long[]  keys   = new long[64];
+    // means for each row, SIGNAL_COUNT per row, NaN if the session had none
+    private float[] meansA = new float[64 * SIGNAL_COUNT];
+    private float[] meansB = new float[64 * SIGNAL_COUNT];
+    private int     rows   = 0;
+
+    // totals over the buckets both sessions have the reading in
+    private final long[] sumsA   = new long[SIGNAL_COUNT];
+    private final long[] sumsB   = new long[SIGNAL_COUNT];
+    private final long[] countsA = new long[SIGNAL_COUNT];
+    private final long[] countsB = new long[SIGNAL_COUNT];
+    private final int[]  shared  = new int[SIGNAL_COUNT];
+    private       int    onlyA   = 0;
+    private       int    onlyB   = 0;
+
+    private SessionComparison() {}
+
+    /**
+     * Walks both tiers at once, lining up buckets with the same key.
+     * Doesn't close the sources.
+     *
+     * @param a - first session's buckets (in key order)
+     * @param b - second session's buckets, same tier (in key order)
+     * @return the lined up buckets and differences
+     * @throws IOException - if either can't be read
+     */
+    public static SessionComparison compare(Rollup.BucketSource a, Rollup.BucketSource b) throws IOException
+    {
+        SessionComparison comparison = new SessionComparison();
+        Rollup.Bucket bucketA = new Rollup.Bucket();
+        Rollup.Bucket bucketB = new Rollup.Bucket();
+        boolean hasA = a.next(bucketA);
+        boolean hasB = b.next(bucketB);
+
+        while (hasA || hasB) {
+            if (hasA && (!hasB || bucketA.getKey() < bucketB.getKey())) {
+                comparison.add(bucketA, null);
+                hasA = a.next(bucketA);
+            }
+            else if (!hasA || bucketB.getKey() < bucketA.getKey()) {
+                comparison.add(null, bucketB);
+                hasB = b.next(bucketB);
+            }
+            else {
+                comparison.add(bucketA, bucketB);
+                hasA = a.next(bucketA);
+                hasB = b.next(bucketB);
+            }
+        }
+        return comparison;
+    }
+
+    private void add(Rollup.Bucket a, Rollup.Bucket b)
+    {
+        if (rows == keys.length) {
+            // no Arrays.copyOf before API 9
+            long[] newKeys = new long[rows * 2];
+            float[] newMeansA = new float[rows * 2 * SIGNAL_COUNT];
+            float[] newMeansB = new float[rows * 2 * SIGNAL_COUNT];
+
+            System.arraycopy(keys, 0, newKeys, 0, rows);
+            System.arraycopy(meansA, 0, newMeansA, 0, rows * SIGNAL_COUNT);
+            System.arraycopy(meansB, 0, newMeansB, 0, rows * SIGNAL_COUNT);
+            keys = newKeys;
+            meansA = newMeansA;
+            meansB = newMeansB;
+        }
+        keys[rows] = a != null ? a.getKey() : b.getKey();
+        int row = rows * SIGNAL_COUNT;
+
+        for (Signal signal : SIGNALS) {
+            int i = signal.value();
+            meansA[row + i] = a == null ? Float.NaN : a.getMean(signal);
+            meansB[row + i] = b == null ? Float.NaN : b.getMean(signal);
+
+            if (a != null && b != null && a.getCount(signal) > 0 && b.getCount(signal) > 0) {
+                sumsA[i] += a.getSum(signal);
+                countsA[i] += a.getCount(signal);
+                sumsB[i] += b.getSum(signal);
+                countsB[i] += b.getCount(signal);
+                ++shared[i];
+            }
+        }
+        if (a == null) {
+            ++onlyB;
+        }
+        else if (b == null) {
+            ++onlyA;
+        }
+        ++rows;
+    }
+
+    /**
+     * @return how many buckets there are between the two sessions
+     */
+    public int getRowCount()
+    {
+        return rows;
+    }
+
+    /**
+     * @param row - which bucket
+     * @return its key (see Rollup.Bucket.getKey())
+     */
+    public long getKey(int row)
+    {
+        return keys[row];
+    }
+
+    /**
+     * @return the first session's average in the bucket or NaN if it had none
+     */
+    public float getMeanA(int row, Signal signal)
+    {
+        return meansA[row * SIGNAL_COUNT + signal.value()];
+    }
+
+    /**
+     * @return the second session's average in the bucket or NaN if it had none
+     */
+    public float getMeanB(int row, Signal signal)
+    {
+        return meansB[row * SIGNAL_COUNT + signal.value()];
+    }
+
+    /**
+     * @return second minus first in the bucket, NaN unless both had the reading
+     */
+    public float getDelta(int row, Signal signal)
+    {
+        return getMeanB(row, signal) - getMeanA(row, signal);
+    }
+
+    /**
+     * @return how many buckets both sessions had the reading in
+     */
+    public int getSharedCount(Signal signal)
+    {
+        return shared[signal.value()];
+    }
+
+    /**
+     * @return the first session's average over the shared buckets or NaN if there are none
+     */
+    public float getSharedMeanA(Signal signal)
+    {
+        int i = signal.value();
+        return countsA[i] == 0 ? Float.NaN : (float) sumsA[i] / countsA[i];
+    }
+
+    /**
+     * @return the second session's average over the shared buckets or NaN if there are none
+     */
+    public float getSharedMeanB(Signal signal)
+    {
+        int i = signal.value();
+        return countsB[i] == 0 ? Float.NaN : (float) sumsB[i] / countsB[i];
+    }
+
+    /**
+     * @return second minus first over the shared buckets or NaN if there are none
+     */
+    public float getSharedDelta(Signal signal)
+    {
+        return getSharedMeanB(signal) - getSharedMeanA(signal);
+    }
+
+    /**
+     * @return buckets only the first session had
+     */
+    public int getOnlyACount()
+    {
+        return onlyA;
+    }
+
+    /**
+     * @return buckets only the second session had
+     */
+    public int getOnlyBCount()
+    {
+        return onlyB;
+    }
+}
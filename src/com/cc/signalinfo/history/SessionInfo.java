@@ -0,0 +1,238 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One recorded session in the catalog: when it was, where its blocks are
+ * (segment file, byte offset and length), the user's tags and the stats summary.
+ * Everything needed to list sessions without touching the snapshots.
+ *
+ * A session that finished recording normally also has its Rollup tiers
+ * written right after its blocks, one after another.
+ *
+ * Don't change these once they're out of the SessionStore, it makes a new one
+ * whenever a session changes so the list can be read from any thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionInfo
+{
+    long           id;
+    long           startTime;
+    long           endTime;
+    int            segment;
+    long           offset;
+    long           length;
+    int            blockCount;
+    boolean        recording;
+    String         tags;
+    SessionSummary summary;
+    // length of each rollup tier, null if there are none (it never finished recording)
+    int[]          rollupLengths;
+
+    SessionInfo()
+    {
+        summary = new SessionSummary();
+        tags = "";
+    }
+
+    /**
+     * @param other - session to copy (the summary gets shared, it's never changed in place)
+     */
+    SessionInfo(SessionInfo other)
+    {
+        id = other.id;
+        startTime = other.startTime;
+        endTime = other.endTime;
+        segment = other.segment;
+        offset = other.offset;
+        length = other.length;
+        blockCount = other.blockCount;
+        recording = other.recording;
+        tags = other.tags;
+        summary = other.summary;
+        rollupLengths = other.rollupLengths;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * @return time of the last snapshot written (so far if it's still recording)
+     */
+    public long getEndTime()
+    {
+        return endTime;
+    }
+
+    /**
+     * @return which segment file the blocks are in
+     */
+    public int getSegment()
+    {
+        return segment;
+    }
+
+    /**
+     * @return where the first block starts in the segment file
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return how many bytes of blocks there are
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    public int getBlockCount()
+    {
+        return blockCount;
+    }
+
+    /**
+     * @return true if it's still being recorded
+     */
+    public boolean isRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * @return whatever the user tagged it with (never null)
+     */
+    public String getTags()
+    {
+        return tags;
+    }
+
+    public SessionSummary getSummary()
+    {
+        return summary;
+    }
+
+    /**
+     * @return true if the rollup tiers got written
+     */
+    public boolean hasRollups()
+    {
+        return rollupLengths != null;
+    }
+
+    /**
+     * @param tier - the rollup tier
+     * @return where the tier starts in the segment file
+     */
+    long getRollupOffset(int tier)
+    {
+        long at = offset + length;
+
+        for (int i = 0; i < tier; ++i) {
+            at += rollupLengths[i];
+        }
+        return at;
+    }
+
+    /**
+     * @return where the session's last byte (blocks or rollups) is in the segment file, plus one
+     */
+    long getEnd()
+    {
+        return hasRollups() ? getRollupOffset(rollupLengths.length) : offset + length;
+    }
+
+    void writeTo(DataOutput out) throws IOException
+    {
+        out.writeLong(id);
+        out.writeLong(startTime);
+        out.writeLong(endTime);
+        out.writeInt(segment);
+        out.writeLong(offset);
+        out.writeLong(length);
+        out.writeInt(blockCount);
+        out.writeBoolean(recording);
+        out.writeUTF(tags);
+        summary.writeTo(out);
+        out.writeByte(rollupLengths == null ? 0 : rollupLengths.length);
+
+        if (rollupLengths != null) {
+            for (int tierLength : rollupLengths) {
+                out.writeInt(tierLength);
+            }
+        }
+    }
+
+    /**
+     * @param in - where to read it from
+     * @param version - catalog version it was written with (1 didn't have rollups)
+     */
+    static SessionInfo readFrom(DataInput in, int version) throws IOException
+    {
+        SessionInfo session = new SessionInfo();
+        session.id = in.readLong();
+        session.startTime = in.readLong();
+        session.endTime = in.readLong();
+        session.segment = in.readInt();
+        session.offset = in.readLong();
+        session.length = in.readLong();
+        session.blockCount = in.readInt();
+        session.recording = in.readBoolean();
+        session.tags = in.readUTF();
+        session.summary = SessionSummary.readFrom(in);
+
+        if (version >= 2) {
+            int tiers = in.readUnsignedByte();
+
+            if (tiers > 0) {
+                session.rollupLengths = new int[tiers];
+
+                for (int i = 0; i < tiers; ++i) {
+                    session.rollupLengths[i] = in.readInt();
+                }
+            }
+        }
+        return session;
+    }
+}
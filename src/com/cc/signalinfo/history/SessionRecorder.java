@@ -0,0 +1,231 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Records snapshots into a SessionStore between start() and stop().
+ *
+ * Snapshots get encoded into a block right away (cheap, no allocating) and
+ * only a full block gets handed to the writer executor to go to disk, so
+ * add() never waits on the disk. The writer has to run things one at a time
+ * and in order (like a single thread executor) since each write depends on the one before.
+ *
+ * The session's Rollup tiers get built along the way too and written out when it stops.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionRecorder
+{
+    private final SessionStore          store;
+    private final Executor              writer;
+    private final RecorderCallback      callback;
+    private final SnapshotCodec.Encoder encoder = new SnapshotCodec.Encoder();
+    private       SessionSummary        summary = null;
+    private       Rollup.Builder        rollups = null;
+    private       Session               session = null;
+    private volatile boolean recording = false;
+
+    /**
+     * @param store - where sessions go
+     * @param writer - runs the disk writes, one at a time in order
+     * @param callback - told about sessions starting, stopping and failing (called on the writer)
+     */
+    public SessionRecorder(SessionStore store, Executor writer, RecorderCallback callback)
+    {
+        this.store = store;
+        this.writer = writer;
+        this.callback = callback;
+    }
+
+    /**
+     * Starts a new session (does nothing if one is already going).
+     *
+     * @param now - when it started
+     * @param tags - whatever the user wants to tag it with (or null)
+     */
+    public synchronized void start(final long now, final String tags)
+    {
+        if (recording) {
+            return;
+        }
+        encoder.reset();
+        summary = new SessionSummary();
+        rollups = new Rollup.Builder(now);
+        final Session started = new Session();
+        session = started;
+        recording = true;
+
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    started.info = store.begin(now, tags);
+                    callback.onSessionChanged(started.info);
+                }
+                catch (IOException e) {
+                    started.failed = true;
+                    callback.onRecordingError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a snapshot to the session if one's recording.
+     *
+     * @param time - when it was taken
+     * @param readings - readings indexed by Signal.value()
+     * @param qualities - link quality indexed by NetworkType.ordinal()
+     * @param latitude - where the phone was in degrees or NaN
+     * @param longitude - where the phone was in degrees or NaN
+     */
+    public synchronized void add(long time, int[] readings, int[] qualities, double latitude, double longitude)
+    {
+        if (!recording) {
+            return;
+        }
+        encoder.add(time, readings, qualities, latitude, longitude);
+        summary.add(readings, qualities, !Double.isNaN(latitude));
+        rollups.add(time, readings, latitude, longitude);
+
+        if (encoder.isFull()) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out whatever's left and finishes the session.
+     *
+     * @param now - when it stopped
+     */
+    public synchronized void stop(final long now)
+    {
+        if (!recording) {
+            return;
+        }
+        flush();
+        final Session stopped = session;
+        final Rollup.Builder finished = rollups;
+        session = null;
+        rollups = null;
+        recording = false;
+
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (stopped.failed) {
+                    return;
+                }
+                try {
+                    callback.onSessionChanged(store.finish(stopped.info.getId(), now, finished.finish()));
+                }
+                catch (IOException e) {
+                    callback.onRecordingError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true if a session is recording
+     */
+    public boolean isRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * Hands the block off to the writer and starts a new one.
+     */
+    private void flush()
+    {
+        if (encoder.getCount() == 0) {
+            return;
+        }
+        final byte[] block = encoder.toByteArray();
+        final long endTime = encoder.getLastTime();
+        final SessionSummary soFar = new SessionSummary(summary);
+        final Session current = session;
+        encoder.reset();
+
+        writer.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (current.failed) {
+                    return; // already told about it
+                }
+                try {
+                    current.info = store.append(current.info.getId(), block, endTime, soFar);
+                    callback.onSessionChanged(current.info);
+                }
+                catch (IOException e) {
+                    current.failed = true;
+                    callback.onRecordingError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * The session being written. Only touched by the writer after it's made.
+     */
+    private static final class Session
+    {
+        SessionInfo info   = null;
+        boolean     failed = false;
+    }
+
+    /**
+     * Told what's going on with the recording. Called on the writer.
+     */
+    public interface RecorderCallback
+    {
+        /**
+         * @param session - the session as it is in the catalog now (started, block written or finished)
+         */
+        void onSessionChanged(SessionInfo session);
+
+        /**
+         * The session couldn't be written, nothing more gets written to it.
+         *
+         * @param e - what went wrong
+         */
+        void onRecordingError(IOException e);
+    }
+}
@@ -0,0 +1,710 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps recorded sessions on disk. The snapshots go into segment files as
+ * SnapshotCodec blocks, one session after another, and a small catalog file
+ * holds a SessionInfo (time range, byte offsets, tags and summary) for each one.
+ *
+ * Listing sessions only ever reads the catalog, and opening a session seeks
+ * straight to its offset in its segment file. When a session finishes, its
+ * Rollup tiers get written right after its blocks so comparing sessions
+ * can read those instead of the snapshots. A new segment gets started once
+ * the current one is over SEGMENT_SIZE and a segment file is deleted once
+ * there's nothing left in it. Nothing gets compacted, so a deleted session's
+ * bytes stay on disk until every other session in its segment is deleted too.
+ * Worst case that's most of a segment (8 MB or so) per session that's kept,
+ * which is fine for the handful of sessions anyone keeps around.
+ *
+ * The catalog gets rewritten (to a temp file and renamed over) when a session
+ * starts, finishes, gets new tags or gets deleted, not for every block that's
+ * written while recording. Blocks are synced to the segment as they're written
+ * though, so if the app gets killed mid recording the blocks that made it are
+ * picked back up from the segment the next time the catalog is loaded and only
+ * the last unfinished block is lost.
+ *
+ * Everything here touches the disk, so keep it off the UI thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionStore
+{
+    /**
+     * Sessions start in a new segment file once the current one is bigger than this.
+     */
+    public static final  long   SEGMENT_SIZE    = 8 * 1024 * 1024;
+    /**
+     * Longest tags can be.
+     */
+    public static final  int    MAX_TAGS_LENGTH = 200;
+    private static final String CATALOG         = "sessions.idx";
+    private static final String SEGMENT_PREFIX  = "segment-";
+    private static final String SEGMENT_SUFFIX  = ".dat";
+    private static final int    MAGIC           = 0x53494353; // "SICS"
+    // 2 added the rollups
+    private static final int    VERSION         = 2;
+
+    private final File              dir;
+    // never changed once it's set, changes make a new list so getSessions() can hand it out
+    private       List<SessionInfo> sessions       = null;
+    private       long              nextId         = 1;
+    private       int               currentSegment = 0;
+
+    /**
+     * @param dir - where to keep everything (made when the first session starts)
+     */
+    public SessionStore(File dir)
+    {
+        this.dir = dir;
+    }
+
+    /**
+     * @return every session, oldest first (only reads the catalog)
+     * @throws IOException - if the catalog can't be read
+     */
+    public synchronized List<SessionInfo> getSessions() throws IOException
+    {
+        load();
+        return sessions;
+    }
+
+    /**
+     * @param id - the session
+     * @return the session or null if there's no such thing
+     * @throws IOException - if the catalog can't be read
+     */
+    public synchronized SessionInfo getSession(long id) throws IOException
+    {
+        load();
+        int index = indexOf(id);
+        return index < 0 ? null : sessions.get(index);
+    }
+
+    /**
+     * Adds a new session that's recording to the catalog.
+     *
+     * @param startTime - when it started
+     * @param tags - whatever the user wants to tag it with (or null)
+     * @return the new session
+     * @throws IOException - if the catalog can't be written
+     */
+    public synchronized SessionInfo begin(long startTime, String tags) throws IOException
+    {
+        load();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File segment = getSegmentFile(currentSegment);
+
+        if (segment.length() >= SEGMENT_SIZE) {
+            segment = getSegmentFile(++currentSegment);
+        }
+        SessionInfo session = new SessionInfo();
+        session.id = nextId++;
+        session.startTime = startTime;
+        session.endTime = startTime;
+        session.segment = currentSegment;
+        session.offset = segment.length();
+        session.recording = true;
+        session.tags = cleanTags(tags);
+
+        List<SessionInfo> updated = new ArrayList<>(sessions);
+        updated.add(session);
+        save(updated);
+        return session;
+    }
+
+    /**
+     * Adds blocks to the end of a session that's recording.
+     *
+     * @param id - the session
+     * @param blocks - one or more framed blocks from SnapshotCodec.Encoder
+     * @param endTime - time of the last snapshot in them
+     * @param summary - stats for the whole session so far (it's kept, don't change it after)
+     * @return the session as it is now
+     * @throws IOException - if it can't be written
+     */
+    public synchronized SessionInfo append(long id, byte[] blocks, long endTime, SessionSummary summary)
+        throws IOException
+    {
+        SessionInfo session = getRecording(id);
+        appendToSegment(session, blocks);
+
+        SessionInfo updated = new SessionInfo(session);
+        updated.length += blocks.length;
+        updated.blockCount += countBlocks(blocks);
+        updated.endTime = endTime;
+        updated.summary = summary;
+        // only in memory, recover() finds the block again if the app dies before the catalog's saved
+        replace(updated, false);
+        return updated;
+    }
+
+    /**
+     * Marks a session as done recording and writes its rollups after its blocks.
+     *
+     * @param id - the session
+     * @param endTime - when it stopped
+     * @param rollups - each Rollup tier (from Rollup.Builder) or null for none
+     * @return the session as it is now
+     * @throws IOException - if it can't be written
+     */
+    public synchronized SessionInfo finish(long id, long endTime, byte[][] rollups) throws IOException
+    {
+        SessionInfo updated = new SessionInfo(getRecording(id));
+
+        if (rollups != null) {
+            updated.rollupLengths = new int[rollups.length];
+            int total = 0;
+
+            for (int tier = 0; tier < rollups.length; ++tier) {
+                updated.rollupLengths[tier] = rollups[tier].length;
+                total += rollups[tier].length;
+            }
+            byte[] all = new byte[total];
+            int at = 0;
+
+            for (byte[] tier : rollups) {
+                System.arraycopy(tier, 0, all, at, tier.length);
+                at += tier.length;
+            }
+            appendToSegment(updated, all);
+        }
+        updated.recording = false;
+        updated.endTime = Math.max(updated.endTime, endTime);
+        replace(updated, true);
+        return updated;
+    }
+
+    /**
+     * @param id - the session
+     * @param tags - new tags (or null for none)
+     * @throws IOException - if the catalog can't be written
+     */
+    public synchronized void setTags(long id, String tags) throws IOException
+    {
+        SessionInfo session = getSession(id);
+
+        if (session != null) {
+            SessionInfo updated = new SessionInfo(session);
+            updated.tags = cleanTags(tags);
+            replace(updated, true);
+        }
+    }
+
+    /**
+     * Drops a session from the catalog and deletes its segment
+     * file if nothing else is in it. Can't delete one that's recording.
+     *
+     * @param id - the session
+     * @return false if there's no such session or it's recording
+     * @throws IOException - if the catalog can't be written
+     */
+    public synchronized boolean delete(long id) throws IOException
+    {
+        load();
+        int index = indexOf(id);
+
+        if (index < 0 || sessions.get(index).recording) {
+            return false;
+        }
+        List<SessionInfo> updated = new ArrayList<>(sessions);
+        int segment = updated.remove(index).segment;
+        save(updated);
+
+        if (segment != currentSegment && !isUsed(segment)) {
+            if (!getSegmentFile(segment).delete()) {
+                throw new IOException("Could not delete segment " + segment);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens a session's snapshots for reading. Seeks straight to
+     * the session's blocks and reads only those.
+     *
+     * @param session - the session (from the catalog)
+     * @return the reader, close it when done
+     * @throws IOException - if the segment can't be opened
+     */
+    public Reader open(SessionInfo session) throws IOException
+    {
+        return new Reader(getSegmentFile(session.segment), session.offset, session.length);
+    }
+
+    /**
+     * Opens a session's blocks as they are on disk (framed SnapshotCodec blocks
+     * one after another) for sending them somewhere as is. Only the blocks
+     * written so far are included if the session is still recording.
+     *
+     * @param session - the session (from the catalog)
+     * @param from - how many bytes into the session's blocks to start (has to be where a block starts)
+     * @return the blocks from there on, close it when done
+     * @throws IOException - if the segment can't be opened
+     */
+    public InputStream openBlocks(SessionInfo session, long from) throws IOException
+    {
+        if (from < 0 || from > session.length) {
+            throw new IOException("Session " + session.id + " has no byte " + from);
+        }
+        FileInputStream file = new FileInputStream(getSegmentFile(session.segment));
+
+        try {
+            file.getChannel().position(session.offset + from);
+        }
+        catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        return new BoundedInputStream(file, session.length - from);
+    }
+
+    /**
+     * Opens one rollup tier of a session. If the session never got its rollups
+     * written (the app died while it was recording) they get built from the
+     * snapshots instead, which is slower but gives the same thing.
+     *
+     * @param session - the session (from the catalog)
+     * @param tier - which Rollup tier
+     * @return the tier's buckets, close it when done
+     * @throws IOException - if it can't be read
+     */
+    public Rollup.BucketSource openRollup(SessionInfo session, int tier) throws IOException
+    {
+        if (session.hasRollups() && tier < session.rollupLengths.length) {
+            FileInputStream file = new FileInputStream(getSegmentFile(session.segment));
+
+            try {
+                file.getChannel().position(session.getRollupOffset(tier));
+            }
+            catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            return new Rollup.Reader(new BufferedInputStream(file), session.rollupLengths[tier]);
+        }
+        Rollup.Builder builder = new Rollup.Builder(session.startTime);
+        Reader reader = open(session);
+
+        try {
+            while (reader.next()) {
+                SnapshotCodec.Decoder snapshot = reader.getDecoder();
+                builder.add(snapshot.getTime(), snapshot.getReadings(),
+                    snapshot.getLatitude(), snapshot.getLongitude());
+            }
+        }
+        finally {
+            reader.close();
+        }
+        byte[] built = builder.finish()[tier];
+        return new Rollup.Reader(new ByteArrayInputStream(built), built.length);
+    }
+
+    /**
+     * @param segment - segment number
+     * @return the segment file
+     */
+    public File getSegmentFile(int segment)
+    {
+        return new File(dir, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @param session - the session being written (has to be the last thing in its segment)
+     * @param bytes - what to add on the end
+     */
+    private void appendToSegment(SessionInfo session, byte[] bytes) throws IOException
+    {
+        File segment = getSegmentFile(session.segment);
+
+        if (segment.length() != session.offset + session.length) {
+            // someone else got into the segment, the offsets wouldn't line up
+            throw new IOException("Segment " + segment + " is not where session " + session.id + " left it");
+        }
+        FileOutputStream out = new FileOutputStream(segment, true);
+
+        try {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private SessionInfo getRecording(long id) throws IOException
+    {
+        load();
+        int index = indexOf(id);
+
+        if (index < 0 || !sessions.get(index).recording) {
+            throw new IOException("Session " + id + " is not recording");
+        }
+        return sessions.get(index);
+    }
+
+    /**
+     * @param session - the changed session
+     * @param write - false to only change it in memory (the catalog gets it the next time it's saved)
+     */
+    private void replace(SessionInfo session, boolean write) throws IOException
+    {
+        List<SessionInfo> updated = new ArrayList<>(sessions);
+        updated.set(indexOf(session.id), session);
+
+        if (write) {
+            save(updated);
+        }
+        else {
+            sessions = Collections.unmodifiableList(updated);
+        }
+    }
+
+    private int indexOf(long id)
+    {
+        for (int i = 0; i < sessions.size(); ++i) {
+            if (sessions.get(i).id == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isUsed(int segment)
+    {
+        for (SessionInfo session : sessions) {
+            if (session.segment == segment) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String cleanTags(String tags)
+    {
+        if (tags == null) {
+            return "";
+        }
+        tags = tags.trim();
+        return tags.length() > MAX_TAGS_LENGTH ? tags.substring(0, MAX_TAGS_LENGTH) : tags;
+    }
+
+    /**
+     * @param blocks - framed blocks one after another
+     * @return how many there are
+     */
+    private static int countBlocks(byte[] blocks)
+    {
+        int count = 0;
+
+        for (int at = 0; at + 4 <= blocks.length; ++count) {
+            int length = (blocks[at] & 0xFF) << 24 | (blocks[at + 1] & 0xFF) << 16
+                | (blocks[at + 2] & 0xFF) << 8 | blocks[at + 3] & 0xFF;
+            at += 4 + length;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the catalog the first time it's needed and cleans up after
+     * any session that was still recording when the app died.
+     */
+    private void load() throws IOException
+    {
+        if (sessions != null) {
+            return;
+        }
+        List<SessionInfo> loaded = new ArrayList<>();
+        File catalog = new File(dir, CATALOG);
+
+        if (catalog.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(catalog)));
+
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a session catalog " + catalog);
+                }
+                int version = in.readInt();
+
+                if (version < 1 || version > VERSION) {
+                    throw new IOException("Unknown session catalog version " + version);
+                }
+                nextId = in.readLong();
+                currentSegment = in.readInt();
+
+                for (int i = in.readInt(); i > 0; --i) {
+                    loaded.add(SessionInfo.readFrom(in, version));
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        sessions = Collections.unmodifiableList(loaded);
+        recover();
+    }
+
+    /**
+     * Anything recording now was left over from before (nothing can be
+     * recording before the catalog's loaded), so it gets the blocks that were
+     * written after the catalog was last saved and is finished off there.
+     * Whatever's past the last whole block in the current segment is a block
+     * that didn't make it and gets cut off.
+     */
+    private void recover() throws IOException
+    {
+        List<SessionInfo> updated = new ArrayList<>(sessions);
+        boolean changed = false;
+        long end = 0;
+
+        for (int i = 0; i < updated.size(); ++i) {
+            SessionInfo session = updated.get(i);
+
+            if (session.recording) {
+                session = new SessionInfo(session.segment == currentSegment ? rollForward(session) : session);
+                session.recording = false;
+                updated.set(i, session);
+                changed = true;
+            }
+            if (session.segment == currentSegment) {
+                end = Math.max(end, session.getEnd());
+            }
+        }
+        File segment = getSegmentFile(currentSegment);
+
+        if (segment.length() > end) {
+            RandomAccessFile file = new RandomAccessFile(segment, "rw");
+
+            try {
+                file.setLength(end);
+            }
+            finally {
+                file.close();
+            }
+        }
+        if (changed) {
+            save(updated);
+        }
+    }
+
+    /**
+     * Reads the blocks past where the catalog says a recording session ends,
+     * up to the first one that's cut short or doesn't decode.
+     *
+     * @param session - the session, has to be the last thing in its segment
+     * @return the session with those blocks added on (or the same one if there aren't any)
+     */
+    private SessionInfo rollForward(SessionInfo session) throws IOException
+    {
+        File segment = getSegmentFile(session.segment);
+        long position = session.getEnd();
+        long size = segment.length();
+
+        if (size - position < 4) {
+            return session;
+        }
+        SessionInfo updated = new SessionInfo(session);
+        SessionSummary summary = new SessionSummary(session.summary);
+        SnapshotCodec.Decoder decoder = new SnapshotCodec.Decoder();
+        FileInputStream file = new FileInputStream(segment);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(file, SnapshotCodec.MAX_BLOCK_SIZE));
+
+        try {
+            file.getChannel().position(position);
+
+            while (size - position >= 4) {
+                int length = in.readInt();
+
+                if (length <= 0 || length > SnapshotCodec.MAX_FRAME_SIZE || position + 4 + length > size) {
+                    break;
+                }
+                // the whole block has to decode before any of it counts
+                SessionSummary block = new SessionSummary();
+
+                try {
+                    decoder.readBody(in, length);
+
+                    while (decoder.next()) {
+                        block.add(decoder.getReadings(), decoder.getQualities(), decoder.hasLocation());
+                    }
+                }
+                catch (IOException e) {
+                    break;
+                }
+                summary.add(block);
+                position += 4 + length;
+                updated.length += 4 + length;
+                ++updated.blockCount;
+                updated.endTime = Math.max(updated.endTime, decoder.getLastTime());
+            }
+        }
+        finally {
+            in.close();
+        }
+        updated.summary = summary;
+        return updated;
+    }
+
+    private void save(List<SessionInfo> updated) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File catalog = new File(dir, CATALOG);
+        File temp = new File(dir, CATALOG + ".tmp");
+        FileOutputStream file = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(nextId);
+            out.writeInt(currentSegment);
+            out.writeInt(updated.size());
+
+            for (SessionInfo session : updated) {
+                session.writeTo(out);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+        if (!temp.renameTo(catalog)) {
+            throw new IOException("Could not replace " + catalog);
+        }
+        sessions = Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * Reads one session's snapshots in order, a block at a time.
+     * Not thread safe.
+     */
+    public static class Reader implements Closeable
+    {
+        private final FileInputStream       file;
+        private final DataInputStream       in;
+        private final SnapshotCodec.Decoder decoder = new SnapshotCodec.Decoder();
+        private final long                  end;
+        private       long                  position;
+        private       boolean               hasBlock = false;
+
+        /**
+         * @param segment - the segment file
+         * @param offset - where the session's first block is
+         * @param length - how many bytes of blocks it has
+         * @throws IOException - if the segment can't be opened
+         */
+        Reader(File segment, long offset, long length) throws IOException
+        {
+            file = new FileInputStream(segment);
+            file.getChannel().position(offset);
+            in = new DataInputStream(new BufferedInputStream(file, SnapshotCodec.MAX_BLOCK_SIZE));
+            position = offset;
+            end = offset + length;
+        }
+
+        /**
+         * Reads the next block in without going through its snapshots
+         * (for when only the block's time range matters).
+         *
+         * @return false if there are no more blocks
+         * @throws IOException - if it can't be read
+         */
+        public boolean nextBlock() throws IOException
+        {
+            if (position >= end) {
+                hasBlock = false;
+                return false;
+            }
+            int length = in.readInt();
+
+            if (length <= 0 || length > SnapshotCodec.MAX_FRAME_SIZE || position + 4 + length > end) {
+                throw new IOException("Bad block length " + length);
+            }
+            decoder.readBody(in, length);
+            position += 4 + length;
+            hasBlock = true;
+            return true;
+        }
+
+        /**
+         * Moves on to the next snapshot, reading in the next block if needed.
+         *
+         * @return false if there are no more
+         * @throws IOException - if it can't be read
+         */
+        public boolean next() throws IOException
+        {
+            while (!hasBlock || !decoder.next()) {
+                if (!nextBlock()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the decoder holding the current block and snapshot
+         */
+        public SnapshotCodec.Decoder getDecoder()
+        {
+            return decoder;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
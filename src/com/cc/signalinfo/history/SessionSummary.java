@@ -0,0 +1,287 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+import static com.cc.signalinfo.history.SnapshotCodec.NETWORK_COUNT;
+import static com.cc.signalinfo.history.SnapshotCodec.SIGNAL_COUNT;
+
+/**
+ * Running stats for a recorded session: how many snapshots, and the count,
+ * min, max and mean of every reading and of each network's link quality.
+ * Kept up to date while recording and stored in the session catalog so
+ * listing sessions never has to read the snapshots themselves.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionSummary
+{
+    private final int[]  counts        = new int[SIGNAL_COUNT];
+    private final int[]  mins          = new int[SIGNAL_COUNT];
+    private final int[]  maxes         = new int[SIGNAL_COUNT];
+    private final long[] sums          = new long[SIGNAL_COUNT];
+    private final int[]  qualityCounts = new int[NETWORK_COUNT];
+    private final long[] qualitySums   = new long[NETWORK_COUNT];
+    private       int    snapshots     = 0;
+    private       int    located       = 0;
+
+    public SessionSummary()
+    {
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        Arrays.fill(maxes, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param other - summary to copy
+     */
+    public SessionSummary(SessionSummary other)
+    {
+        set(other);
+    }
+
+    /**
+     * @param readings - readings indexed by Signal.value(), INVALID for none
+     * @param qualities - link quality indexed by NetworkType.ordinal(), INVALID for none
+     * @param hasLocation - true if the snapshot had a location
+     */
+    public void add(int[] readings, int[] qualities, boolean hasLocation)
+    {
+        for (int i = 0; i < SIGNAL_COUNT && i < readings.length; ++i) {
+            int value = readings[i];
+
+            if (value == INVALID) {
+                continue;
+            }
+            ++counts[i];
+            sums[i] += value;
+            mins[i] = Math.min(mins[i], value);
+            maxes[i] = Math.max(maxes[i], value);
+        }
+        for (int i = 0; i < NETWORK_COUNT && i < qualities.length; ++i) {
+            if (qualities[i] != INVALID) {
+                ++qualityCounts[i];
+                qualitySums[i] += qualities[i];
+            }
+        }
+        if (hasLocation) {
+            ++located;
+        }
+        ++snapshots;
+    }
+
+    /**
+     * Adds everything in another summary to this one, as if its snapshots had been added here too.
+     *
+     * @param other - summary to add in
+     */
+    public void add(SessionSummary other)
+    {
+        for (int i = 0; i < SIGNAL_COUNT; ++i) {
+            counts[i] += other.counts[i];
+            sums[i] += other.sums[i];
+            mins[i] = Math.min(mins[i], other.mins[i]);
+            maxes[i] = Math.max(maxes[i], other.maxes[i]);
+        }
+        for (int i = 0; i < NETWORK_COUNT; ++i) {
+            qualityCounts[i] += other.qualityCounts[i];
+            qualitySums[i] += other.qualitySums[i];
+        }
+        snapshots += other.snapshots;
+        located += other.located;
+    }
+
+    /**
+     * @param other - summary to copy over this one
+     */
+    public final void set(SessionSummary other)
+    {
+        System.arraycopy(other.counts, 0, counts, 0, SIGNAL_COUNT);
+        System.arraycopy(other.mins, 0, mins, 0, SIGNAL_COUNT);
+        System.arraycopy(other.maxes, 0, maxes, 0, SIGNAL_COUNT);
+        System.arraycopy(other.sums, 0, sums, 0, SIGNAL_COUNT);
+        System.arraycopy(other.qualityCounts, 0, qualityCounts, 0, NETWORK_COUNT);
+        System.arraycopy(other.qualitySums, 0, qualitySums, 0, NETWORK_COUNT);
+        snapshots = other.snapshots;
+        located = other.located;
+    }
+
+    public int getSnapshotCount()
+    {
+        return snapshots;
+    }
+
+    /**
+     * @return how many snapshots had a location
+     */
+    public int getLocatedCount()
+    {
+        return located;
+    }
+
+    /**
+     * @param signal - the reading
+     * @return how many snapshots had the reading
+     */
+    public int getCount(Signal signal)
+    {
+        return counts[signal.value()];
+    }
+
+    /**
+     * @param signal - the reading
+     * @return lowest value or INVALID if it never showed up
+     */
+    public int getMin(Signal signal)
+    {
+        return counts[signal.value()] == 0 ? INVALID : mins[signal.value()];
+    }
+
+    /**
+     * @param signal - the reading
+     * @return highest value or INVALID if it never showed up
+     */
+    public int getMax(Signal signal)
+    {
+        return counts[signal.value()] == 0 ? INVALID : maxes[signal.value()];
+    }
+
+    /**
+     * @param signal - the reading
+     * @return average value or NaN if it never showed up
+     */
+    public float getMean(Signal signal)
+    {
+        int count = counts[signal.value()];
+        return count == 0 ? Float.NaN : (float) sums[signal.value()] / count;
+    }
+
+    /**
+     * @param type - the network
+     * @return average link quality or NaN if there never was any
+     */
+    public float getQualityMean(NetworkType type)
+    {
+        int count = qualityCounts[type.ordinal()];
+        return count == 0 ? Float.NaN : (float) qualitySums[type.ordinal()] / count;
+    }
+
+    /**
+     * Only writes out the readings that showed up, most sessions only see one or two networks.
+     *
+     * @param out - where to write it
+     * @throws IOException - if it can't be written
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(snapshots);
+        out.writeInt(located);
+        out.writeByte(countUsed(counts));
+
+        for (int i = 0; i < SIGNAL_COUNT; ++i) {
+            if (counts[i] > 0) {
+                out.writeByte(i);
+                out.writeInt(counts[i]);
+                out.writeInt(mins[i]);
+                out.writeInt(maxes[i]);
+                out.writeLong(sums[i]);
+            }
+        }
+        out.writeByte(countUsed(qualityCounts));
+
+        for (int i = 0; i < NETWORK_COUNT; ++i) {
+            if (qualityCounts[i] > 0) {
+                out.writeByte(i);
+                out.writeInt(qualityCounts[i]);
+                out.writeLong(qualitySums[i]);
+            }
+        }
+    }
+
+    /**
+     * @param in - where to read it from
+     * @return the summary
+     * @throws IOException - if it can't be read
+     */
+    public static SessionSummary readFrom(DataInput in) throws IOException
+    {
+        SessionSummary summary = new SessionSummary();
+        summary.snapshots = in.readInt();
+        summary.located = in.readInt();
+        int used = in.readUnsignedByte();
+
+        for (int n = 0; n < used; ++n) {
+            int i = in.readUnsignedByte();
+            int count = in.readInt();
+            int min = in.readInt();
+            int max = in.readInt();
+            long sum = in.readLong();
+
+            if (i < SIGNAL_COUNT) {
+                summary.counts[i] = count;
+                summary.mins[i] = min;
+                summary.maxes[i] = max;
+                summary.sums[i] = sum;
+            }
+        }
+        used = in.readUnsignedByte();
+
+        for (int n = 0; n < used; ++n) {
+            int i = in.readUnsignedByte();
+            int count = in.readInt();
+            long sum = in.readLong();
+
+            if (i < NETWORK_COUNT) {
+                summary.qualityCounts[i] = count;
+                summary.qualitySums[i] = sum;
+            }
+        }
+        return summary;
+    }
+
+    private static int countUsed(int[] counts)
+    {
+        int used = 0;
+
+        for (int count : counts) {
+            if (count > 0) {
+                ++used;
+            }
+        }
+        return used;
+    }
+}
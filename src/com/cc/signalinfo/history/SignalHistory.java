@@ -0,0 +1,271 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.history;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+
+import static com.cc.signalinfo.history.SnapshotCodec.INVALID;
+
+/**
+ * Recent signal readings and anything that happened along with them
+ * (anomalies and so on), kept in memory.
+ *
+ * Both are fixed size rings of primitive arrays, so adding doesn't allocate
+ * and once full the oldest entries get written over. Readings are stored
+ * as one row of Signal.values().length ints per sample, indexed by Signal.value(),
+ * with the link quality score for each network kept the same way next to it
+ * and where the phone was (NaN if it wasn't known).
+ *
+ * Indexes for reading go from 0 (oldest) to size() - 1 (newest).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public class SignalHistory
+{
+    /**
+     * A signal suddenly got worse than its recent baseline (see AnomalyDetector).
+     */
+    public static final int EVENT_ANOMALY = 1;
+    /**
+     * One of the user's threshold rules went off (see AlertEngine).
+     */
+    public static final int EVENT_ALERT   = 2;
+
+    public static final int DEFAULT_CAPACITY       = 3600;
+    public static final int DEFAULT_EVENT_CAPACITY = 256;
+
+    private static final Signal[] SIGNALS  = Signal.values();
+    private static final int      ROW_SIZE = SIGNALS.length;
+    private static final int      NETWORKS = NetworkType.values().length;
+
+    private final int      capacity;
+    private final long[]   times;
+    private final int[]    values;
+    private final int[]    qualities;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private       int      head  = 0; // next slot to write
+    private       int      count = 0;
+
+    private final int    eventCapacity;
+    private final long[] eventTimes;
+    private final int[]  eventTypes;
+    private final int[]  eventSignals;
+    private final int[]  eventValues;
+    private       int    eventHead  = 0;
+    private       int    eventCount = 0;
+
+    public SignalHistory()
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_EVENT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - how many samples to keep
+     * @param eventCapacity - how many events to keep
+     */
+    public SignalHistory(int capacity, int eventCapacity)
+    {
+        this.capacity = capacity;
+        this.eventCapacity = eventCapacity;
+        times = new long[capacity];
+        values = new int[capacity * ROW_SIZE];
+        qualities = new int[capacity * NETWORKS];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        eventTimes = new long[eventCapacity];
+        eventTypes = new int[eventCapacity];
+        eventSignals = new int[eventCapacity];
+        eventValues = new int[eventCapacity];
+    }
+
+    /**
+     * @param timestamp - when the readings were taken (System.currentTimeMillis())
+     * @param readings - readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param quality - quality score for each network indexed by NetworkType.ordinal()
+     *                  (see QualityScorer), AppSetup.INVALID for none
+     * @param latitude - where the phone was in degrees, NaN if not known
+     * @param longitude - where the phone was in degrees, NaN if not known
+     */
+    public synchronized void add(long timestamp, int[] readings, int[] quality, double latitude, double longitude)
+    {
+        latitudes[head] = latitude;
+        longitudes[head] = longitude;
+        copyRow(readings, values, head * ROW_SIZE, ROW_SIZE);
+        copyRow(quality, qualities, head * NETWORKS, NETWORKS);
+        times[head] = timestamp;
+        head = (head + 1) % capacity;
+
+        if (count < capacity) {
+            ++count;
+        }
+    }
+
+    private static void copyRow(int[] row, int[] ring, int offset, int rowSize)
+    {
+        int length = row == null ? 0 : Math.min(row.length, rowSize);
+
+        if (length > 0) {
+            System.arraycopy(row, 0, ring, offset, length);
+        }
+        for (int i = length; i < rowSize; ++i) {
+            ring[offset + i] = INVALID;
+        }
+    }
+
+    /**
+     * @param type - one of the EVENT_ constants
+     * @param signal - the signal it's about
+     * @param value - the reading at the time
+     * @param timestamp - when it happened (System.currentTimeMillis())
+     */
+    public synchronized void addEvent(int type, Signal signal, int value, long timestamp)
+    {
+        eventTimes[eventHead] = timestamp;
+        eventTypes[eventHead] = type;
+        eventSignals[eventHead] = signal.value();
+        eventValues[eventHead] = value;
+        eventHead = (eventHead + 1) % eventCapacity;
+
+        if (eventCount < eventCapacity) {
+            ++eventCount;
+        }
+    }
+
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param index - 0 (oldest) to size() - 1 (newest)
+     * @return when the sample was taken
+     */
+    public synchronized long getTime(int index)
+    {
+        return times[slot(index, head, count, capacity)];
+    }
+
+    /**
+     * @param index - 0 (oldest) to size() - 1 (newest)
+     * @param signal - the reading to get
+     * @return the reading or AppSetup.INVALID
+     */
+    public synchronized int getValue(int index, Signal signal)
+    {
+        return values[slot(index, head, count, capacity) * ROW_SIZE + signal.value()];
+    }
+
+    /**
+     * @param index - 0 (oldest) to size() - 1 (newest)
+     * @param type - the network to get the score for
+     * @return the link quality score (0 - 100) or AppSetup.INVALID
+     */
+    public synchronized int getQuality(int index, NetworkType type)
+    {
+        return qualities[slot(index, head, count, capacity) * NETWORKS + type.ordinal()];
+    }
+
+    /**
+     * @param index - 0 (oldest) to size() - 1 (newest)
+     * @return where the sample was taken in degrees or NaN if not known
+     */
+    public synchronized double getLatitude(int index)
+    {
+        return latitudes[slot(index, head, count, capacity)];
+    }
+
+    /**
+     * @param index - 0 (oldest) to size() - 1 (newest)
+     * @return where the sample was taken in degrees or NaN if not known
+     */
+    public synchronized double getLongitude(int index)
+    {
+        return longitudes[slot(index, head, count, capacity)];
+    }
+
+    /**
+     * Copies a whole sample out.
+     *
+     * @param index - 0 (oldest) to size() - 1 (newest)
+     * @param out - where to put the readings (at least Signal.values().length long)
+     * @return the time the sample was taken
+     */
+    public synchronized long getSample(int index, int[] out)
+    {
+        int slot = slot(index, head, count, capacity);
+        System.arraycopy(values, slot * ROW_SIZE, out, 0, ROW_SIZE);
+        return times[slot];
+    }
+
+    public synchronized int getEventCount()
+    {
+        return eventCount;
+    }
+
+    public synchronized long getEventTime(int index)
+    {
+        return eventTimes[slot(index, eventHead, eventCount, eventCapacity)];
+    }
+
+    public synchronized int getEventType(int index)
+    {
+        return eventTypes[slot(index, eventHead, eventCount, eventCapacity)];
+    }
+
+    public synchronized Signal getEventSignal(int index)
+    {
+        return SIGNALS[eventSignals[slot(index, eventHead, eventCount, eventCapacity)]];
+    }
+
+    public synchronized int getEventValue(int index)
+    {
+        return eventValues[slot(index, eventHead, eventCount, eventCapacity)];
+    }
+
+    public synchronized void clear()
+    {
+        head = 0;
+        count = 0;
+        eventHead = 0;
+        eventCount = 0;
+    }
+
+    /**
+     * Turns an oldest first index into the array slot.
+     */
+    private static int slot(int index, int head, int count, int capacity)
+    {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.format("index %d, size %d", index, count));
+        }
+        return (head - count + index + capacity) % capacity;
+    }
+}
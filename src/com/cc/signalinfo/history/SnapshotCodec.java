@@ -0,0 +1,573 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Packs signal snapshots (the readings, link quality and location at one
+ * point in time) into compact blocks for storing and shipping around.
+ *
+ * A block is a few hundred snapshots in a row. Each snapshot only holds what
+ * changed since the one before it: varint time delta, a bit mask of the
+ * readings that changed and zigzag varint deltas for them, the same for link
+ * quality and the location (in microdegrees) only if it moved. Most readings
+ * don't change from one update to the next so a snapshot is usually a handful
+ * of bytes instead of the ~100 it would take to write everything out.
+ *
+ * Every block starts fresh, so any block can be decoded on its own without
+ * the ones before it (for seeking and for sending blocks off separately).
+ * The block header also says how many signals and networks it was written
+ * with so blocks from older versions still decode after more get added.
+ *
+ * Framed block layout:
+ * <pre>
+ *   int    length of everything after this
+ *   byte   VERSION
+ *   varint snapshot count
+ *   long   time of the first snapshot
+ *   long   time of the last snapshot
+ *   varint signal count, varint network count
+ *   ...    the snapshots
+ * </pre>
+ *
+ * Doesn't use anything from Android so it can be shared with the server side.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class SnapshotCodec
+{
+    /**
+     * No reading, same as AppSetup.INVALID (which can't be used here since AppSetup is Android only).
+     */
+    public static final  int     INVALID        = 0x7FFFFFFF;
+    public static final  byte    VERSION        = 1;
+    /**
+     * Blocks get closed off at this many snapshots or bytes, whichever comes first.
+     */
+    public static final  int     MAX_SNAPSHOTS  = 256;
+    public static final  int     MAX_BLOCK_SIZE = 16 * 1024;
+    /**
+     * Anything bigger than this is garbage, not a block.
+     */
+    public static final  int     MAX_FRAME_SIZE = MAX_BLOCK_SIZE * 4;
+    public static final  int     SIGNAL_COUNT   = Signal.values().length;
+    public static final  int     NETWORK_COUNT  = NetworkType.values().length;
+    // version + count + two times + the two field counts
+    private static final int     HEADER_SIZE    = 1 + 5 + 8 + 8 + 5 + 5;
+    // worst case for one snapshot: flags, time, two masks, every field and the location
+    private static final int     MAX_SNAPSHOT   = 5 + 10 + 5 + SIGNAL_COUNT * 10 + 5 + NETWORK_COUNT * 10 + 20;
+    private static final double  MICRO          = 1e6;
+
+    // snapshot flags
+    private static final int FLAG_MOVED       = 1;
+    private static final int FLAG_NO_LOCATION = 2;
+
+    private SnapshotCodec() {}
+
+    /**
+     * Builds up one block. Reuse it for the next block with reset().
+     * Doesn't allocate anything after it's made. Not thread safe.
+     */
+    public static final class Encoder
+    {
+        private final byte[] buffer      = new byte[MAX_BLOCK_SIZE + MAX_SNAPSHOT];
+        private final int[]  lastValues  = new int[SIGNAL_COUNT];
+        private final int[]  lastQuality = new int[NETWORK_COUNT];
+        private       int    size;
+        private       int    count;
+        private       long   firstTime;
+        private       long   lastTime;
+        private       int    lastLatitude;
+        private       int    lastLongitude;
+        private       boolean located;
+
+        public Encoder()
+        {
+            reset();
+        }
+
+        /**
+         * Empties it out for the next block.
+         */
+        public void reset()
+        {
+            size = 0;
+            count = 0;
+            firstTime = 0;
+            lastTime = 0;
+            lastLatitude = 0;
+            lastLongitude = 0;
+            located = false;
+            Arrays.fill(lastValues, INVALID);
+            Arrays.fill(lastQuality, INVALID);
+        }
+
+        /**
+         * Adds a snapshot. Check isFull() after and write the block out if it is.
+         *
+         * @param time - when it was taken (System.currentTimeMillis())
+         * @param readings - readings indexed by Signal.value(), INVALID for none
+         * @param qualities - link quality indexed by NetworkType.ordinal(), INVALID for none
+         * @param latitude - where the phone was in degrees or NaN
+         * @param longitude - where the phone was in degrees or NaN
+         */
+        public void add(long time, int[] readings, int[] qualities, double latitude, double longitude)
+        {
+            if (count == 0) {
+                firstTime = time;
+                lastTime = time;
+            }
+            boolean hasLocation = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+            int lat = hasLocation ? (int) Math.round(latitude * MICRO) : 0;
+            int lon = hasLocation ? (int) Math.round(longitude * MICRO) : 0;
+            int flags = 0;
+
+            if (hasLocation != located || hasLocation && (lat != lastLatitude || lon != lastLongitude)) {
+                flags = hasLocation ? FLAG_MOVED : FLAG_MOVED | FLAG_NO_LOCATION;
+            }
+            size = writeVarint(buffer, size, flags);
+            size = writeVarLong(buffer, size, zigzag(time - lastTime));
+            size = writeFields(readings, lastValues);
+            size = writeFields(qualities, lastQuality);
+
+            if (hasLocation && (flags & FLAG_MOVED) != 0) {
+                size = writeVarLong(buffer, size, zigzag((long) lat - lastLatitude));
+                size = writeVarLong(buffer, size, zigzag((long) lon - lastLongitude));
+                lastLatitude = lat;
+                lastLongitude = lon;
+            }
+            located = hasLocation;
+            lastTime = time;
+            ++count;
+        }
+
+        /**
+         * Mask of the fields that changed then the changes. A change is
+         * 0 for "went away" or the zigzagged delta + 1 (from 0 if there was nothing before).
+         */
+        private int writeFields(int[] values, int[] last)
+        {
+            int mask = 0;
+
+            for (int i = 0; i < last.length; ++i) {
+                if (get(values, i) != last[i]) {
+                    mask |= 1 << i;
+                }
+            }
+            int at = writeVarint(buffer, size, mask);
+
+            for (int i = 0; i < last.length; ++i) {
+                if ((mask & 1 << i) == 0) {
+                    continue;
+                }
+                int value = get(values, i);
+
+                if (value == INVALID) {
+                    at = writeVarint(buffer, at, 0);
+                }
+                else {
+                    long base = last[i] == INVALID ? 0 : last[i];
+                    at = writeVarLong(buffer, at, zigzag(value - base) + 1);
+                }
+                last[i] = value;
+            }
+            return at;
+        }
+
+        /**
+         * @return true if the block should be written out now
+         */
+        public boolean isFull()
+        {
+            return count >= MAX_SNAPSHOTS || size >= MAX_BLOCK_SIZE;
+        }
+
+        /**
+         * @return how many snapshots are in the block
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        public long getFirstTime()
+        {
+            return firstTime;
+        }
+
+        public long getLastTime()
+        {
+            return lastTime;
+        }
+
+        /**
+         * @return how many bytes writeTo() will write
+         */
+        public int getFramedSize()
+        {
+            return 4 + HEADER_SIZE + size;
+        }
+
+        /**
+         * Writes the framed block out. Doesn't reset it.
+         *
+         * @param out - where to write it
+         * @throws IOException - if it can't be written
+         */
+        public void writeTo(DataOutput out) throws IOException
+        {
+            byte[] header = new byte[HEADER_SIZE];
+            int at = 0;
+            header[at++] = VERSION;
+            at = writeVarint(header, at, count);
+            at = writeLong(header, at, firstTime);
+            at = writeLong(header, at, lastTime);
+            at = writeVarint(header, at, SIGNAL_COUNT);
+            at = writeVarint(header, at, NETWORK_COUNT);
+
+            out.writeInt(at + size);
+            out.write(header, 0, at);
+            out.write(buffer, 0, size);
+        }
+
+        /**
+         * @return the framed block as a new array (for handing off to another thread)
+         */
+        public byte[] toByteArray()
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(getFramedSize());
+
+            try {
+                writeTo(new DataOutputStream(bytes));
+            }
+            catch (IOException ignored) {
+                // can't happen, it's just an array
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Reads the snapshots back out of a block. Reuse it for every block,
+     * it only allocates if it gets a block bigger than any before. Not thread safe.
+     */
+    public static final class Decoder
+    {
+        private final int[]   values    = new int[SIGNAL_COUNT];
+        private final int[]   qualities = new int[NETWORK_COUNT];
+        private       byte[]  buffer    = new byte[MAX_BLOCK_SIZE + MAX_SNAPSHOT];
+        private       int     position;
+        private       int     limit;
+        private       int     count;
+        private       int     remaining;
+        private       long    firstTime;
+        private       long    lastTime;
+        private       int     signalCount;
+        private       int     networkCount;
+        private       long    time;
+        private       int     latitude;
+        private       int     longitude;
+        private       boolean located;
+
+        /**
+         * Reads the next framed block in.
+         *
+         * @param in - where to read from
+         * @return false if there are no more blocks
+         * @throws IOException - if it can't be read or isn't a block
+         */
+        public boolean readFrom(DataInput in) throws IOException
+        {
+            int length;
+
+            try {
+                length = in.readInt();
+            }
+            catch (EOFException e) {
+                return false;
+            }
+            readBody(in, length);
+            return true;
+        }
+
+        /**
+         * Reads a block in when the length in front of it has already been read.
+         *
+         * @param in - where to read from
+         * @param length - how long the block is
+         * @throws IOException - if it can't be read or isn't a block
+         */
+        public void readBody(DataInput in, int length) throws IOException
+        {
+            if (length <= 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Bad block length " + length);
+            }
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            in.readFully(buffer, 0, length);
+            start(length);
+        }
+
+        /**
+         * Uses a block that's already in memory (without the length in front).
+         * The array is copied.
+         *
+         * @param block - the block
+         * @param offset - where it starts
+         * @param length - how long it is
+         * @throws IOException - if it isn't a block
+         */
+        public void setBlock(byte[] block, int offset, int length) throws IOException
+        {
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            System.arraycopy(block, offset, buffer, 0, length);
+            start(length);
+        }
+
+        private void start(int length) throws IOException
+        {
+            limit = length;
+            position = 0;
+
+            if (buffer[position++] != VERSION) {
+                throw new IOException("Unknown block version " + buffer[0]);
+            }
+            count = (int) readVarLong();
+            firstTime = readLong();
+            lastTime = readLong();
+            signalCount = (int) readVarLong();
+            networkCount = (int) readVarLong();
+
+            if (signalCount > 32 || networkCount > 32) {
+                throw new IOException("Too many fields in block");
+            }
+            remaining = count;
+            time = firstTime;
+            latitude = 0;
+            longitude = 0;
+            located = false;
+            Arrays.fill(values, INVALID);
+            Arrays.fill(qualities, INVALID);
+        }
+
+        /**
+         * Moves on to the next snapshot in the block.
+         *
+         * @return false if there aren't any more
+         * @throws IOException - if the block is cut short or garbage
+         */
+        public boolean next() throws IOException
+        {
+            if (remaining <= 0) {
+                return false;
+            }
+            int flags = (int) readVarLong();
+            time += unzigzag(readVarLong());
+            readFields(values, signalCount);
+            readFields(qualities, networkCount);
+
+            if ((flags & FLAG_MOVED) != 0) {
+                located = (flags & FLAG_NO_LOCATION) == 0;
+
+                if (located) {
+                    latitude += (int) unzigzag(readVarLong());
+                    longitude += (int) unzigzag(readVarLong());
+                }
+            }
+            --remaining;
+            return true;
+        }
+
+        private void readFields(int[] into, int fieldCount) throws IOException
+        {
+            int mask = (int) readVarLong();
+
+            for (int i = 0; i < fieldCount; ++i) {
+                if ((mask & 1 << i) == 0) {
+                    continue;
+                }
+                long change = readVarLong();
+
+                if (i >= into.length) {
+                    continue; // from a newer version, nowhere to put it
+                }
+                if (change == 0) {
+                    into[i] = INVALID;
+                }
+                else {
+                    long base = into[i] == INVALID ? 0 : into[i];
+                    into[i] = (int) (base + unzigzag(change - 1));
+                }
+            }
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public long getFirstTime()
+        {
+            return firstTime;
+        }
+
+        public long getLastTime()
+        {
+            return lastTime;
+        }
+
+        /**
+         * @return when the current snapshot was taken
+         */
+        public long getTime()
+        {
+            return time;
+        }
+
+        /**
+         * @return readings for the current snapshot indexed by Signal.value() (don't modify)
+         */
+        public int[] getReadings()
+        {
+            return values;
+        }
+
+        /**
+         * @return link quality for the current snapshot indexed by NetworkType.ordinal() (don't modify)
+         */
+        public int[] getQualities()
+        {
+            return qualities;
+        }
+
+        public boolean hasLocation()
+        {
+            return located;
+        }
+
+        /**
+         * @return latitude in degrees or NaN
+         */
+        public double getLatitude()
+        {
+            return located ? latitude / MICRO : Double.NaN;
+        }
+
+        /**
+         * @return longitude in degrees or NaN
+         */
+        public double getLongitude()
+        {
+            return located ? longitude / MICRO : Double.NaN;
+        }
+
+        private long readLong() throws IOException
+        {
+            if (limit - position < 8) {
+                throw new EOFException("Block cut short");
+            }
+            long value = 0;
+
+            for (int i = 0; i < 8; ++i) {
+                value = value << 8 | buffer[position++] & 0xFF;
+            }
+            return value;
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= limit) {
+                    throw new EOFException("Block cut short");
+                }
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Bad varint");
+        }
+    }
+
+    private static int get(int[] values, int index)
+    {
+        return values != null && index < values.length ? values[index] : INVALID;
+    }
+
+    static long zigzag(long value)
+    {
+        return value << 1 ^ value >> 63;
+    }
+
+    static long unzigzag(long value)
+    {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] buffer, int at, int value)
+    {
+        return writeVarLong(buffer, at, value & 0xFFFFFFFFL);
+    }
+
+    static int writeVarLong(byte[] buffer, int at, long value)
+    {
+        while ((value & ~0x7FL) != 0) {
+            buffer[at++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[at++] = (byte) value;
+        return at;
+    }
+
+    private static int writeLong(byte[] buffer, int at, long value)
+    {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[at++] = (byte) (value >>> shift);
+        }
+        return at;
+    }
+}
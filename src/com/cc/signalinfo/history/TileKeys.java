@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.history;
+
+/**
+ * Names the map tiles readings get rolled up by: rows of fixed height going
+ * north, each split into columns the same width in meters at that row's
+ * latitude, keyed by a long with the row in the top half and the column in
+ * the bottom half. The coverage map (CoverageGrid), session rollups and the
+ * collector server all use these so their tiles line up.
+ *
+ * Kept here instead of in CoverageGrid so nothing in history needs Android
+ * (the server module builds it too).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class TileKeys
+{
+    /**
+     * Near enough for tiles a few hundred meters across.
+     */
+    public static final double METERS_PER_DEGREE   = 111320;
+    /**
+     * What the coverage map and rollups use unless told otherwise.
+     */
+    public static final int    DEFAULT_TILE_METERS = 100;
+
+    private TileKeys() {}
+
+    /**
+     * @param latitude - degrees
+     * @param longitude - degrees
+     * @param tileMeters - how big each tile is on a side
+     * @return key of the tile the spot is in
+     */
+    public static long getKey(double latitude, double longitude, double tileMeters)
+    {
+        double tileDegrees = tileMeters / METERS_PER_DEGREE;
+        int row = (int) Math.floor(latitude / tileDegrees);
+        return pack(row, (int) Math.floor(longitude / getColumnDegrees(row, tileDegrees)));
+    }
+
+    /**
+     * @param row - tile row
+     * @param tileDegrees - how tall the rows are in degrees latitude
+     * @return how wide each tile in the row is in degrees longitude
+     */
+    public static double getColumnDegrees(int row, double tileDegrees)
+    {
+        double cos = Math.cos(Math.toRadians((row + 0.5) * tileDegrees));
+        // the poles would get infinitely wide, nobody's drive testing there anyway
+        return tileDegrees / Math.max(cos, 0.01);
+    }
+
+    public static long pack(int row, int col)
+    {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    public static int getRow(long key)
+    {
+        return (int) (key >> 32);
+    }
+
+    public static int getColumn(long key)
+    {
+        return (int) key;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.listeners;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.support.v4.app.NotificationCompat;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.activities.MainActivity;
+import com.cc.signalinfo.util.AlertEngine;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Shows a notification when one of the user's threshold rules goes off
+ * (see AlertEngine). Each rule gets its own notification that's replaced
+ * instead of stacking up. The engine already handles the cooldowns.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class AlertNotifier implements AlertEngine.AlertCallback
+{
+    // notification ids are this plus the rule index
+    private static final int BASE_ID = 0x5200;
+
+    private final Context             context;
+    private final NotificationManager notificationManager;
+
+    /**
+     * @param context - any context, only the application context is kept
+     */
+    public AlertNotifier(Context context)
+    {
+        this.context = context.getApplicationContext();
+        notificationManager = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    @Override
+    public void onAlert(AlertEngine engine, int rule, int value, long timestamp)
+    {
+        // 2.x needs a content intent or it blows up
+        PendingIntent openApp = PendingIntent.getActivity(context, 0,
+            new Intent(context, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), 0);
+
+        String text = value == INVALID
+            ? context.getString(R.string.alertMissingText)
+            : String.format(context.getString(R.string.alertText), value);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+            .setSmallIcon(R.drawable.icon)
+            .setContentTitle(engine.getLabel(rule))
+            .setContentText(text)
+            .setWhen(timestamp)
+            .setContentIntent(openApp)
+            .setAutoCancel(true);
+
+        notificationManager.notify(BASE_ID + rule, builder.build());
+    }
+}
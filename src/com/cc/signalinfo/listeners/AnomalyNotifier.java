@@ -0,0 +1,106 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.listeners;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.support.v4.app.NotificationCompat;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.activities.MainActivity;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.AnomalyDetector;
+
+/**
+ * Shows a notification when a signal suddenly drops (see AnomalyDetector).
+ * Each signal gets its own notification that's replaced instead of stacking up,
+ * and a signal that keeps bouncing won't notify more than once per cooldown.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public class AnomalyNotifier implements AnomalyDetector.AnomalyCallback
+{
+    private static final long COOLDOWN_MS = 60000;
+    // notification ids are this plus Signal.value()
+    private static final int  BASE_ID     = 0x5100;
+
+    private final Context             context;
+    private final NotificationManager notificationManager;
+    private final long[]              lastNotified = new long[Signal.values().length];
+    // R.array.sigInfoTitles, same order as Signal.values()
+    private final String[]            titles;
+
+    /**
+     * @param context - any context, only the application context is kept
+     */
+    public AnomalyNotifier(Context context)
+    {
+        this.context = context.getApplicationContext();
+        notificationManager = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+        titles = this.context.getResources().getStringArray(R.array.sigInfoTitles);
+    }
+
+    @Override
+    public void onAnomaly(Signal signal, int value, float mean, float sigma, long timestamp)
+    {
+        int i = signal.value();
+
+        if (timestamp - lastNotified[i] < COOLDOWN_MS) {
+            return;
+        }
+        lastNotified[i] = timestamp;
+
+        // 2.x needs a content intent or it blows up
+        PendingIntent openApp = PendingIntent.getActivity(context, 0,
+            new Intent(context, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), 0);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+            .setSmallIcon(R.drawable.icon)
+            .setContentTitle(String.format(context.getString(R.string.anomalyTitle), getTitle(signal)))
+            .setContentText(String.format(context.getString(R.string.anomalyText),
+                value,
+                Math.round(AnomalyDetector.toReadingUnits(signal, mean, value)),
+                Math.round(sigma)))
+            .setWhen(timestamp)
+            .setContentIntent(openApp)
+            .setAutoCancel(true);
+
+        notificationManager.notify(BASE_ID + i, builder.build());
+    }
+
+    /**
+     * @return the signal's name like the main screen shows it, without the colon
+     */
+    private String getTitle(Signal signal)
+    {
+        String title = signal.value() < titles.length ? titles[signal.value()] : signal.name();
+        return title.endsWith(":") ? title.substring(0, title.length() - 1) : title;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.listeners;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import com.cc.signalinfo.util.PipelineMetrics;
+import com.cc.signalinfo.util.SignalArrayWrapper;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sits between the signal pipeline and the screen so a burst of signal
+ * updates (like during a handover) only redraws once. Only the latest data
+ * is kept and it's handed to the real UpdateSignal at most once per display
+ * frame, and no more often than the minimum refresh interval.
+ *
+ * Uses Choreographer on 4.1+ so the redraw lines up with the frame,
+ * older devices just get a Handler posting about once a frame.
+ *
+ * setData can be called from any thread, the target always gets called on the UI thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-04
+ */
+public class FrameCoalescer implements SignalListener.UpdateSignal
+{
+    // about one frame at 60fps, used when there's no Choreographer
+    private static final long FALLBACK_FRAME_MS = 16;
+
+    private final SignalListener.UpdateSignal         target;
+    private final Handler                             handler   = new Handler(Looper.getMainLooper());
+    private final AtomicReference<SignalArrayWrapper> latest    = new AtomicReference<>();
+    private final AtomicBoolean                       scheduled = new AtomicBoolean(false);
+    private final Object                              frameCallback;
+    private final    long minIntervalMs;
+    private          long lastRenderTime = 0;
+
+    private final Runnable frameRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            doFrame();
+        }
+    };
+
+    private final Runnable scheduleRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            scheduleFrame();
+        }
+    };
+
+    /**
+     * @param target - what actually shows the signal data
+     * @param minIntervalMs - shortest time between redraws in milliseconds (0 for every frame)
+     */
+    public FrameCoalescer(SignalListener.UpdateSignal target, long minIntervalMs)
+    {
+        this.target = target;
+        this.minIntervalMs = minIntervalMs;
+        this.frameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+            ? FrameCallbacks.create(this)
+            : null;
+    }
+
+    /**
+     * Keeps the data and makes sure a redraw is coming. If one is already
+     * coming, the new data just replaces whatever was waiting.
+     *
+     * @param signalStrength - the latest signal data
+     */
+    @Override
+    public void setData(SignalArrayWrapper signalStrength)
+    {
+        if (signalStrength == null) {
+            return;
+        }
+        if (latest.getAndSet(signalStrength) != null) {
+            // the last one never made it to the screen
+            PipelineMetrics.getInstance().onDropped();
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            // Choreographer is per looper, so the scheduling has to happen on the UI thread
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                scheduleFrame();
+            }
+            else {
+                handler.post(scheduleRunnable);
+            }
+        }
+    }
+
+    /**
+     * Drops anything waiting to be drawn (like when the screen goes away).
+     * UI thread only.
+     */
+    public void cancel()
+    {
+        latest.set(null);
+        handler.removeCallbacks(scheduleRunnable);
+        handler.removeCallbacks(frameRunnable);
+
+        if (frameCallback != null) {
+            FrameCallbacks.remove(frameCallback);
+        }
+        scheduled.set(false);
+    }
+
+    private void scheduleFrame()
+    {
+        long wait = lastRenderTime + minIntervalMs - SystemClock.uptimeMillis();
+        wait = wait < 0 ? 0 : wait;
+
+        if (frameCallback != null) {
+            FrameCallbacks.post(frameCallback, wait);
+        }
+        else {
+            handler.postDelayed(frameRunnable, Math.max(wait, FALLBACK_FRAME_MS));
+        }
+    }
+
+    /**
+     * Hands the latest data to the target. Anything that comes in after
+     * this starts will schedule another frame.
+     */
+    private void doFrame()
+    {
+        scheduled.set(false);
+        SignalArrayWrapper data = latest.getAndSet(null);
+
+        if (data != null) {
+            lastRenderTime = SystemClock.uptimeMillis();
+            target.setData(data);
+        }
+    }
+
+    /**
+     * Keeps the Choreographer stuff in its own class so older
+     * devices never try to load it.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbacks
+    {
+        private FrameCallbacks() {}
+
+        static Object create(final FrameCoalescer coalescer)
+        {
+            return new Choreographer.FrameCallback()
+            {
+                @Override
+                public void doFrame(long frameTimeNanos)
+                {
+                    coalescer.doFrame();
+                }
+            };
+        }
+
+        static void post(Object callback, long delayMs)
+        {
+            Choreographer.getInstance().postFrameCallbackDelayed((Choreographer.FrameCallback) callback, delayMs);
+        }
+
+        static void remove(Object callback)
+        {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) callback);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.listeners;
+
+import android.os.Build;
+import android.util.Log;
+import com.cc.signalinfo.util.RadioLogParser;
+import com.cc.signalinfo.util.system.terminal.TerminalBase;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams the radio logcat buffer through the terminal and runs it through
+ * a RadioLogParser to get the extra HSPA/WCDMA readings (RSCP, Ec/No, etc).
+ *
+ * Reading logs needs root on Jelly Bean and up (READ_LOGS is system only now),
+ * so pass in a RootTerminal there. Older devices can use a plain ShellTerminal.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-02
+ */
+public class RadioLogTap implements Runnable
+{
+    // -T 1 starts at the end of the buffer instead of replaying all of it first,
+    // but older logcats (before 4.4) don't know it and would just quit
+    public static final  String RADIO_LOG_CMD = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+        ? "logcat -b radio -v raw -T 1"
+        : "logcat -b radio -v raw";
+    private static final String TAG           = RadioLogTap.class.getSimpleName();
+    // big enough to swallow a burst of log lines in one read
+    private static final int    READ_SIZE     = 8192;
+
+    private final    TerminalBase   terminal;
+    private final    RadioLogParser parser;
+    private volatile boolean        running = false;
+    private          Thread         thread  = null;
+    private          Process        process = null;
+
+    /**
+     * @param terminal - shell to run logcat in (root or not)
+     * @param callback - where the parsed radio values go
+     */
+    public RadioLogTap(TerminalBase terminal, RadioLogParser.RadioInfoCallback callback)
+    {
+        this.terminal = terminal;
+        this.parser = new RadioLogParser(callback);
+    }
+
+    /**
+     * Start reading the radio log in the background. Does nothing if already running.
+     */
+    public synchronized void start()
+    {
+        if (running) {
+            return;
+        }
+        running = true;
+        parser.reset();
+        thread = new Thread(this, TAG);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop reading the radio log and kill the logcat process.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+
+        if (process != null) {
+            // killing the process closes the pipe which unblocks the reader thread
+            process.destroy();
+            process = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Replays a recorded radio log (like a file pulled with "adb logcat -b radio -d")
+     * through the same parser on the calling thread. Mainly for testing and
+     * for figuring out what a user's device spits out when they send me a log.
+     *
+     * @param log - the recorded log
+     * @return the parser so the results can be checked
+     * @throws IOException if the log could not be read
+     */
+    public RadioLogParser replay(InputStream log) throws IOException
+    {
+        parser.reset();
+        pump(log, false);
+        parser.flush();
+        return parser;
+    }
+
+    @Override
+    public void run()
+    {
+        try {
+            Process logcat = terminal.openCmdStream(RADIO_LOG_CMD);
+
+            synchronized (this) {
+                if (!running || thread != Thread.currentThread()) {
+                    logcat.destroy();
+                    return;
+                }
+                process = logcat;
+            }
+            pump(logcat.getInputStream(), true);
+        } catch (IOException e) {
+            if (running) {
+                Log.e(TAG, "Radio log stream died", e);
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Cleans up after the reader thread exits, unless a newer one already took over.
+     */
+    private synchronized void finish()
+    {
+        if (thread != Thread.currentThread()) {
+            return;
+        }
+        running = false;
+        thread = null;
+
+        if (process != null) {
+            process.destroy();
+            process = null;
+        }
+    }
+
+    /**
+     * Reads the stream in big chunks and hands them straight to the parser.
+     * Keeps up fine even when the RIL is spamming since nothing is allocated per line.
+     *
+     * @param in - stream to read
+     * @param live - true if reading the live log (stops when the tap is stopped)
+     * @throws IOException if the stream could not be read
+     */
+    private void pump(InputStream in, boolean live) throws IOException
+    {
+        byte[] buffer = new byte[READ_SIZE];
+        int read;
+
+        while ((!live || running) && (read = in.read(buffer)) != -1) {
+            parser.feed(buffer, 0, read);
+        }
+    }
+}
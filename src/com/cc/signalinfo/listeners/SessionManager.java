@@ -0,0 +1,291 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.listeners;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionRecorder;
+import com.cc.signalinfo.history.SessionStore;
+import com.cc.signalinfo.services.SignalMonitorService;
+import com.cc.signalinfo.upload.ChunkClient;
+import com.cc.signalinfo.upload.SessionUploader;
+import com.cc.signalinfo.upload.UploadLog;
+import com.cc.signalinfo.util.SettingsStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Recorded sessions: where they're kept (SessionStore), recording the primary
+ * SIM's readings into one (SessionRecorder) and, if there's a collector set up,
+ * sending them to it in the background (SessionUploader). Follows the upload
+ * settings as they change.
+ *
+ * The SignalEngine owns it and hands it the readings (see record), get it with
+ * SignalEngine.getSessions(). UI thread only unless it says otherwise.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class SessionManager
+{
+    private static final String TAG = SessionManager.class.getSimpleName();
+    /**
+     * Uploads get their own low priority thread so they never get in the way of anything.
+     */
+    private static final ThreadFactory UPLOAD_THREADS = new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            return new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "SessionUploader");
+        }
+    };
+
+    private final Context          context;
+    private final TelephonyManager tm;
+    private final SettingsStore    settings;
+    // the UI thread, recording errors come in on the recorder's thread
+    private final Handler          handler;
+    private final SessionStore     store;
+    private final SessionRecorder  recorder;
+    private final String           uploadEndpointKey;
+    private final String           uploadWifiOnlyKey;
+    private final String           uploadChargingOnlyKey;
+    private final UploadConditions uploadConditions;
+    private final SessionUploader  uploader;
+
+    private final SettingsStore.OnSettingChangedListener settingsListener = new SettingsStore.OnSettingChangedListener()
+    {
+        @Override
+        public void onSettingChanged(SettingsStore store, String key)
+        {
+            if (uploadEndpointKey.equals(key)) {
+                updateUploader(store.getString(key, ""));
+            }
+            else if (uploadWifiOnlyKey.equals(key)) {
+                uploadConditions.setWifiOnly(store.getBoolean(key, true));
+                uploader.schedule();
+            }
+            else if (uploadChargingOnlyKey.equals(key)) {
+                uploadConditions.setChargingOnly(store.getBoolean(key, false));
+                uploader.schedule();
+            }
+        }
+    };
+
+    /**
+     * Recording stopped on its own (couldn't write), so everything else needs to catch up.
+     */
+    private final Runnable recordingFailedTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            stopRecording();
+            SignalMonitorService.sync(context);
+        }
+    };
+
+    private final SessionRecorder.RecorderCallback recorderCallback = new SessionRecorder.RecorderCallback()
+    {
+        @Override
+        public void onSessionChanged(SessionInfo session)
+        {
+            Log.d(TAG, String.format("session %d now %d bytes", session.getId(), session.getLength()));
+            // waits for a full chunk (or the session to stop) before sending anything
+            uploader.schedule();
+        }
+
+        @Override
+        public void onRecordingError(IOException e)
+        {
+            Log.e(TAG, "Could not record session", e);
+            handler.post(recordingFailedTask);
+        }
+    };
+
+    private final SessionUploader.UploadCallback uploadCallback = new SessionUploader.UploadCallback()
+    {
+        @Override
+        public void onUploaded(SessionInfo session, long uploaded)
+        {
+            Log.d(TAG, String.format("uploaded %d of %d bytes of session %d",
+                uploaded, session.getLength(), session.getId()));
+        }
+
+        @Override
+        public void onUploadError(IOException e, long retryMs)
+        {
+            Log.w(TAG, String.format("Could not upload sessions, trying again in %d s", retryMs / 1000), e);
+        }
+    };
+
+    /**
+     * @param context - the application context
+     * @param tm - for the carrier name sent with uploads
+     * @param settings - where the upload settings are
+     */
+    SessionManager(Context context, TelephonyManager tm, SettingsStore settings)
+    {
+        this.context = context;
+        this.tm = tm;
+        this.settings = settings;
+        handler = new Handler(Looper.getMainLooper());
+        // nothing touches the disk until a session gets listed or started
+        store = new SessionStore(new File(context.getFilesDir(), "sessions"));
+        recorder = new SessionRecorder(store, Executors.newSingleThreadExecutor(), recorderCallback);
+        uploadEndpointKey = context.getString(R.string.uploadEndpointKey);
+        uploadWifiOnlyKey = context.getString(R.string.uploadWifiOnlyKey);
+        uploadChargingOnlyKey = context.getString(R.string.uploadChargingOnlyKey);
+        uploadConditions = new UploadConditions(context);
+        uploadConditions.setWifiOnly(settings.getBoolean(uploadWifiOnlyKey,
+            context.getResources().getBoolean(R.bool.uploadWifiOnlyDefault)));
+        uploadConditions.setChargingOnly(settings.getBoolean(uploadChargingOnlyKey,
+            context.getResources().getBoolean(R.bool.uploadChargingOnlyDefault)));
+        uploader = new SessionUploader(store, new UploadLog(new File(context.getFilesDir(), "uploads.idx")),
+            Executors.newSingleThreadScheduledExecutor(UPLOAD_THREADS), uploadConditions, uploadCallback);
+        settings.addListener(settingsListener);
+        // picks up anything left over from last time
+        updateUploader(settings.getString(uploadEndpointKey, ""));
+    }
+
+    /**
+     * Starts recording the primary SIM's readings into a new session. Something
+     * has to stay subscribed to the SignalEngine for there to be anything to record
+     * (the SignalMonitorService does while recording, see SignalMonitorService.sync()).
+     *
+     * @param tags - whatever the user wants to tag the session with (or null)
+     */
+    public void startRecording(String tags)
+    {
+        recorder.start(System.currentTimeMillis(), tags);
+    }
+
+    public void stopRecording()
+    {
+        recorder.stop(System.currentTimeMillis());
+    }
+
+    /**
+     * Any thread.
+     */
+    public boolean isRecording()
+    {
+        return recorder.isRecording();
+    }
+
+    /**
+     * Adds a snapshot to the session being recorded, if there is one. Any thread
+     * (the engine calls it from its worker).
+     *
+     * @param time - when the readings were taken
+     * @param readings - readings indexed by Signal.value()
+     * @param qualities - link quality indexed by NetworkType.ordinal()
+     * @param latitude - where they were taken or NaN if unknown
+     * @param longitude - where they were taken or NaN if unknown
+     */
+    void record(long time, int[] readings, int[] qualities, double latitude, double longitude)
+    {
+        if (recorder.isRecording()) {
+            recorder.add(time, readings, qualities, latitude, longitude);
+        }
+    }
+
+    /**
+     * @return where recorded sessions are kept (only use it off the UI thread)
+     */
+    public SessionStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Points the uploader at the collector (or stops it if there isn't one).
+     *
+     * @param endpoint - the collector's URL, empty for none
+     */
+    private void updateUploader(String endpoint)
+    {
+        endpoint = endpoint == null ? "" : endpoint.trim();
+        ChunkClient current = uploader.getClient();
+
+        if (current != null && current.getEndpoint().equals(endpoint)) {
+            return;
+        }
+        if (endpoint.length() == 0) {
+            uploader.setClient(null);
+            uploader.cancel();
+            return;
+        }
+        try {
+            uploader.setClient(new ChunkClient(endpoint, getDeviceId(), tm.getSimOperatorName()));
+            uploader.schedule();
+        }
+        catch (MalformedURLException e) {
+            Log.w(TAG, "Not uploading, bad collector URL " + endpoint, e);
+            uploader.setClient(null);
+            uploader.cancel();
+        }
+    }
+
+    /**
+     * @return a random id for this install (made the first time), so the
+     * collector can tell phones apart without anything identifying the phone itself
+     */
+    private String getDeviceId()
+    {
+        String key = context.getString(R.string.uploadDeviceIdKey);
+        String id = settings.getString(key, null);
+
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            settings.putString(key, id);
+        }
+        return id;
+    }
+}
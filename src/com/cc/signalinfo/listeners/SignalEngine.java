@@ -0,0 +1,790 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.listeners;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.preference.PreferenceManager;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.cells.CellScanner;
+import com.cc.signalinfo.cells.CellTable;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SignalHistory;
+import com.cc.signalinfo.location.AndroidLocationSource;
+import com.cc.signalinfo.location.CoverageGrid;
+import com.cc.signalinfo.location.HeatmapRenderer;
+import com.cc.signalinfo.location.LocationSource;
+import com.cc.signalinfo.location.TileCache;
+import com.cc.signalinfo.util.AlertEngine;
+import com.cc.signalinfo.util.AnomalyDetector;
+import com.cc.signalinfo.util.RadioLogParser;
+import com.cc.signalinfo.util.SettingsStore;
+import com.cc.signalinfo.util.SignalArrayWrapper;
+import com.cc.signalinfo.util.SignalSmoother;
+import com.cc.signalinfo.util.Subscriptions;
+
+import java.io.File;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One signal source for the whole app. Owns the only SignalListeners registered
+ * with the TelephonyManager, filters each update once and hands the result
+ * to everything subscribed (activities, fragments, whatever else shows up).
+ *
+ * On dual SIM phones (where the system lets us, see Subscriptions) each SIM
+ * gets its own listener and its own readings, history, drop detection and
+ * alert state (see SubscriptionPipeline). Updates carry their subscription id
+ * so subscribers can pick which SIM to show. Every SIM's updates go through
+ * the one engine worker thread. The first SIM is the primary one: it's what
+ * the coverage map, the radio log and Wi-Fi go with, and what the methods
+ * without a subscription id give back.
+ *
+ * The listeners get registered when the first subscriber shows up and dropped
+ * a little after the last one leaves. The delay is so a rotation or fragment
+ * swap (unsubscribe then subscribe right after) doesn't bounce the registration.
+ * New subscribers get the last update right away so they don't sit there
+ * empty until the signal changes.
+ *
+ * Each update is also turned into plain int readings (indexed by Signal.value())
+ * once, which get scored for link quality, kept in the history and checked for
+ * sudden drops and against the user's threshold rules. If smoothing is on, the
+ * smoothed readings are what the subscribers show (the raw ones are still what
+ * gets recorded, scored and checked). With the coverage map on, readings also get
+ * tagged with where the phone was and rolled up into the CoverageGrid.
+ * The Wi-Fi connection gets watched the same way (see WifiMonitor) and merged
+ * in with the cell readings. Every few seconds the neighbour cells get polled
+ * too and tracked in a CellTable. While a session is recording the primary
+ * SIM's readings go into it too (recording and uploading sessions is all in
+ * the SessionManager, see getSessions()).
+ *
+ * All that per update work (scoring, history, drops, alerts, smoothing, the
+ * coverage map, recording and polling the cells) happens on the engine's own
+ * worker thread (a HandlerThread), not the UI thread. Only handing the
+ * finished update to the subscribers gets posted back to the UI thread.
+ * Everything else here is UI thread only unless it says otherwise.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public final class SignalEngine
+    implements SignalListener.UpdateSignal, AnomalyDetector.AnomalyCallback, AlertEngine.AlertCallback,
+    WifiMonitor.WifiCallback
+{
+    private static final String TAG              = SignalEngine.class.getSimpleName();
+    /**
+     * How long to keep listening after the last subscriber leaves.
+     */
+    private static final long   RELEASE_DELAY_MS = 2000;
+    // what gets sent to the worker and back, the update is the message's obj
+    private static final int    MSG_PROCESS      = 1;
+    private static final int    MSG_DELIVER      = 2;
+    /**
+     * Locations older than this don't get used to tag readings.
+     */
+    private static final long   MAX_FIX_AGE_MS   = 15000;
+    /**
+     * Shortest time between asking the radio for the neighbour cells.
+     */
+    private static final long   CELL_POLL_MS     = 5000;
+    /**
+     * Room for the coverage map's tiles in memory, a screenful or so.
+     */
+    private static final int    TILE_MEMORY      = 4 * 1024 * 1024;
+    private static SignalEngine instance = null;
+
+    private final Context                                            context;
+    private final TelephonyManager                                   tm;
+    // the UI thread, where the subscribers get called
+    private final Handler                                            handler;
+    // the engine's worker thread, where each update gets processed
+    private final Handler                                            worker;
+    private final CopyOnWriteArrayList<SignalListener.UpdateSignal> subscribers = new CopyOnWriteArrayList<>();
+    private final AnomalyNotifier                                    notifier;
+    private final AlertNotifier                                      alertNotifier;
+    private final SettingsStore                                      settings;
+    private final String                                             anomalyAlertsKey;
+    private final String                                             smoothingKey;
+    private final String                                             smoothingOverridesKey;
+    private final String                                             thresholdAlertsKey;
+    private final String                                             alertRulesKey;
+    private final String                                             coverageMapKey;
+    private final String                                             wifiInfoKey;
+    private final WifiMonitor                                        wifiMonitor;
+    private final String                                             neighborCellsKey;
+    private final CellScanner                                        cellScanner;
+    private final CoverageGrid                                       coverage    = new CoverageGrid();
+    private final TileCache                                          tiles;
+    private final SessionManager                                     sessions;
+    // one per SIM, the first is the primary one. Read from the radio log thread too
+    private volatile SubscriptionPipeline[] pipelines;
+    private volatile String         alertRules;
+    private volatile LocationSource locationSource;
+    private HeatmapRenderer    heatmap         = null; // guarded by tiles
+    private NetworkType        heatmapNetwork  = null;
+    private boolean            listening       = false;
+    private volatile boolean   anomalyAlerts   = false;
+    private volatile boolean   thresholdAlerts = false;
+    // replaced whole when the prefs change, never changed in place
+    private volatile int[]     smoothingModes;
+    private volatile boolean   coverageMap     = false;
+    private volatile boolean   wifiInfo        = true;
+    private volatile boolean   neighborCells   = true;
+    private long               lastCellPoll    = 0;
+
+    private final SettingsStore.OnSettingChangedListener settingsListener = new SettingsStore.OnSettingChangedListener()
+    {
+        @Override
+        public void onSettingChanged(SettingsStore store, String key)
+        {
+            if (anomalyAlertsKey.equals(key)) {
+                anomalyAlerts = store.getBoolean(key, false);
+            }
+            else if (smoothingKey.equals(key) || smoothingOverridesKey.equals(key)) {
+                updateSmoothingModes();
+            }
+            else if (thresholdAlertsKey.equals(key)) {
+                thresholdAlerts = store.getBoolean(key, false);
+            }
+            else if (coverageMapKey.equals(key)) {
+                coverageMap = store.getBoolean(key, false);
+                handler.post(updateSourcesTask);
+            }
+            else if (neighborCellsKey.equals(key)) {
+                neighborCells = store.getBoolean(key, true);
+            }
+            else if (wifiInfoKey.equals(key)) {
+                wifiInfo = store.getBoolean(key, true);
+                handler.post(updateSourcesTask);
+            }
+            else if (alertRulesKey.equals(key)) {
+                alertRules = store.getString(key, "");
+                // the rules get checked on the worker, so swap them there too
+                worker.post(loadAlertRulesTask);
+            }
+        }
+    };
+
+    /**
+     * Gets every pipeline onto the latest rules. Worker thread only.
+     */
+    private final Runnable loadAlertRulesTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            loadAlertRules(alertRules);
+        }
+    };
+
+    /**
+     * Runs each update through the engine on the worker, then sends it back
+     * to the UI thread for the subscribers. Messages so nothing gets allocated per update.
+     */
+    private final Handler.Callback processCallback = new Handler.Callback()
+    {
+        @Override
+        public boolean handleMessage(Message msg)
+        {
+            SignalArrayWrapper signalStrength = (SignalArrayWrapper) msg.obj;
+            SubscriptionPipeline pipeline = getPipeline(signalStrength.getSubscriptionId());
+
+            if (pipeline == null) {
+                return true; // from a SIM that's gone now
+            }
+            process(pipeline, signalStrength);
+
+            // the subscribers grab the latest from the wrapper anyway, one's enough
+            if (!handler.hasMessages(MSG_DELIVER, signalStrength)) {
+                handler.obtainMessage(MSG_DELIVER, signalStrength).sendToTarget();
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Hands a processed update to everyone subscribed. UI thread.
+     */
+    private final Handler.Callback deliverCallback = new Handler.Callback()
+    {
+        @Override
+        public boolean handleMessage(Message msg)
+        {
+            SignalArrayWrapper signalStrength = (SignalArrayWrapper) msg.obj;
+
+            for (SignalListener.UpdateSignal subscriber : subscribers) {
+                subscriber.setData(signalStrength);
+            }
+            return true;
+        }
+    };
+
+    private final Runnable updateSourcesTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            updateLocationSource();
+            updateWifiMonitor();
+        }
+    };
+
+    private final Runnable releaseTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (subscribers.isEmpty()) {
+                stopListening();
+            }
+        }
+    };
+
+    /**
+     * Radio log readings go with the primary SIM, whichever that is at the time.
+     */
+    private final RadioLogParser.RadioInfoCallback radioInfoCallback = new RadioLogParser.RadioInfoCallback()
+    {
+        @Override
+        public void onRadioInfo(int rscp, int ecNo, int psc, int uarfcn)
+        {
+            pipelines[0].getListener().onRadioInfo(rscp, ecNo, psc, uarfcn);
+        }
+    };
+
+    private SignalEngine(Context context)
+    {
+        this.context = context;
+        handler = new Handler(Looper.getMainLooper(), deliverCallback);
+        // default priority since the screen is waiting on what comes out of it
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        worker = new Handler(thread.getLooper(), processCallback);
+        tm = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        pipelines = new SubscriptionPipeline[]{newPipeline(Subscriptions.DEFAULT_ID)};
+        notifier = new AnomalyNotifier(context);
+        alertNotifier = new AlertNotifier(context);
+        // same preferences the settings screen writes to
+        settings = SettingsStore.getInstance(PreferenceManager.getDefaultSharedPreferences(context));
+        anomalyAlertsKey = context.getString(R.string.anomalyAlertsKey);
+        anomalyAlerts = settings.getBoolean(anomalyAlertsKey,
+            context.getResources().getBoolean(R.bool.anomalyAlertsDefault));
+        smoothingKey = context.getString(R.string.smoothingKey);
+        smoothingOverridesKey = context.getString(R.string.smoothingOverridesKey);
+        updateSmoothingModes();
+        thresholdAlertsKey = context.getString(R.string.thresholdAlertsKey);
+        thresholdAlerts = settings.getBoolean(thresholdAlertsKey,
+            context.getResources().getBoolean(R.bool.thresholdAlertsDefault));
+        alertRulesKey = context.getString(R.string.alertRulesKey);
+        alertRules = settings.getString(alertRulesKey, context.getString(R.string.alertRulesDefault));
+        worker.post(loadAlertRulesTask);
+        locationSource = new AndroidLocationSource(context);
+        coverageMapKey = context.getString(R.string.coverageMapKey);
+        coverageMap = settings.getBoolean(coverageMapKey,
+            context.getResources().getBoolean(R.bool.coverageMapDefault));
+        tiles = new TileCache(new File(context.getCacheDir(), "tiles"), TILE_MEMORY);
+        wifiMonitor = new WifiMonitor(context, this);
+        wifiInfoKey = context.getString(R.string.wifiInfoKey);
+        wifiInfo = settings.getBoolean(wifiInfoKey,
+            context.getResources().getBoolean(R.bool.wifiInfoDefault));
+        cellScanner = new CellScanner(tm, new CellTable());
+        neighborCellsKey = context.getString(R.string.neighborCellsKey);
+        neighborCells = settings.getBoolean(neighborCellsKey,
+            context.getResources().getBoolean(R.bool.neighborCellsDefault));
+        settings.addListener(settingsListener);
+        sessions = new SessionManager(context, tm, settings);
+    }
+
+    /**
+     * Reads the smoothing for everything plus the per signal overrides.
+     */
+    private void updateSmoothingModes()
+    {
+        smoothingModes = SignalSmoother.parseModes(
+            settings.getString(smoothingKey, context.getString(R.string.smoothingDefault)),
+            settings.getString(smoothingOverridesKey, context.getString(R.string.smoothingOverridesDefault)));
+    }
+
+    /**
+     * Gets the engine, making it the first time. Has to be called on the UI
+     * thread the first time since the PhoneStateListener grabs the current looper.
+     *
+     * @param context - any context, only the application context is kept
+     * @return the signal engine
+     */
+    public static SignalEngine getInstance(Context context)
+    {
+        if (instance == null) {
+            instance = new SignalEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Start getting signal updates. Registers with the system
+     * if nobody else was already listening.
+     *
+     * @param subscriber - gets the signal data every update
+     */
+    public void subscribe(SignalListener.UpdateSignal subscriber)
+    {
+        handler.removeCallbacks(releaseTask);
+
+        if (subscribers.addIfAbsent(subscriber)) {
+            for (SubscriptionPipeline pipeline : pipelines) {
+                if (pipeline.getLatest() != null) {
+                    subscriber.setData(pipeline.getLatest());
+                }
+            }
+        }
+        if (!listening) {
+            updatePipelines();
+            // any new SIMs need the rules too, this gets to the worker before their first update
+            worker.post(loadAlertRulesTask);
+            Log.d(TAG, String.format("registering signal listeners for %d SIMs", pipelines.length));
+
+            for (SubscriptionPipeline pipeline : pipelines) {
+                pipeline.startListening();
+            }
+            listening = true;
+            updateLocationSource();
+            updateWifiMonitor();
+        }
+    }
+
+    /**
+     * Stop getting signal updates. The system registration is dropped
+     * shortly after the last subscriber leaves.
+     *
+     * @param subscriber - the subscriber to remove
+     */
+    public void unsubscribe(SignalListener.UpdateSignal subscriber)
+    {
+        if (subscribers.remove(subscriber) && subscribers.isEmpty()) {
+            handler.postDelayed(releaseTask, RELEASE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Sends the filtered signal data off to the worker, which processes it
+     * and then fans it out to everyone subscribed (back on the UI thread).
+     * If the worker hasn't gotten to the last one from this SIM yet, that one
+     * already reads the latest data (the wrapper gets reused), so it isn't sent twice.
+     *
+     * @param signalStrength - the filtered signal data
+     */
+    @Override
+    public void setData(SignalArrayWrapper signalStrength)
+    {
+        if (signalStrength == null || worker.hasMessages(MSG_PROCESS, signalStrength)) {
+            return;
+        }
+        worker.obtainMessage(MSG_PROCESS, signalStrength).sendToTarget();
+    }
+
+    /**
+     * Runs the update through its SIM's pipeline (scoring, history, drops,
+     * alerts, smoothing, the network map) and tags it for the coverage map if it's
+     * the primary SIM. Worker thread only.
+     *
+     * @param pipeline - the SIM the update is from
+     * @param signalStrength - the filtered signal data
+     */
+    private void process(SubscriptionPipeline pipeline, SignalArrayWrapper signalStrength)
+    {
+        long now = System.currentTimeMillis();
+        LocationSource location = locationSource;
+        boolean tagged = pipeline == pipelines[0] && coverageMap && hasGoodFix(location, now);
+        double latitude = tagged ? location.getLatitude() : Double.NaN;
+        double longitude = tagged ? location.getLongitude() : Double.NaN;
+
+        pipeline.process(signalStrength, now, latitude, longitude, thresholdAlerts, smoothingModes);
+
+        if (tagged) {
+            coverage.add(latitude, longitude, pipeline.getReadings(), pipeline.getQualities());
+        }
+        if (pipeline == pipelines[0]) {
+            sessions.record(now, pipeline.getReadings(), pipeline.getQualities(), latitude, longitude);
+        }
+        if (neighborCells && now - lastCellPoll >= CELL_POLL_MS) {
+            lastCellPoll = now;
+            cellScanner.poll(now);
+        }
+    }
+
+    /**
+     * A fix that's too old or too rough would put readings in the wrong tile.
+     *
+     * @param location - where the fixes come from
+     * @param now - current time
+     * @return true if the last fix is good enough to tag a sample with
+     */
+    private boolean hasGoodFix(LocationSource location, long now)
+    {
+        float accuracy = location.getAccuracy();
+
+        return location.hasFix()
+            && now - location.getFixTime() <= MAX_FIX_AGE_MS
+            && accuracy <= coverage.getTileMeters();
+    }
+
+    /**
+     * A signal suddenly got worse (already in that SIM's history), let the user know if they want.
+     */
+    @Override
+    public void onAnomaly(Signal signal, int value, float mean, float sigma, long timestamp)
+    {
+        Log.i(TAG, String.format("%s dropped to %d (baseline %.1f, sigma %.1f)", signal, value, mean, sigma));
+
+        if (anomalyAlerts) {
+            notifier.onAnomaly(signal, value, mean, sigma, timestamp);
+        }
+    }
+
+    /**
+     * One of the user's threshold rules went off (already in that SIM's history), let them know.
+     */
+    @Override
+    public void onAlert(AlertEngine engine, int rule, int value, long timestamp)
+    {
+        Log.i(TAG, String.format("alert: %s (reading %d)", engine.getLabel(rule), value));
+        alertNotifier.onAlert(engine, rule, value, timestamp);
+    }
+
+    /**
+     * Worker thread only, that's where the alerts get checked.
+     */
+    private void loadAlertRules(String text)
+    {
+        for (SubscriptionPipeline pipeline : pipelines) {
+            loadAlertRules(pipeline.getAlerts(), text);
+        }
+    }
+
+    private static void loadAlertRules(AlertEngine alerts, String text)
+    {
+        int loaded = alerts.setRules(text);
+
+        if (alerts.getSkippedCount() > 0) {
+            Log.w(TAG, String.format("skipped %d alert rules that didn't make sense", alerts.getSkippedCount()));
+        }
+        Log.d(TAG, String.format("loaded %d alert rules", loaded));
+    }
+
+    private SubscriptionPipeline newPipeline(int subscriptionId)
+    {
+        // no rules yet, those get loaded on the worker (see subscribe)
+        return new SubscriptionPipeline(subscriptionId,
+            Subscriptions.forSubscription(tm, subscriptionId), this, this, this);
+    }
+
+    /**
+     * Checks which SIMs are in, keeping the pipelines (and their history)
+     * for the ones that were already there. Only while not listening.
+     */
+    private void updatePipelines()
+    {
+        int[] ids = Subscriptions.getActiveIds(context);
+        SubscriptionPipeline[] updated = new SubscriptionPipeline[ids.length];
+
+        for (int i = 0; i < ids.length; ++i) {
+            SubscriptionPipeline existing = getPipeline(ids[i]);
+            updated[i] = existing != null ? existing : newPipeline(ids[i]);
+        }
+        pipelines = updated;
+    }
+
+    /**
+     * @param subscriptionId - which SIM
+     * @return its pipeline or null if that SIM isn't in
+     */
+    private SubscriptionPipeline getPipeline(int subscriptionId)
+    {
+        for (SubscriptionPipeline pipeline : pipelines) {
+            if (pipeline.getSubscriptionId() == subscriptionId) {
+                return pipeline;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return ids of the SIMs being listened to, the primary one first
+     *         (just Subscriptions.DEFAULT_ID on single SIM phones)
+     */
+    public int[] getSubscriptionIds()
+    {
+        SubscriptionPipeline[] current = pipelines;
+        int[] ids = new int[current.length];
+
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = current[i].getSubscriptionId();
+        }
+        return ids;
+    }
+
+    /**
+     * @return id of the primary SIM (Subscriptions.DEFAULT_ID on single SIM phones)
+     */
+    public int getPrimarySubscriptionId()
+    {
+        return pipelines[0].getSubscriptionId();
+    }
+
+    /**
+     * @param subscriptionId - which SIM
+     * @return the TelephonyManager for the SIM (the default one if it isn't in)
+     */
+    public TelephonyManager getTelephonyManager(int subscriptionId)
+    {
+        SubscriptionPipeline pipeline = getPipeline(subscriptionId);
+        return pipeline == null ? tm : pipeline.getTelephonyManager();
+    }
+
+    /**
+     * @return recent readings and events for the primary SIM
+     */
+    public SignalHistory getHistory()
+    {
+        return pipelines[0].getHistory();
+    }
+
+    /**
+     * @param subscriptionId - which SIM
+     * @return recent readings and events for the SIM or null if it isn't in
+     */
+    public SignalHistory getHistory(int subscriptionId)
+    {
+        SubscriptionPipeline pipeline = getPipeline(subscriptionId);
+        return pipeline == null ? null : pipeline.getHistory();
+    }
+
+    /**
+     * @param type - the network
+     * @return link quality (0 - 100) for the primary SIM from the last update
+     *         or AppSetup.INVALID if there's none
+     */
+    public int getQuality(NetworkType type)
+    {
+        return pipelines[0].getQualities()[type.ordinal()];
+    }
+
+    /**
+     * @param subscriptionId - which SIM
+     * @param type - the network
+     * @return link quality (0 - 100) from the SIM's last update or AppSetup.INVALID if there's none
+     */
+    public int getQuality(int subscriptionId, NetworkType type)
+    {
+        SubscriptionPipeline pipeline = getPipeline(subscriptionId);
+        return pipeline == null ? AppSetup.INVALID : pipeline.getQualities()[type.ordinal()];
+    }
+
+    /**
+     * Copies the readings and link quality from the SIM's last update. They're
+     * copies since the worker keeps filling in the engine's own arrays, so it's
+     * safe from any thread and the two always go together.
+     *
+     * @param subscriptionId - which SIM
+     * @param readings - gets the readings indexed by Signal.value()
+     * @param qualities - gets the link quality indexed by NetworkType.ordinal()
+     * @return false (and nothing copied) if the SIM's gone
+     */
+    public boolean copyLatest(int subscriptionId, int[] readings, int[] qualities)
+    {
+        SubscriptionPipeline pipeline = getPipeline(subscriptionId);
+
+        if (pipeline == null) {
+            return false;
+        }
+        pipeline.copyLatest(readings, qualities);
+        return true;
+    }
+
+    /**
+     * @return the detector for sudden drops on the primary SIM (for tuning)
+     */
+    public AnomalyDetector getAnomalyDetector()
+    {
+        return pipelines[0].getDetector();
+    }
+
+    /**
+     * @return the last signal update for the primary SIM or null if there hasn't been one
+     */
+    public SignalArrayWrapper getLatest()
+    {
+        return pipelines[0].getLatest();
+    }
+
+    /**
+     * @param subscriptionId - which SIM
+     * @return the SIM's last signal update or null if there hasn't been one
+     */
+    public SignalArrayWrapper getLatest(int subscriptionId)
+    {
+        SubscriptionPipeline pipeline = getPipeline(subscriptionId);
+        return pipeline == null ? null : pipeline.getLatest();
+    }
+
+    /**
+     * @return where radio log readings go so they get merged into the signal data
+     */
+    public RadioLogParser.RadioInfoCallback getRadioInfoCallback()
+    {
+        return radioInfoCallback;
+    }
+
+    /**
+     * @return true if registered with the system for signal updates
+     */
+    public boolean isListening()
+    {
+        return listening;
+    }
+
+    private void stopListening()
+    {
+        if (listening) {
+            Log.d(TAG, "no more subscribers, dropping signal listeners");
+
+            for (SubscriptionPipeline pipeline : pipelines) {
+                pipeline.stopListening();
+            }
+            listening = false;
+            updateLocationSource();
+            updateWifiMonitor();
+        }
+    }
+
+    /**
+     * Only keep the GPS going while there are signal updates to tag and the user wants the map.
+     */
+    private void updateLocationSource()
+    {
+        if (listening && coverageMap) {
+            locationSource.start();
+        }
+        else {
+            locationSource.stop();
+        }
+    }
+
+    /**
+     * Only watch Wi-Fi while someone's listening and the user wants to see it.
+     */
+    private void updateWifiMonitor()
+    {
+        if (listening && wifiInfo) {
+            wifiMonitor.start();
+        }
+        else if (wifiMonitor.isStarted()) {
+            wifiMonitor.stop();
+            // don't leave the last connection on the screen
+            onWifiInfo(AppSetup.INVALID, AppSetup.INVALID, AppSetup.INVALID, null);
+        }
+    }
+
+    @Override
+    public void onWifiInfo(int rssi, int linkSpeed, int frequency, String bssid)
+    {
+        pipelines[0].getListener().onWifiInfo(rssi, linkSpeed, frequency, bssid);
+    }
+
+    /**
+     * @return every cell seen this session (filled in on the worker, see CellTable for locking)
+     */
+    public CellTable getCells()
+    {
+        return cellScanner.getTable();
+    }
+
+    /**
+     * @return what's watching the Wi-Fi connection and nearby access points
+     */
+    public WifiMonitor getWifiMonitor()
+    {
+        return wifiMonitor;
+    }
+
+    /**
+     * Swaps where locations come from (like a FakeLocationSource for testing).
+     *
+     * @param source - the new location source
+     */
+    public void setLocationSource(LocationSource source)
+    {
+        locationSource.stop();
+        locationSource = source;
+        updateLocationSource();
+    }
+
+    /**
+     * @return readings rolled up by where they were taken
+     */
+    public CoverageGrid getCoverage()
+    {
+        return coverage;
+    }
+
+    /**
+     * The coverage grid drawn as map tiles, colored by one network's link quality.
+     * The grid only lives in memory, so the tiles on disk get thrown out the first
+     * time this is called (they'd be from an older run) and whenever the network
+     * changes. That's disk IO, so call it from a background thread.
+     *
+     * @param type - the network to color by
+     * @return the renderer, only use it until this gets called with another network
+     */
+    public HeatmapRenderer getHeatmap(NetworkType type)
+    {
+        synchronized (tiles) {
+            if (heatmap == null || heatmapNetwork != type) {
+                tiles.clear();
+                heatmap = new HeatmapRenderer(coverage, tiles, type);
+                heatmapNetwork = type;
+            }
+            return heatmap;
+        }
+    }
+
+    /**
+     * @return recorded sessions, recording and uploading them
+     */
+    public SessionManager getSessions()
+    {
+        return sessions;
+    }
+}
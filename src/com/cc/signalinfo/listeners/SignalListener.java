@@ -29,24 +29,54 @@ package com.cc.signalinfo.listeners;
 
 import android.telephony.PhoneStateListener;
 import android.telephony.SignalStrength;
+import android.telephony.TelephonyManager;
 import android.util.Log;
 import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.PipelineMetrics;
+import com.cc.signalinfo.util.RadioLogParser;
 import com.cc.signalinfo.util.SignalArrayWrapper;
+import com.cc.signalinfo.util.Subscriptions;
+import com.cc.signalinfo.util.TraceRecorder;
 
 /**
  * Private helper class to listener for network signal changes.
  */
 public class SignalListener extends PhoneStateListener
+    implements RadioLogParser.RadioInfoCallback, WifiMonitor.WifiCallback
 {
     private final String TAG = getClass().getSimpleName();
     private UpdateSignal listener;
+    private final int    subscriptionId;
     private static SignalListener     instance      = null;
-    private        SignalArrayWrapper signalWrapper = null;
+    private volatile SignalArrayWrapper signalWrapper = null;
+    // radio log values that showed up before the first signal reading did
+    private volatile int[] pendingRadioInfo = null;
+    // same for the Wi-Fi connection
+    private volatile Object[] pendingWifiInfo = null;
+    // last network type the system told us about, for the first wrapper
+    private volatile int networkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
 
     public SignalListener(UpdateSignal listener)
+    {
+        this(listener, Subscriptions.DEFAULT_ID);
+    }
+
+    /**
+     * @param listener - gets the filtered signal data
+     * @param subscriptionId - which SIM this listens to, gets passed along with its readings
+     */
+    public SignalListener(UpdateSignal listener, int subscriptionId)
     {
         this.listener = listener;
+        this.subscriptionId = subscriptionId;
+    }
 
+    /**
+     * @return which SIM this listens to (see Subscriptions)
+     */
+    public int getSubscriptionId()
+    {
+        return subscriptionId;
     }
 
     /**
@@ -58,19 +88,104 @@ public class SignalListener extends PhoneStateListener
     public void onSignalStrengthsChanged(SignalStrength signalStrength)
     {
         super.onSignalStrengthsChanged(signalStrength);
+        TraceRecorder.getInstance().begin(TraceRecorder.EVENT_CALLBACK);
 
         if (signalStrength != null) {
+            long arrival = PipelineMetrics.getInstance().onReceived();
+            String rawSignals = signalStrength.toString();
             Log.d(TAG, "getting sig strength");
-            Log.d(TAG, signalStrength.toString());
+            Log.d(TAG, rawSignals);
 
             if (signalWrapper == null) {
-                signalWrapper = new SignalArrayWrapper(signalStrength.toString(), listener);
+                signalWrapper = new SignalArrayWrapper(rawSignals, listener, subscriptionId);
+                signalWrapper.setNetworkType(networkType);
+                int[] radioInfo = pendingRadioInfo;
+
+                if (radioInfo != null) {
+                    signalWrapper.setRadioInfo(radioInfo[0], radioInfo[1], radioInfo[2], radioInfo[3]);
+                    pendingRadioInfo = null;
+                }
+                Object[] wifiInfo = pendingWifiInfo;
 
+                if (wifiInfo != null) {
+                    signalWrapper.setWifiInfo((Integer) wifiInfo[0], (Integer) wifiInfo[1],
+                        (Integer) wifiInfo[2], (String) wifiInfo[3]);
+                    pendingWifiInfo = null;
+                }
             }
             else {
-                signalWrapper.filterSignals(signalStrength.toString());
+                signalWrapper.filterSignals(rawSignals, arrival);
             }
         }
+        TraceRecorder.getInstance().end(TraceRecorder.EVENT_CALLBACK);
+    }
+
+    /**
+     * Extra WCDMA info from the radio log (see RadioLogTap). Called on the
+     * log reader thread. The values are merged into the signal data and show
+     * up with the next signal strength update instead of forcing a redraw
+     * for every log line.
+     *
+     * @param rscp - received signal code power in dBm or AppSetup.INVALID
+     * @param ecNo - Ec/No in dB or AppSetup.INVALID
+     * @param psc - primary scrambling code or AppSetup.INVALID
+     * @param uarfcn - UTRA channel number or AppSetup.INVALID
+     */
+    @Override
+    public void onRadioInfo(int rscp, int ecNo, int psc, int uarfcn)
+    {
+        SignalArrayWrapper wrapper = signalWrapper;
+
+        if (wrapper == null) {
+            pendingRadioInfo = new int[]{rscp, ecNo, psc, uarfcn};
+        }
+        else {
+            wrapper.setRadioInfo(rscp, ecNo, psc, uarfcn);
+        }
+    }
+
+    /**
+     * The network type changed. The radio log values only mean anything on
+     * WCDMA, so they get dropped when the phone moves to something else.
+     *
+     * @param state - data connection state
+     * @param networkType - one of the TelephonyManager.NETWORK_TYPE_* constants
+     */
+    @Override
+    public void onDataConnectionStateChanged(int state, int networkType)
+    {
+        super.onDataConnectionStateChanged(state, networkType);
+        this.networkType = networkType;
+        SignalArrayWrapper wrapper = signalWrapper;
+
+        if (wrapper != null) {
+            wrapper.setNetworkType(networkType);
+        }
+    }
+
+    /**
+     * The Wi-Fi connection changed (see WifiMonitor). Unlike the radio log,
+     * nothing else would show it until the cell signal changes (which could
+     * be a while), so this pushes an update with the same cell readings.
+     *
+     * @param rssi - in dBm or AppSetup.INVALID
+     * @param linkSpeed - in Mbps or AppSetup.INVALID
+     * @param frequency - in MHz or AppSetup.INVALID
+     * @param bssid - MAC address of the access point or null
+     */
+    @Override
+    public void onWifiInfo(int rssi, int linkSpeed, int frequency, String bssid)
+    {
+        SignalArrayWrapper wrapper = signalWrapper;
+
+        if (wrapper == null) {
+            pendingWifiInfo = new Object[]{rssi, linkSpeed, frequency, bssid};
+        }
+        else {
+            wrapper.setWifiInfo(rssi, linkSpeed, frequency, bssid);
+            long arrival = PipelineMetrics.getInstance().onReceived();
+            wrapper.filterSignals(wrapper.getRawData(), arrival);
+        }
     }
 
     /**
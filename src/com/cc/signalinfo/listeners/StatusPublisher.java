@@ -0,0 +1,298 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.listeners;
+
+import android.annotation.TargetApi;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.app.NotificationCompat;
+import android.widget.RemoteViews;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.activities.MainActivity;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.util.SignalArrayWrapper;
+import com.cc.signalinfo.util.SignalSummary;
+import com.cc.signalinfo.widgets.SignalWidgetProvider;
+
+/**
+ * Keeps the home screen widgets and the ongoing notification showing the
+ * network, headline reading and link quality for the primary SIM (see SignalSummary).
+ *
+ * Pushing to the widgets or the notification means a trip through the system
+ * process, so it only happens when what's shown actually changes and no more
+ * than once every MIN_PUSH_MS. Changes in between just get rolled into the next push.
+ * The notification builder gets reused instead of made every push, and once a
+ * widget is up it only gets the text changes (partial updates on 3.0+)
+ * instead of the whole layout again.
+ *
+ * setData can be called from any thread, pushes always happen on the UI thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class StatusPublisher implements SignalListener.UpdateSignal
+{
+    /**
+     * Id of the ongoing notification (also used for startForeground).
+     */
+    public static final  int  NOTIFICATION_ID = 0x5300;
+    /**
+     * Shortest time between pushes to the widgets and notification.
+     */
+    private static final long MIN_PUSH_MS     = 5000;
+
+    private final Context                    context;
+    private final SignalEngine               engine;
+    private final SignalSummary              summary  = new SignalSummary();
+    // the engine's latest copied in here, locked by summary like the rest of it
+    private final int[]                      readings  = new int[Signal.values().length];
+    private final int[]                      qualities = new int[NetworkType.values().length];
+    private final Handler                    handler  = new Handler(Looper.getMainLooper());
+    private final NotificationManager        notificationManager;
+    private final AppWidgetManager           widgetManager;
+    private final ComponentName              widgets;
+    private final NotificationCompat.Builder builder;
+    private final PendingIntent              openApp;
+    private volatile boolean showNotification = false;
+    private boolean pushScheduled = false;
+    private long    lastPush      = 0;
+    // what was last pushed, so flipping back and forth inside the wait doesn't push the same thing
+    private String  lastText      = null;
+    private String  lastPercent   = null;
+
+    private final Runnable pushTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            push(false);
+        }
+    };
+
+    private final Runnable scheduleTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            schedulePush();
+        }
+    };
+
+    /**
+     * @param context - any context, only the application context is kept
+     */
+    public StatusPublisher(Context context)
+    {
+        this.context = context.getApplicationContext();
+        engine = SignalEngine.getInstance(this.context);
+        notificationManager = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+        widgetManager = AppWidgetManager.getInstance(this.context);
+        widgets = new ComponentName(this.context, SignalWidgetProvider.class);
+        openApp = PendingIntent.getActivity(this.context, 0,
+            new Intent(this.context, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), 0);
+
+        builder = new NotificationCompat.Builder(this.context)
+            .setSmallIcon(R.drawable.icon)
+            .setContentIntent(openApp)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setPriority(NotificationCompat.PRIORITY_LOW);
+    }
+
+    /**
+     * Only looks at the primary SIM. Most updates stop right here
+     * since the summary didn't change.
+     *
+     * @param signalStrength - the latest signal data
+     */
+    @Override
+    public void setData(SignalArrayWrapper signalStrength)
+    {
+        int id = signalStrength.getSubscriptionId();
+
+        if (id != engine.getPrimarySubscriptionId()) {
+            return;
+        }
+        synchronized (summary) {
+            if (!engine.copyLatest(id, readings, qualities) || !summary.update(readings, qualities)) {
+                return;
+            }
+        }
+        handler.post(scheduleTask);
+    }
+
+    /**
+     * Pushes now if it's been long enough since the last one,
+     * otherwise makes sure one's coming when it has been. UI thread only.
+     */
+    private void schedulePush()
+    {
+        if (pushScheduled) {
+            return; // the one coming will grab the latest
+        }
+        long wait = lastPush + MIN_PUSH_MS - SystemClock.uptimeMillis();
+
+        if (wait <= 0) {
+            push(false);
+        }
+        else {
+            pushScheduled = true;
+            handler.postDelayed(pushTask, wait);
+        }
+    }
+
+    /**
+     * Sends the summary out to the notification (if it's on) and the widgets.
+     * UI thread only.
+     *
+     * @param force - true to push even if nothing changed and send the widgets the whole layout
+     */
+    private void push(boolean force)
+    {
+        pushScheduled = false;
+        String text;
+        String percent;
+
+        synchronized (summary) {
+            text = summary.hasSignal()
+                ? summary.getNetwork() + ' ' + summary.getValueText()
+                : context.getString(R.string.statusNoSignal);
+            percent = summary.getPercentText();
+        }
+        if (!force && text.equals(lastText) && equal(percent, lastPercent)) {
+            return;
+        }
+        lastPush = SystemClock.uptimeMillis();
+        lastText = text;
+        lastPercent = percent;
+
+        if (showNotification) {
+            notificationManager.notify(NOTIFICATION_ID, buildNotification(text, percent));
+        }
+        pushWidgets(text, percent, force);
+    }
+
+    /**
+     * @return the notification showing what was last pushed (for startForeground)
+     */
+    public Notification buildNotification()
+    {
+        return buildNotification(
+            lastText == null ? context.getString(R.string.statusNoSignal) : lastText, lastPercent);
+    }
+
+    private Notification buildNotification(String text, String percent)
+    {
+        builder.setContentTitle(text)
+            .setContentText(percent == null ? null : context.getString(R.string.statusQuality, percent));
+        return builder.build();
+    }
+
+    /**
+     * The whole layout only needs to go out when a widget first shows up (or
+     * it's older than 3.0), after that it's just the text. Sending the whole
+     * layout every time would mean the widget host inflating it again each update.
+     */
+    private void pushWidgets(String text, String percent, boolean full)
+    {
+        int[] ids = widgetManager.getAppWidgetIds(widgets);
+
+        if (ids == null || ids.length == 0) {
+            return;
+        }
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_signal);
+        views.setTextViewText(R.id.widgetSignal, text);
+        views.setTextViewText(R.id.widgetQuality, percent == null ? "" : percent);
+
+        if (full || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            views.setOnClickPendingIntent(R.id.widgetRoot, openApp);
+            widgetManager.updateAppWidget(ids, views);
+        }
+        else {
+            PartialUpdate.update(widgetManager, ids, views);
+        }
+    }
+
+    /**
+     * @param show - true to keep the ongoing notification up to date
+     */
+    public void setShowNotification(boolean show)
+    {
+        showNotification = show;
+    }
+
+    /**
+     * Sends everything out again right away (like when a widget gets added).
+     * UI thread only.
+     */
+    public void refresh()
+    {
+        handler.removeCallbacks(pushTask);
+        push(true);
+    }
+
+    /**
+     * Drops any push that's waiting. UI thread only.
+     */
+    public void cancel()
+    {
+        handler.removeCallbacks(scheduleTask);
+        handler.removeCallbacks(pushTask);
+        pushScheduled = false;
+    }
+
+    private static boolean equal(Object a, Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Keeps the 3.0 only call in its own class so older devices never try to load it.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static final class PartialUpdate
+    {
+        private PartialUpdate() {}
+
+        static void update(AppWidgetManager manager, int[] ids, RemoteViews views)
+        {
+            manager.partiallyUpdateAppWidget(ids, views);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.listeners;
+
+import android.telephony.PhoneStateListener;
+import android.telephony.TelephonyManager;
+import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.SignalHistory;
+import com.cc.signalinfo.util.AlertEngine;
+import com.cc.signalinfo.util.AnomalyDetector;
+import com.cc.signalinfo.util.PipelineMetrics;
+import com.cc.signalinfo.util.QualityScorer;
+import com.cc.signalinfo.util.SignalArrayWrapper;
+import com.cc.signalinfo.util.SignalMapWrapper;
+import com.cc.signalinfo.util.SignalSmoother;
+import com.cc.signalinfo.util.TraceRecorder;
+
+import java.util.Arrays;
+
+/**
+ * Everything the SignalEngine keeps for one SIM: its listener, the readings
+ * from its last update, its history and the state for smoothing, drop
+ * detection and threshold alerts. Each SIM's numbers stay apart so one
+ * SIM's drop doesn't look like the other's.
+ *
+ * process() runs on the SignalEngine's worker thread (a HandlerThread, not
+ * the UI thread) like the rest of the engine's per update work, so a second
+ * SIM is a second set of arrays on that same worker and not another thread.
+ * The UI thread only reads the latest update, the smoothed readings (double
+ * buffered for that), the network map built from them and copies of the
+ * readings and scores (see copyLatest) while subscribers get handed the update.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+final class SubscriptionPipeline implements AnomalyDetector.AnomalyCallback, AlertEngine.AlertCallback
+{
+    private static final Signal[] SIGNALS = Signal.values();
+
+    private final int                            subscriptionId;
+    private final TelephonyManager               tm;
+    private final SignalListener                 listener;
+    private final AnomalyDetector.AnomalyCallback anomalyCallback;
+    private final AlertEngine.AlertCallback      alertCallback;
+    private final int[]                          readings  = new int[SIGNALS.length];
+    // two so the UI can still be reading the last one while the next gets filled in
+    private final int[][]                        smoothed  = new int[2][SIGNALS.length];
+    private final int[]                          qualities = new int[NetworkType.values().length];
+    // copies of the last readings and scores for other threads, both locked by copiedReadings
+    private final int[]                          copiedReadings  = new int[SIGNALS.length];
+    private final int[]                          copiedQualities = new int[NetworkType.values().length];
+    private final SignalSmoother                 smoother  = new SignalSmoother(SignalSmoother.MODE_NONE);
+    private final SignalHistory                  history   = new SignalHistory();
+    private final AnomalyDetector                detector  = new AnomalyDetector(this);
+    private final AlertEngine                    alerts    = new AlertEngine(this);
+    private volatile SignalArrayWrapper          latest    = null;
+    private       int                            smoothedIndex = 0;
+
+    /**
+     * @param subscriptionId - which SIM (see Subscriptions)
+     * @param tm - TelephonyManager for just that SIM
+     * @param engine - gets the filtered data from the listener
+     * @param anomalyCallback - told about drops after they're in the history
+     * @param alertCallback - told about alerts after they're in the history
+     */
+    SubscriptionPipeline(int subscriptionId, TelephonyManager tm, SignalListener.UpdateSignal engine,
+                         AnomalyDetector.AnomalyCallback anomalyCallback, AlertEngine.AlertCallback alertCallback)
+    {
+        this.subscriptionId = subscriptionId;
+        this.tm = tm;
+        this.anomalyCallback = anomalyCallback;
+        this.alertCallback = alertCallback;
+        listener = new SignalListener(engine, subscriptionId);
+        Arrays.fill(qualities, AppSetup.INVALID);
+    }
+
+    void startListening()
+    {
+        // the network type is so the radio log values get dropped off WCDMA
+        tm.listen(listener, PhoneStateListener.LISTEN_SIGNAL_STRENGTHS
+            | PhoneStateListener.LISTEN_DATA_CONNECTION_STATE);
+    }
+
+    void stopListening()
+    {
+        tm.listen(listener, PhoneStateListener.LISTEN_NONE);
+    }
+
+    /**
+     * Pulls the readings out as numbers, records them and checks them for drops.
+     * The only thing it allocates is the network map the subscribers show.
+     *
+     * @param signalStrength - the filtered signal data for this SIM
+     * @param now - current time
+     * @param latitude - where the phone was or NaN
+     * @param longitude - where the phone was or NaN
+     * @param thresholdAlerts - true to check the user's alert rules
+     * @param smoothingModes - each signal's SignalSmoother mode, indexed by Signal.value()
+     */
+    void process(SignalArrayWrapper signalStrength, long now, double latitude, double longitude,
+                 boolean thresholdAlerts, int[] smoothingModes)
+    {
+        latest = signalStrength;
+
+        for (Signal signal : SIGNALS) {
+            readings[signal.value()] = signalStrength.getValue(signal);
+        }
+        // scored off the raw readings so smoothing doesn't hide how bad it really got
+        QualityScorer.scoreAll(readings, qualities);
+
+        synchronized (copiedReadings) {
+            System.arraycopy(readings, 0, copiedReadings, 0, readings.length);
+            System.arraycopy(qualities, 0, copiedQualities, 0, qualities.length);
+        }
+        history.add(now, readings, qualities, latitude, longitude);
+        detector.process(readings, now);
+
+        if (thresholdAlerts) {
+            alerts.process(readings, qualities, now);
+        }
+        smoother.setModes(smoothingModes);
+
+        if (!smoother.isOn()) {
+            signalStrength.setSmoothedValues(null);
+        }
+        else {
+            int[] next = smoothed[smoothedIndex];
+            smoothedIndex ^= 1;
+            smoother.smooth(readings, next);
+            signalStrength.setSmoothedValues(next);
+        }
+        // sorted into networks once here so the screens don't each do it again
+        long start = System.nanoTime();
+        TraceRecorder.getInstance().begin(TraceRecorder.EVENT_MODEL);
+        signalStrength.setSignalMap(new SignalMapWrapper(signalStrength.getFilteredArray(), tm));
+        TraceRecorder.getInstance().end(TraceRecorder.EVENT_MODEL);
+        PipelineMetrics.getInstance().record(PipelineMetrics.Stage.MODEL, start);
+    }
+
+    @Override
+    public void onAnomaly(Signal signal, int value, float mean, float sigma, long timestamp)
+    {
+        history.addEvent(SignalHistory.EVENT_ANOMALY, signal, value, timestamp);
+        anomalyCallback.onAnomaly(signal, value, mean, sigma, timestamp);
+    }
+
+    @Override
+    public void onAlert(AlertEngine engine, int rule, int value, long timestamp)
+    {
+        history.addEvent(SignalHistory.EVENT_ALERT, engine.getSignal(rule), value, timestamp);
+        alertCallback.onAlert(engine, rule, value, timestamp);
+    }
+
+    int getSubscriptionId()
+    {
+        return subscriptionId;
+    }
+
+    TelephonyManager getTelephonyManager()
+    {
+        return tm;
+    }
+
+    SignalListener getListener()
+    {
+        return listener;
+    }
+
+    SignalHistory getHistory()
+    {
+        return history;
+    }
+
+    AnomalyDetector getDetector()
+    {
+        return detector;
+    }
+
+    AlertEngine getAlerts()
+    {
+        return alerts;
+    }
+
+    /**
+     * @return readings from the last update indexed by Signal.value() (don't modify, worker thread only)
+     */
+    int[] getReadings()
+    {
+        return readings;
+    }
+
+    /**
+     * @return link quality from the last update indexed by NetworkType.ordinal() (don't modify, worker thread only)
+     */
+    int[] getQualities()
+    {
+        return qualities;
+    }
+
+    /**
+     * Copies out the readings and scores from the last update, both from the
+     * same one. Any thread, the arrays above are the worker's only.
+     *
+     * @param readingsOut - gets the readings indexed by Signal.value()
+     * @param qualitiesOut - gets the link quality indexed by NetworkType.ordinal()
+     */
+    void copyLatest(int[] readingsOut, int[] qualitiesOut)
+    {
+        synchronized (copiedReadings) {
+            System.arraycopy(copiedReadings, 0, readingsOut, 0, copiedReadings.length);
+            System.arraycopy(copiedQualities, 0, qualitiesOut, 0, copiedQualities.length);
+        }
+    }
+
+    SignalArrayWrapper getLatest()
+    {
+        return latest;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.listeners;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import com.cc.signalinfo.upload.SessionUploader;
+
+/**
+ * Only lets uploads go when there's a connection, and if asked to, only on
+ * Wi-Fi and/or only while the phone is plugged in. Checks right when asked
+ * instead of listening for changes, the uploader checks again on its own.
+ * Lives here instead of with the uploader since the upload package is plain
+ * Java (the server module's load test uses it).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class UploadConditions implements SessionUploader.Conditions
+{
+    private final Context             context;
+    private final ConnectivityManager connectivity;
+    private volatile boolean wifiOnly     = true;
+    private volatile boolean chargingOnly = false;
+
+    /**
+     * @param context - any context, only the application context is kept
+     */
+    public UploadConditions(Context context)
+    {
+        this.context = context.getApplicationContext();
+        connectivity = (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    public void setWifiOnly(boolean wifiOnly)
+    {
+        this.wifiOnly = wifiOnly;
+    }
+
+    public void setChargingOnly(boolean chargingOnly)
+    {
+        this.chargingOnly = chargingOnly;
+    }
+
+    @Override
+    public boolean canUpload()
+    {
+        NetworkInfo network = connectivity.getActiveNetworkInfo();
+
+        if (network == null || !network.isConnected()) {
+            return false;
+        }
+        if (wifiOnly && network.getType() != ConnectivityManager.TYPE_WIFI) {
+            return false;
+        }
+        return !chargingOnly || isCharging();
+    }
+
+    private boolean isCharging()
+    {
+        // sticky, so this just reads the last one without registering anything
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.listeners;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import com.cc.signalinfo.util.WifiScanTable;
+
+import java.util.List;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Keeps track of the Wi-Fi connection (RSSI, link speed, frequency and BSSID)
+ * and the access points around it, without hammering the radio with scans.
+ *
+ * Connection changes come from the system broadcasts, so they cost nothing.
+ * Scans are what burn battery, so they back off: every MIN_SCAN_INTERVAL_MS
+ * while things are changing, doubling up to MAX_SCAN_INTERVAL_MS while they
+ * aren't. Moving to a different access point starts it back at the minimum.
+ * Scans some other app (or the system) kicked off get used too and push the
+ * next one of ours back. No scanning at all while Wi-Fi is off.
+ *
+ * The connection's frequency isn't in WifiInfo until Lollipop, so it's
+ * looked up from the latest scan of the connected access point.
+ *
+ * Start and stop it on the UI thread, that's where the callbacks happen too.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class WifiMonitor
+{
+    private static final String TAG                  = WifiMonitor.class.getSimpleName();
+    public static final  long   MIN_SCAN_INTERVAL_MS = 10 * 1000;
+    public static final  long   MAX_SCAN_INTERVAL_MS = 5 * 60 * 1000;
+
+    private final Context       context;
+    private final WifiManager   wifiManager;
+    private final WifiCallback  callback;
+    private final Handler       handler   = new Handler(Looper.getMainLooper());
+    private final WifiScanTable scanTable = new WifiScanTable();
+    private boolean started      = false;
+    private long    scanInterval = MIN_SCAN_INTERVAL_MS;
+    private long    lastScanTime = 0;
+    // what the callback was last told, so it only hears about changes
+    private int     rssi         = INVALID;
+    private int     linkSpeed    = INVALID;
+    private int     frequency    = INVALID;
+    private String  bssid        = null;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver()
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            String action = intent.getAction();
+
+            if (WifiManager.SCAN_RESULTS_AVAILABLE_ACTION.equals(action)) {
+                onScanResults();
+            }
+            else if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(action)) {
+                scheduleScan(MIN_SCAN_INTERVAL_MS);
+                updateConnection();
+            }
+            else {
+                updateConnection();
+            }
+        }
+    };
+
+    private final Runnable scanTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (started && wifiManager.isWifiEnabled()) {
+                try {
+                    wifiManager.startScan();
+                }
+                catch (SecurityException e) {
+                    Log.w(TAG, "Not allowed to scan for Wi-Fi", e);
+                }
+            }
+            // if the scan never comes back, try again later anyway
+            scheduleScan(scanInterval);
+        }
+    };
+
+    /**
+     * @param context - any context, only the application context is kept
+     * @param callback - gets the connection readings when they change
+     */
+    public WifiMonitor(Context context, WifiCallback callback)
+    {
+        this.context = context.getApplicationContext();
+        this.callback = callback;
+        wifiManager = (WifiManager) this.context.getSystemService(Context.WIFI_SERVICE);
+    }
+
+    public void start()
+    {
+        if (started || wifiManager == null) {
+            return;
+        }
+        started = true;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+        filter.addAction(WifiManager.RSSI_CHANGED_ACTION);
+        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        filter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        context.registerReceiver(receiver, filter);
+
+        scanInterval = MIN_SCAN_INTERVAL_MS;
+        updateConnection();
+        handler.post(scanTask);
+    }
+
+    public void stop()
+    {
+        if (!started) {
+            return;
+        }
+        started = false;
+        context.unregisterReceiver(receiver);
+        handler.removeCallbacks(scanTask);
+        scanTable.clear();
+    }
+
+    /**
+     * Pushes our next scan out by the given time from now.
+     */
+    private void scheduleScan(long delayMs)
+    {
+        handler.removeCallbacks(scanTask);
+
+        if (started) {
+            handler.postDelayed(scanTask, delayMs);
+        }
+    }
+
+    private void onScanResults()
+    {
+        List<ScanResult> results;
+
+        try {
+            results = wifiManager.getScanResults();
+        }
+        catch (SecurityException e) {
+            Log.w(TAG, "Not allowed to read Wi-Fi scans", e);
+            return;
+        }
+        if (results == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+
+        // results from a scan close to the last one don't say much new
+        if (now - lastScanTime < MIN_SCAN_INTERVAL_MS / 2 && lastScanTime != 0) {
+            return;
+        }
+        lastScanTime = now;
+        scanTable.beginScan();
+
+        for (ScanResult result : results) {
+            scanTable.put(result.BSSID, result.SSID, result.level, result.frequency);
+        }
+        // things are moving, so look again soon. otherwise back off
+        scanInterval = scanTable.endScan()
+            ? MIN_SCAN_INTERVAL_MS
+            : Math.min(scanInterval * 2, MAX_SCAN_INTERVAL_MS);
+
+        scheduleScan(scanInterval);
+        updateConnection();
+    }
+
+    /**
+     * Reads the current connection and tells the callback if anything about it changed.
+     */
+    private void updateConnection()
+    {
+        android.net.wifi.WifiInfo info = wifiManager.getConnectionInfo();
+        int newRssi = INVALID;
+        int newLinkSpeed = INVALID;
+        int newFrequency = INVALID;
+        String newBssid = null;
+
+        if (info != null && info.getBSSID() != null && info.getNetworkId() != -1) {
+            newRssi = info.getRssi();
+            newLinkSpeed = info.getLinkSpeed() > 0 ? info.getLinkSpeed() : INVALID;
+            newBssid = info.getBSSID();
+            int index = scanTable.indexOf(WifiScanTable.parseBssid(newBssid));
+
+            if (index >= 0) {
+                newFrequency = scanTable.getFrequency(index);
+            }
+        }
+        if (newRssi == rssi && newLinkSpeed == linkSpeed && newFrequency == frequency
+            && (newBssid == null ? bssid == null : newBssid.equals(bssid))) {
+            return;
+        }
+        if (newBssid != null && !newBssid.equals(bssid)) {
+            // roamed or just connected, the neighbourhood probably changed
+            scanInterval = MIN_SCAN_INTERVAL_MS;
+            scheduleScan(scanInterval);
+        }
+        rssi = newRssi;
+        linkSpeed = newLinkSpeed;
+        frequency = newFrequency;
+        bssid = newBssid;
+        callback.onWifiInfo(rssi, linkSpeed, frequency, bssid);
+    }
+
+    /**
+     * @return the access points from the recent scans (UI thread only)
+     */
+    public WifiScanTable getScanTable()
+    {
+        return scanTable;
+    }
+
+    public boolean isStarted()
+    {
+        return started;
+    }
+
+    /**
+     * Gets the Wi-Fi connection readings.
+     */
+    public interface WifiCallback
+    {
+        /**
+         * All AppSetup.INVALID and a null bssid when not connected.
+         *
+         * @param rssi - in dBm
+         * @param linkSpeed - in Mbps
+         * @param frequency - in MHz (or AppSetup.INVALID until a scan has seen the access point)
+         * @param bssid - MAC address of the access point
+         */
+        void onWifiInfo(int rssi, int linkSpeed, int frequency, String bssid);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.util.Log;
+
+/**
+ * Fixes from the phone's GPS, falling back on the network location
+ * until the GPS gets going (or if it's turned off). A network fix never
+ * replaces a newer GPS one unless it's more accurate.
+ *
+ * Has to be started on a thread with a looper (the UI thread is fine).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class AndroidLocationSource implements LocationSource, LocationListener
+{
+    private static final String TAG              = AndroidLocationSource.class.getSimpleName();
+    private static final long   MIN_INTERVAL_MS  = 1000;
+    private static final float  MIN_DISTANCE_M   = 0;
+    // a GPS fix is still better than a network one for this long
+    private static final long   GPS_PREFERRED_MS = 10000;
+
+    private final LocationManager locationManager;
+    private       boolean         started  = false;
+    private       boolean         hasFix   = false;
+    private       boolean         fixIsGps = false;
+    private       double          latitude;
+    private       double          longitude;
+    private       float           accuracy;
+    private       long            fixTime;
+
+    /**
+     * @param context - any context
+     */
+    public AndroidLocationSource(Context context)
+    {
+        locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    }
+
+    @Override
+    public void start()
+    {
+        if (started) {
+            return;
+        }
+        started = true;
+        request(LocationManager.GPS_PROVIDER);
+        request(LocationManager.NETWORK_PROVIDER);
+    }
+
+    @Override
+    public void stop()
+    {
+        if (started) {
+            locationManager.removeUpdates(this);
+            started = false;
+        }
+    }
+
+    private void request(String provider)
+    {
+        try {
+            if (locationManager.getProvider(provider) != null) {
+                locationManager.requestLocationUpdates(provider, MIN_INTERVAL_MS, MIN_DISTANCE_M, this);
+            }
+        }
+        catch (IllegalArgumentException | SecurityException e) {
+            Log.w(TAG, "Can't get locations from " + provider, e);
+        }
+    }
+
+    @Override
+    public synchronized void onLocationChanged(Location location)
+    {
+        boolean gps = LocationManager.GPS_PROVIDER.equals(location.getProvider());
+
+        // don't let a rough network fix bump a recent GPS one
+        if (hasFix && fixIsGps && !gps
+            && location.getTime() - fixTime < GPS_PREFERRED_MS
+            && (!location.hasAccuracy() || location.getAccuracy() > accuracy)) {
+            return;
+        }
+        latitude = location.getLatitude();
+        longitude = location.getLongitude();
+        accuracy = location.hasAccuracy() ? location.getAccuracy() : 0;
+        fixTime = location.getTime();
+        fixIsGps = gps;
+        hasFix = true;
+    }
+
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {}
+
+    @Override
+    public void onProviderEnabled(String provider) {}
+
+    @Override
+    public void onProviderDisabled(String provider) {}
+
+    @Override
+    public synchronized boolean hasFix()
+    {
+        return hasFix;
+    }
+
+    @Override
+    public synchronized double getLatitude()
+    {
+        return latitude;
+    }
+
+    @Override
+    public synchronized double getLongitude()
+    {
+        return longitude;
+    }
+
+    @Override
+    public synchronized float getAccuracy()
+    {
+        return accuracy;
+    }
+
+    @Override
+    public synchronized long getFixTime()
+    {
+        return fixTime;
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.history.TileKeys;
+
+import java.util.Arrays;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Signal coverage rolled up into square tiles of a fixed size on the ground,
+ * for drive testing and heatmaps. Each tile keeps the count, sum, min and max
+ * of every Signal (and every network's link quality) that was seen in it, so
+ * something like the average RSRP in a tile is a hash lookup and a divide.
+ *
+ * Tiles are rows of fixed height going north, each row split into columns
+ * that are the same width in meters at that row's latitude. A tile is named
+ * by a long key with the row in the top half and the column in the bottom half
+ * (see TileKeys, the session rollups use the same tiles).
+ *
+ * Nothing is kept per sample. Tiles live in flat primitive arrays (one block of
+ * columns per tile) found through an open addressing hash of the keys, so tens
+ * of thousands of tiles are a few arrays instead of a pile of objects. The arrays
+ * only get reallocated when they fill up.
+ *
+ * Tile indexes (0 to size() - 1) are in the order tiles were first seen and
+ * don't change until clear(). Tiles that got new samples are remembered until
+ * someone drains them (see drainChanged), so whatever draws them only has to
+ * redraw those.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class CoverageGrid
+{
+    public static final double METERS_PER_DEGREE   = TileKeys.METERS_PER_DEGREE;
+    public static final int    DEFAULT_TILE_METERS = TileKeys.DEFAULT_TILE_METERS;
+
+    private static final Signal[]      SIGNALS       = Signal.values();
+    private static final NetworkType[] NETWORKS      = NetworkType.values();
+    // a column for each signal then one for each network's quality
+    private static final int           COLUMNS       = SIGNALS.length + NETWORKS.length;
+    private static final long          EMPTY_KEY     = Long.MIN_VALUE;
+    private static final int           INITIAL_TILES = 256;
+
+    private final double tileMeters;
+    private final double tileDegrees; // height of a row in degrees latitude
+
+    // hash of key -> tile index, always at most half full
+    private long[] hashKeys;
+    private int[]  hashTiles;
+
+    private long[]  tileKeys;
+    private int[]   counts;
+    private long[]  sums;
+    private short[] mins;
+    private short[] maxes;
+    private int     size     = 0;
+    private int     lastTile = -1;
+
+    // tiles with new samples since the last drain, each one only listed once
+    private boolean[] changed;
+    private int[]     changedTiles;
+    private int       changedCount = 0;
+
+    public CoverageGrid()
+    {
+        this(DEFAULT_TILE_METERS);
+    }
+
+    /**
+     * @param tileMeters - how big each tile is on a side
+     */
+    public CoverageGrid(double tileMeters)
+    {
+        this.tileMeters = tileMeters;
+        tileDegrees = tileMeters / METERS_PER_DEGREE;
+        allocate(INITIAL_TILES);
+    }
+
+    private void allocate(int tiles)
+    {
+        hashKeys = new long[tiles * 2];
+        hashTiles = new int[tiles * 2];
+        Arrays.fill(hashKeys, EMPTY_KEY);
+        tileKeys = new long[tiles];
+        counts = new int[tiles * COLUMNS];
+        sums = new long[tiles * COLUMNS];
+        mins = new short[tiles * COLUMNS];
+        maxes = new short[tiles * COLUMNS];
+        changed = new boolean[tiles];
+        changedTiles = new int[tiles];
+    }
+
+    public double getTileMeters()
+    {
+        return tileMeters;
+    }
+
+    /**
+     * @param latitude - degrees
+     * @param longitude - degrees
+     * @return key of the tile the spot is in
+     */
+    public long getKey(double latitude, double longitude)
+    {
+        int row = getRowAt(latitude);
+        return pack(row, getColumnAt(row, longitude));
+    }
+
+    /**
+     * Same as getKey() without needing a grid around (for rolling things up by tile elsewhere).
+     *
+     * @param latitude - degrees
+     * @param longitude - degrees
+     * @param tileMeters - how big each tile is on a side
+     * @return key of the tile the spot is in
+     */
+    public static long getKey(double latitude, double longitude, double tileMeters)
+    {
+        return TileKeys.getKey(latitude, longitude, tileMeters);
+    }
+
+    /**
+     * @param row - tile row
+     * @return how wide each tile in the row is in degrees longitude
+     */
+    private double getColumnDegrees(int row)
+    {
+        return TileKeys.getColumnDegrees(row, tileDegrees);
+    }
+
+    public static long pack(int row, int col)
+    {
+        return TileKeys.pack(row, col);
+    }
+
+    public static int getRow(long key)
+    {
+        return TileKeys.getRow(key);
+    }
+
+    public static int getColumn(long key)
+    {
+        return TileKeys.getColumn(key);
+    }
+
+    /**
+     * @param key - tile key
+     * @param out - south, west, north, east edges in degrees
+     */
+    public void getBounds(long key, double[] out)
+    {
+        int row = getRow(key);
+        double width = getColumnDegrees(row);
+        out[0] = row * tileDegrees;
+        out[1] = getColumn(key) * width;
+        out[2] = out[0] + tileDegrees;
+        out[3] = out[1] + width;
+    }
+
+    /**
+     * Adds a sample to the tile it's in.
+     *
+     * @param latitude - degrees
+     * @param longitude - degrees
+     * @param readings - readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param qualities - link quality indexed by NetworkType.ordinal(), can be null
+     * @return index of the tile it went in
+     */
+    public synchronized int add(double latitude, double longitude, int[] readings, int[] qualities)
+    {
+        int tile = getOrAddTile(getKey(latitude, longitude));
+        int offset = tile * COLUMNS;
+        lastTile = tile;
+
+        if (!changed[tile]) {
+            changed[tile] = true;
+            changedTiles[changedCount++] = tile;
+        }
+
+        for (int i = 0; i < SIGNALS.length && i < readings.length; ++i) {
+            addValue(offset + i, readings[i]);
+        }
+        if (qualities != null) {
+            for (int i = 0; i < NETWORKS.length && i < qualities.length; ++i) {
+                addValue(offset + SIGNALS.length + i, qualities[i]);
+            }
+        }
+        return tile;
+    }
+
+    private void addValue(int column, int value)
+    {
+        if (value == INVALID) {
+            return;
+        }
+        short clamped = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+
+        if (counts[column] == 0) {
+            mins[column] = clamped;
+            maxes[column] = clamped;
+        }
+        else if (clamped < mins[column]) {
+            mins[column] = clamped;
+        }
+        else if (clamped > maxes[column]) {
+            maxes[column] = clamped;
+        }
+        ++counts[column];
+        sums[column] += value;
+    }
+
+    /**
+     * @param key - tile key
+     * @return the tile's index or -1 if nothing's been seen there
+     */
+    public synchronized int indexOf(long key)
+    {
+        int mask = hashKeys.length - 1;
+
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (hashKeys[i] == key) {
+                return hashTiles[i];
+            }
+            if (hashKeys[i] == EMPTY_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    private int getOrAddTile(long key)
+    {
+        int tile = indexOf(key);
+
+        if (tile >= 0) {
+            return tile;
+        }
+        if (size == tileKeys.length) {
+            grow();
+        }
+        tile = size++;
+        tileKeys[tile] = key;
+        insert(key, tile);
+        return tile;
+    }
+
+    private void insert(long key, int tile)
+    {
+        int mask = hashKeys.length - 1;
+        int i = hash(key) & mask;
+
+        while (hashKeys[i] != EMPTY_KEY) {
+            i = (i + 1) & mask;
+        }
+        hashKeys[i] = key;
+        hashTiles[i] = tile;
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = tileKeys;
+        int[] oldCounts = counts;
+        long[] oldSums = sums;
+        short[] oldMins = mins;
+        short[] oldMaxes = maxes;
+        boolean[] oldChanged = changed;
+        int[] oldChangedTiles = changedTiles;
+
+        allocate(oldKeys.length * 2);
+        System.arraycopy(oldKeys, 0, tileKeys, 0, size);
+        System.arraycopy(oldCounts, 0, counts, 0, size * COLUMNS);
+        System.arraycopy(oldSums, 0, sums, 0, size * COLUMNS);
+        System.arraycopy(oldMins, 0, mins, 0, size * COLUMNS);
+        System.arraycopy(oldMaxes, 0, maxes, 0, size * COLUMNS);
+        System.arraycopy(oldChanged, 0, changed, 0, size);
+        System.arraycopy(oldChangedTiles, 0, changedTiles, 0, changedCount);
+
+        for (int tile = 0; tile < size; ++tile) {
+            insert(tileKeys[tile], tile);
+        }
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return how many tiles have something in them
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the tile the last sample went in or -1 if there's nothing yet
+     */
+    public synchronized int getLastTile()
+    {
+        return lastTile;
+    }
+
+    /**
+     * @param tile - 0 to size() - 1
+     * @return the tile's key
+     */
+    public synchronized long getTileKey(int tile)
+    {
+        return tileKeys[tile];
+    }
+
+    public synchronized int getCount(int tile, Signal signal)
+    {
+        return counts[tile * COLUMNS + signal.value()];
+    }
+
+    /**
+     * @param tile - 0 to size() - 1
+     * @param signal - which reading
+     * @return average reading in the tile or NaN if there's none
+     */
+    public synchronized float getMean(int tile, Signal signal)
+    {
+        return mean(tile * COLUMNS + signal.value());
+    }
+
+    /**
+     * @return smallest reading in the tile or AppSetup.INVALID if there's none
+     */
+    public synchronized int getMin(int tile, Signal signal)
+    {
+        int column = tile * COLUMNS + signal.value();
+        return counts[column] == 0 ? INVALID : mins[column];
+    }
+
+    /**
+     * @return biggest reading in the tile or AppSetup.INVALID if there's none
+     */
+    public synchronized int getMax(int tile, Signal signal)
+    {
+        int column = tile * COLUMNS + signal.value();
+        return counts[column] == 0 ? INVALID : maxes[column];
+    }
+
+    /**
+     * Average reading at a spot (well, in the tile the spot is in).
+     *
+     * @param latitude - degrees
+     * @param longitude - degrees
+     * @param signal - which reading
+     * @return the average or NaN if there's nothing there
+     */
+    public synchronized float getMean(double latitude, double longitude, Signal signal)
+    {
+        int tile = indexOf(getKey(latitude, longitude));
+        return tile < 0 ? Float.NaN : getMean(tile, signal);
+    }
+
+    public synchronized int getQualityCount(int tile, NetworkType type)
+    {
+        return counts[tile * COLUMNS + SIGNALS.length + type.ordinal()];
+    }
+
+    /**
+     * @param tile - 0 to size() - 1
+     * @param type - which network
+     * @return average link quality in the tile or NaN if there's none
+     */
+    public synchronized float getQualityMean(int tile, NetworkType type)
+    {
+        return mean(tile * COLUMNS + SIGNALS.length + type.ordinal());
+    }
+
+    private float mean(int column)
+    {
+        return counts[column] == 0 ? Float.NaN : (float) sums[column] / counts[column];
+    }
+
+    /**
+     * Hands over the tiles that got new samples since the last time and forgets them.
+     * Call it until it returns 0 to get them all. Meant for one consumer (like HeatmapRenderer).
+     *
+     * @param out - where to put the tile indexes
+     * @return how many were put in out
+     */
+    public synchronized int drainChanged(int[] out)
+    {
+        int n = Math.min(out.length, changedCount);
+
+        for (int i = 0; i < n; ++i) {
+            int tile = changedTiles[--changedCount];
+            changed[tile] = false;
+            out[i] = tile;
+        }
+        return n;
+    }
+
+    /**
+     * Same as getMean/getQualityMean but by column number, for code that works on either.
+     *
+     * @param tile - 0 to size() - 1
+     * @param column - from getValueColumn
+     * @return the average or NaN if there's none
+     */
+    public synchronized float getValueMean(int tile, int column)
+    {
+        return mean(tile * COLUMNS + column);
+    }
+
+    /**
+     * @param signal - a reading
+     * @return its column for getValueMean
+     */
+    public static int getValueColumn(Signal signal)
+    {
+        return signal.value();
+    }
+
+    /**
+     * @param type - a network
+     * @return the column of its link quality for getValueMean
+     */
+    public static int getValueColumn(NetworkType type)
+    {
+        return SIGNALS.length + type.ordinal();
+    }
+
+    /**
+     * @param latitude - degrees
+     * @return the row of tiles the latitude is in
+     */
+    public int getRowAt(double latitude)
+    {
+        return (int) Math.floor(latitude / tileDegrees);
+    }
+
+    /**
+     * @param row - tile row
+     * @param longitude - degrees
+     * @return the column in the row the longitude is in
+     */
+    public int getColumnAt(int row, double longitude)
+    {
+        return (int) Math.floor(longitude / getColumnDegrees(row));
+    }
+
+    public synchronized void clear()
+    {
+        size = 0;
+        lastTile = -1;
+        changedCount = 0;
+        allocate(INITIAL_TILES);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+/**
+ * A location source that's wherever you tell it to be. For tests and
+ * for playing back a drive without actually driving.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class FakeLocationSource implements LocationSource
+{
+    private boolean started  = false;
+    private boolean hasFix   = false;
+    private double  latitude;
+    private double  longitude;
+    private float   accuracy;
+    private long    fixTime;
+
+    @Override
+    public void start()
+    {
+        started = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        started = false;
+    }
+
+    /**
+     * @return true if it's been started and not stopped
+     */
+    public boolean isStarted()
+    {
+        return started;
+    }
+
+    /**
+     * @param latitude - degrees
+     * @param longitude - degrees
+     * @param accuracy - meters
+     * @param fixTime - when (System.currentTimeMillis())
+     */
+    public synchronized void setLocation(double latitude, double longitude, float accuracy, long fixTime)
+    {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.fixTime = fixTime;
+        hasFix = true;
+    }
+
+    /**
+     * Moves from where it is now by some number of meters (good enough for short hops).
+     *
+     * @param north - meters north (negative for south)
+     * @param east - meters east (negative for west)
+     * @param fixTime - when (System.currentTimeMillis())
+     */
+    public synchronized void move(double north, double east, long fixTime)
+    {
+        setLocation(latitude + north / CoverageGrid.METERS_PER_DEGREE,
+            longitude + east / (CoverageGrid.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude))),
+            accuracy,
+            fixTime);
+    }
+
+    @Override
+    public synchronized boolean hasFix()
+    {
+        return hasFix;
+    }
+
+    @Override
+    public synchronized double getLatitude()
+    {
+        return latitude;
+    }
+
+    @Override
+    public synchronized double getLongitude()
+    {
+        return longitude;
+    }
+
+    @Override
+    public synchronized float getAccuracy()
+    {
+        return accuracy;
+    }
+
+    @Override
+    public synchronized long getFixTime()
+    {
+        return fixTime;
+    }
+}
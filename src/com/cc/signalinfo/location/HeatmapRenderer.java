@@ -0,0 +1,301 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+import android.graphics.Bitmap;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.signals.SignalInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static com.cc.signalinfo.location.TileMath.TILE_SIZE;
+
+/**
+ * Draws the CoverageGrid as map tiles (TileMath numbering), each grid square
+ * filled in red to green by how good it was. Colored either by one Signal
+ * (using its strict %, same as the screen) or by a network's link quality.
+ *
+ * Tiles come out of the TileCache whenever they can. Before handing out a tile,
+ * the grid squares that got new samples are drained and only the map tiles they
+ * touch (at every zoom) get thrown out, so panning around an old drive is all
+ * cache hits and only the spot you're at now keeps getting redrawn.
+ *
+ * Drawing goes into one reused int[] of pixels. Call getTile from a background
+ * thread (disk IO and drawing), one at a time is all it does anyway.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class HeatmapRenderer
+{
+    /**
+     * Below this a grid square is way smaller than a pixel, not worth drawing.
+     */
+    public static final int MIN_ZOOM = 10;
+    public static final int MAX_ZOOM = 19;
+
+    private static final int ALPHA = 0xA0;
+    // color for every % from 0 to 100
+    private static final int[] RAMP = buildRamp();
+
+    private final CoverageGrid grid;
+    private final TileCache    cache;
+    private final Signal       signal; // null if coloring by quality
+    private final int          column;
+    private final int[]        pixels  = new int[TILE_SIZE * TILE_SIZE];
+    private final int[]        changed = new int[256];
+    private final double[]     bounds  = new double[4];
+    private final double[]     cell    = new double[4];
+    private       Bitmap       empty;
+
+    /**
+     * Colors by one reading.
+     *
+     * @param grid - what to draw
+     * @param cache - where the tiles go (only use it for this grid and this signal)
+     * @param signal - the reading to color by
+     */
+    public HeatmapRenderer(CoverageGrid grid, TileCache cache, Signal signal)
+    {
+        this(grid, cache, signal, CoverageGrid.getValueColumn(signal));
+    }
+
+    /**
+     * Colors by link quality.
+     *
+     * @param grid - what to draw
+     * @param cache - where the tiles go (only use it for this grid and this network)
+     * @param type - the network to color by
+     */
+    public HeatmapRenderer(CoverageGrid grid, TileCache cache, NetworkType type)
+    {
+        this(grid, cache, null, CoverageGrid.getValueColumn(type));
+    }
+
+    private HeatmapRenderer(CoverageGrid grid, TileCache cache, Signal signal, int column)
+    {
+        this.grid = grid;
+        this.cache = cache;
+        this.signal = signal;
+        this.column = column;
+    }
+
+    /**
+     * @param zoom - zoom level
+     * @param x - tile column
+     * @param y - tile row
+     * @return the tile or null if there's nothing in it (or it's zoomed too far out)
+     */
+    public synchronized Bitmap getTile(int zoom, int x, int y)
+    {
+        if (zoom < MIN_ZOOM || zoom > MAX_ZOOM) {
+            return null;
+        }
+        invalidateChanged();
+        long key = TileMath.pack(zoom, x, y);
+        Bitmap tile = cache.getFromMemory(key);
+
+        if (tile == null) {
+            tile = cache.read(key);
+
+            if (tile == null) {
+                tile = render(zoom, x, y);
+
+                if (tile != null) {
+                    cache.write(key, tile);
+                }
+            }
+            // empty tiles aren't saved but do get remembered in memory so they're not redrawn
+            cache.putInMemory(key, tile == null ? getEmpty() : tile);
+        }
+        return tile == getEmpty() ? null : tile;
+    }
+
+    /**
+     * Same as getTile but as PNG bytes, which is what map tile overlays usually want.
+     *
+     * @return the PNG or null if there's nothing in the tile
+     */
+    public byte[] getTilePng(int zoom, int x, int y)
+    {
+        Bitmap tile = getTile(zoom, x, y);
+
+        if (tile == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        tile.compress(Bitmap.CompressFormat.PNG, 100, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Throws out every map tile touched by a grid square that got new samples.
+     */
+    public synchronized void invalidateChanged()
+    {
+        int n;
+
+        while ((n = grid.drainChanged(changed)) > 0) {
+            for (int i = 0; i < n; ++i) {
+                grid.getBounds(grid.getTileKey(changed[i]), cell);
+
+                for (int zoom = MIN_ZOOM; zoom <= MAX_ZOOM; ++zoom) {
+                    int left = (int) (TileMath.longitudeToPixel(cell[1], zoom) / TILE_SIZE);
+                    int right = (int) (TileMath.longitudeToPixel(cell[3], zoom) / TILE_SIZE);
+                    int top = (int) (TileMath.latitudeToPixel(cell[2], zoom) / TILE_SIZE);
+                    int bottom = (int) (TileMath.latitudeToPixel(cell[0], zoom) / TILE_SIZE);
+
+                    for (int x = left; x <= right; ++x) {
+                        for (int y = top; y <= bottom; ++y) {
+                            cache.invalidate(TileMath.pack(zoom, x, y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the grid squares that fall in a map tile.
+     *
+     * @return the tile or null if there weren't any
+     */
+    private Bitmap render(int zoom, int x, int y)
+    {
+        TileMath.getBounds(zoom, x, y, bounds);
+        Arrays.fill(pixels, 0);
+
+        int firstRow = grid.getRowAt(bounds[0]);
+        int lastRow = grid.getRowAt(bounds[2]);
+        long squares = (long) (lastRow - firstRow + 1)
+            * (grid.getColumnAt(firstRow, bounds[3]) - grid.getColumnAt(firstRow, bounds[1]) + 1);
+        boolean drew = false;
+
+        if (squares <= grid.size()) {
+            // zoomed in, fewer squares in the tile than there are in the grid
+            for (int row = firstRow; row <= lastRow; ++row) {
+                int lastCol = grid.getColumnAt(row, bounds[3]);
+
+                for (int col = grid.getColumnAt(row, bounds[1]); col <= lastCol; ++col) {
+                    int tile = grid.indexOf(CoverageGrid.pack(row, col));
+
+                    if (tile >= 0) {
+                        drew |= drawSquare(tile, zoom, x, y);
+                    }
+                }
+            }
+        }
+        else {
+            // zoomed out, quicker to look at every square
+            for (int tile = 0, size = grid.size(); tile < size; ++tile) {
+                grid.getBounds(grid.getTileKey(tile), cell);
+
+                if (cell[0] < bounds[2] && cell[2] > bounds[0] && cell[1] < bounds[3] && cell[3] > bounds[1]) {
+                    drew |= drawSquare(tile, zoom, x, y);
+                }
+            }
+        }
+        if (!drew) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, TILE_SIZE, 0, 0, TILE_SIZE, TILE_SIZE);
+        return bitmap;
+    }
+
+    /**
+     * Fills in one grid square (always at least a pixel so it doesn't vanish).
+     *
+     * @return false if the square has nothing for what's being drawn
+     */
+    private boolean drawSquare(int tile, int zoom, int x, int y)
+    {
+        float mean = grid.getValueMean(tile, column);
+
+        if (Float.isNaN(mean)) {
+            return false;
+        }
+        grid.getBounds(grid.getTileKey(tile), cell);
+        double originX = (double) x * TILE_SIZE;
+        double originY = (double) y * TILE_SIZE;
+        int left = clamp((int) Math.floor(TileMath.longitudeToPixel(cell[1], zoom) - originX));
+        int right = clamp((int) Math.ceil(TileMath.longitudeToPixel(cell[3], zoom) - originX));
+        int top = clamp((int) Math.floor(TileMath.latitudeToPixel(cell[2], zoom) - originY));
+        int bottom = clamp((int) Math.ceil(TileMath.latitudeToPixel(cell[0], zoom) - originY));
+        right = Math.max(right, Math.min(left + 1, TILE_SIZE));
+        bottom = Math.max(bottom, Math.min(top + 1, TILE_SIZE));
+        int color = RAMP[getPercent(mean)];
+
+        for (int py = top; py < bottom; ++py) {
+            Arrays.fill(pixels, py * TILE_SIZE + left, py * TILE_SIZE + right, color);
+        }
+        return right > left && bottom > top;
+    }
+
+    private int getPercent(float mean)
+    {
+        int percent = signal == null
+            ? Math.round(mean)
+            : SignalInfo.getPercent(signal, Math.round(mean), false);
+        return percent < 0 ? 0 : percent > 100 ? 100 : percent;
+    }
+
+    private static int clamp(int pixel)
+    {
+        return pixel < 0 ? 0 : pixel > TILE_SIZE ? TILE_SIZE : pixel;
+    }
+
+    /**
+     * Stands in for "nothing here" in the memory cache.
+     */
+    private Bitmap getEmpty()
+    {
+        if (empty == null) {
+            empty = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        }
+        return empty;
+    }
+
+    /**
+     * Red at 0% through yellow at 50% to green at 100%.
+     */
+    private static int[] buildRamp()
+    {
+        int[] ramp = new int[101];
+
+        for (int i = 0; i <= 100; ++i) {
+            int red = i <= 50 ? 255 : Math.round(255 * (100 - i) / 50f);
+            int green = i >= 50 ? 255 : Math.round(255 * i / 50f);
+            ramp[i] = (ALPHA << 24) | (red << 16) | (green << 8);
+        }
+        return ramp;
+    }
+}
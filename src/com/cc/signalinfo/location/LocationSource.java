@@ -0,0 +1,78 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+/**
+ * Where the phone is, for tagging signal samples. Plain numbers instead of
+ * android.location.Location so each sample doesn't need an object
+ * and a fake one can be dropped in for testing.
+ *
+ * Fixes come in on the thread that started it but get read on the
+ * SignalEngine's worker thread, so the fix getters have to be thread safe.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public interface LocationSource
+{
+    /**
+     * Start getting fixes.
+     */
+    void start();
+
+    /**
+     * Stop getting fixes (to save the battery). The last fix is kept.
+     */
+    void stop();
+
+    /**
+     * @return true if there's been a fix at all
+     */
+    boolean hasFix();
+
+    /**
+     * @return latitude of the last fix in degrees
+     */
+    double getLatitude();
+
+    /**
+     * @return longitude of the last fix in degrees
+     */
+    double getLongitude();
+
+    /**
+     * @return how far off the last fix could be in meters (68% confidence), 0 if unknown
+     */
+    float getAccuracy();
+
+    /**
+     * @return when the last fix was taken (System.currentTimeMillis())
+     */
+    long getFixTime();
+}
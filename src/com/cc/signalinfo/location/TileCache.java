@@ -0,0 +1,164 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Rendered map tiles kept two ways: the most recently used ones as bitmaps
+ * in memory (sized by bytes, not count) and everything that's been drawn as
+ * PNGs on disk under zoom/x/y.png, so a tile only has to be drawn once until
+ * something new lands on it.
+ *
+ * Keys come from TileMath.pack. The memory side is thread safe. The disk side
+ * does file IO, so keep it off the UI thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class TileCache
+{
+    private static final String TAG = TileCache.class.getSimpleName();
+
+    private final File                   dir;
+    private final LruCache<Long, Bitmap> memory;
+
+    /**
+     * @param dir - where to keep the tiles on disk (null for memory only)
+     * @param memoryBytes - how much memory the bitmaps can take up
+     */
+    public TileCache(File dir, int memoryBytes)
+    {
+        this.dir = dir;
+        memory = new LruCache<Long, Bitmap>(memoryBytes)
+        {
+            @Override
+            protected int sizeOf(Long key, Bitmap value)
+            {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * @return the tile if it's in memory, otherwise null
+     */
+    public Bitmap getFromMemory(long key)
+    {
+        return memory.get(key);
+    }
+
+    public void putInMemory(long key, Bitmap tile)
+    {
+        memory.put(key, tile);
+    }
+
+    /**
+     * @return the tile from disk or null if it isn't there (or can't be read)
+     */
+    public Bitmap read(long key)
+    {
+        File file = getFile(key);
+        return file != null && file.exists() ? BitmapFactory.decodeFile(file.getPath()) : null;
+    }
+
+    /**
+     * Saves the tile to disk. Written to a temp file first so a half
+     * written tile never gets read.
+     */
+    public void write(long key, Bitmap tile)
+    {
+        File file = getFile(key);
+
+        if (file == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            out = new FileOutputStream(temp);
+            tile.compress(Bitmap.CompressFormat.PNG, 100, out);
+            out.close();
+            out = null;
+
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp);
+            }
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Could not save tile " + file, e);
+            FileUtils.deleteQuietly(temp);
+        }
+        finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Throws out a tile from memory and disk so it gets drawn again.
+     */
+    public void invalidate(long key)
+    {
+        memory.remove(key);
+        File file = getFile(key);
+
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Throws out every tile.
+     */
+    public void clear()
+    {
+        memory.evictAll();
+
+        FileUtils.deleteQuietly(dir);
+    }
+
+    private File getFile(long key)
+    {
+        return dir == null
+            ? null
+            : new File(dir, TileMath.getZoom(key) + "/" + TileMath.getX(key) + "/" + TileMath.getY(key) + ".png");
+    }
+}
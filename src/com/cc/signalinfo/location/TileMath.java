@@ -0,0 +1,124 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.location;
+
+/**
+ * The usual web map tile numbering (Web Mercator, zoom/x/y with 0,0 at the
+ * top left) so heatmap tiles line up with whatever map they're drawn over.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class TileMath
+{
+    public static final int TILE_SIZE = 256;
+    // as far north/south as Mercator goes
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private TileMath() {}
+
+    /**
+     * @param longitude - degrees
+     * @param zoom - zoom level
+     * @return pixels from the left edge of the whole world at the zoom
+     */
+    public static double longitudeToPixel(double longitude, int zoom)
+    {
+        return (longitude + 180) / 360 * worldSize(zoom);
+    }
+
+    /**
+     * @param latitude - degrees
+     * @param zoom - zoom level
+     * @return pixels from the top edge of the whole world at the zoom
+     */
+    public static double latitudeToPixel(double latitude, int zoom)
+    {
+        double lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double sin = Math.sin(Math.toRadians(lat));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize(zoom);
+    }
+
+    public static double pixelToLongitude(double x, int zoom)
+    {
+        return x / worldSize(zoom) * 360 - 180;
+    }
+
+    public static double pixelToLatitude(double y, int zoom)
+    {
+        double n = Math.PI - 2 * Math.PI * y / worldSize(zoom);
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    /**
+     * @param zoom - zoom level
+     * @param x - tile column
+     * @param y - tile row
+     * @param out - south, west, north, east edges in degrees
+     */
+    public static void getBounds(int zoom, int x, int y, double[] out)
+    {
+        out[0] = pixelToLatitude((y + 1) * (double) TILE_SIZE, zoom);
+        out[1] = pixelToLongitude(x * (double) TILE_SIZE, zoom);
+        out[2] = pixelToLatitude(y * (double) TILE_SIZE, zoom);
+        out[3] = pixelToLongitude((x + 1) * (double) TILE_SIZE, zoom);
+    }
+
+    /**
+     * @param zoom - zoom level
+     * @return how many pixels across the whole world is at the zoom
+     */
+    public static double worldSize(int zoom)
+    {
+        return (double) TILE_SIZE * (1L << zoom);
+    }
+
+    /**
+     * One long for a tile so it can be used as a cache key.
+     */
+    public static long pack(int zoom, int x, int y)
+    {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    public static int getZoom(long key)
+    {
+        return (int) (key >>> 58);
+    }
+
+    public static int getX(long key)
+    {
+        return (int) ((key >>> 29) & 0x1FFFFFFF);
+    }
+
+    public static int getY(long key)
+    {
+        return (int) (key & 0x1FFFFFFF);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.services;
+
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.preference.PreferenceManager;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.listeners.SignalEngine;
+import com.cc.signalinfo.listeners.StatusPublisher;
+import com.cc.signalinfo.util.SettingsStore;
+import com.cc.signalinfo.widgets.SignalWidgetProvider;
+
+/**
+ * Keeps collecting signal data while the app isn't open so the home screen
+ * widgets and the ongoing notification stay current. It's just one more
+ * subscriber to the SignalEngine, the StatusPublisher does the actual showing.
+ *
+ * Runs in the foreground (with the ongoing notification) if that's turned on
+ * or a session is recording, otherwise it only runs while there's a widget
+ * around. Use sync() to start or stop it whenever any of those might have changed.
+ *
+ * Nobody can see the widgets or the notification with the screen off, so it
+ * stops collecting (letting the engine drop its listeners, Wi-Fi scans and
+ * cell polling) until the screen comes back on. Unless a session is
+ * recording, that has to keep going.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SignalMonitorService extends Service
+{
+    private SignalEngine    engine;
+    private StatusPublisher publisher;
+    private boolean         screenOn   = true;
+    private boolean         subscribed = false;
+
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver()
+    {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+            updateSubscription();
+        }
+    };
+
+    /**
+     * Starts the service if the ongoing notification is on, a session is recording
+     * or there's a widget, stops it otherwise. Safe to call as often as you like.
+     *
+     * @param context - any context
+     */
+    public static void sync(Context context)
+    {
+        Intent intent = new Intent(context, SignalMonitorService.class);
+
+        if (runInForeground(context) || SignalWidgetProvider.hasWidgets(context)) {
+            context.startService(intent);
+        }
+        else {
+            context.stopService(intent);
+        }
+    }
+
+    /**
+     * Recording has to keep going with the app closed, so it gets the notification too.
+     */
+    private static boolean runInForeground(Context context)
+    {
+        return showNotification(context) || SignalEngine.getInstance(context).getSessions().isRecording();
+    }
+
+    private static boolean showNotification(Context context)
+    {
+        SettingsStore settings = SettingsStore.getInstance(PreferenceManager.getDefaultSharedPreferences(context));
+
+        return settings.getBoolean(context.getString(R.string.statusNotificationKey),
+            context.getResources().getBoolean(R.bool.statusNotificationDefault));
+    }
+
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+        engine = SignalEngine.getInstance(this);
+        publisher = new StatusPublisher(this);
+        // the screen ones only go to receivers registered in code
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        registerReceiver(screenReceiver, filter);
+        screenOn = ((PowerManager) getSystemService(Context.POWER_SERVICE)).isScreenOn();
+        updateSubscription();
+    }
+
+    /**
+     * Only stay subscribed to the engine while the screen's on or a session's recording.
+     */
+    private void updateSubscription()
+    {
+        boolean subscribe = screenOn || engine.getSessions().isRecording();
+
+        if (subscribe == subscribed) {
+            return;
+        }
+        subscribed = subscribe;
+
+        if (subscribe) {
+            engine.subscribe(publisher);
+        }
+        else {
+            engine.unsubscribe(publisher);
+            publisher.cancel();
+        }
+    }
+
+    /**
+     * Picks up changes to the notification setting, widgets and recording every time it's started.
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId)
+    {
+        boolean notify = runInForeground(this);
+        publisher.setShowNotification(notify);
+
+        if (notify) {
+            startForeground(StatusPublisher.NOTIFICATION_ID, publisher.buildNotification());
+        }
+        else {
+            stopForeground(true);
+
+            if (!SignalWidgetProvider.hasWidgets(this)) {
+                stopSelf();
+                return START_NOT_STICKY;
+            }
+        }
+        updateSubscription();
+        publisher.refresh();
+        return START_STICKY;
+    }
+
+    @Override
+    public void onDestroy()
+    {
+        unregisterReceiver(screenReceiver);
+        engine.unsubscribe(publisher);
+        publisher.cancel();
+        stopForeground(true);
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent)
+    {
+        return null; // only started, never bound
+    }
+}
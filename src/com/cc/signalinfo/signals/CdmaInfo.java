@@ -3,7 +3,6 @@ package com.cc.signalinfo.signals;
 import android.telephony.TelephonyManager;
 import com.cc.signalinfo.enums.NetworkType;
 import com.cc.signalinfo.enums.Signal;
-import com.cc.signalinfo.util.StringUtils;
 
 import java.util.EnumSet;
 import java.util.Map;
@@ -61,7 +60,6 @@ public class CdmaInfo extends SignalInfo
     @Override
     public boolean enabled()
     {
-        return !StringUtils.isNullOrEmpty(signals.get(Signal.CDMA_RSSI))
-            || !StringUtils.isNullOrEmpty(signals.get(Signal.EVDO_RSSI));
+        return hasReading(Signal.CDMA_RSSI) || hasReading(Signal.EVDO_RSSI);
     }
 }
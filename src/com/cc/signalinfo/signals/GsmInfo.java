@@ -28,7 +28,8 @@ public class GsmInfo extends SignalInfo
     {
         super(NetworkType.GSM, tm, signals);
         possibleValues =
-            EnumSet.of(Signal.GSM_SIG_STRENGTH, Signal.GSM_RSSI, Signal.GSM_BIT_ERROR, Signal.GSM_ECIO);
+            EnumSet.of(Signal.GSM_SIG_STRENGTH, Signal.GSM_RSSI, Signal.GSM_BIT_ERROR, Signal.GSM_ECIO,
+                Signal.WCDMA_RSCP, Signal.WCDMA_ECNO);
     }
 
     /**
@@ -42,7 +43,8 @@ public class GsmInfo extends SignalInfo
     {
         super(NetworkType.GSM, tm, signals, preferDb);
         possibleValues =
-            EnumSet.of(Signal.GSM_SIG_STRENGTH, Signal.GSM_RSSI, Signal.GSM_BIT_ERROR, Signal.GSM_ECIO);
+            EnumSet.of(Signal.GSM_SIG_STRENGTH, Signal.GSM_RSSI, Signal.GSM_BIT_ERROR, Signal.GSM_ECIO,
+                Signal.WCDMA_RSCP, Signal.WCDMA_ECNO);
     }
 
     /**
@@ -111,6 +113,6 @@ public class GsmInfo extends SignalInfo
     @Override
     public boolean enabled()
     {
-        return !StringUtils.isNullOrEmpty(signals.get(Signal.GSM_SIG_STRENGTH));
+        return hasReading(Signal.GSM_SIG_STRENGTH) || hasReading(Signal.WCDMA_RSCP);
     }
 }
@@ -143,6 +143,16 @@ public interface ISignal
      */
     String getRelativeEfficiency(Signal name, boolean fudgeReading);
 
+    /**
+     * Same as getRelativeEfficiency but as a number from 0 (worst) to 100 (best)
+     * so it can be displayed without creating a string.
+     *
+     * @param name - the name of the reading to compute
+     * @param fudgeReading - set to true, fudge the reading to make the user feel better while ignoring standards
+     * @return the relative efficiency as a percent or AppSetup.INVALID if there's no reading
+     */
+    int getRelativeEfficiencyPercent(Signal name, boolean fudgeReading);
+
     /**
      * The percent from 0 (worst) 100 (best)
      * of how great each measurement for the current network is
@@ -70,7 +70,7 @@ public class LteInfo extends SignalInfo
     @Override
     public boolean enabled()
     {
-        return !isNullOrEmpty(signals.get(Signal.LTE_RSRP));
+        return hasReading(Signal.LTE_RSRP);
     }
 
     /**
@@ -134,6 +134,18 @@ public abstract class SignalInfo implements ISignal
         return "Unknown";
     }
 
+    /**
+     * Is there an actual reading for the signal? (not missing or filtered out as "n/a")
+     *
+     * @param signalType - the signal to check
+     * @return true if there's a usable reading
+     */
+    protected boolean hasReading(Signal signalType)
+    {
+        String reading = signals.get(signalType);
+        return !StringUtils.isNullOrEmpty(reading) && !AppSetup.INVALID_TXT.equals(reading);
+    }
+
     /**
      * Gets signal string given the SignalType
      *
@@ -162,14 +174,45 @@ public abstract class SignalInfo implements ISignal
     @Override
     public String getRelativeEfficiency(Signal name, boolean fudgeReading)
     {
-        float signalValue =
-            AppSetup.INVALID_TXT.equals(signals.get(name))
-                ? -1
-                : Math.abs(Integer.parseInt(signals.get(name)));
+        int percentSignal = getRelativeEfficiencyPercent(name, fudgeReading);
 
-        if (signalValue == -1) {
+        if (percentSignal == AppSetup.INVALID) {
             return ""; // no value set
         }
+        return String.format("%s%%", percentSignal);
+    }
+
+    /**
+     * Same as getRelativeEfficiency, but as a plain number so
+     * it can be shown without making a new string every time.
+     *
+     * @param name - the name of the reading to compute
+     * @param fudgeReading - set to true, fudge the reading to make the user feel better while ignoring standards
+     * @return the relative efficiency from 0 to 100 or AppSetup.INVALID if there's no reading
+     */
+    @Override
+    public int getRelativeEfficiencyPercent(Signal name, boolean fudgeReading)
+    {
+        String reading = signals.get(name);
+
+        if (AppSetup.INVALID_TXT.equals(reading)) {
+            return AppSetup.INVALID; // no value set
+        }
+        return getPercent(name, Integer.parseInt(reading), fudgeReading);
+    }
+
+    /**
+     * The math behind getRelativeEfficiencyPercent for a plain number,
+     * so it can be used without a SignalInfo (like for building lookup tables).
+     *
+     * @param name - the kind of reading
+     * @param reading - the raw reading
+     * @param fudgeReading - set to true, fudge the reading to make the user feel better while ignoring standards
+     * @return the relative efficiency from 0 to 100
+     */
+    public static int getPercent(Signal name, int reading, boolean fudgeReading)
+    {
+        float signalValue = Math.abs(reading);
         signalValue += name.norm(); // normalize the reading to align to zero
         float fudgeValue = 0;
 
@@ -185,9 +228,7 @@ public abstract class SignalInfo implements ISignal
 
         int percentSignal = Math.round(result * 100);
         percentSignal = percentSignal < 0 ? 0 : Math.abs(percentSignal);
-        percentSignal = percentSignal > 100 ? 100 : percentSignal;
-
-        return String.format("%s%%", percentSignal);
+        return percentSignal > 100 ? 100 : percentSignal;
     }
 
     /**
@@ -0,0 +1,65 @@
+package com.cc.signalinfo.signals;
+
+import android.telephony.TelephonyManager;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * Stores all the signal info related to the Wi-Fi connection
+ * (not to be confused with android.net.wifi.WifiInfo, which is where it comes from).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class WifiInfo extends SignalInfo
+{
+    /**
+     * Instantiates a new Wifi info.
+     *
+     * @param tm - instance of telephonyManager
+     * @param signals the signals
+     */
+    public WifiInfo(TelephonyManager tm, @Nullable Map<Signal, String> signals)
+    {
+        super(NetworkType.WIFI, tm, signals);
+        possibleValues = EnumSet.range(Signal.WIFI_RSSI, Signal.WIFI_FREQUENCY);
+    }
+
+    /**
+     * Instantiates a new Wifi info.
+     *
+     * @param tm - instance of telephonyManager
+     * @param signals the signals
+     * @param preferDb - if true, convert all non-decibel readings (centibels) to decibels
+     */
+    public WifiInfo(TelephonyManager tm, Map<Signal, String> signals, boolean preferDb)
+    {
+        super(NetworkType.WIFI, tm, signals, preferDb);
+        possibleValues = EnumSet.range(Signal.WIFI_RSSI, Signal.WIFI_FREQUENCY);
+    }
+
+    /**
+     * Instantiates a new Wifi info.
+     *
+     * @param tm - instance of telephonyManager
+     */
+    public WifiInfo(TelephonyManager tm)
+    {
+        this(tm, null);
+    }
+
+    /**
+     * Is the device connected to an access point right now?
+     *
+     * @return true if enabled
+     */
+    @Override
+    public boolean enabled()
+    {
+        return hasReading(Signal.WIFI_RSSI);
+    }
+}
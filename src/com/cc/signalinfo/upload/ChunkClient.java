@@ -0,0 +1,216 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.upload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Talks to the collector. Chunks live at {endpoint}/chunks/{sha1}:
+ *
+ * HEAD asks if the collector already has a chunk (200 if it does, 404 if not).
+ * PUT sends one, gzipped (Content-Encoding: gzip). The SHA-1 is of the chunk
+ * before it's gzipped, so the collector can check it got the whole thing.
+ * Who sent it and where it goes come along as headers: X-Device-Id,
+ * X-Session-Id, X-Session-Start (ms), X-Chunk-Offset (bytes into the session's
+ * blocks) plus X-Carrier and X-Tags (URL encoded). Any 2xx means the
+ * collector has it.
+ *
+ * Connections get reused between requests when the server allows it.
+ * Not thread safe, only the upload thread uses it.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class ChunkClient
+{
+    public static final  String HEADER_DEVICE        = "X-Device-Id";
+    public static final  String HEADER_SESSION       = "X-Session-Id";
+    public static final  String HEADER_SESSION_START = "X-Session-Start";
+    public static final  String HEADER_OFFSET        = "X-Chunk-Offset";
+    public static final  String HEADER_CARRIER       = "X-Carrier";
+    public static final  String HEADER_TAGS          = "X-Tags";
+    private static final int    TIMEOUT_MS           = 30 * 1000;
+
+    private final String                endpoint;
+    private final String                deviceId;
+    private final String                carrier;
+    // the gzipped chunk, reused so the length is known before sending
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(32 * 1024);
+    private final byte[]                drain      = new byte[1024];
+
+    /**
+     * @param endpoint - the collector's base URL (http or https)
+     * @param deviceId - what this device goes by
+     * @param carrier - the SIM's carrier (or null)
+     * @throws MalformedURLException - if the endpoint isn't an http(s) URL
+     */
+    public ChunkClient(String endpoint, String deviceId, String carrier) throws MalformedURLException
+    {
+        URL url = new URL(endpoint);
+
+        if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+            throw new MalformedURLException("Not an http URL: " + endpoint);
+        }
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.deviceId = deviceId;
+        this.carrier = carrier == null ? "" : carrier;
+    }
+
+    public String getEndpoint()
+    {
+        return endpoint;
+    }
+
+    /**
+     * @param hash - the chunk's SHA-1
+     * @return true if the collector already has it
+     * @throws IOException - if the collector can't be reached or answers with an error
+     */
+    public boolean has(String hash) throws IOException
+    {
+        HttpURLConnection connection = open(hash, "HEAD");
+
+        try {
+            int code = connection.getResponseCode();
+
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return false;
+            }
+            if (code / 100 != 2) {
+                throw new IOException("Collector answered " + code + " for chunk " + hash);
+            }
+            return true;
+        }
+        finally {
+            finish(connection);
+        }
+    }
+
+    /**
+     * Sends a chunk.
+     *
+     * @param chunk - the chunk to send (as it is right now)
+     * @param sessionId - which session it's from
+     * @param sessionStart - when the session started
+     * @param tags - the session's tags
+     * @throws IOException - if it didn't make it
+     */
+    public void put(ChunkReader chunk, long sessionId, long sessionStart, String tags) throws IOException
+    {
+        compressed.reset();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(chunk.getBuffer(), 0, chunk.getLength());
+        gzip.close();
+
+        HttpURLConnection connection = open(chunk.getHash(), "PUT");
+
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(compressed.size());
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty(HEADER_DEVICE, deviceId);
+            connection.setRequestProperty(HEADER_SESSION, String.valueOf(sessionId));
+            connection.setRequestProperty(HEADER_SESSION_START, String.valueOf(sessionStart));
+            connection.setRequestProperty(HEADER_OFFSET, String.valueOf(chunk.getOffset()));
+            connection.setRequestProperty(HEADER_CARRIER, encode(carrier));
+            connection.setRequestProperty(HEADER_TAGS, encode(tags));
+
+            OutputStream out = connection.getOutputStream();
+
+            try {
+                compressed.writeTo(out);
+            }
+            finally {
+                out.close();
+            }
+            int code = connection.getResponseCode();
+
+            if (code / 100 != 2) {
+                throw new IOException("Collector answered " + code + " for chunk " + chunk.getHash());
+            }
+        }
+        finally {
+            finish(connection);
+        }
+    }
+
+    private HttpURLConnection open(String hash, String method) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint + "/chunks/" + hash).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setUseCaches(false);
+        // the body is already gzipped, don't let anything try again
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    /**
+     * Reads whatever the server sent back so the connection can be reused.
+     */
+    private void finish(HttpURLConnection connection)
+    {
+        try {
+            InputStream in = connection.getResponseCode() / 100 == 2
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+
+            if (in != null) {
+                try {
+                    while (in.read(drain) != -1) {
+                        // just emptying it
+                    }
+                }
+                finally {
+                    in.close();
+                }
+            }
+        }
+        catch (IOException e) {
+            // no reusing this one
+            connection.disconnect();
+        }
+    }
+
+    private static String encode(String text) throws UnsupportedEncodingException
+    {
+        return URLEncoder.encode(text == null ? "" : text, "UTF-8");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.upload;
+
+import com.cc.signalinfo.history.SnapshotCodec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cuts a session's blocks into chunks for uploading. A chunk is as many
+ * whole blocks as fit in the chunk size, so each one can be decoded on its
+ * own, and it's named by the SHA-1 of its bytes so the collector can tell
+ * it already has one without it being sent again.
+ *
+ * Where the chunks get cut only depends on where reading starts and the
+ * chunk size, so the same data always comes out as the same chunks.
+ *
+ * Only one chunk is ever in memory (the buffer gets reused), however big the session is.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class ChunkReader implements Closeable
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final DataInputStream in;
+    private final byte[]          buffer;
+    private final MessageDigest   digest;
+    private       long            remaining;
+    private       long            offset;
+    private       int             length = 0;
+    private       String          hash   = null;
+
+    /**
+     * @param blocks - framed blocks (see SessionStore.openBlocks()), gets closed with the reader
+     * @param length - how many bytes of blocks there are
+     * @param offset - how far into the session the blocks start
+     * @param chunkSize - biggest a chunk can be (always fits at least one block)
+     */
+    public ChunkReader(InputStream blocks, long length, long offset, int chunkSize)
+    {
+        in = new DataInputStream(new BufferedInputStream(blocks, SnapshotCodec.MAX_BLOCK_SIZE));
+        buffer = new byte[Math.max(chunkSize, SnapshotCodec.MAX_FRAME_SIZE + 4)];
+        remaining = length;
+        this.offset = offset;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java has SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the next chunk in.
+     *
+     * @return false if there are no more blocks
+     * @throws IOException - if the blocks can't be read or don't make sense
+     */
+    public boolean next() throws IOException
+    {
+        offset += length;
+        length = 0;
+        hash = null;
+
+        while (remaining > 0) {
+            in.mark(4);
+            int frame = in.readInt();
+
+            if (frame <= 0 || frame > SnapshotCodec.MAX_FRAME_SIZE || 4 + frame > remaining) {
+                throw new IOException("Bad block length " + frame);
+            }
+            if (length + 4 + frame > buffer.length) {
+                // starts the next chunk
+                in.reset();
+                break;
+            }
+            buffer[length] = (byte) (frame >>> 24);
+            buffer[length + 1] = (byte) (frame >>> 16);
+            buffer[length + 2] = (byte) (frame >>> 8);
+            buffer[length + 3] = (byte) frame;
+            in.readFully(buffer, length + 4, frame);
+            length += 4 + frame;
+            remaining -= 4 + frame;
+        }
+        return length > 0;
+    }
+
+    /**
+     * @return the chunk's bytes (only the first getLength() of them, reused for the next chunk)
+     */
+    public byte[] getBuffer()
+    {
+        return buffer;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return how far into the session the chunk starts
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return how far into the session the chunk ends
+     */
+    public long getEnd()
+    {
+        return offset + length;
+    }
+
+    /**
+     * @return true if this chunk goes to the end of the blocks
+     */
+    public boolean isLast()
+    {
+        return remaining == 0;
+    }
+
+    /**
+     * @return the chunk's name, SHA-1 of its bytes in lower case hex
+     */
+    public String getHash()
+    {
+        if (hash == null) {
+            hash = hash(buffer, 0, length, digest);
+        }
+        return hash;
+    }
+
+    /**
+     * @param bytes - what to hash
+     * @param offset - where to start
+     * @param length - how many bytes
+     * @param digest - a SHA-1 digest (gets reset)
+     * @return the SHA-1 in lower case hex
+     */
+    public static String hash(byte[] bytes, int offset, int length, MessageDigest digest)
+    {
+        digest.reset();
+        digest.update(bytes, offset, length);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param sum - a digest
+     * @return the digest in lower case hex
+     */
+    public static String toHex(byte[] sum)
+    {
+        char[] hex = new char[sum.length * 2];
+
+        for (int i = 0; i < sum.length; ++i) {
+            hex[i * 2] = HEX[(sum[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[sum[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
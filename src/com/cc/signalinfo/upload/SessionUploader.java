@@ -0,0 +1,279 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.upload;
+
+import com.cc.signalinfo.history.SessionInfo;
+import com.cc.signalinfo.history.SessionStore;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ships recorded sessions to a collector (see ChunkClient), a chunk at a time
+ * straight out of the segment files, and remembers how far it got in an
+ * UploadLog so it always picks up where it left off.
+ *
+ * Runs on its own executor, never on the recorder's, so uploading can be as slow
+ * as the network wants without holding up recording. Uploads are batched:
+ * schedule() can be called as often as anything changes, and a run only
+ * happens a little later and sends everything waiting in one go. Sessions
+ * still recording only send full chunks, the end gets sent once they stop.
+ *
+ * If a run fails it's tried again later, waiting twice as long each time up
+ * to MAX_BACKOFF_MS. If the conditions say not now (no Wi-Fi, not charging)
+ * it checks again every CONDITION_CHECK_MS.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SessionUploader
+{
+    /**
+     * Biggest a chunk gets before it's gzipped.
+     */
+    public static final  int  CHUNK_SIZE         = 64 * 1024;
+    /**
+     * How long to wait after schedule() so a bunch of changes go up together.
+     */
+    public static final  long BATCH_DELAY_MS     = 30 * 1000;
+    public static final  long BASE_BACKOFF_MS    = 30 * 1000;
+    public static final  long MAX_BACKOFF_MS     = 60 * 60 * 1000;
+    public static final  long CONDITION_CHECK_MS = 15 * 60 * 1000;
+
+    private final SessionStore             store;
+    private final UploadLog                log;
+    private final ScheduledExecutorService executor;
+    private final Conditions               conditions;
+    private final UploadCallback           callback;
+    private final Random                   jitter   = new Random();
+    private volatile ChunkClient        client   = null;
+    // guarded by this
+    private          ScheduledFuture<?> pending  = null;
+    // only touched on the executor
+    private          int                failures = 0;
+
+    private final Runnable uploadTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            runScheduled();
+        }
+    };
+
+    /**
+     * @param store - where the sessions are
+     * @param log - what's been uploaded so far
+     * @param executor - runs the uploads (one thread is plenty)
+     * @param conditions - when uploading is allowed
+     * @param callback - told how it's going (called on the executor)
+     */
+    public SessionUploader(SessionStore store, UploadLog log, ScheduledExecutorService executor,
+                           Conditions conditions, UploadCallback callback)
+    {
+        this.store = store;
+        this.log = log;
+        this.executor = executor;
+        this.conditions = conditions;
+        this.callback = callback;
+    }
+
+    /**
+     * @param client - the collector to send to, null to stop uploading
+     */
+    public void setClient(ChunkClient client)
+    {
+        this.client = client;
+    }
+
+    public ChunkClient getClient()
+    {
+        return client;
+    }
+
+    /**
+     * Makes sure a run is coming (after BATCH_DELAY_MS). Does nothing if one's
+     * already coming, including a retry that's backing off.
+     */
+    public synchronized void schedule()
+    {
+        if (client != null && (pending == null || pending.isDone())) {
+            pending = executor.schedule(uploadTask, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels whatever run is coming (uploading picks up from the log next time).
+     */
+    public synchronized void cancel()
+    {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * Uploads everything waiting, right here on this thread.
+     *
+     * @return false if it stopped because the conditions said not to
+     * @throws IOException - if a chunk couldn't be read or sent (everything
+     * sent before it stays sent)
+     */
+    public boolean upload() throws IOException
+    {
+        ChunkClient current = client;
+
+        if (current == null) {
+            return true;
+        }
+        if (!conditions.canUpload()) {
+            return false;
+        }
+        List<SessionInfo> sessions = store.getSessions();
+        log.retain(sessions);
+
+        for (SessionInfo session : sessions) {
+            long from = log.getUploaded(session.getId());
+
+            // a full chunk's worth has to be waiting before a recording session gets sent
+            if (from >= session.getLength() || session.isRecording() && session.getLength() - from < CHUNK_SIZE) {
+                continue;
+            }
+            if (!upload(current, session, from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the conditions changed part way through
+     */
+    private boolean upload(ChunkClient current, SessionInfo session, long from) throws IOException
+    {
+        ChunkReader chunks = new ChunkReader(store.openBlocks(session, from),
+            session.getLength() - from, from, CHUNK_SIZE);
+
+        try {
+            while (chunks.next()) {
+                if (session.isRecording() && chunks.isLast()) {
+                    break; // more is still getting added to this one
+                }
+                // already there if a log got lost or another upload beat us to it
+                if (!current.has(chunks.getHash())) {
+                    current.put(chunks, session.getId(), session.getStartTime(), session.getTags());
+                }
+                log.setUploaded(session.getId(), chunks.getEnd());
+                callback.onUploaded(session, chunks.getEnd());
+
+                if (!conditions.canUpload()) {
+                    return false;
+                }
+            }
+        }
+        finally {
+            chunks.close();
+        }
+        return true;
+    }
+
+    /**
+     * @param failures - how many runs in a row have failed
+     * @return how long to wait before the next try (without the jitter)
+     */
+    public static long getBackoff(int failures)
+    {
+        if (failures <= 0) {
+            return 0;
+        }
+        // past 2^20 it's way over the max anyway
+        return Math.min(BASE_BACKOFF_MS << Math.min(failures - 1, 20), MAX_BACKOFF_MS);
+    }
+
+    private void runScheduled()
+    {
+        long delay;
+
+        synchronized (this) {
+            pending = null;
+        }
+        try {
+            if (upload()) {
+                failures = 0;
+                return;
+            }
+            delay = CONDITION_CHECK_MS;
+        }
+        catch (IOException e) {
+            ++failures;
+            // spread the phones out so a collector coming back up doesn't get them all at once
+            long backoff = getBackoff(failures);
+            delay = backoff - backoff / 4 + (long) (jitter.nextDouble() * (backoff / 2));
+            callback.onUploadError(e, delay);
+        }
+        synchronized (this) {
+            // something asked for a run while this one was going, that one will do
+            if (client != null && pending == null) {
+                pending = executor.schedule(uploadTask, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Says whether uploading is allowed right now (Wi-Fi only, charging only, etc).
+     * Called on the upload thread.
+     */
+    public interface Conditions
+    {
+        boolean canUpload();
+    }
+
+    /**
+     * Told how uploading is going. Called on the upload thread.
+     */
+    public interface UploadCallback
+    {
+        /**
+         * @param session - the session a chunk was sent for
+         * @param uploaded - how many bytes of it the collector has now
+         */
+        void onUploaded(SessionInfo session, long uploaded);
+
+        /**
+         * @param e - what went wrong
+         * @param retryMs - how long until it tries again
+         */
+        void onUploadError(IOException e, long retryMs);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.upload;
+
+import com.cc.signalinfo.history.SessionInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers how many bytes of each session the collector has, so uploading
+ * picks up where it left off after a dropped connection or the app getting
+ * killed. Written to a temp file and renamed over after every chunk, the
+ * same as the session catalog, so it's never ahead of what actually got sent.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class UploadLog
+{
+    private static final int MAGIC   = 0x5349554C; // "SIUL"
+    private static final int VERSION = 1;
+
+    private final File            file;
+    private       Map<Long, Long> uploaded = null;
+
+    /**
+     * @param file - where to keep it
+     */
+    public UploadLog(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @param sessionId - the session
+     * @return how many bytes of its blocks have been uploaded
+     * @throws IOException - if the log can't be read
+     */
+    public synchronized long getUploaded(long sessionId) throws IOException
+    {
+        load();
+        Long bytes = uploaded.get(sessionId);
+        return bytes == null ? 0 : bytes;
+    }
+
+    /**
+     * @param sessionId - the session
+     * @param bytes - how many bytes of its blocks have been uploaded now
+     * @throws IOException - if the log can't be written
+     */
+    public synchronized void setUploaded(long sessionId, long bytes) throws IOException
+    {
+        load();
+        uploaded.put(sessionId, bytes);
+        save();
+    }
+
+    /**
+     * Forgets about sessions that aren't around anymore.
+     *
+     * @param sessions - every session there is
+     * @throws IOException - if the log can't be written
+     */
+    public synchronized void retain(List<SessionInfo> sessions) throws IOException
+    {
+        load();
+        Set<Long> ids = new HashSet<>(sessions.size() * 2);
+
+        for (SessionInfo session : sessions) {
+            ids.add(session.getId());
+        }
+        boolean changed = false;
+
+        for (Iterator<Long> i = uploaded.keySet().iterator(); i.hasNext(); ) {
+            if (!ids.contains(i.next())) {
+                i.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private void load() throws IOException
+    {
+        if (uploaded != null) {
+            return;
+        }
+        Map<Long, Long> loaded = new HashMap<>();
+
+        if (file.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not an upload log " + file);
+                }
+                for (int i = in.readInt(); i > 0; --i) {
+                    loaded.put(in.readLong(), in.readLong());
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        uploaded = loaded;
+    }
+
+    private void save() throws IOException
+    {
+        File dir = file.getParentFile();
+
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(uploaded.size());
+
+            for (Map.Entry<Long, Long> entry : uploaded.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.util;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Threshold alerts the user sets up themselves, like "LTE_RSRP < -115 for 10s"
+ * or "LTE_RSRP missing for 5s" (fell back from LTE).
+ *
+ * Rules are one per line (or separated by ;) and look like:
+ *
+ *   SUBJECT OP THRESHOLD [for N(s|m)] [hyst N] [cooldown N(s|m)]
+ *   SUBJECT missing [for N(s|m)] [cooldown N(s|m)]
+ *
+ * SUBJECT is a Signal name or a network's link quality (LTE_QUALITY, GSM_QUALITY, etc),
+ * OP is one of < <= > >=. A rule fires once the condition has held for the duration,
+ * then not again until it clears. Once it's held the reading has to get back past
+ * the threshold by the hysteresis to clear, so a reading sitting right on the line
+ * doesn't keep starting over. Each rule also has its own cooldown between firing.
+ * "missing" only counts after the reading has been seen at least once,
+ * so a phone that never had LTE doesn't get told it lost it.
+ *
+ * The text is only parsed when the rules change. After that everything is in flat
+ * arrays indexed by rule, so checking an update is one pass over the rules and
+ * doesn't allocate. Not thread safe, feed it from one thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class AlertEngine
+{
+    public static final int OP_LESS          = 0;
+    public static final int OP_LESS_EQUAL    = 1;
+    public static final int OP_GREATER       = 2;
+    public static final int OP_GREATER_EQUAL = 3;
+    public static final int OP_MISSING       = 4;
+
+    public static final long DEFAULT_COOLDOWN_MS = 60000;
+
+    private static final Signal[]      SIGNALS         = Signal.values();
+    private static final NetworkType[] NETWORKS        = NetworkType.values();
+    private static final String        QUALITY_SUFFIX  = "_QUALITY";
+    private static final Pattern       RULE_SEPARATOR  = Pattern.compile("[;\\n]");
+    private static final Pattern       RULE_PATTERN    = Pattern.compile(
+        "^\\s*([A-Z0-9_]+)\\s*(<=|>=|<|>|missing)\\s*(-?\\d+)?"
+            + "(?:\\s+for\\s+(\\d+)\\s*([sm]?))?"
+            + "(?:\\s+hyst\\s+(\\d+))?"
+            + "(?:\\s+cooldown\\s+(\\d+)\\s*([sm]?))?\\s*$",
+        Pattern.CASE_INSENSITIVE);
+
+    private final AlertCallback callback;
+    private       Rules         rules = new Rules(0);
+    private       int           skipped = 0;
+
+    /**
+     * @param callback - who to tell when a rule fires
+     */
+    public AlertEngine(AlertCallback callback)
+    {
+        this.callback = callback;
+    }
+
+    /**
+     * Throws out the current rules (and where they were at) and loads new ones.
+     * Lines that don't make sense get skipped.
+     *
+     * @param text - the rules, one per line or separated by ;
+     * @return how many rules were loaded
+     */
+    public int setRules(String text)
+    {
+        List<String> lines = new ArrayList<>();
+        skipped = 0;
+
+        if (text != null) {
+            for (String line : RULE_SEPARATOR.split(text)) {
+                if (line.trim().length() != 0) {
+                    lines.add(line.trim());
+                }
+            }
+        }
+        Rules compiled = new Rules(lines.size());
+
+        for (String line : lines) {
+            if (!compiled.add(line)) {
+                ++skipped;
+            }
+        }
+        rules = compiled;
+        return compiled.count;
+    }
+
+    /**
+     * @return how many lines the last setRules couldn't make sense of
+     */
+    public int getSkippedCount()
+    {
+        return skipped;
+    }
+
+    public int getRuleCount()
+    {
+        return rules.count;
+    }
+
+    /**
+     * @param rule - 0 to getRuleCount() - 1
+     * @return the rule as the user wrote it
+     */
+    public String getLabel(int rule)
+    {
+        return rules.labels[rule];
+    }
+
+    /**
+     * @param rule - 0 to getRuleCount() - 1
+     * @return the signal the rule is about (the main reading for quality rules)
+     */
+    public Signal getSignal(int rule)
+    {
+        int subject = rules.subjects[rule];
+        return subject < SIGNALS.length
+            ? SIGNALS[subject]
+            : QualityScorer.getWeights(NETWORKS[subject - SIGNALS.length])[0].signal();
+    }
+
+    /**
+     * @param rule - 0 to getRuleCount() - 1
+     * @return true if the rule has gone off and hasn't cleared yet
+     */
+    public boolean isActive(int rule)
+    {
+        return rules.active[rule];
+    }
+
+    /**
+     * Checks every rule against an update.
+     *
+     * @param readings - raw readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param qualities - link quality indexed by NetworkType.ordinal() (see QualityScorer), can be null
+     * @param now - when the readings came in, in milliseconds
+     */
+    public void process(int[] readings, int[] qualities, long now)
+    {
+        Rules r = rules; // in case a callback loads new rules partway through
+
+        for (int i = 0; i < r.count; ++i) {
+            int subject = r.subjects[i];
+            int value = subject < SIGNALS.length
+                ? readings[subject]
+                : qualities == null ? INVALID : qualities[subject - SIGNALS.length];
+            boolean holding;
+
+            if (r.ops[i] == OP_MISSING) {
+                if (value != INVALID) {
+                    r.seen[i] = true;
+                }
+                holding = r.seen[i] && value == INVALID;
+            }
+            else if (value == INVALID) {
+                r.since[i] = 0; // no idea, start the clock over but leave it active
+                continue;
+            }
+            else {
+                holding = r.since[i] != 0
+                    ? !cleared(r.ops[i], value, r.thresholds[i], r.hysteresis[i])
+                    : matches(r.ops[i], value, r.thresholds[i]);
+            }
+
+            if (!holding) {
+                r.since[i] = 0;
+                r.active[i] = false;
+                continue;
+            }
+            if (r.since[i] == 0) {
+                r.since[i] = now;
+            }
+            if (!r.active[i] && now - r.since[i] >= r.durations[i]) {
+                r.active[i] = true;
+
+                if (r.lastFired[i] == 0 || now - r.lastFired[i] >= r.cooldowns[i]) {
+                    r.lastFired[i] = now;
+                    callback.onAlert(this, i, value, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget where every rule was at (keeps the rules).
+     */
+    public void reset()
+    {
+        rules.reset();
+    }
+
+    private static boolean matches(int op, int value, int threshold)
+    {
+        switch (op) {
+            case OP_LESS:
+                return value < threshold;
+            case OP_LESS_EQUAL:
+                return value <= threshold;
+            case OP_GREATER:
+                return value > threshold;
+            case OP_GREATER_EQUAL:
+                return value >= threshold;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the value got far enough back past the threshold to stop holding
+     */
+    private static boolean cleared(int op, int value, int threshold, int hysteresis)
+    {
+        switch (op) {
+            case OP_LESS:
+            case OP_LESS_EQUAL:
+                return !matches(op, value - hysteresis, threshold);
+            case OP_GREATER:
+            case OP_GREATER_EQUAL:
+                return !matches(op, value + hysteresis, threshold);
+        }
+        return true;
+    }
+
+    /**
+     * @param name - Signal name or network name + _QUALITY
+     * @return index into the readings (then the qualities after those) or -1 if it's not a thing
+     */
+    private static int parseSubject(String name)
+    {
+        String upper = name.toUpperCase(Locale.US);
+
+        for (Signal signal : SIGNALS) {
+            if (signal.name().equals(upper)) {
+                return signal.value();
+            }
+        }
+        if (upper.endsWith(QUALITY_SUFFIX)) {
+            String network = upper.substring(0, upper.length() - QUALITY_SUFFIX.length());
+
+            for (NetworkType type : NETWORKS) {
+                if (type.name().equals(network) && QualityScorer.getWeights(type).length > 0) {
+                    return SIGNALS.length + type.ordinal();
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int parseOp(String op)
+    {
+        switch (op.toLowerCase(Locale.US)) {
+            case "<":
+                return OP_LESS;
+            case "<=":
+                return OP_LESS_EQUAL;
+            case ">":
+                return OP_GREATER;
+            case ">=":
+                return OP_GREATER_EQUAL;
+        }
+        return OP_MISSING;
+    }
+
+    /**
+     * @param amount - the number, null for none
+     * @param unit - s, m or empty for seconds
+     * @param defaultMs - what to use if there's no number
+     */
+    private static long parseMillis(String amount, String unit, long defaultMs)
+    {
+        if (amount == null) {
+            return defaultMs;
+        }
+        long seconds = Long.parseLong(amount);
+        return "m".equalsIgnoreCase(unit) ? seconds * 60000 : seconds * 1000;
+    }
+
+    /**
+     * Everything about the rules and where they're at, in arrays indexed by rule.
+     * Swapped out as a whole when the rules change.
+     */
+    private static final class Rules
+    {
+        final String[]  labels;
+        final int[]     subjects;
+        final int[]     ops;
+        final int[]     thresholds;
+        final int[]     hysteresis;
+        final long[]    durations;
+        final long[]    cooldowns;
+        final long[]    since;     // when the condition started holding, 0 if it isn't
+        final long[]    lastFired;
+        final boolean[] active;
+        final boolean[] seen;      // for missing, if the reading has ever been there
+        int count = 0;
+
+        Rules(int capacity)
+        {
+            labels = new String[capacity];
+            subjects = new int[capacity];
+            ops = new int[capacity];
+            thresholds = new int[capacity];
+            hysteresis = new int[capacity];
+            durations = new long[capacity];
+            cooldowns = new long[capacity];
+            since = new long[capacity];
+            lastFired = new long[capacity];
+            active = new boolean[capacity];
+            seen = new boolean[capacity];
+        }
+
+        /**
+         * @param line - one rule
+         * @return false if it couldn't be parsed
+         */
+        boolean add(String line)
+        {
+            Matcher m = RULE_PATTERN.matcher(line);
+
+            if (!m.matches()) {
+                return false;
+            }
+            int subject = parseSubject(m.group(1));
+            int op = parseOp(m.group(2));
+
+            // comparisons need something to compare to, missing doesn't
+            if (subject < 0 || (op == OP_MISSING) != (m.group(3) == null)) {
+                return false;
+            }
+            try {
+                thresholds[count] = op == OP_MISSING ? 0 : Integer.parseInt(m.group(3));
+                durations[count] = parseMillis(m.group(4), m.group(5), 0);
+                hysteresis[count] = m.group(6) == null ? 0 : Integer.parseInt(m.group(6));
+                cooldowns[count] = parseMillis(m.group(7), m.group(8), DEFAULT_COOLDOWN_MS);
+            }
+            catch (NumberFormatException ignored) {
+                return false; // way too many digits
+            }
+            labels[count] = line;
+            subjects[count] = subject;
+            ops[count] = op;
+            ++count;
+            return true;
+        }
+
+        void reset()
+        {
+            for (int i = 0; i < count; ++i) {
+                since[i] = 0;
+                lastFired[i] = 0;
+                active[i] = false;
+                seen[i] = false;
+            }
+        }
+    }
+
+    /**
+     * Called when a rule goes off.
+     */
+    public interface AlertCallback
+    {
+        /**
+         * @param engine - the engine the rule is in (for getLabel, getSignal)
+         * @param rule - which rule
+         * @param value - the reading that set it off (AppSetup.INVALID for missing)
+         * @param timestamp - when
+         */
+        void onAlert(AlertEngine engine, int rule, int value, long timestamp);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import com.cc.signalinfo.enums.Signal;
+
+import java.util.Arrays;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Spots a signal suddenly getting worse compared to how it's been doing lately,
+ * instead of against some fixed number that's wrong for half the places you go.
+ *
+ * Keeps an exponentially weighted mean and variance for each Signal and flags a
+ * reading that's more than k standard deviations on the bad side of the mean.
+ * Which side is bad comes from the Signal's best/worst. Each signal only gets
+ * flagged once when it goes bad and again after it has recovered, not every update.
+ *
+ * The defaults come from the Signal ranges. The sigma never goes below a small
+ * slice of the signal's range, so a reading that sat still for a while doesn't
+ * flag a 1dB wiggle.
+ *
+ * Everything is in arrays indexed by Signal.value(), so a sample is O(1) per
+ * signal and doesn't allocate. Not thread safe, feed it from one thread.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public class AnomalyDetector
+{
+    /**
+     * Weight of each new reading, about the last 20 readings count.
+     */
+    public static final float DEFAULT_ALPHA       = 0.1f;
+    /**
+     * How many standard deviations off counts as an anomaly.
+     */
+    public static final float DEFAULT_K           = 3;
+    /**
+     * Readings needed before the baseline is trusted.
+     */
+    public static final int   WARMUP_SAMPLES      = 10;
+    // smallest sigma as a fraction of the signal's range
+    private static final float MIN_SIGMA_OF_RANGE = 0.02f;
+
+    private static final Signal[] SIGNALS = Signal.values();
+
+    private final float[]   mean;
+    private final float[]   variance;
+    private final int[]     samples;
+    private final float[]   alpha;
+    private final float[]   k;
+    private final float[]   minSigma;
+    private final boolean[] anomalous;
+    private AnomalyCallback callback;
+
+    /**
+     * @param callback - told about each anomaly (can be null)
+     */
+    public AnomalyDetector(AnomalyCallback callback)
+    {
+        int size = SIGNALS.length;
+        this.callback = callback;
+        mean = new float[size];
+        variance = new float[size];
+        samples = new int[size];
+        alpha = new float[size];
+        k = new float[size];
+        minSigma = new float[size];
+        anomalous = new boolean[size];
+
+        for (Signal signal : SIGNALS) {
+            int i = signal.value();
+            alpha[i] = DEFAULT_ALPHA;
+            k[i] = DEFAULT_K;
+            minSigma[i] = Math.max(1, Math.abs(signal.best() - signal.worst()) * MIN_SIGMA_OF_RANGE);
+        }
+    }
+
+    public void setCallback(AnomalyCallback callback)
+    {
+        this.callback = callback;
+    }
+
+    /**
+     * Changes the tuning for one signal.
+     *
+     * @param signal - the signal to tune
+     * @param alpha - weight of each new reading (0 to 1, higher forgets faster)
+     * @param k - standard deviations off before it's an anomaly
+     */
+    public void setTuning(Signal signal, float alpha, float k)
+    {
+        this.alpha[signal.value()] = alpha;
+        this.k[signal.value()] = k;
+    }
+
+    /**
+     * Checks a set of readings and adds them to the baselines.
+     *
+     * @param readings - raw readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param timestamp - when the readings were taken (passed to the callback)
+     * @return how many signals just went bad
+     */
+    public int process(int[] readings, long timestamp)
+    {
+        int found = 0;
+
+        for (int i = 0; i < SIGNALS.length && i < readings.length; ++i) {
+            if (readings[i] != INVALID && process(SIGNALS[i], readings[i], timestamp)) {
+                ++found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks one reading and adds it to the baseline.
+     *
+     * @param signal - which signal it is
+     * @param value - the raw reading
+     * @param timestamp - when the reading was taken (passed to the callback)
+     * @return true if the signal just went bad
+     */
+    public boolean process(Signal signal, int value, long timestamp)
+    {
+        if (signal.best() == signal.worst()) {
+            return false; // no better or worse (like a frequency)
+        }
+        int i = signal.value();
+        float x = orient(signal, value);
+
+        if (samples[i] == 0) {
+            mean[i] = x;
+            variance[i] = 0;
+            samples[i] = 1;
+            return false;
+        }
+        float sigma = Math.max((float) Math.sqrt(variance[i]), minSigma[i]);
+        boolean bad = samples[i] >= WARMUP_SAMPLES && x < mean[i] - k[i] * sigma;
+        boolean flagged = bad && !anomalous[i];
+
+        if (flagged && callback != null) {
+            callback.onAnomaly(signal, value, mean[i], sigma, timestamp);
+        }
+        // recovered once it's back above the mean minus one sigma
+        anomalous[i] = bad || anomalous[i] && x < mean[i] - sigma;
+
+        // West's incremental EWMA variance
+        float diff = x - mean[i];
+        float increment = alpha[i] * diff;
+        mean[i] += increment;
+        variance[i] = (1 - alpha[i]) * (variance[i] + diff * increment);
+
+        if (samples[i] < WARMUP_SAMPLES) {
+            ++samples[i];
+        }
+        return flagged;
+    }
+
+    /**
+     * @param signal - the signal
+     * @return the current baseline (always negative for dBm type readings) or AppSetup.INVALID if there isn't one yet
+     */
+    public float getMean(Signal signal)
+    {
+        return samples[signal.value()] == 0 ? INVALID : mean[signal.value()];
+    }
+
+    /**
+     * @param signal - the signal
+     * @return the standard deviation of the baseline
+     */
+    public float getSigma(Signal signal)
+    {
+        return (float) Math.sqrt(variance[signal.value()]);
+    }
+
+    /**
+     * @param signal - the signal
+     * @return true if the signal is currently flagged and hasn't recovered
+     */
+    public boolean isAnomalous(Signal signal)
+    {
+        return anomalous[signal.value()];
+    }
+
+    /**
+     * Forgets all the baselines (like after switching networks).
+     */
+    public void reset()
+    {
+        Arrays.fill(samples, 0);
+        Arrays.fill(anomalous, false);
+    }
+
+    /**
+     * Turns a reading around so bigger is always better. Negative dBm
+     * readings get worse the further they are from 0 and some devices
+     * report them without the minus sign, so those go by the magnitude.
+     */
+    private static float orient(Signal signal, int value)
+    {
+        return signal.best() > signal.worst() ? value : -Math.abs(value);
+    }
+
+    /**
+     * Undoes orient for showing a baseline next to the reading that set it off,
+     * so it has the same sign the radio reported the reading with.
+     *
+     * @param signal - the signal
+     * @param mean - a baseline from here (like the one passed to the callback)
+     * @param value - the raw reading
+     * @return the baseline in the reading's units
+     */
+    public static float toReadingUnits(Signal signal, float mean, int value)
+    {
+        if (signal.best() > signal.worst()) {
+            return mean;
+        }
+        return value < 0 ? -Math.abs(mean) : Math.abs(mean);
+    }
+
+    /**
+     * Told when a signal suddenly gets worse than its baseline.
+     */
+    public interface AnomalyCallback
+    {
+        /**
+         * @param signal - the signal that got worse
+         * @param value - the reading that set it off
+         * @param mean - the baseline it was compared to (negative for dBm type readings)
+         * @param sigma - the standard deviation used
+         * @param timestamp - when the reading was taken
+         */
+        void onAnomaly(Signal signal, int value, float mean, float sigma, long timestamp);
+    }
+}
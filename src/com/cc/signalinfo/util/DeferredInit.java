@@ -0,0 +1,130 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds onto startup work that isn't needed to show the signals (like the
+ * ads) until the first signal reading is on the screen, then runs it. Each task is posted on its own so the UI gets a
+ * chance to draw in between instead of one long stall.
+ *
+ * If no signal ever shows up (tablets, airplane mode) everything still
+ * runs after the timeout so nothing gets skipped for good.
+ *
+ * UI thread only.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public class DeferredInit
+{
+    /**
+     * Longest the deferred startup work should wait for a signal to show up.
+     */
+    public static final long MAX_DEFER_MS = 5000;
+
+    private final Handler        handler  = new Handler(Looper.getMainLooper());
+    private final List<Runnable> tasks    = new ArrayList<>(4);
+    private       boolean        released = false;
+
+    private final Runnable releaseTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            release();
+        }
+    };
+
+    /**
+     * Adds work to run once released. Runs it on the next loop
+     * if things have already been released.
+     *
+     * @param task - the work to put off
+     */
+    public void add(Runnable task)
+    {
+        if (released) {
+            handler.post(task);
+        }
+        else {
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Makes sure everything runs eventually even if release never gets called.
+     *
+     * @param timeoutMs - most time to wait in milliseconds
+     */
+    public void releaseAfter(long timeoutMs)
+    {
+        if (!released) {
+            handler.postDelayed(releaseTask, timeoutMs);
+        }
+    }
+
+    /**
+     * Runs all the waiting work (each one posted separately). Only does anything the first time.
+     */
+    public void release()
+    {
+        if (released) {
+            return;
+        }
+        released = true;
+        handler.removeCallbacks(releaseTask);
+
+        for (Runnable task : tasks) {
+            handler.post(task);
+        }
+        tasks.clear();
+    }
+
+    /**
+     * @return true once the deferred work has been let go
+     */
+    public boolean isReleased()
+    {
+        return released;
+    }
+
+    /**
+     * Drops anything that hasn't run yet (like when the activity is destroyed).
+     */
+    public void cancel()
+    {
+        handler.removeCallbacksAndMessages(null);
+        tasks.clear();
+    }
+}
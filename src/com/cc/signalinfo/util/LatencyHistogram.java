@@ -0,0 +1,160 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import java.util.Arrays;
+
+/**
+ * Counts how long something took in log sized buckets (HDR histogram style)
+ * so it only ever needs the one int[] no matter how many values go in.
+ *
+ * Values are in microseconds. Each power of 2 is split into 4 buckets,
+ * so anything it reports is within about 25% of the real value, which is
+ * plenty to tell a 2ms parse from a 40ms one. Anything over about a minute
+ * goes in the last bucket.
+ *
+ * Thread safe, recording is just a couple of shifts and an increment under a lock.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BITS    = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // 2^26 microseconds is a little over a minute
+    private static final int MAX_EXP     = 26;
+    static final         int BUCKETS     = (MAX_EXP - SUB_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final int[] counts = new int[BUCKETS];
+    private       int   total  = 0;
+    private       long  max    = 0;
+
+    /**
+     * @param micros - how long it took in microseconds
+     */
+    public synchronized void record(long micros)
+    {
+        ++counts[bucketFor(micros)];
+        ++total;
+
+        if (micros > max) {
+            max = micros;
+        }
+    }
+
+    /**
+     * @param startNanos - System.nanoTime() from when it started
+     */
+    public void recordSince(long startNanos)
+    {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @param percentile - 0 to 100
+     * @return the value (microseconds) that percentile of the recorded values are at or below,
+     * or 0 if nothing's been recorded yet
+     */
+    public synchronized long getPercentile(double percentile)
+    {
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+
+            if (seen >= Math.max(wanted, 1)) {
+                // don't claim more than the biggest thing actually seen
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized int getCount()
+    {
+        return total;
+    }
+
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    public synchronized void reset()
+    {
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @param micros - the value
+     * @return which bucket the value goes in
+     */
+    static int bucketFor(long micros)
+    {
+        if (micros < SUB_BUCKETS) {
+            return micros < 0 ? 0 : (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+
+        if (exp > MAX_EXP) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param bucket - the bucket
+     * @return the smallest value that goes in the bucket
+     */
+    static long lowerBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+    }
+
+    /**
+     * @param bucket - the bucket
+     * @return the biggest value that goes in the bucket
+     */
+    static long upperBound(int bucket)
+    {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timing for each stage a signal update goes through on its way to the screen,
+ * so when the app feels laggy on some device we can see which part is slow.
+ *
+ * Stages get their own LatencyHistogram. Counters keep track of how many updates
+ * came in, how many were the same as the last one (skipped the parse) and how
+ * many got replaced by a newer one before they were drawn.
+ *
+ * Everything is preallocated, recording doesn't create any garbage.
+ * Timestamps are System.nanoTime() since it only goes forward.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public final class PipelineMetrics
+{
+    private static final PipelineMetrics instance       = new PipelineMetrics();
+    // how long to count updates for before working out the rate
+    private static final long            RATE_WINDOW_NS = 5000000000L;
+
+    private final LatencyHistogram[] histograms   = new LatencyHistogram[Stage.values().length];
+    private final AtomicInteger      received     = new AtomicInteger();
+    private final AtomicInteger      deduplicated = new AtomicInteger();
+    private final AtomicInteger      dropped      = new AtomicInteger();
+    private       long               windowStart  = 0;
+    private       int                windowCount  = 0;
+    private       float              updateRate   = 0;
+
+    /**
+     * Parts of the signal path that get timed.
+     */
+    public enum Stage
+    {
+        /**
+         * Regex filtering of the raw signal string.
+         */
+        PARSE("parse"),
+        /**
+         * Building the per network signal objects.
+         */
+        MODEL("model"),
+        /**
+         * Binding the readings to the views.
+         */
+        RENDER("render"),
+        /**
+         * From the system callback until it's on the screen.
+         */
+        TOTAL("total");
+
+        private final String label;
+
+        Stage(String label)
+        {
+            this.label = label;
+        }
+
+        public String label()
+        {
+            return label;
+        }
+    }
+
+    private PipelineMetrics()
+    {
+        for (int i = 0; i < histograms.length; ++i) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static PipelineMetrics getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * A signal update came in from the system.
+     *
+     * @return the arrival time to pass along for the TOTAL stage
+     */
+    public long onReceived()
+    {
+        long now = System.nanoTime();
+        received.incrementAndGet();
+
+        synchronized (this) {
+            if (windowStart == 0) {
+                windowStart = now;
+            }
+            ++windowCount;
+            updateWindow(now);
+        }
+        return now;
+    }
+
+    /**
+     * Works out the rate and starts a new window once the current one's full.
+     * Has to be called with the lock held.
+     *
+     * @param now - System.nanoTime()
+     */
+    private void updateWindow(long now)
+    {
+        if (windowStart != 0 && now - windowStart >= RATE_WINDOW_NS) {
+            updateRate = windowCount * 1e9f / (now - windowStart);
+            windowStart = now;
+            windowCount = 0;
+        }
+    }
+
+    /**
+     * The update was the same as the last one, so the parse got skipped.
+     */
+    public void onDeduplicated()
+    {
+        deduplicated.incrementAndGet();
+    }
+
+    /**
+     * The update was replaced by a newer one before it got drawn.
+     */
+    public void onDropped()
+    {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * @param stage - the stage that just finished
+     * @param startNanos - System.nanoTime() from when the stage started
+     */
+    public void record(Stage stage, long startNanos)
+    {
+        histograms[stage.ordinal()].recordSince(startNanos);
+    }
+
+    public LatencyHistogram getHistogram(Stage stage)
+    {
+        return histograms[stage.ordinal()];
+    }
+
+    public int getReceived()
+    {
+        return received.get();
+    }
+
+    public int getDeduplicated()
+    {
+        return deduplicated.get();
+    }
+
+    public int getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Worked out when it's asked for too, so it drops off when the updates
+     * stop instead of showing the last rate forever.
+     *
+     * @return updates per second over the last full window
+     */
+    public synchronized float getUpdateRate()
+    {
+        updateWindow(System.nanoTime());
+        return updateRate;
+    }
+
+    public void reset()
+    {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        received.set(0);
+        deduplicated.set(0);
+        dropped.set(0);
+
+        synchronized (this) {
+            windowStart = 0;
+            windowCount = 0;
+            updateRate = 0;
+        }
+    }
+
+    /**
+     * Something like "parse p50 1.2ms p99 4.0ms (n=120)" for each stage
+     * followed by the counters, for the debug panel.
+     *
+     * @return the metrics, one stage per line
+     */
+    public String dump()
+    {
+        StringBuilder sb = new StringBuilder(256);
+
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            sb.append(stage.label())
+                .append(" p50 ").append(toMillis(histogram.getPercentile(50)))
+                .append("ms p99 ").append(toMillis(histogram.getPercentile(99)))
+                .append("ms (n=").append(histogram.getCount()).append(")\n");
+        }
+        sb.append("received ").append(received.get())
+            .append(", deduplicated ").append(deduplicated.get())
+            .append(", dropped ").append(dropped.get())
+            .append(", ").append(Math.round(getUpdateRate() * 100) / 100f).append(" updates/s\n");
+        return sb.toString();
+    }
+
+    private static float toMillis(long micros)
+    {
+        return Math.round(micros / 100f) / 10f;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.QualityWeight;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.signals.SignalInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * One 0-100 link quality number per network, combining the readings in
+ * QualityWeight instead of making people look at five separate percentages.
+ *
+ * Each reading's strict % (same as getRelativeEfficiencyPercent) with its curve
+ * applied is worked out once up front for every raw value, so scoring is just
+ * table lookups and integer math. Readings past the end of the table count
+ * the same as the last entry (they're way past best or worst anyway).
+ *
+ * Each table has the positive readings first and then the negative ones.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class QualityScorer
+{
+    // raw readings go by their magnitude, nothing real gets close to this
+    private static final int               TABLE_SIZE = 512;
+    private static final int[][]           TABLES     = new int[Signal.values().length][];
+    private static final NetworkType[]     NETWORKS   = NetworkType.values();
+    private static final QualityWeight[][] BY_NETWORK = new QualityWeight[NETWORKS.length][];
+
+    static {
+        for (QualityWeight weight : QualityWeight.values()) {
+            Signal signal = weight.signal();
+            int[] table = new int[TABLE_SIZE * 2];
+
+            for (int i = 0; i < TABLE_SIZE; ++i) {
+                table[i] = weight.curve().apply(SignalInfo.getPercent(signal, i, false));
+                table[TABLE_SIZE + i] = weight.curve().apply(signal.best() > signal.worst()
+                    ? belowZeroPercent(signal, i)
+                    : table[i]);
+            }
+            TABLES[signal.value()] = table;
+        }
+        for (NetworkType type : NETWORKS) {
+            List<QualityWeight> weights = new ArrayList<>(4);
+
+            for (QualityWeight weight : QualityWeight.values()) {
+                if (weight.type() == type) {
+                    weights.add(weight);
+                }
+            }
+            BY_NETWORK[type.ordinal()] = weights.toArray(new QualityWeight[weights.size()]);
+        }
+    }
+
+    private QualityScorer() {}
+
+    /**
+     * @param type - the network to score
+     * @param readings - raw readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @return 0 (useless) to 100 (perfect) or AppSetup.INVALID if the main reading for the network is missing
+     */
+    public static int score(NetworkType type, int[] readings)
+    {
+        QualityWeight[] weights = BY_NETWORK[type.ordinal()];
+
+        if (weights.length == 0 || readings[weights[0].signal().value()] == INVALID) {
+            return INVALID;
+        }
+        int total = 0;
+        int totalWeight = 0;
+
+        for (QualityWeight weight : weights) {
+            int value = readings[weight.signal().value()];
+
+            if (value != INVALID) {
+                total += weight.weight() * lookup(weight.signal(), value);
+                totalWeight += weight.weight();
+            }
+        }
+        return (total + totalWeight / 2) / totalWeight;
+    }
+
+    /**
+     * Scores every network.
+     *
+     * @param readings - raw readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param out - scores indexed by NetworkType.ordinal()
+     */
+    public static void scoreAll(int[] readings, int[] out)
+    {
+        for (NetworkType type : NETWORKS) {
+            out[type.ordinal()] = score(type, readings);
+        }
+    }
+
+    /**
+     * @param type - network type
+     * @return the weights used for the network, main reading first. Don't modify it.
+     */
+    public static QualityWeight[] getWeights(NetworkType type)
+    {
+        return BY_NETWORK[type.ordinal()];
+    }
+
+    /**
+     * @param signal - the reading (has to be one in QualityWeight)
+     * @param value - raw reading
+     * @return its 0-100 part of the score
+     */
+    static int lookup(Signal signal, int value)
+    {
+        int magnitude = value < 0 ? -value : value;
+        magnitude = magnitude < TABLE_SIZE && magnitude >= 0 ? magnitude : TABLE_SIZE - 1;
+        return TABLES[signal.value()][value < 0 ? TABLE_SIZE + magnitude : magnitude];
+    }
+
+    /**
+     * getPercent goes by the size of the reading, which is right for dBm and the like
+     * but makes a negative SNR look as good as a positive one. Those are below
+     * the bottom of the scale and count for only what's left above zero after normalizing.
+     *
+     * @param signal - a reading where bigger is better
+     * @param magnitude - how far below zero the raw reading is
+     * @return 0 - 100
+     */
+    private static int belowZeroPercent(Signal signal, int magnitude)
+    {
+        int percent = Math.round((signal.norm() - magnitude) * 100f / signal.best());
+        return percent < 0 ? 0 : percent > 100 ? 100 : percent;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.os.SystemClock;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Incremental parser for the radio logcat buffer. Pulls the WCDMA
+ * values SignalStrength doesn't give us (RSCP, Ec/No, PSC and UARFCN)
+ * out of the RIL chatter as it streams by.
+ *
+ * Bytes are fed in whatever chunks the stream hands us and get split into
+ * lines in a fixed size buffer. Lines longer than the buffer are cut off
+ * (the values we want are always near the front anyways). No regex and no
+ * per line allocations because the radio buffer can be really noisy on some
+ * devices (looking at you Samsung).
+ *
+ * Each value is only good for MAX_AGE_MS after the line it was on. The RIL
+ * stops logging them once the phone leaves WCDMA, so a value that hasn't
+ * shown up again in that long goes back to AppSetup.INVALID instead of
+ * sticking around forever.
+ *
+ * Not thread safe. Feed it from one thread only.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-02
+ */
+public class RadioLogParser
+{
+    /**
+     * Longest line we bother keeping. Anything after this gets dropped.
+     */
+    public static final int MAX_LINE_LENGTH = 512;
+    /**
+     * How long a parsed value is good for (SystemClock.elapsedRealtime() millis).
+     */
+    public static final long MAX_AGE_MS     = 5000;
+
+    public static final int RSCP   = 0;
+    public static final int EC_NO  = 1;
+    public static final int PSC    = 2;
+    public static final int UARFCN = 3;
+
+    private static final int FIELD_COUNT = 4;
+
+    // keys as they show up in the RIL logs of the devices I've seen (always lower case here)
+    private static final byte[][] KEYS       = {
+        ascii("rscp"),
+        ascii("ecno"),
+        ascii("ec/no"),
+        ascii("ecn0"),
+        ascii("psc"),
+        ascii("uarfcn")
+    };
+    private static final int[]    KEY_FIELDS = {RSCP, EC_NO, EC_NO, EC_NO, PSC, UARFCN};
+
+    private final byte[]          line      = new byte[MAX_LINE_LENGTH];
+    private final int[]           values    = new int[FIELD_COUNT];
+    private final int[]           published = new int[FIELD_COUNT];
+    // when each value was last seen
+    private final long[]          times     = new long[FIELD_COUNT];
+    private final RadioInfoCallback callback;
+    private int  lineLength = 0;
+    private long linesParsed = 0;
+    // when the line being parsed came in and when the values were last handed out
+    private long now           = 0;
+    private long publishedTime = 0;
+
+    /**
+     * @param callback - who to tell when the parsed values change
+     */
+    public RadioLogParser(RadioInfoCallback callback)
+    {
+        this.callback = callback;
+        reset();
+    }
+
+    /**
+     * Forget everything parsed so far (like when the radio log stream restarts)
+     */
+    public final void reset()
+    {
+        lineLength = 0;
+        linesParsed = 0;
+        java.util.Arrays.fill(values, INVALID);
+        java.util.Arrays.fill(published, INVALID);
+        java.util.Arrays.fill(times, 0);
+        publishedTime = 0;
+    }
+
+    /**
+     * Feed raw bytes from the log stream. Doesn't matter if lines
+     * are split across calls, the partial line is kept until the rest shows up.
+     *
+     * @param buffer - bytes read from the stream
+     * @param offset - where the data starts in the buffer
+     * @param length - how many bytes to read from the buffer
+     */
+    public void feed(byte[] buffer, int offset, int length)
+    {
+        feed(buffer, offset, length, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Same as feed(byte[], int, int) but with the time the bytes came in.
+     *
+     * @param buffer - bytes read from the stream
+     * @param offset - where the data starts in the buffer
+     * @param length - how many bytes to read from the buffer
+     * @param now - SystemClock.elapsedRealtime() when the bytes were read
+     */
+    public void feed(byte[] buffer, int offset, int length, long now)
+    {
+        this.now = now;
+        int end = offset + length;
+
+        for (int i = offset; i < end; ++i) {
+            byte b = buffer[i];
+
+            if (b == '\n' || b == '\r') {
+                if (lineLength > 0) {
+                    parseLine();
+                    lineLength = 0;
+                }
+            }
+            else if (lineLength < MAX_LINE_LENGTH) {
+                line[lineLength++] = b;
+            }
+            // else the line is too long, just drop the rest of it
+        }
+    }
+
+    /**
+     * Parse whatever is left over in the line buffer (end of the stream).
+     */
+    public void flush()
+    {
+        if (lineLength > 0) {
+            parseLine();
+            lineLength = 0;
+        }
+    }
+
+    /**
+     * @param field - RSCP, EC_NO, PSC or UARFCN
+     * @return the last value seen for the field or AppSetup.INVALID if never seen
+     *         (or not for the last MAX_AGE_MS)
+     */
+    public int get(int field)
+    {
+        return get(field, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param field - RSCP, EC_NO, PSC or UARFCN
+     * @param now - SystemClock.elapsedRealtime()
+     * @return the last value seen for the field or AppSetup.INVALID if it's
+     *         never been seen or is older than MAX_AGE_MS
+     */
+    public int get(int field, long now)
+    {
+        return now - times[field] <= MAX_AGE_MS ? values[field] : INVALID;
+    }
+
+    /**
+     * @return how many lines have gone through the parser (mainly for debugging)
+     */
+    public long getLinesParsed()
+    {
+        return linesParsed;
+    }
+
+    /**
+     * Scans the current line for any of the keys we care about
+     * and grabs the number after them.
+     */
+    private void parseLine()
+    {
+        ++linesParsed;
+        boolean found = false;
+
+        for (int i = 0; i < lineLength; ++i) {
+            // keys have to start on a word boundary or we'd match "prscp" and such
+            if (i > 0 && isLetter(line[i - 1])) {
+                continue;
+            }
+            for (int k = 0; k < KEYS.length; ++k) {
+                int end = matchKey(KEYS[k], i);
+
+                if (end != -1) {
+                    found |= parseValue(KEY_FIELDS[k], end);
+                    i = end - 1;
+                    break;
+                }
+            }
+        }
+
+        if (found) {
+            publishIfChanged();
+        }
+    }
+
+    /**
+     * @param key - the key to compare against (lower case)
+     * @param start - where in the line to start comparing
+     * @return index right after the key if it matched, otherwise -1
+     */
+    private int matchKey(byte[] key, int start)
+    {
+        int end = start + key.length;
+
+        if (end > lineLength) {
+            return -1;
+        }
+        for (int i = 0; i < key.length; ++i) {
+            if (toLower(line[start + i]) != key[i]) {
+                return -1;
+            }
+        }
+        // don't match keys that are just the front of a longer word
+        if (end < lineLength && (isLetter(line[end]) || line[end] == '_')) {
+            return -1;
+        }
+        return end;
+    }
+
+    /**
+     * Reads the number following a key, skipping any separators like "=", ":" or spaces
+     *
+     * @param field - the field the number belongs to
+     * @param pos - index right after the key
+     * @return true if a valid value was found
+     */
+    private boolean parseValue(int field, int pos)
+    {
+        while (pos < lineLength && (line[pos] == ' ' || line[pos] == '=' || line[pos] == ':' || line[pos] == '\t')) {
+            ++pos;
+        }
+        boolean negative = false;
+
+        if (pos < lineLength && line[pos] == '-') {
+            negative = true;
+            ++pos;
+        }
+        int digits = 0;
+        int value = 0;
+
+        // 6 digits is way more than any of these ever need, stops overflows from garbage
+        while (pos < lineLength && digits < 6 && line[pos] >= '0' && line[pos] <= '9') {
+            value = value * 10 + (line[pos] - '0');
+            ++pos;
+            ++digits;
+        }
+        if (digits == 0) {
+            return false;
+        }
+        value = sanitize(field, negative ? -value : value);
+
+        if (value == INVALID) {
+            return false;
+        }
+        values[field] = value;
+        times[field] = now;
+        return true;
+    }
+
+    /**
+     * Some RILs report the power readings as positive numbers,
+     * so flip them and throw out anything outside of a sane range.
+     *
+     * @param field - the field the value is for
+     * @param value - the raw value from the log
+     * @return the cleaned up value or AppSetup.INVALID if it's junk
+     */
+    private static int sanitize(int field, int value)
+    {
+        switch (field) {
+            case RSCP:
+                value = value > 0 ? -value : value;
+                return value <= -20 && value >= -130 ? value : INVALID;
+            case EC_NO:
+                value = value > 0 ? -value : value;
+                return value >= -30 ? value : INVALID;
+            case PSC:
+                return value >= 0 && value <= 511 ? value : INVALID;
+            case UARFCN:
+                return value > 0 && value <= 16383 ? value : INVALID;
+        }
+        return INVALID;
+    }
+
+    /**
+     * Hands out the values if any changed. Values that have gone stale get
+     * dropped first. Unchanged ones still get handed out every so often so
+     * whoever's using them knows they're still current (see MAX_AGE_MS).
+     */
+    private void publishIfChanged()
+    {
+        boolean changed = now - publishedTime >= MAX_AGE_MS / 2;
+
+        for (int i = 0; i < FIELD_COUNT; ++i) {
+            if (now - times[i] > MAX_AGE_MS) {
+                values[i] = INVALID;
+            }
+            if (values[i] != published[i]) {
+                published[i] = values[i];
+                changed = true;
+            }
+        }
+        if (changed && callback != null) {
+            publishedTime = now;
+            callback.onRadioInfo(values[RSCP], values[EC_NO], values[PSC], values[UARFCN]);
+        }
+    }
+
+    private static boolean isLetter(byte b)
+    {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static byte toLower(byte b)
+    {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[] ascii(String value)
+    {
+        byte[] bytes = new byte[value.length()];
+
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Notified any time one of the parsed WCDMA values changes (or goes stale),
+     * and every MAX_AGE_MS / 2 or so while they're still showing up.
+     * Called on whatever thread is feeding the parser.
+     */
+    public interface RadioInfoCallback
+    {
+        /**
+         * @param rscp - received signal code power in dBm or AppSetup.INVALID
+         * @param ecNo - Ec/No in dB or AppSetup.INVALID
+         * @param psc - primary scrambling code or AppSetup.INVALID
+         * @param uarfcn - UTRA channel number or AppSetup.INVALID
+         */
+        void onRadioInfo(int rscp, int ecNo, int psc, int uarfcn);
+    }
+}
@@ -27,12 +27,9 @@
 
 package com.cc.signalinfo.util;
 
-import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.Build;
-import android.util.Log;
 
 import java.util.Set;
 
@@ -58,41 +55,28 @@ public final class SettingsHelpers
     }
 
     /**
-     * Add shared preference.
+     * Gets the in memory settings for the activity. Reads are instant
+     * and writes get saved in the background.
+     *
+     * @param activity the activity
+     * @return the settings store
+     */
+    public static SettingsStore getSettings(Activity activity)
+    {
+        return SettingsStore.getInstance(getSharedPreferences(activity));
+    }
+
+    /**
+     * Add shared preference. Saved in the background, but readable right away.
      *
      * @param activity the activity
      * @param settingName the setting name
      * @param settingValue the setting value
-     * @return the boolean
+     * @return false if the value isn't a type preferences can hold
      */
     public static boolean addSharedPreference(Activity activity, String settingName, Object settingValue)
     {
-        SharedPreferences settings = getSharedPreferences(activity);
-        SharedPreferences.Editor editor = settings.edit();
-
-        try {
-            if (settingValue instanceof Boolean) {
-                return editor.putBoolean(settingName, (Boolean) settingValue).commit();
-            }
-            else if (settingValue instanceof String) {
-                return editor.putString(settingName, (String) settingValue).commit();
-            }
-            else if (settingValue instanceof Integer) {
-                return editor.putInt(settingName, (Integer) settingValue).commit();
-            }
-            else if (settingValue instanceof Set) { // requires android 3.0 or higher
-                return editor.putStringSet(settingName, (Set<String>) settingValue).commit();
-            }
-            else if (settingValue instanceof Float) {
-                return editor.putFloat(settingName, (Float) settingValue).commit();
-            }
-            else if (settingValue instanceof Long) {
-                return editor.putLong(settingName, (Long) settingValue).commit();
-            }
-        } catch (ClassCastException e) {
-            Log.e(TAG, String.format("Cannot convert %s", settingValue.toString()), e);
-        }
-        return false;
+        return getSettings(activity).put(settingName, settingValue);
     }
 
     public static boolean addSharedPreference(Activity activity, int settingName, Object settingValue)
@@ -110,7 +94,7 @@ public final class SettingsHelpers
      */
     public static boolean getPreference(Activity activity, String preferenceName, boolean defaultReturnValue)
     {
-        return getSharedPreferences(activity).getBoolean(preferenceName, defaultReturnValue);
+        return getSettings(activity).getBoolean(preferenceName, defaultReturnValue);
     }
 
     /**
@@ -123,7 +107,7 @@ public final class SettingsHelpers
      */
     public static String getPreference(Activity activity, String preferenceName, String defaultReturnValue)
     {
-        return getSharedPreferences(activity).getString(preferenceName, defaultReturnValue);
+        return getSettings(activity).getString(preferenceName, defaultReturnValue);
     }
 
     /**
@@ -136,7 +120,7 @@ public final class SettingsHelpers
      */
     public static int getPreference(Activity activity, String preferenceName, int defaultReturnValue)
     {
-        return getSharedPreferences(activity).getInt(preferenceName, defaultReturnValue);
+        return getSettings(activity).getInt(preferenceName, defaultReturnValue);
     }
 
     /**
@@ -149,7 +133,7 @@ public final class SettingsHelpers
      */
     public static float getPreference(Activity activity, String preferenceName, float defaultReturnValue)
     {
-        return getSharedPreferences(activity).getFloat(preferenceName, defaultReturnValue);
+        return getSettings(activity).getFloat(preferenceName, defaultReturnValue);
     }
 
     /**
@@ -162,7 +146,7 @@ public final class SettingsHelpers
      */
     public static long getPreference(Activity activity, String preferenceName, long defaultReturnValue)
     {
-        return getSharedPreferences(activity).getLong(preferenceName, defaultReturnValue);
+        return getSettings(activity).getLong(preferenceName, defaultReturnValue);
     }
 
     /**
@@ -173,9 +157,8 @@ public final class SettingsHelpers
      * @param defaultReturnValue the default return value if value doesn't exist
      * @return the preference
      */
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     public static Set<String> getPreference(Activity activity, String preferenceName, Set<String> defaultReturnValue)
     {
-        return getSharedPreferences(activity).getStringSet(preferenceName, defaultReturnValue);
+        return getSettings(activity).getStringSet(preferenceName, defaultReturnValue);
     }
 }
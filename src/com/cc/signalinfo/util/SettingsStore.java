@@ -0,0 +1,399 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.annotation.TargetApi;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In memory copy of a SharedPreferences file that writes behind.
+ *
+ * Reads come straight out of memory. Writes update memory right away and get
+ * batched up into one editor apply on a background thread a little later,
+ * so saving a setting never stalls the UI thread on disk.
+ *
+ * Changes made to the preferences outside of the store (like the settings screen)
+ * get picked up through the normal change listener so the copy stays current.
+ *
+ * One store per preferences file, get it through getInstance().
+ *
+ * @author Wes Lanning
+ * @version 2013-11-03
+ */
+public final class SettingsStore
+{
+    private static final String TAG            = SettingsStore.class.getSimpleName();
+    /**
+     * How long to wait after the first write for more writes to batch with it.
+     */
+    private static final long   WRITE_DELAY_MS = 250;
+
+    private static final Map<SharedPreferences, SettingsStore> stores = new HashMap<>(4);
+    private static Handler writeHandler = null;
+
+    private final SharedPreferences                              preferences;
+    private final Map<String, Object>                            values;
+    // null value means the key was removed
+    private final Map<String, Object>                            pending   = new HashMap<>(8);
+    private final CopyOnWriteArrayList<OnSettingChangedListener> listeners = new CopyOnWriteArrayList<>();
+    private boolean writeScheduled = false;
+
+    private final Runnable writeTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            flush();
+        }
+    };
+
+    /**
+     * Keeps the memory copy in sync with changes that didn't go through the store.
+     * Has to be a field since SharedPreferences only keeps a weak reference to it.
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener externalChanges =
+        new SharedPreferences.OnSharedPreferenceChangeListener()
+        {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)
+            {
+                Object value = sharedPreferences.getAll().get(key);
+                boolean changed;
+
+                synchronized (SettingsStore.this) {
+                    // our own write hasn't landed yet, so it wins
+                    if (pending.containsKey(key)) {
+                        return;
+                    }
+                    changed = !equal(values.get(key), value);
+
+                    if (value == null) {
+                        values.remove(key);
+                    }
+                    else {
+                        values.put(key, value);
+                    }
+                }
+                if (changed) {
+                    notifyListeners(key);
+                }
+            }
+        };
+
+    private SettingsStore(SharedPreferences preferences)
+    {
+        this.preferences = preferences;
+        this.values = new HashMap<>(preferences.getAll());
+        preferences.registerOnSharedPreferenceChangeListener(externalChanges);
+    }
+
+    /**
+     * Gets the store for a preferences file, loading it into memory the first time.
+     *
+     * @param preferences - the preferences to wrap
+     * @return the store for those preferences
+     */
+    public static SettingsStore getInstance(SharedPreferences preferences)
+    {
+        synchronized (stores) {
+            SettingsStore store = stores.get(preferences);
+
+            if (store == null) {
+                store = new SettingsStore(preferences);
+                stores.put(preferences, store);
+            }
+            return store;
+        }
+    }
+
+    public synchronized boolean contains(String key)
+    {
+        return values.containsKey(key);
+    }
+
+    public synchronized boolean getBoolean(String key, boolean defaultValue)
+    {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public synchronized String getString(String key, String defaultValue)
+    {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public synchronized int getInt(String key, int defaultValue)
+    {
+        Object value = values.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public synchronized long getLong(String key, long defaultValue)
+    {
+        Object value = values.get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    public synchronized float getFloat(String key, float defaultValue)
+    {
+        Object value = values.get(key);
+        return value instanceof Float ? (Float) value : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> defaultValue)
+    {
+        Object value = values.get(key);
+        return value instanceof Set ? (Set<String>) value : defaultValue;
+    }
+
+    public void putBoolean(String key, boolean value)
+    {
+        write(key, value);
+    }
+
+    public void putString(String key, String value)
+    {
+        write(key, value);
+    }
+
+    public void putInt(String key, int value)
+    {
+        write(key, value);
+    }
+
+    public void putLong(String key, long value)
+    {
+        write(key, value);
+    }
+
+    public void putFloat(String key, float value)
+    {
+        write(key, value);
+    }
+
+    /**
+     * Only gets saved on Android 3.0 or higher (it's still kept in memory before that).
+     *
+     * @param key - name of the setting
+     * @param value - the set to save (a copy is kept, so changing it later does nothing)
+     */
+    public void putStringSet(String key, Set<String> value)
+    {
+        write(key, value == null ? null : Collections.unmodifiableSet(new HashSet<>(value)));
+    }
+
+    /**
+     * Saves a setting when the type isn't known ahead of time.
+     * Use the typed put methods if you can.
+     *
+     * @param key - name of the setting
+     * @param value - Boolean, String, Integer, Long, Float or Set of Strings
+     * @return false if the type isn't something preferences can hold
+     */
+    @SuppressWarnings("unchecked")
+    public boolean put(String key, Object value)
+    {
+        if (value instanceof Set) {
+            putStringSet(key, (Set<String>) value);
+            return true;
+        }
+        if (value instanceof Boolean || value instanceof String || value instanceof Integer
+            || value instanceof Float || value instanceof Long) {
+            write(key, value);
+            return true;
+        }
+        Log.e(TAG, String.format("Cannot save %s, unsupported type", value));
+        return false;
+    }
+
+    public void remove(String key)
+    {
+        write(key, null);
+    }
+
+    public void addListener(OnSettingChangedListener listener)
+    {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(OnSettingChangedListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Writes anything waiting to be saved right now instead of waiting for the batch.
+     * Doesn't block on the disk (except on 2.2 where there's no apply).
+     */
+    public void flush()
+    {
+        Map<String, Object> batch;
+
+        synchronized (this) {
+            writeScheduled = false;
+
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new HashMap<>(pending);
+            pending.clear();
+        }
+        SharedPreferences.Editor editor = preferences.edit();
+
+        for (Map.Entry<String, Object> entry : batch.entrySet()) {
+            putInEditor(editor, entry.getKey(), entry.getValue());
+        }
+        save(editor);
+    }
+
+    /**
+     * Updates the memory copy and queues up the write.
+     *
+     * @param key - name of the setting
+     * @param value - the new value or null to remove it
+     */
+    private void write(String key, Object value)
+    {
+        boolean changed;
+
+        synchronized (this) {
+            changed = !equal(values.get(key), value);
+
+            if (value == null) {
+                values.remove(key);
+            }
+            else {
+                values.put(key, value);
+            }
+            pending.put(key, value);
+
+            // first write in the batch starts the clock, the rest just ride along
+            if (!writeScheduled) {
+                writeScheduled = true;
+                getWriteHandler().postDelayed(writeTask, WRITE_DELAY_MS);
+            }
+        }
+        if (changed) {
+            notifyListeners(key);
+        }
+    }
+
+    private void notifyListeners(String key)
+    {
+        for (OnSettingChangedListener listener : listeners) {
+            listener.onSettingChanged(this, key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void putInEditor(SharedPreferences.Editor editor, String key, Object value)
+    {
+        if (value == null) {
+            editor.remove(key);
+        }
+        else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        }
+        else if (value instanceof String) {
+            editor.putString(key, (String) value);
+        }
+        else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        }
+        else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        }
+        else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        }
+        else if (value instanceof Set && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            editor.putStringSet(key, (Set<String>) value);
+        }
+    }
+
+    /**
+     * apply() showed up in 2.3, for 2.2 commit is fine since we're already
+     * off the UI thread for the batched writes.
+     */
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD)
+    private static void save(SharedPreferences.Editor editor)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+            editor.apply();
+        }
+        else if (!editor.commit()) {
+            Log.e(TAG, "Could not save settings");
+        }
+    }
+
+    private static boolean equal(Object a, Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * One background thread shared by all the stores for the batched writes.
+     */
+    private static synchronized Handler getWriteHandler()
+    {
+        if (writeHandler == null) {
+            HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            writeHandler = new Handler(thread.getLooper());
+        }
+        return writeHandler;
+    }
+
+    /**
+     * Notified when a setting's value changes, whether it changed
+     * through the store or somewhere else. Called on the thread that made the change.
+     */
+    public interface OnSettingChangedListener
+    {
+        /**
+         * @param store - the store that changed
+         * @param key - name of the setting that changed
+         */
+        void onSettingChanged(SettingsStore store, String key);
+    }
+}
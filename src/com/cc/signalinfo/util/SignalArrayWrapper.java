@@ -27,9 +27,12 @@
 package com.cc.signalinfo.util;
 
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.telephony.SignalStrength;
+import android.telephony.TelephonyManager;
 import android.util.Log;
 import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.enums.Signal;
 import com.cc.signalinfo.listeners.SignalListener;
 
 import java.util.regex.Matcher;
@@ -60,10 +63,35 @@ public class SignalArrayWrapper
     private static final String   TAG                   = SignalArrayWrapper.class.getSimpleName();
     // keep a copy of the raw data for debugging purposes mostly
     private String rawData;
-    private        String[]           filteredArray = EMPTY_SIGNAL_ARRAY;
+    // raw data the current filteredArray came from (null until the first filter finishes)
+    private String lastFilteredRaw = null;
+    // set on the UI thread, read on the SignalEngine's worker thread
+    private volatile String[] filteredArray = EMPTY_SIGNAL_ARRAY;
     private        FilterSignalTask   task          = null;
     private static SignalArrayWrapper instance      = null;
     private SignalListener.UpdateSignal listener;
+    // which SIM the readings are from (see Subscriptions)
+    private final int subscriptionId;
+    // when the reading came in from the system (System.nanoTime), for the pipeline metrics
+    private volatile long arrivalTime = System.nanoTime();
+    // extra WCDMA info from the radio log, these get written from the log reader thread
+    private volatile int radioRscp   = AppSetup.INVALID;
+    private volatile int radioEcNo   = AppSetup.INVALID;
+    private volatile int radioPsc    = AppSetup.INVALID;
+    private volatile int radioUarfcn = AppSetup.INVALID;
+    // when they were last set (SystemClock.elapsedRealtime), see RadioLogParser.MAX_AGE_MS
+    private volatile long radioTime   = 0;
+    // what the phone's on (TelephonyManager.NETWORK_TYPE_*), the radio log values only count on WCDMA
+    private volatile int  networkType = TelephonyManager.NETWORK_TYPE_UNKNOWN;
+    // Wi-Fi connection from the WifiManager (see WifiMonitor), these get set on the UI thread
+    private volatile int    wifiRssi      = AppSetup.INVALID;
+    private volatile int    wifiLinkSpeed = AppSetup.INVALID;
+    private volatile int    wifiFrequency = AppSetup.INVALID;
+    private volatile String wifiBssid     = null;
+    // smoothed readings to show instead of the raw ones (null for raw), see SignalSmoother
+    private volatile int[] smoothedValues = null;
+    // the readings sorted into networks, built once per update by the SignalEngine for every subscriber
+    private volatile SignalMapWrapper signalMap = null;
 
     /**
      * Constructor mainly for testing (passing in a mock object
@@ -72,28 +100,277 @@ public class SignalArrayWrapper
      * @param signalArray - contains the raw signal info reported from the system
      */
     public SignalArrayWrapper(String signalArray, SignalListener.UpdateSignal listener)
+    {
+        this(signalArray, listener, Subscriptions.DEFAULT_ID);
+    }
+
+    /**
+     * @param signalArray - contains the raw signal info reported from the system
+     * @param listener - gets told when the filtered data is ready
+     * @param subscriptionId - which SIM the readings are from (see Subscriptions)
+     */
+    public SignalArrayWrapper(String signalArray, SignalListener.UpdateSignal listener, int subscriptionId)
     {
         rawData = signalArray;
         this.listener = listener;
+        this.subscriptionId = subscriptionId;
         filterSignals(signalArray);
     }
 
+    /**
+     * @return which SIM the readings are from (Subscriptions.DEFAULT_ID on single SIM phones)
+     */
+    public int getSubscriptionId()
+    {
+        return subscriptionId;
+    }
+
     public final void filterSignals(String signalArray)
     {
+        filterSignals(signalArray, System.nanoTime());
+    }
+
+    /**
+     * Filters the new raw signal data in the background and lets the listener
+     * know when it's done. If the data is the same as what was last filtered
+     * (and nothing newer is still being filtered), the filtering is skipped and
+     * the listener gets told right away. If it's the same as what's being
+     * filtered right now, that one tells the listener when it's done.
+     *
+     * @param signalArray - the raw signal data from the system
+     * @param arrivalTime - System.nanoTime() from when the data came in
+     */
+    public final void filterSignals(String signalArray, long arrivalTime)
+    {
+        this.arrivalTime = arrivalTime;
+
+        if (task == null && signalArray.equals(lastFilteredRaw)) {
+            PipelineMetrics.getInstance().onDeduplicated();
+            listener.setData(this);
+            return;
+        }
+        if (task != null && signalArray.equals(rawData)) {
+            PipelineMetrics.getInstance().onDeduplicated();
+            return;
+        }
+        rawData = signalArray;
         Log.d("Raw Signal Data", rawData);
-        FilterSignalTask task = new FilterSignalTask();
+        task = new FilterSignalTask();
         task.execute(signalArray, listener);
     }
 
+    /**
+     * @return System.nanoTime() from when the latest reading came in
+     */
+    public long getArrivalTime()
+    {
+        return arrivalTime;
+    }
+
     /**
      * Returns a copy (not a reference) of the signal array after
      * being reformatted to meet ICS+ expectations.
      *
+     * Any readings picked up from the radio log or the Wi-Fi connection are merged
+     * in at their Signal index, so the rest of the app doesn't care where they came from.
+     *
      * @return the processed signal array in the form one expects in ICS+
      */
     public String[] getFilteredArray()
     {
-        return Arrays.copyOf(filteredArray, filteredArray.length);
+        int size = Math.max(filteredArray.length, Signal.values().length);
+        String[] signals = Arrays.copyOf(filteredArray, size);
+
+        if (filteredArray.length < size) {
+            java.util.Arrays.fill(signals, filteredArray.length, size, AppSetup.INVALID_TXT);
+        }
+        if (hasRadioInfo()) {
+            mergeRadioValue(signals, Signal.WCDMA_RSCP, radioRscp);
+            mergeRadioValue(signals, Signal.WCDMA_ECNO, radioEcNo);
+        }
+        mergeRadioValue(signals, Signal.WIFI_RSSI, wifiRssi);
+        mergeRadioValue(signals, Signal.WIFI_LINK_SPEED, wifiLinkSpeed);
+        mergeRadioValue(signals, Signal.WIFI_FREQUENCY, wifiFrequency);
+        int[] smoothed = smoothedValues;
+
+        if (smoothed != null) {
+            for (int i = 0; i < smoothed.length && i < size; ++i) {
+                if (smoothed[i] != AppSetup.INVALID && !AppSetup.INVALID_TXT.equals(signals[i])) {
+                    signals[i] = String.valueOf(smoothed[i]);
+                }
+            }
+        }
+        return signals;
+    }
+
+    /**
+     * Sets smoothed readings to show in place of the raw ones in getFilteredArray().
+     * getValue() and getRawData() still give the raw readings.
+     * The array isn't copied, it's read whenever the filtered array is grabbed.
+     *
+     * @param smoothed - readings indexed by Signal.value() or null to go back to raw
+     */
+    public void setSmoothedValues(int[] smoothed)
+    {
+        smoothedValues = smoothed;
+    }
+
+    /**
+     * @return the readings from getFilteredArray() sorted into networks, or null
+     *         if the SignalEngine hasn't gotten to this update yet
+     */
+    public SignalMapWrapper getSignalMap()
+    {
+        return signalMap;
+    }
+
+    /**
+     * @param signalMap - the readings sorted into networks (don't change it after)
+     */
+    public void setSignalMap(SignalMapWrapper signalMap)
+    {
+        this.signalMap = signalMap;
+    }
+
+    /**
+     * Gets one reading as a number without copying the whole array
+     * or making any strings (for stuff that runs every update).
+     *
+     * @param signal - the reading to get
+     * @return the raw reading or AppSetup.INVALID if there isn't one
+     */
+    public int getValue(Signal signal)
+    {
+        if (signal == Signal.WCDMA_RSCP && radioRscp != AppSetup.INVALID && hasRadioInfo()) {
+            return radioRscp;
+        }
+        if (signal == Signal.WCDMA_ECNO && radioEcNo != AppSetup.INVALID && hasRadioInfo()) {
+            return radioEcNo;
+        }
+        switch (signal) {
+            case WIFI_RSSI:
+                return wifiRssi;
+            case WIFI_LINK_SPEED:
+                return wifiLinkSpeed;
+            case WIFI_FREQUENCY:
+                return wifiFrequency;
+        }
+        String[] signals = filteredArray;
+        int index = signal.value();
+
+        return index < signals.length
+            ? StringUtils.parseInt(signals[index], AppSetup.INVALID)
+            : AppSetup.INVALID;
+    }
+
+    /**
+     * Sets the extra WCDMA readings pulled out of the radio log.
+     * They show up in the filtered array the next time it's grabbed.
+     *
+     * @param rscp - received signal code power in dBm or AppSetup.INVALID
+     * @param ecNo - Ec/No in dB or AppSetup.INVALID
+     * @param psc - primary scrambling code or AppSetup.INVALID
+     * @param uarfcn - UTRA channel number or AppSetup.INVALID
+     */
+    public void setRadioInfo(int rscp, int ecNo, int psc, int uarfcn)
+    {
+        radioRscp = rscp;
+        radioEcNo = ecNo;
+        radioPsc = psc;
+        radioUarfcn = uarfcn;
+        radioTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Sets what kind of network the phone's on. Once it's not WCDMA any more
+     * the radio log values get dropped, the last ones would just be left over.
+     *
+     * @param networkType - one of the TelephonyManager.NETWORK_TYPE_* constants
+     */
+    public void setNetworkType(int networkType)
+    {
+        this.networkType = networkType;
+
+        if (networkType != TelephonyManager.NETWORK_TYPE_UNKNOWN && !isWcdma(networkType)) {
+            setRadioInfo(AppSetup.INVALID, AppSetup.INVALID, AppSetup.INVALID, AppSetup.INVALID);
+        }
+    }
+
+    /**
+     * @return primary scrambling code of the serving WCDMA cell or AppSetup.INVALID
+     */
+    public int getRadioPsc()
+    {
+        return hasRadioInfo() ? radioPsc : AppSetup.INVALID;
+    }
+
+    /**
+     * @return UTRA channel number of the serving WCDMA cell or AppSetup.INVALID
+     */
+    public int getRadioUarfcn()
+    {
+        return hasRadioInfo() ? radioUarfcn : AppSetup.INVALID;
+    }
+
+    /**
+     * @return true if the radio log values are recent enough and the phone's
+     *         (as far as we know) still on WCDMA
+     */
+    private boolean hasRadioInfo()
+    {
+        int type = networkType;
+
+        return SystemClock.elapsedRealtime() - radioTime <= RadioLogParser.MAX_AGE_MS
+            && (type == TelephonyManager.NETWORK_TYPE_UNKNOWN || isWcdma(type));
+    }
+
+    /**
+     * @param networkType - one of the TelephonyManager.NETWORK_TYPE_* constants
+     * @return true for the UMTS/HSPA family
+     */
+    private static boolean isWcdma(int networkType)
+    {
+        switch (networkType) {
+            case TelephonyManager.NETWORK_TYPE_UMTS:
+            case TelephonyManager.NETWORK_TYPE_HSDPA:
+            case TelephonyManager.NETWORK_TYPE_HSUPA:
+            case TelephonyManager.NETWORK_TYPE_HSPA:
+            case TelephonyManager.NETWORK_TYPE_HSPAP:
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the Wi-Fi connection readings (all AppSetup.INVALID and null when not connected).
+     * They show up in the filtered array the next time it's grabbed.
+     *
+     * @param rssi - in dBm
+     * @param linkSpeed - in Mbps
+     * @param frequency - channel frequency in MHz
+     * @param bssid - the access point's MAC address
+     */
+    public void setWifiInfo(int rssi, int linkSpeed, int frequency, String bssid)
+    {
+        wifiRssi = rssi;
+        wifiLinkSpeed = linkSpeed;
+        wifiFrequency = frequency;
+        wifiBssid = bssid;
+    }
+
+    /**
+     * @return MAC address of the access point the device is connected to or null
+     */
+    public String getWifiBssid()
+    {
+        return wifiBssid;
+    }
+
+    private static void mergeRadioValue(String[] signals, Signal signal, int value)
+    {
+        if (value != AppSetup.INVALID) {
+            signals[signal.value()] = String.valueOf(value);
+        }
     }
 
     /**
@@ -113,6 +390,8 @@ public class SignalArrayWrapper
         protected Object[] doInBackground(Object... params)
         {
             // remove all invalid signals and put in our default string instead to make life easier
+            long start = System.nanoTime();
+            TraceRecorder.getInstance().begin(TraceRecorder.EVENT_FILTER);
             String rawData = (String) params[0];
             Log.d(TAG, String.format("rawData: %s", rawData));
 
@@ -155,12 +434,19 @@ public class SignalArrayWrapper
                 Log.d(TAG, "Device had extended signal data.");
             }*/
             Log.d("Filtered Signal Data", java.util.Arrays.toString(splitSignals));
-            return new Object[]{extendedSignalData, listener};
+            PipelineMetrics.getInstance().record(PipelineMetrics.Stage.PARSE, start);
+            TraceRecorder.getInstance().end(TraceRecorder.EVENT_FILTER);
+            return new Object[]{extendedSignalData, listener, rawData};
         }
 
         @Override
         protected void onPostExecute(Object... result)
         {
+            if (task != this) {
+                return; // a newer one's on the way
+            }
+            task = null;
+            lastFilteredRaw = (String) result[2];
             filteredArray = (String[]) result[0];
             SignalListener.UpdateSignal listener = (SignalListener.UpdateSignal) result[1];
             listener.setData(SignalArrayWrapper.this);
@@ -27,9 +27,14 @@ package com.cc.signalinfo.util;
 
 import android.content.ComponentName;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.os.Build;
+import android.telephony.TelephonyManager;
 import android.util.Pair;
+import android.view.View;
+import android.widget.TextView;
+import com.cc.signalinfo.R;
 import com.cc.signalinfo.config.AppSetup;
+import com.cc.signalinfo.signals.SignalInfo;
 
 /**
  * The type Signal helpers.
@@ -69,7 +74,7 @@ public final class SignalHelpers
      * @param settings - used to verify if they previously agreed
      * @return true if user consents to the warning screen
      */
-    public static boolean userConsent(SharedPreferences settings)
+    public static boolean userConsent(SettingsStore settings)
     {
         return settings.contains(AppSetup.PROMPT_SETTING) && settings.getBoolean(AppSetup.PROMPT_SETTING, false);
     }
@@ -80,10 +85,37 @@ public final class SignalHelpers
      * @param settings the settings
      * @return the boolean
      */
-    public static boolean hasLteApi(SharedPreferences settings)
+    public static boolean hasLteApi(SettingsStore settings)
     {
         return settings.contains(AppSetup.OLD_FUCKING_DEVICE) && settings.getBoolean(AppSetup.OLD_FUCKING_DEVICE, false);
     }
 
+    /**
+     * Set the phone model, OS version, carrier name on the screen
+     * (the device info at the top of the main layout).
+     *
+     * @param root - view holding the device info TextViews
+     * @param tm - TelephonyManager for the SIM being shown
+     */
+    public static void setPhoneInfo(View root, TelephonyManager tm)
+    {
+        setText(root, R.id.deviceName, String.format("%s %s", Build.MANUFACTURER, Build.MODEL));
+        setText(root, R.id.deviceModel, String.format("%s/%s (%s) ", Build.PRODUCT, Build.DEVICE, Build.ID));
+        setText(root, R.id.androidVersion,
+            String.format(
+                root.getContext().getString(R.string.androidVersion),
+                Build.VERSION.RELEASE,
+                Build.VERSION.SDK_INT));
+
+        setText(root, R.id.carrierName, tm.getNetworkOperatorName());
+        setText(root, R.id.buildHost, Build.HOST);
+        setText(root, R.id.networkType, SignalInfo.getConnectedNetworkString(tm));
+    }
+
+    private static void setText(View root, int txtViewId, CharSequence text)
+    {
+        ((TextView) root.findViewById(txtViewId)).setText(text);
+    }
+
     private SignalHelpers() {}
 }
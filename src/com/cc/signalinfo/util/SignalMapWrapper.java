@@ -36,6 +36,7 @@ import com.cc.signalinfo.signals.CdmaInfo;
 import com.cc.signalinfo.signals.GsmInfo;
 import com.cc.signalinfo.signals.ISignal;
 import com.cc.signalinfo.signals.LteInfo;
+import com.cc.signalinfo.signals.WifiInfo;
 
 import java.util.Collections;
 import java.util.EnumMap;
@@ -80,6 +81,7 @@ public class SignalMapWrapper
         networkMap.put(NetworkType.CDMA, new CdmaInfo(tm));
         networkMap.put(NetworkType.LTE, new LteInfo(tm));
         networkMap.put(NetworkType.GSM, new GsmInfo(tm));
+        networkMap.put(NetworkType.WIFI, new WifiInfo(tm));
         return networkMap;
     }
 
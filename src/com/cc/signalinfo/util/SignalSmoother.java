@@ -0,0 +1,297 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import com.cc.signalinfo.enums.Signal;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Evens out the few dB of jitter the radio reports from one update to the next,
+ * so the readings and percentages on screen don't flicker (and the TextViews
+ * don't get redrawn for nothing). Only for showing, the raw readings are what get stored.
+ *
+ * Each signal can use its own filter:
+ * <ul>
+ * <li>MODE_NONE - raw readings</li>
+ * <li>MODE_EMA - exponential moving average, cheap but lags a bit on real changes</li>
+ * <li>MODE_KALMAN - 1-D Kalman filter, trusts new readings a lot at first and
+ * settles down as it gets more sure of the signal (tuned with the noise variances)</li>
+ * </ul>
+ *
+ * The smoothed value shown only moves once the estimate gets more than
+ * DEADBAND away from it, otherwise an estimate sitting near x.5 would
+ * flip back and forth between two numbers every update.
+ *
+ * State is kept in arrays indexed by Signal.value(). When a signal goes away
+ * (AppSetup.INVALID) its filter starts over, so coming back on a different
+ * network doesn't blend with the old readings. Doesn't allocate, not thread safe.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SignalSmoother
+{
+    public static final int MODE_NONE   = 0;
+    public static final int MODE_EMA    = 1;
+    public static final int MODE_KALMAN = 2;
+
+    /**
+     * Weight of each new reading for the EMA.
+     */
+    public static final float DEFAULT_EMA_ALPHA     = 0.3f;
+    /**
+     * How much the real signal is expected to move between updates (variance, dB²).
+     */
+    public static final float DEFAULT_PROCESS_NOISE = 0.5f;
+    /**
+     * How much the radio's readings jitter around the real signal (variance, dB²).
+     */
+    public static final float DEFAULT_MEASURE_NOISE = 4;
+    /**
+     * How far (dB) the estimate has to get from what's shown before what's shown changes.
+     */
+    public static final float DEADBAND              = 0.75f;
+
+    private static final Signal[] SIGNALS = Signal.values();
+
+    private final int[]     modes;
+    private final float[]   alpha;
+    private final float[]   processNoise;
+    private final float[]   measureNoise;
+    private final float[]   estimate;
+    private final float[]   errorCovariance;
+    private final int[]     output;
+    private final boolean[] started;
+
+    /**
+     * @param mode - filter to start all the signals with (one of the MODE_ constants)
+     */
+    public SignalSmoother(int mode)
+    {
+        int size = SIGNALS.length;
+        modes = new int[size];
+        alpha = new float[size];
+        processNoise = new float[size];
+        measureNoise = new float[size];
+        estimate = new float[size];
+        errorCovariance = new float[size];
+        output = new int[size];
+        started = new boolean[size];
+
+        Arrays.fill(alpha, DEFAULT_EMA_ALPHA);
+        Arrays.fill(processNoise, DEFAULT_PROCESS_NOISE);
+        Arrays.fill(measureNoise, DEFAULT_MEASURE_NOISE);
+        setMode(mode);
+    }
+
+    /**
+     * Turns the pref value into a mode.
+     *
+     * @param value - "ema", "kalman" or anything else for none
+     * @return one of the MODE_ constants
+     */
+    public static int parseMode(String value)
+    {
+        if ("ema".equals(value)) {
+            return MODE_EMA;
+        }
+        if ("kalman".equals(value)) {
+            return MODE_KALMAN;
+        }
+        return MODE_NONE;
+    }
+
+    /**
+     * Turns the prefs into a mode for each signal.
+     *
+     * @param mode - the pref value for everything (see parseMode)
+     * @param overrides - signals that get something else, one per line or comma
+     *                  separated like "LTE_RSRP kalman". Ones that don't parse are skipped.
+     * @return modes indexed by Signal.value()
+     */
+    public static int[] parseModes(String mode, String overrides)
+    {
+        int[] modes = new int[SIGNALS.length];
+        Arrays.fill(modes, parseMode(mode));
+
+        if (overrides == null) {
+            return modes;
+        }
+        for (String entry : overrides.split("[,\n]")) {
+            String[] parts = entry.trim().split("\\s+");
+
+            if (parts.length != 2) {
+                continue;
+            }
+            for (Signal signal : SIGNALS) {
+                if (signal.name().equalsIgnoreCase(parts[0])) {
+                    modes[signal.value()] = parseMode(parts[1].toLowerCase(Locale.US));
+                }
+            }
+        }
+        return modes;
+    }
+
+    /**
+     * Uses the same filter for all the signals.
+     *
+     * @param mode - one of the MODE_ constants
+     */
+    public void setMode(int mode)
+    {
+        for (Signal signal : SIGNALS) {
+            setMode(signal, mode);
+        }
+    }
+
+    /**
+     * @param signal - the signal to change
+     * @param mode - one of the MODE_ constants
+     */
+    public void setMode(Signal signal, int mode)
+    {
+        int i = signal.value();
+
+        if (modes[i] != mode) {
+            modes[i] = mode;
+            started[i] = false;
+        }
+    }
+
+    /**
+     * @param modes - a mode for each signal indexed by Signal.value() (like from parseModes)
+     */
+    public void setModes(int[] modes)
+    {
+        for (Signal signal : SIGNALS) {
+            setMode(signal, modes[signal.value()]);
+        }
+    }
+
+    public int getMode(Signal signal)
+    {
+        return modes[signal.value()];
+    }
+
+    /**
+     * @return true if any signal gets smoothed
+     */
+    public boolean isOn()
+    {
+        for (int mode : modes) {
+            if (mode != MODE_NONE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param signal - the signal to tune
+     * @param alpha - weight of each new reading (0 to 1, lower is smoother)
+     */
+    public void setEmaTuning(Signal signal, float alpha)
+    {
+        this.alpha[signal.value()] = alpha;
+    }
+
+    /**
+     * @param signal - the signal to tune
+     * @param processNoise - how much the real signal moves between updates (variance)
+     * @param measureNoise - how much the readings jitter (variance), higher is smoother
+     */
+    public void setKalmanTuning(Signal signal, float processNoise, float measureNoise)
+    {
+        this.processNoise[signal.value()] = processNoise;
+        this.measureNoise[signal.value()] = measureNoise;
+    }
+
+    /**
+     * Smooths a whole set of readings.
+     *
+     * @param raw - raw readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param out - where the smoothed readings go (can be the same array as raw)
+     */
+    public void smooth(int[] raw, int[] out)
+    {
+        for (int i = 0; i < SIGNALS.length && i < raw.length; ++i) {
+            out[i] = smooth(SIGNALS[i], raw[i]);
+        }
+    }
+
+    /**
+     * @param signal - which signal it is
+     * @param value - the raw reading or AppSetup.INVALID
+     * @return the smoothed reading (rounded) or AppSetup.INVALID if value was
+     */
+    public int smooth(Signal signal, int value)
+    {
+        int i = signal.value();
+
+        if (value == INVALID) {
+            started[i] = false;
+            return INVALID;
+        }
+        // nothing to smooth about something like a channel, it just changes
+        if (modes[i] == MODE_NONE || signal.best() == signal.worst()) {
+            return value;
+        }
+        if (!started[i]) {
+            estimate[i] = value;
+            errorCovariance[i] = measureNoise[i];
+            output[i] = value;
+            started[i] = true;
+            return value;
+        }
+        if (modes[i] == MODE_EMA) {
+            estimate[i] += alpha[i] * (value - estimate[i]);
+        }
+        else {
+            float predicted = errorCovariance[i] + processNoise[i];
+            float gain = predicted / (predicted + measureNoise[i]);
+            estimate[i] += gain * (value - estimate[i]);
+            errorCovariance[i] = (1 - gain) * predicted;
+        }
+        if (Math.abs(estimate[i] - output[i]) > DEADBAND) {
+            output[i] = Math.round(estimate[i]);
+        }
+        return output[i];
+    }
+
+    /**
+     * Starts all the filters over.
+     */
+    public void reset()
+    {
+        Arrays.fill(started, false);
+    }
+}
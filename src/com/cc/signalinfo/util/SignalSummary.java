@@ -0,0 +1,218 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.util;
+
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Boils an update down to one glanceable line for the widget and the
+ * notification: the network the phone's on, its headline reading (RSRP for
+ * LTE, RSCP or RSSI otherwise) and the link quality, like "LTE -95 dBm RSRP (63%)".
+ *
+ * update() says whether any of that changed, so the caller only has to push
+ * something out (and only has to build the strings) when it did. Most updates
+ * don't change what's shown.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SignalSummary
+{
+    // GSM signal strength is in ASU (0 - 31), 99 means it is unknown
+    private static final int GSM_ASU_MAX = 31;
+
+    private final StringBuilder text     = new StringBuilder(32);
+    private       String        network  = null;
+    private       String        label    = null;
+    private       int           value    = INVALID;
+    private       int           percent  = INVALID;
+    private       NetworkType   type     = NetworkType.UNKNOWN;
+
+    /**
+     * Picks the serving network (LTE, then WCDMA/GSM, then CDMA, then Wi-Fi
+     * if there's no cell signal at all) and its headline reading.
+     *
+     * @param readings - readings indexed by Signal.value(), AppSetup.INVALID for none
+     * @param qualities - link quality indexed by NetworkType.ordinal() (see QualityScorer)
+     * @return true if what would be shown changed
+     */
+    public boolean update(int[] readings, int[] qualities)
+    {
+        String newNetwork = null;
+        String newLabel = null;
+        int newValue = INVALID;
+        NetworkType newType = NetworkType.UNKNOWN;
+
+        if (valid(readings, Signal.LTE_RSRP)) {
+            newType = NetworkType.LTE;
+            newNetwork = "LTE";
+            newLabel = "RSRP";
+            newValue = readings[Signal.LTE_RSRP.value()];
+        }
+        else if (valid(readings, Signal.WCDMA_RSCP)) {
+            newType = NetworkType.GSM;
+            newNetwork = "WCDMA";
+            newLabel = "RSCP";
+            newValue = readings[Signal.WCDMA_RSCP.value()];
+        }
+        else if (valid(readings, Signal.GSM_SIG_STRENGTH)
+            && readings[Signal.GSM_SIG_STRENGTH.value()] <= GSM_ASU_MAX) {
+            newType = NetworkType.GSM;
+            newNetwork = "GSM";
+            newLabel = "RSSI";
+            newValue = -113 + 2 * readings[Signal.GSM_SIG_STRENGTH.value()];
+        }
+        else if (valid(readings, Signal.CDMA_RSSI)) {
+            newType = NetworkType.CDMA;
+            newNetwork = "CDMA";
+            newLabel = "RSSI";
+            newValue = readings[Signal.CDMA_RSSI.value()];
+        }
+        else if (valid(readings, Signal.EVDO_RSSI)) {
+            newType = NetworkType.CDMA;
+            newNetwork = "EVDO";
+            newLabel = "RSSI";
+            newValue = readings[Signal.EVDO_RSSI.value()];
+        }
+        else if (valid(readings, Signal.WIFI_RSSI)) {
+            newType = NetworkType.WIFI;
+            newNetwork = "Wi-Fi";
+            newLabel = "RSSI";
+            newValue = readings[Signal.WIFI_RSSI.value()];
+        }
+        int newPercent = newType == NetworkType.UNKNOWN || newType.ordinal() >= qualities.length
+            ? INVALID
+            : qualities[newType.ordinal()];
+
+        // the strings are all constants, so == is enough
+        if (newNetwork == network && newLabel == label && newValue == value && newPercent == percent) {
+            return false;
+        }
+        network = newNetwork;
+        label = newLabel;
+        value = newValue;
+        percent = newPercent;
+        type = newType;
+        return true;
+    }
+
+    private static boolean valid(int[] readings, Signal signal)
+    {
+        return signal.value() < readings.length && readings[signal.value()] != INVALID;
+    }
+
+    /**
+     * @return true if there's a reading to show
+     */
+    public boolean hasSignal()
+    {
+        return network != null;
+    }
+
+    /**
+     * @return the network the phone's on (LTE, WCDMA, GSM, CDMA, EVDO or Wi-Fi) or null
+     */
+    public String getNetwork()
+    {
+        return network;
+    }
+
+    /**
+     * @return what the headline reading is (RSRP, RSCP or RSSI) or null
+     */
+    public String getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * @return the headline reading in dBm or AppSetup.INVALID
+     */
+    public int getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return link quality (0 - 100) or AppSetup.INVALID
+     */
+    public int getPercent()
+    {
+        return percent;
+    }
+
+    public NetworkType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return the headline reading like "-95 dBm RSRP" or null if there's no signal
+     */
+    public String getValueText()
+    {
+        if (network == null) {
+            return null;
+        }
+        text.setLength(0);
+        return text.append(value).append(" dBm ").append(label).toString();
+    }
+
+    /**
+     * @return link quality like "63%" or null if there isn't one
+     */
+    public String getPercentText()
+    {
+        if (percent == INVALID) {
+            return null;
+        }
+        text.setLength(0);
+        return text.append(percent).append('%').toString();
+    }
+
+    /**
+     * @return everything on one line like "LTE -95 dBm RSRP (63%)" or null if there's no signal
+     */
+    public String getText()
+    {
+        if (network == null) {
+            return null;
+        }
+        text.setLength(0);
+        text.append(network).append(' ').append(value).append(" dBm ").append(label);
+
+        if (percent != INVALID) {
+            text.append(" (").append(percent).append("%)");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.widget.TextView;
+
+import java.util.Arrays;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Writes signal readings like "-85 dBm (63%)" into a char[] kept for each
+ * TextView instead of building new strings with String.format every update.
+ *
+ * Remembers the last reading, unit and % shown in each view and doesn't touch the
+ * view at all if they're the same, so the TextView doesn't get laid out again
+ * for nothing (most readings don't change from one update to the next).
+ *
+ * Each view needs its own buffer since TextView hangs onto the char[] it's given.
+ * UI thread only.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-03
+ */
+public class SignalTextRenderer
+{
+    // room for "-2147483648 (100%)" plus a short unit
+    private static final int BUFFER_SIZE = 32;
+
+    private final char[][] buffers;
+    private final int[]    lastValues;
+    private final int[]    lastPercents;
+    // not every view has the same unit (Wi-Fi link speed is in Mbps and so on)
+    private final String[] lastUnits;
+
+    /**
+     * @param size - how many views will be rendered (indexes go from 0 to size - 1)
+     */
+    public SignalTextRenderer(int size)
+    {
+        buffers = new char[size][];
+        lastValues = new int[size];
+        lastPercents = new int[size];
+        lastUnits = new String[size];
+        invalidate();
+    }
+
+    /**
+     * Forget what was shown so the next render redraws everything.
+     */
+    public final void invalidate()
+    {
+        Arrays.fill(lastValues, INVALID);
+        Arrays.fill(lastPercents, INVALID);
+        Arrays.fill(lastUnits, null);
+    }
+
+    /**
+     * Shows the reading in the view unless it's already showing it.
+     *
+     * @param view - where to show it
+     * @param index - which view this is (same index every time for the same view)
+     * @param value - the reading
+     * @param unit - unit to show after the reading (dBm, dB, etc)
+     * @param percent - the % to show or AppSetup.INVALID to leave it off
+     * @return true if the view was updated
+     */
+    public boolean render(TextView view, int index, int value, String unit, int percent)
+    {
+        if (value == lastValues[index] && percent == lastPercents[index] && unit.equals(lastUnits[index])) {
+            return false;
+        }
+        char[] buffer = getBuffer(index, unit.length());
+        int length = appendInt(buffer, 0, value);
+        buffer[length++] = ' ';
+        unit.getChars(0, unit.length(), buffer, length);
+        length += unit.length();
+
+        if (percent != INVALID) {
+            buffer[length++] = ' ';
+            buffer[length++] = '(';
+            length = appendInt(buffer, length, percent);
+            buffer[length++] = '%';
+            buffer[length++] = ')';
+        }
+        view.setText(buffer, 0, length);
+        lastValues[index] = value;
+        lastPercents[index] = percent;
+        lastUnits[index] = unit;
+        return true;
+    }
+
+    /**
+     * Gets the buffer for a view, only making a new one the first time
+     * or if the unit is somehow too long to fit.
+     */
+    private char[] getBuffer(int index, int unitLength)
+    {
+        int needed = BUFFER_SIZE - 8 + unitLength;
+
+        if (buffers[index] == null || buffers[index].length < needed) {
+            buffers[index] = new char[Math.max(BUFFER_SIZE, needed)];
+        }
+        return buffers[index];
+    }
+
+    /**
+     * Writes a number into the buffer.
+     *
+     * @param buffer - where to write
+     * @param offset - where to start writing
+     * @param value - the number to write
+     * @return the index right after the last char written
+     */
+    static int appendInt(char[] buffer, int offset, int value)
+    {
+        if (value == Integer.MIN_VALUE) {
+            String min = String.valueOf(Integer.MIN_VALUE);
+            min.getChars(0, min.length(), buffer, offset);
+            return offset + min.length();
+        }
+        if (value < 0) {
+            buffer[offset++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+
+        for (int i = value; i >= 10; i /= 10) {
+            ++digits;
+        }
+        int end = offset + digits;
+
+        for (int i = end - 1; i >= offset; --i) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
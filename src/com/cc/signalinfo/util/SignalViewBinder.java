@@ -0,0 +1,259 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.content.res.TypedArray;
+import android.view.View;
+import android.view.ViewStub;
+import android.widget.TextView;
+import com.cc.signalinfo.R;
+import com.cc.signalinfo.enums.NetworkType;
+import com.cc.signalinfo.enums.Signal;
+import com.cc.signalinfo.signals.ISignal;
+
+import java.util.Map;
+
+import static com.cc.signalinfo.config.AppSetup.INVALID;
+
+/**
+ * Looks up the signal TextViews once per inflated layout and keeps them in
+ * an array indexed by Signal.value(), along with which indexes belong to
+ * each network type. Updating the screen is then just a loop over the arrays
+ * for the networks that are actually on instead of findViewById and map lookups.
+ *
+ * Each network's rows live in their own ViewStub and only get inflated the first
+ * time that network has a signal, so most devices never inflate the ones they
+ * don't have. Sections that haven't been inflated are skipped entirely.
+ *
+ * Make a new one any time the layout gets inflated again.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-04
+ */
+public class SignalViewBinder
+{
+    private static final NetworkType[] NETWORK_TYPES = NetworkType.values();
+
+    private final View               root;
+    private final Signal[]           signals;
+    private final int[]              viewIds;
+    private final TextView[]         views;
+    private final int[][]            networkIndexes;
+    private final boolean[]          sectionShown;
+    private final SignalTextRenderer renderer;
+    // units for the Wi-Fi readings that aren't signal levels
+    private final String             linkSpeedUnit;
+    private final String             frequencyUnit;
+
+    /**
+     * @param root - the inflated layout containing the signal TextViews
+     * @param sigInfoIds - R.array.sigInfoIds (in the same order as Signal.values())
+     */
+    public SignalViewBinder(View root, TypedArray sigInfoIds)
+    {
+        Signal[] values = Signal.values();
+        int size = 0;
+
+        for (Signal signal : values) {
+            size = Math.max(size, signal.value() + 1);
+        }
+        this.root = root;
+        signals = new Signal[size];
+        viewIds = new int[size];
+        views = new TextView[size];
+
+        for (int i = 0; i < values.length && i < sigInfoIds.length(); ++i) {
+            int id = sigInfoIds.getResourceId(i, -1);
+
+            if (id != -1) {
+                signals[values[i].value()] = values[i];
+                viewIds[values[i].value()] = id;
+            }
+        }
+        networkIndexes = buildNetworkIndexes(signals);
+        sectionShown = new boolean[NETWORK_TYPES.length];
+        renderer = new SignalTextRenderer(size);
+        linkSpeedUnit = root.getContext().getString(R.string.Mbps);
+        frequencyUnit = root.getContext().getString(R.string.MHz);
+    }
+
+    /**
+     * Works out which view indexes go with each network type.
+     *
+     * @param signals - signals indexed by Signal.value()
+     * @return the indexes for each network, indexed by NetworkType.ordinal()
+     */
+    private static int[][] buildNetworkIndexes(Signal[] signals)
+    {
+        int[] counts = new int[NETWORK_TYPES.length];
+
+        for (Signal signal : signals) {
+            if (signal != null) {
+                ++counts[signal.type().ordinal()];
+            }
+        }
+        int[][] indexes = new int[NETWORK_TYPES.length][];
+
+        for (int t = 0; t < indexes.length; ++t) {
+            indexes[t] = new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (int i = 0; i < signals.length; ++i) {
+            if (signals[i] != null) {
+                int type = signals[i].type().ordinal();
+                indexes[type][counts[type]++] = i;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Inflates the rows for a network (if they're in a stub) and grabs its TextViews.
+     *
+     * @param type - the network to show
+     */
+    private void showSection(NetworkType type)
+    {
+        int stubId = getStubId(type);
+        View stub = stubId == 0 ? null : root.findViewById(stubId);
+
+        if (stub instanceof ViewStub) {
+            ((ViewStub) stub).inflate();
+        }
+        for (int index : networkIndexes[type.ordinal()]) {
+            views[index] = (TextView) root.findViewById(viewIds[index]);
+        }
+        sectionShown[type.ordinal()] = true;
+    }
+
+    private static int getStubId(NetworkType type)
+    {
+        switch (type) {
+            case GSM:
+                return R.id.gsmStub;
+            case CDMA:
+                return R.id.cdmaStub;
+            case LTE:
+                return R.id.lteStub;
+            case WIFI:
+                return R.id.wifiStub;
+        }
+        return 0;
+    }
+
+    /**
+     * @param type - network type
+     * @return true if the rows for the network have been inflated
+     */
+    public boolean isSectionShown(NetworkType type)
+    {
+        return sectionShown[type.ordinal()];
+    }
+
+    /**
+     * @param signal - the signal to get the view for
+     * @return the TextView showing the signal or null if it isn't in the layout (or not inflated yet)
+     */
+    public TextView getView(Signal signal)
+    {
+        int index = signal.value();
+        return index < views.length ? views[index] : null;
+    }
+
+    /**
+     * @param type - network type
+     * @return indexes (Signal.value()) of the views for the network. Don't modify it.
+     */
+    public int[] getIndexes(NetworkType type)
+    {
+        return networkIndexes[type.ordinal()];
+    }
+
+    /**
+     * Binds the signal readings to the TextViews, skipping over any networks
+     * that are not on right now. Views only get touched if their reading changed.
+     *
+     * @param networks - the signal readings for each network
+     * @param unit - unit to show after each reading
+     * @param dbOnly - true to leave out the % readings
+     * @param fudgeReading - adjust the % to be more realistic instead of strict 3GPP ranges
+     */
+    public void bind(Map<NetworkType, ISignal> networks, String unit, boolean dbOnly, boolean fudgeReading)
+    {
+        for (NetworkType type : NETWORK_TYPES) {
+            ISignal signal = networks.get(type);
+
+            if (signal == null || !signal.enabled()) {
+                continue;
+            }
+            if (!sectionShown[type.ordinal()]) {
+                showSection(type);
+            }
+            for (int index : networkIndexes[type.ordinal()]) {
+                if (views[index] == null) {
+                    continue;
+                }
+                int value = StringUtils.parseInt(signal.getSignalString(signals[index]), INVALID);
+
+                if (value == INVALID) {
+                    continue; // no reading, leave whatever is there
+                }
+                // should be show the percentage along with the dBm? (not for things like frequency)
+                int percent = dbOnly || signals[index].best() == signals[index].worst()
+                    ? INVALID
+                    : signal.getRelativeEfficiencyPercent(signals[index], fudgeReading);
+
+                renderer.render(views[index], index, value, getUnit(signals[index], unit), percent);
+            }
+        }
+    }
+
+    /**
+     * @param signal - the reading
+     * @param unit - the unit picked for signal readings (dBm, dB, etc)
+     * @return unit to show for the reading
+     */
+    private String getUnit(Signal signal, String unit)
+    {
+        switch (signal) {
+            case WIFI_LINK_SPEED:
+                return linkSpeedUnit;
+            case WIFI_FREQUENCY:
+                return frequencyUnit;
+        }
+        return unit;
+    }
+
+    /**
+     * Forces everything to be redrawn on the next bind (like after the views got reset).
+     */
+    public void invalidate()
+    {
+        renderer.invalidate();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.os.SystemClock;
+
+/**
+ * Records how long each part of a cold start takes, from Application.onCreate
+ * up to the first signal reading on the screen (and the deferred stuff after it).
+ *
+ * Phases go into fixed size arrays so marking one doesn't allocate anything
+ * besides the name the caller passes in. Once it's full, further marks are dropped.
+ * Dump it to see where the time went (shown in the debug panel).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public final class StartupTrace
+{
+    private static final int      MAX_PHASES = 32;
+    private static final String[] phases     = new String[MAX_PHASES];
+    private static final long[]   times      = new long[MAX_PHASES];
+    private static       int      count      = 0;
+    private static       long     startTime  = SystemClock.uptimeMillis();
+
+    private StartupTrace() {}
+
+    /**
+     * Starts the clock over. Called as early as possible (Application.onCreate).
+     */
+    public static synchronized void start()
+    {
+        count = 0;
+        startTime = SystemClock.uptimeMillis();
+        mark("process start");
+    }
+
+    /**
+     * Records a phase finishing right now.
+     *
+     * @param phase - what just finished
+     */
+    public static synchronized void mark(String phase)
+    {
+        if (count < MAX_PHASES) {
+            phases[count] = phase;
+            times[count] = SystemClock.uptimeMillis();
+            ++count;
+        }
+    }
+
+    /**
+     * @param phase - name of the phase to look for
+     * @return milliseconds from the start until the phase or -1 if it hasn't happened
+     */
+    public static synchronized long getElapsed(String phase)
+    {
+        for (int i = 0; i < count; ++i) {
+            if (phases[i].equals(phase)) {
+                return times[i] - startTime;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lists each phase with the time since the start and how long the phase took,
+     * like "+120ms (35ms) preferences loaded".
+     *
+     * @return the phases recorded so far, one per line
+     */
+    public static synchronized String dump()
+    {
+        StringBuilder sb = new StringBuilder(count * 40);
+        long previous = startTime;
+
+        for (int i = 0; i < count; ++i) {
+            sb.append('+').append(times[i] - startTime).append("ms (")
+                .append(times[i] - previous).append("ms) ")
+                .append(phases[i]).append('\n');
+            previous = times[i];
+        }
+        return sb.toString();
+    }
+}
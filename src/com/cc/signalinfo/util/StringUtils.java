@@ -92,4 +92,40 @@ public final class StringUtils
     {
         return (!isNullOrEmpty(value) && !isNullOrEmpty(value2)) && value.equals(value2);
     }
+
+    /**
+     * Parses a plain base 10 integer without creating any objects
+     * or throwing when it isn't a number (unlike Integer.parseInt)
+     *
+     * @param value - the text to parse (like "-85")
+     * @param defaultValue - returned if the text isn't a number
+     * @return the number or defaultValue
+     */
+    public static int parseInt(CharSequence value, int defaultValue)
+    {
+        if (isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        int length = value.length();
+        boolean negative = value.charAt(0) == '-';
+        int i = negative || value.charAt(0) == '+' ? 1 : 0;
+
+        if (i == length || length - i > 10) {
+            return defaultValue;
+        }
+        long result = 0;
+
+        for (; i < length; ++i) {
+            char c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return defaultValue;
+            }
+            result = result * 10 + (c - '0');
+        }
+        result = negative ? -result : result;
+        return result > Integer.MAX_VALUE || result < Integer.MIN_VALUE
+            ? defaultValue
+            : (int) result;
+    }
 }
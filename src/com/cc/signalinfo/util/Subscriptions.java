@@ -0,0 +1,144 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.util;
+
+import android.content.Context;
+import android.os.Build;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Finds the SIMs (subscriptions) on multi-SIM phones.
+ *
+ * The APIs for that showed up in 5.1 (SubscriptionManager) and 7.0
+ * (TelephonyManager.createForSubscriptionId), well past what the app builds
+ * against, so they're looked up by reflection. Anything older, or anything
+ * where the lookups fail, gets treated as one SIM: DEFAULT_ID, which means
+ * whatever the plain TelephonyManager reports.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public final class Subscriptions
+{
+    private static final String TAG = Subscriptions.class.getSimpleName();
+    /**
+     * The phone's default subscription (the only one on single SIM phones).
+     */
+    public static final int DEFAULT_ID = -1;
+
+    private static final int LOLLIPOP_MR1 = 22;
+    private static final int NOUGAT       = 24;
+
+    private Subscriptions() {}
+
+    /**
+     * @param context - any context
+     * @return ids of the active subscriptions, just DEFAULT_ID if there's only one
+     *         or the phone won't say
+     */
+    public static int[] getActiveIds(Context context)
+    {
+        // no point knowing about more than one if we can't listen to them separately
+        if (Build.VERSION.SDK_INT < NOUGAT) {
+            return new int[]{DEFAULT_ID};
+        }
+        try {
+            Class<?> managerClass = Class.forName("android.telephony.SubscriptionManager");
+            Object manager = managerClass.getMethod("from", Context.class).invoke(null, context);
+            List<?> infos = (List<?>) managerClass.getMethod("getActiveSubscriptionInfoList").invoke(manager);
+
+            if (infos == null || infos.size() < 2) {
+                return new int[]{DEFAULT_ID};
+            }
+            int[] ids = new int[infos.size()];
+            Method getId = infos.get(0).getClass().getMethod("getSubscriptionId");
+
+            for (int i = 0; i < ids.length; ++i) {
+                ids[i] = (Integer) getId.invoke(infos.get(i));
+            }
+            return ids;
+        }
+        catch (Exception e) {
+            // includes SecurityException when the phone state permission is missing
+            Log.w(TAG, "Could not list subscriptions, using the default one", e);
+            return new int[]{DEFAULT_ID};
+        }
+    }
+
+    /**
+     * @param tm - the default TelephonyManager
+     * @param subscriptionId - which subscription
+     * @return a TelephonyManager for just that subscription (tm itself for DEFAULT_ID
+     *         or if the phone can't do it)
+     */
+    public static TelephonyManager forSubscription(TelephonyManager tm, int subscriptionId)
+    {
+        if (subscriptionId == DEFAULT_ID || Build.VERSION.SDK_INT < NOUGAT) {
+            return tm;
+        }
+        try {
+            Method create = TelephonyManager.class.getMethod("createForSubscriptionId", int.class);
+            return (TelephonyManager) create.invoke(tm, subscriptionId);
+        }
+        catch (Exception e) {
+            Log.w(TAG, "Could not get a TelephonyManager for subscription " + subscriptionId, e);
+            return tm;
+        }
+    }
+
+    /**
+     * @param context - any context
+     * @param subscriptionId - which subscription
+     * @return the name the user gave the SIM (or the carrier's) or null if there isn't one
+     */
+    public static CharSequence getDisplayName(Context context, int subscriptionId)
+    {
+        if (subscriptionId == DEFAULT_ID || Build.VERSION.SDK_INT < LOLLIPOP_MR1) {
+            return null;
+        }
+        try {
+            Class<?> managerClass = Class.forName("android.telephony.SubscriptionManager");
+            Object manager = managerClass.getMethod("from", Context.class).invoke(null, context);
+            Object info = managerClass.getMethod("getActiveSubscriptionInfo", int.class)
+                .invoke(manager, subscriptionId);
+
+            return info == null
+                ? null
+                : (CharSequence) info.getClass().getMethod("getDisplayName").invoke(info);
+        }
+        catch (Exception e) {
+            Log.w(TAG, "Could not get the name of subscription " + subscriptionId, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+package com.cc.signalinfo.util;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records begin/end events for the signal pipeline and writes them out as
+ * Chrome trace event JSON, so a whole drive test can be looked at in
+ * chrome://tracing or Perfetto afterwards.
+ *
+ * Off by default (debugging settings). When it's off every call is just a
+ * volatile read. When it's on, events go into a preallocated ring of
+ * primitive arrays without any locking or allocation. A background thread
+ * writes the ring out to the trace file every few seconds. If it falls
+ * a whole ring behind, the oldest events are skipped.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-05
+ */
+public final class TraceRecorder
+{
+    private static final String        TAG               = TraceRecorder.class.getSimpleName();
+    private static final TraceRecorder instance          = new TraceRecorder();
+    private static final int           RING_SIZE         = 4096; // has to be a power of 2
+    private static final long          FLUSH_INTERVAL_MS = 5000;
+
+    public static final int EVENT_CALLBACK = 0;
+    public static final int EVENT_FILTER   = 1;
+    public static final int EVENT_MODEL    = 2;
+    public static final int EVENT_RENDER   = 3;
+    // names for the events above, indexed by the event id
+    private static final String[] EVENT_NAMES = {
+        "SignalListener.onSignalStrengthsChanged",
+        "SignalArrayWrapper.filter",
+        "SignalMapWrapper",
+        "render"
+    };
+    private static final int END_FLAG = 0x100;
+
+    private final long[]          timestamps = new long[RING_SIZE];
+    private final int[]           events     = new int[RING_SIZE];
+    private final int[]           threadIds  = new int[RING_SIZE];
+    // which write each slot holds (0 while one's being written), so the flusher
+    // can tell a finished slot from one being written or written over
+    private final AtomicLongArray published  = new AtomicLongArray(RING_SIZE);
+    private final AtomicLong      writeIndex = new AtomicLong();
+    private final int             pid        = Process.myPid();
+    private volatile boolean   enabled      = false;
+    private          TraceFile current      = null;
+    private          Handler   flushHandler = null;
+
+    private final Runnable flushTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            flush();
+
+            if (enabled) {
+                flushHandler.postDelayed(this, FLUSH_INTERVAL_MS);
+            }
+        }
+    };
+
+    private TraceRecorder() {}
+
+    public static TraceRecorder getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * @return true if events are being recorded
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @param event - one of the EVENT_ constants
+     */
+    public void begin(int event)
+    {
+        if (enabled) {
+            record(event);
+        }
+    }
+
+    /**
+     * @param event - one of the EVENT_ constants (same as the begin)
+     */
+    public void end(int event)
+    {
+        if (enabled) {
+            record(event | END_FLAG);
+        }
+    }
+
+    private void record(int event)
+    {
+        long index = writeIndex.getAndIncrement();
+        int slot = (int) index & (RING_SIZE - 1);
+        published.set(slot, 0);
+        timestamps[slot] = System.nanoTime();
+        events[slot] = event;
+        threadIds[slot] = Process.myTid();
+        published.set(slot, index + 1);
+    }
+
+    /**
+     * Starts recording to a new trace file in the directory.
+     * Does nothing if it's already recording.
+     *
+     * @param dir - where to put the trace file
+     * @return the trace file or null if it couldn't be made
+     */
+    public synchronized File start(File dir)
+    {
+        if (enabled) {
+            return null;
+        }
+        File file = new File(dir, String.format("signal-trace-%d.json", System.currentTimeMillis()));
+        Writer writer = null;
+
+        try {
+            writer = new BufferedWriter(new FileWriter(file));
+            writer.write('[');
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start trace file " + file, e);
+            close(writer);
+            return null;
+        }
+        current = new TraceFile(writer, System.nanoTime(), writeIndex.get());
+
+        if (flushHandler == null) {
+            HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            flushHandler = new Handler(thread.getLooper());
+        }
+        enabled = true;
+        flushHandler.postDelayed(flushTask, FLUSH_INTERVAL_MS);
+        return file;
+    }
+
+    /**
+     * Stops recording and finishes off the trace file.
+     */
+    public synchronized void stop()
+    {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        flushHandler.removeCallbacks(flushTask);
+        // the file keeps its own place in the ring and stops at what was recorded
+        // up to now, so starting again before it's finished can't mix the two up
+        final TraceFile finished = current;
+        final long end = writeIndex.get();
+        current = null;
+
+        flushHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (TraceRecorder.this) {
+                    flush(finished, end);
+
+                    try {
+                        finished.writer.write("\n]\n");
+                    } catch (IOException e) {
+                        Log.e(TAG, "Could not finish trace file", e);
+                    }
+                    close(finished.writer);
+                }
+            }
+        });
+    }
+
+    private synchronized void flush()
+    {
+        if (current != null) {
+            flush(current, writeIndex.get());
+        }
+    }
+
+    /**
+     * Writes out everything recorded since the file's last flush. Background thread only.
+     *
+     * @param file - the trace file to write to
+     * @param end - write index to stop at
+     */
+    private void flush(TraceFile file, long end)
+    {
+        if (end - file.readIndex > RING_SIZE) {
+            Log.w(TAG, String.format("Trace ring overran, skipped %d events", end - file.readIndex - RING_SIZE));
+            file.readIndex = end - RING_SIZE;
+        }
+        try {
+            for (; file.readIndex < end; ++file.readIndex) {
+                int slot = (int) file.readIndex & (RING_SIZE - 1);
+                long written = file.readIndex + 1;
+
+                if (published.get(slot) != written) {
+                    break; // still being written, get it next time
+                }
+                long timestamp = timestamps[slot];
+                int event = events[slot];
+                int tid = threadIds[slot];
+
+                // the ring came back around and wrote over it while copying, so it's junk now
+                if (published.get(slot) != written) {
+                    Log.w(TAG, "Trace ring overran while flushing, skipped an event");
+                    continue;
+                }
+                writeEvent(file, timestamp, event, tid);
+            }
+            file.writer.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write trace events", e);
+        }
+    }
+
+    private void writeEvent(TraceFile file, long timestamp, int event, int tid) throws IOException
+    {
+        Writer writer = file.writer;
+
+        writer.write(file.firstEvent ? "\n" : ",\n");
+        file.firstEvent = false;
+        writer.write("{\"name\":\"");
+        writer.write(EVENT_NAMES[event & ~END_FLAG]);
+        writer.write("\",\"cat\":\"signal\",\"ph\":\"");
+        writer.write((event & END_FLAG) == 0 ? 'B' : 'E');
+        writer.write("\",\"ts\":");
+        writer.write(Long.toString((timestamp - file.startNanos) / 1000));
+        writer.write(",\"pid\":");
+        writer.write(Integer.toString(pid));
+        writer.write(",\"tid\":");
+        writer.write(Integer.toString(tid));
+        writer.write('}');
+    }
+
+    /**
+     * One trace file and how far into the ring it's gotten.
+     */
+    private static final class TraceFile
+    {
+        final Writer writer;
+        final long   startNanos;
+        long         readIndex;
+        boolean      firstEvent = true;
+
+        TraceFile(Writer writer, long startNanos, long readIndex)
+        {
+            this.writer = writer;
+            this.startNanos = startNanos;
+            this.readIndex = readIndex;
+        }
+    }
+
+    private static void close(Writer writer)
+    {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.util;
+
+/**
+ * The access points seen in recent Wi-Fi scans, kept in parallel primitive
+ * arrays that get reused from scan to scan instead of holding on to a new
+ * list of ScanResults every time. BSSIDs are packed into longs.
+ *
+ * Feed it a scan with beginScan, put for each access point, then endScan.
+ * An access point is only dropped after it's been missing from a few scans
+ * in a row, since scans miss things all the time. endScan also says whether
+ * anything really changed, which is what the scan cadence goes by (see WifiMonitor).
+ *
+ * Indexes aren't stable across scans. Not thread safe.
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class WifiScanTable
+{
+    /**
+     * Scans in a row an access point has to be missing from before it's dropped.
+     */
+    public static final int MISSED_SCANS_TO_DROP = 3;
+    /**
+     * How much an access point's level has to move to count as a change.
+     */
+    public static final int LEVEL_CHANGE_DB      = 6;
+    public static final long NO_BSSID            = -1;
+
+    private static final int INITIAL_SIZE = 32;
+
+    private long[]   bssids      = new long[INITIAL_SIZE];
+    private String[] ssids       = new String[INITIAL_SIZE];
+    private int[]    levels      = new int[INITIAL_SIZE];
+    private int[]    frequencies = new int[INITIAL_SIZE];
+    private int[]    missed      = new int[INITIAL_SIZE];
+    private int      size        = 0;
+    private boolean  changed     = false;
+
+    /**
+     * Starts taking in a scan.
+     */
+    public void beginScan()
+    {
+        for (int i = 0; i < size; ++i) {
+            ++missed[i];
+        }
+        changed = false;
+    }
+
+    /**
+     * Adds or updates one access point from the scan.
+     *
+     * @param bssid - MAC address like 00:11:22:aa:bb:cc
+     * @param ssid - network name
+     * @param level - in dBm
+     * @param frequency - in MHz
+     */
+    public void put(String bssid, String ssid, int level, int frequency)
+    {
+        long packed = parseBssid(bssid);
+
+        if (packed == NO_BSSID) {
+            return;
+        }
+        int i = indexOf(packed);
+
+        if (i < 0) {
+            if (size == bssids.length) {
+                grow();
+            }
+            i = size++;
+            bssids[i] = packed;
+            levels[i] = level;
+            changed = true;
+        }
+        else if (Math.abs(levels[i] - level) >= LEVEL_CHANGE_DB) {
+            // only keep levels that counted as a change, so slow drift still adds up to one
+            levels[i] = level;
+            changed = true;
+        }
+        ssids[i] = ssid;
+        frequencies[i] = frequency;
+        missed[i] = 0;
+    }
+
+    /**
+     * Finishes the scan, dropping anything that's been gone too long.
+     *
+     * @return true if an access point showed up, went away or its level moved a good amount
+     */
+    public boolean endScan()
+    {
+        for (int i = size - 1; i >= 0; --i) {
+            if (missed[i] >= MISSED_SCANS_TO_DROP) {
+                remove(i);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void remove(int i)
+    {
+        int last = --size;
+        bssids[i] = bssids[last];
+        ssids[i] = ssids[last];
+        levels[i] = levels[last];
+        frequencies[i] = frequencies[last];
+        missed[i] = missed[last];
+        ssids[last] = null;
+    }
+
+    private void grow()
+    {
+        // no Arrays.copyOf before API 9
+        int length = bssids.length * 2;
+        long[] newBssids = new long[length];
+        String[] newSsids = new String[length];
+        int[] newLevels = new int[length];
+        int[] newFrequencies = new int[length];
+        int[] newMissed = new int[length];
+
+        System.arraycopy(bssids, 0, newBssids, 0, size);
+        System.arraycopy(ssids, 0, newSsids, 0, size);
+        System.arraycopy(levels, 0, newLevels, 0, size);
+        System.arraycopy(frequencies, 0, newFrequencies, 0, size);
+        System.arraycopy(missed, 0, newMissed, 0, size);
+        bssids = newBssids;
+        ssids = newSsids;
+        levels = newLevels;
+        frequencies = newFrequencies;
+        missed = newMissed;
+    }
+
+    /**
+     * @param bssid - packed BSSID (see parseBssid)
+     * @return index of the access point or -1 if it's not in the table
+     */
+    public int indexOf(long bssid)
+    {
+        for (int i = 0; i < size; ++i) {
+            if (bssids[i] == bssid) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the access point with the strongest level or -1 if there's none
+     */
+    public int getStrongest()
+    {
+        int best = -1;
+
+        for (int i = 0; i < size; ++i) {
+            if (best < 0 || levels[i] > levels[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getBssid(int index)
+    {
+        return bssids[index];
+    }
+
+    public String getSsid(int index)
+    {
+        return ssids[index];
+    }
+
+    /**
+     * @return level in dBm (as of the last real change, see LEVEL_CHANGE_DB)
+     */
+    public int getLevel(int index)
+    {
+        return levels[index];
+    }
+
+    /**
+     * @return frequency in MHz
+     */
+    public int getFrequency(int index)
+    {
+        return frequencies[index];
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < size; ++i) {
+            ssids[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Packs a MAC address into a long without making any garbage.
+     *
+     * @param bssid - like 00:11:22:aa:bb:cc
+     * @return the address as a number or NO_BSSID if it's not a MAC address
+     */
+    public static long parseBssid(String bssid)
+    {
+        if (bssid == null || bssid.length() != 17) {
+            return NO_BSSID;
+        }
+        long packed = 0;
+
+        for (int i = 0; i < 17; ++i) {
+            char c = bssid.charAt(i);
+
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') {
+                    return NO_BSSID;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+
+            if (digit < 0) {
+                return NO_BSSID;
+            }
+            packed = (packed << 4) | digit;
+        }
+        return packed;
+    }
+}
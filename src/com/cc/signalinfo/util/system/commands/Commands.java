@@ -88,6 +88,14 @@ public interface Commands
      */
     List<File> findFiles(String haystack, String needle);
 
+    /**
+     * Gets the total size of the directory in bytes
+     *
+     * @param dir to be analyzed
+     * @return size of the directory in bytes or -1 if it couldn't be figured out
+     */
+    long getDirSizeRecursively(String dir);
+
     /**
      * Launch an activity based on the package and activity name
      *
@@ -0,0 +1,258 @@
+/**
+ * AdBlocker
+ * Author: Wes Lanning
+ * Copyright 2013
+ */
+package com.cc.signalinfo.util.system.commands;
+
+import android.util.Log;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks a directory tree with a few threads at once, handing each matching
+ * file to a callback as soon as it's found instead of building a giant list first.
+ * Keeps a running total of the size of everything matched so it can stand in
+ * for "du" too.
+ *
+ * Every directory gets scanned as its own task on a small thread pool.
+ * (fork/join and the NIO file walker aren't on the Android versions we support,
+ * so this is the poor man's version of those)
+ *
+ * The walk can be stopped early by hitting the match limit, returning false from
+ * the callback or calling cancel() from another thread.
+ *
+ * One walker per walk, they can't be reused.
+ */
+public class FileWalker
+{
+    /**
+     * Pass as the match limit to find everything.
+     */
+    public static final  int    NO_LIMIT    = -1;
+    private static final String DEBUG_TAG   = FileWalker.class.getSimpleName();
+    // disk is the bottleneck, more threads than this just fight over it
+    private static final int    MAX_THREADS = 4;
+
+    private final FileFilter     filter;
+    private final FileCallback   callback;
+    private final int            maxMatches;
+    private final AtomicInteger  pending   = new AtomicInteger();
+    private final AtomicInteger  matches   = new AtomicInteger();
+    private final AtomicLong     totalSize = new AtomicLong();
+    private final CountDownLatch done      = new CountDownLatch(1);
+    private volatile boolean         stopped  = false;
+    private          ExecutorService executor = null;
+
+    /**
+     * @param filter - which files to match (null to match everything). Directories are always walked.
+     * @param maxMatches - stop after this many files match or NO_LIMIT
+     * @param callback - told about each match as it's found (can be null if only the size is needed)
+     */
+    public FileWalker(FileFilter filter, int maxMatches, FileCallback callback)
+    {
+        this.filter = filter;
+        this.maxMatches = maxMatches;
+        this.callback = callback;
+    }
+
+    /**
+     * Walks everything under root and blocks until done or stopped.
+     *
+     * @param root - where to start (if it's a plain file then only it gets checked)
+     * @return true if the whole tree was walked, false if it was stopped early
+     */
+    public boolean walk(File root)
+    {
+        synchronized (this) {
+            if (executor != null) {
+                throw new IllegalStateException("A FileWalker can only be used once");
+            }
+            executor = Executors.newFixedThreadPool(getThreadCount());
+        }
+
+        try {
+            if (root.isDirectory()) {
+                submit(root);
+                done.await();
+            }
+            else if (root.isFile() && accept(root)) {
+                visit(root);
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return !stopped;
+    }
+
+    /**
+     * Stops the walk as soon as the threads notice. Safe to call from anywhere.
+     */
+    public void cancel()
+    {
+        stopped = true;
+    }
+
+    /**
+     * @return true if the walk was stopped before it covered everything
+     */
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    /**
+     * @return how many files matched so far
+     */
+    public int getMatchCount()
+    {
+        return Math.min(matches.get(), maxMatches == NO_LIMIT ? Integer.MAX_VALUE : maxMatches);
+    }
+
+    /**
+     * @return total size in bytes of the files matched so far
+     */
+    public long getTotalSize()
+    {
+        return totalSize.get();
+    }
+
+    /**
+     * Queues a directory to be scanned. Keeps track of how many are
+     * still outstanding so walk() knows when everything is done.
+     *
+     * @param dir - directory to scan
+     */
+    private void submit(final File dir)
+    {
+        pending.incrementAndGet();
+
+        try {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        scan(dir);
+                    } finally {
+                        finishTask();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // only happens when the pool was shut down because we're bailing out
+            finishTask();
+        }
+    }
+
+    private void finishTask()
+    {
+        if (pending.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Looks through one directory, queueing up subdirectories and
+     * visiting any files that match.
+     *
+     * @param dir - directory to look through
+     */
+    private void scan(File dir)
+    {
+        if (stopped) {
+            return;
+        }
+        File[] children = dir.listFiles();
+
+        // null if we can't read it (permissions or it went away)
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (stopped) {
+                return;
+            }
+            if (child.isDirectory()) {
+                if (!isSymlink(child)) {
+                    submit(child);
+                }
+            }
+            else if (accept(child)) {
+                visit(child);
+            }
+        }
+    }
+
+    private boolean accept(File file)
+    {
+        return filter == null || filter.accept(file);
+    }
+
+    private void visit(File file)
+    {
+        int count = matches.incrementAndGet();
+
+        // other threads might have matched at the same time, only the first maxMatches count
+        if (maxMatches != NO_LIMIT && count > maxMatches) {
+            stopped = true;
+            return;
+        }
+        long size = file.length();
+        totalSize.addAndGet(size);
+
+        if (callback != null && !callback.onFileFound(file, size)) {
+            stopped = true;
+        }
+        if (count == maxMatches) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Symlinked directories can loop back on themselves so skip them.
+     */
+    private static boolean isSymlink(File dir)
+    {
+        try {
+            return FileUtils.isSymlink(dir);
+        } catch (IOException e) {
+            Log.d(DEBUG_TAG, "Could not check for symlink, skipping " + dir, e);
+            return true;
+        }
+    }
+
+    private static int getThreadCount()
+    {
+        return Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Told about each matching file as the walk finds it.
+     */
+    public interface FileCallback
+    {
+        /**
+         * Called from the walker's threads, possibly several at once,
+         * so make sure whatever this does is thread safe.
+         *
+         * @param file - the file that matched
+         * @param size - size of the file in bytes
+         * @return true to keep going, false to stop the walk
+         */
+        boolean onFileFound(File file, long size);
+    }
+}
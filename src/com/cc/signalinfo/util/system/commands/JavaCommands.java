@@ -10,10 +10,10 @@ import android.util.Log;
 import com.cc.signalinfo.util.system.terminal.ShellTerminal;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.IOFileFilter;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -276,26 +277,81 @@ public class JavaCommands implements Commands
      *
      * @param haystack - where to start the search
      * @param needle - what to search with (partial name of whatever)
-     * @return a list of files found in the haystack or null if none found
+     * @return a list of files found in the haystack (empty if none found)
      */
     @Override
-    public List<File> findFiles(String haystack, final String needle)
+    public List<File> findFiles(String haystack, String needle)
     {
-        IOFileFilter ioFileFilter = new IOFileFilter()
+        return findFiles(haystack, needle, FileWalker.NO_LIMIT);
+    }
+
+    /**
+     * Find files in a haystack but give up after finding enough of them.
+     *
+     * @param haystack - where to start the search
+     * @param needle - what to search with (partial name of whatever)
+     * @param maxResults - stop after finding this many (or FileWalker.NO_LIMIT)
+     * @return a list of files found in the haystack (empty if none found)
+     */
+    public List<File> findFiles(String haystack, String needle, int maxResults)
+    {
+        final List<File> found = Collections.synchronizedList(new ArrayList<File>());
+
+        findFiles(haystack, needle, maxResults, new FileWalker.FileCallback()
         {
             @Override
-            public boolean accept(File file)
+            public boolean onFileFound(File file, long size)
             {
-                return file.getName().toLowerCase().contains(needle);
+                found.add(file);
+                return true;
             }
+        });
+        return found;
+    }
 
+    /**
+     * Find files in a haystack, handing each one to the callback as soon as it's
+     * found rather than waiting for the whole search to finish. Return false
+     * from the callback to stop searching.
+     *
+     * @param haystack - where to start the search
+     * @param needle - what to search with (partial name of whatever)
+     * @param maxResults - stop after finding this many (or FileWalker.NO_LIMIT)
+     * @param callback - told about each file found (called from several threads)
+     * @return true if the whole haystack was searched, false if it stopped early
+     */
+    public boolean findFiles(String haystack, String needle, int maxResults, FileWalker.FileCallback callback)
+    {
+        final String lowerNeedle = needle.toLowerCase();
+        FileFilter nameFilter = new FileFilter()
+        {
             @Override
-            public boolean accept(File dir, String name)
+            public boolean accept(File file)
             {
-                return name.toLowerCase().contains(needle);
+                return file.getName().toLowerCase().contains(lowerNeedle);
             }
         };
-        return (List<File>) FileUtils.listFiles(new File(haystack), ioFileFilter, ioFileFilter);
+        return new FileWalker(nameFilter, maxResults, callback).walk(new File(haystack));
+    }
+
+    /**
+     * Gets the total size of the directory in bytes without running du.
+     * Anything we don't have permission to read just doesn't get counted.
+     *
+     * @param dir to be analyzed
+     * @return size of the directory in bytes or -1 if it doesn't exist
+     */
+    @Override
+    public long getDirSizeRecursively(String dir)
+    {
+        File root = new File(dir);
+
+        if (!root.exists()) {
+            return -1;
+        }
+        FileWalker walker = new FileWalker(null, FileWalker.NO_LIMIT, null);
+        walker.walk(root);
+        return walker.getTotalSize();
     }
 
     @Override
@@ -173,6 +173,7 @@ public class ShellCommands implements Commands
      * @param dir to be analyzed
      * @return size of the directory in bytes
      */
+    @Override
     public long getDirSizeRecursively(String dir) {
         if (shell.executeCmds("busybox du -k -c " + dir + " | busybox grep total | busybox cut -d\\t -f1")) {
             return Long.parseLong(shell.getCommandOutput("busybox du -k -c " + dir + " | busybox grep total | busybox cut -d\\t -f1").trim()) * 1024;
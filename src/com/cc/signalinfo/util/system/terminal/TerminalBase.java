@@ -230,6 +230,26 @@ public class TerminalBase
         return success;
     }
 
+    /**
+     * Starts a long running command (like logcat) and hands back the process
+     * so the caller can read its output as it streams in. The shell is replaced
+     * by the command via exec so there's only the one process to clean up.
+     *
+     * Whoever calls this owns the process and MUST destroy it when done.
+     *
+     * @param cmd - the command to run
+     * @return the running process, read from getInputStream()
+     * @throws IOException if the shell could not be started
+     */
+    public Process openCmdStream(String cmd) throws IOException
+    {
+        Process process = Runtime.getRuntime().exec(shellType);
+        DataOutputStream os = new DataOutputStream(process.getOutputStream());
+        os.writeBytes("exec " + cmd + '\n');
+        os.flush();
+        return process;
+    }
+
     /**
      * What type of shell are we executing the current commands with?
      *
@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright (c) 2013 Wes Lanning, http://codingcreation.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * http://www.opensource.org/licenses/mit-license.php
+ * /
+ */
+
+
+package com.cc.signalinfo.widgets;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import com.cc.signalinfo.services.SignalMonitorService;
+
+/**
+ * Home screen widget showing the network, headline reading and link quality.
+ * The widget itself doesn't do anything, it just makes sure the
+ * SignalMonitorService is running (which keeps it up to date).
+ *
+ * @author Wes Lanning
+ * @version 2013-11-06
+ */
+public class SignalWidgetProvider extends AppWidgetProvider
+{
+    /**
+     * Also called every so often (see signal_widget_info.xml), so the
+     * service gets started again if the system killed it off.
+     */
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds)
+    {
+        SignalMonitorService.sync(context);
+    }
+
+    /**
+     * Last widget's gone, the service can stop unless the notification's on.
+     */
+    @Override
+    public void onDisabled(Context context)
+    {
+        SignalMonitorService.sync(context);
+    }
+
+    /**
+     * @param context - any context
+     * @return true if there's at least one widget on the home screen
+     */
+    public static boolean hasWidgets(Context context)
+    {
+        int[] ids = AppWidgetManager.getInstance(context)
+            .getAppWidgetIds(new ComponentName(context, SignalWidgetProvider.class));
+
+        return ids != null && ids.length > 0;
+    }
+}